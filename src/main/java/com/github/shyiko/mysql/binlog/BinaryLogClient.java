@@ -48,8 +48,9 @@ import com.github.shyiko.mysql.binlog.network.ServerException;
 import com.github.shyiko.mysql.binlog.network.SocketFactory;
 import com.github.shyiko.mysql.binlog.network.protocol.ErrorPacket;
 import com.github.shyiko.mysql.binlog.network.protocol.GreetingPacket;
-import com.github.shyiko.mysql.binlog.network.protocol.Packet;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketBuffer;
 import com.github.shyiko.mysql.binlog.network.protocol.PacketChannel;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketRing;
 import com.github.shyiko.mysql.binlog.network.protocol.ResultSetRowPacket;
 import com.github.shyiko.mysql.binlog.network.protocol.command.Command;
 import com.github.shyiko.mysql.binlog.network.protocol.command.DumpBinaryLogCommand;
@@ -62,6 +63,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
@@ -72,6 +74,7 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -119,8 +122,7 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     };
     private static final SSLSocketFactory DEFAULT_VERIFY_CA_SSL_MODE_SOCKET_FACTORY = new DefaultSSLSocketFactory();
 
-    // https://dev.mysql.com/doc/internals/en/sending-more-than-16mbyte.html
-    private static final int MAX_PACKET_LENGTH = 16777215;
+    private static final int ROWS_DECODING_QUEUE_CAPACITY = 1024;
 
     private final Logger logger = Logger.getLogger("donkey");
 
@@ -154,6 +156,13 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
 
     private SocketFactory socketFactory;
     private SSLSocketFactory sslSocketFactory;
+    private boolean useSocketChannel;
+    private int socketChannelBufferSize = 512 * 1024;
+    private boolean useDirectBuffer;
+    private int readAheadCapacity;
+    private Executor rowsDecodingExecutor;
+    private volatile RowsDecodingPipeline rowsDecodingPipeline; // accessed by whichever thread is deserializing events
+    private int sslBufferSize = 512 * 1024;
 
     protected volatile PacketChannel channel;
     private volatile boolean connected;
@@ -170,6 +179,7 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     private long connectTimeout = TimeUnit.SECONDS.toMillis(3);
 
     private volatile ExecutorService keepAliveThreadExecutor;
+    volatile BinaryLogClientEventLoop eventLoop;
 
     private final Lock connectLock = new ReentrantLock();
     private final Lock keepAliveThreadExecutorLock = new ReentrantLock();
@@ -499,6 +509,10 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         this.connectTimeout = connectTimeout;
     }
 
+    public EventDeserializer getEventDeserializer() {
+        return eventDeserializer;
+    }
+
     /**
      * @param eventDeserializer custom event deserializer
      */
@@ -523,6 +537,130 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         this.sslSocketFactory = sslSocketFactory;
     }
 
+    /**
+     * @return true if replication stream is read through {@link SocketChannel}, false otherwise (default).
+     * @see #setUseSocketChannel(boolean)
+     */
+    public boolean isUseSocketChannel() {
+        return useSocketChannel;
+    }
+
+    /**
+     * @param useSocketChannel true if replication stream should be read through {@link SocketChannel} into a reusable
+     * {@link java.nio.ByteBuffer} (which lets packet headers and event bodies to be decoded straight from the buffer),
+     * false otherwise (default). If custom {@link SocketFactory} is set, it has to produce sockets with an associated
+     * channel (e.g. "SocketChannel.open().socket()"), otherwise this option is ignored.
+     * @see #setSocketChannelBufferSize(int)
+     * @see #setUseDirectBuffer(boolean)
+     */
+    public void setUseSocketChannel(boolean useSocketChannel) {
+        this.useSocketChannel = useSocketChannel;
+    }
+
+    /**
+     * @return size of the read buffer used in {@link SocketChannel} mode, 512KB by default.
+     * @see #setSocketChannelBufferSize(int)
+     */
+    public int getSocketChannelBufferSize() {
+        return socketChannelBufferSize;
+    }
+
+    /**
+     * @param socketChannelBufferSize size of the read buffer used in {@link SocketChannel} mode.
+     * @see #setUseSocketChannel(boolean)
+     */
+    public void setSocketChannelBufferSize(int socketChannelBufferSize) {
+        if (socketChannelBufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0");
+        }
+        this.socketChannelBufferSize = socketChannelBufferSize;
+    }
+
+    /**
+     * @return size of the buffer decrypted data is read into once connection is upgraded to SSL, 512KB by default.
+     * @see #setSslBufferSize(int)
+     */
+    public int getSslBufferSize() {
+        return sslBufferSize;
+    }
+
+    /**
+     * @param sslBufferSize size of the buffer decrypted data is read into once connection is upgraded to SSL.
+     * @see #setSSLMode(SSLMode)
+     */
+    public void setSslBufferSize(int sslBufferSize) {
+        if (sslBufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be greater than 0");
+        }
+        this.sslBufferSize = sslBufferSize;
+    }
+
+    /**
+     * @return true if read buffer used in {@link SocketChannel} mode is allocated outside of the heap, false
+     * otherwise (default).
+     * @see #setUseDirectBuffer(boolean)
+     */
+    public boolean isUseDirectBuffer() {
+        return useDirectBuffer;
+    }
+
+    /**
+     * @param useDirectBuffer true if read buffer used in {@link SocketChannel} mode should be allocated outside of
+     * the heap (saves a copy inside of the channel), false otherwise (default).
+     * @see #setUseSocketChannel(boolean)
+     */
+    public void setUseDirectBuffer(boolean useDirectBuffer) {
+        this.useDirectBuffer = useDirectBuffer;
+    }
+
+    /**
+     * @return number of packets that can be read ahead of event deserialization, 0 (read-ahead disabled) by default.
+     * @see #setReadAheadCapacity(int)
+     */
+    public int getReadAheadCapacity() {
+        return readAheadCapacity;
+    }
+
+    /**
+     * @param readAheadCapacity number of packets that can be read ahead of event deserialization. If greater than 0,
+     * packets are read from the socket by a dedicated thread ("blc-readahead-...") into a ring of that many
+     * preallocated buffers, while deserialization and listener dispatch happen on the main one (so that a stall in an
+     * {@link EventListener} doesn't stop the socket from being drained until the ring fills up). 0 (default) disables
+     * read-ahead.
+     */
+    public void setReadAheadCapacity(int readAheadCapacity) {
+        if (readAheadCapacity < 0) {
+            throw new IllegalArgumentException("Read-ahead capacity cannot be negative");
+        }
+        this.readAheadCapacity = readAheadCapacity;
+    }
+
+    /**
+     * @return executor rows of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events are decoded on, null (default) if they are
+     * decoded as part of event deserialization.
+     * @see #setRowsDecodingExecutor(Executor)
+     */
+    public Executor getRowsDecodingExecutor() {
+        return rowsDecodingExecutor;
+    }
+
+    /**
+     * @param rowsDecodingExecutor executor to decode rows of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events on (in
+     * parallel), null (default) to decode them as part of event deserialization. If set, events are still framed and
+     * deserialized (TABLE_MAPs included) one by one, but rows are only captured in the binary form
+     * ({@link EventDeserializer#setDeferredRows(boolean)} is set on each connect to whether executor is present) and
+     * decoded by the executor. Events are then delivered to {@link EventListener}s (and binlog position / GTID set
+     * updated) by a dedicated "blc-sequencer-..." thread in exactly the same order they were read in (up to 1024
+     * events can be in flight).
+     * Only rows decoded by the default *RowsEventDataDeserializers are decoded in parallel (rows of events
+     * deserialized with {@link EventDeserializer#setColumnarRows(boolean)} / {@link EventDeserializer#setRowSink}
+     * are not). An exception thrown by {@link EventListener} terminates the connection right away, same as without
+     * the executor ({@link LifecycleListener#onCommunicationFailure} with that exception, followed by disconnect).
+     */
+    public void setRowsDecodingExecutor(Executor rowsDecodingExecutor) {
+        this.rowsDecodingExecutor = rowsDecodingExecutor;
+    }
+
     /**
      * @param threadFactory custom thread factory. If not provided, threads will be created using simple "new Thread()".
      */
@@ -578,90 +716,15 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         }
         boolean notifyWhenDisconnected = false;
         try {
-            Callable cancelDisconnect = null;
-            try {
-                try {
-                    long start = System.currentTimeMillis();
-                    channel = openChannel();
-                    if (connectTimeout > 0 && !isKeepAliveThreadRunning()) {
-                        cancelDisconnect = scheduleDisconnectIn(connectTimeout -
-                            (System.currentTimeMillis() - start));
-                    }
-                    if (channel.getInputStream().peek() == -1) {
-                        throw new EOFException();
-                    }
-                } catch (IOException e) {
-                    throw new IOException("Failed to connect to MySQL on " + hostname + ":" + port +
-                        ". Please make sure it's running.", e);
-                }
-                GreetingPacket greetingPacket = receiveGreeting();
-
-                resolveDatabaseVersion(greetingPacket);
-                tryUpgradeToSSL(greetingPacket);
-
-                new Authenticator(greetingPacket, channel, schema, username, password).authenticate();
-                channel.authenticationComplete();
-
-                connectionId = greetingPacket.getThreadId();
-
-                for (LifecycleListener lifecycleListener : lifecycleListeners) {
-                    lifecycleListener.beforeConnect(this);
-                }
-
-                if ("".equals(binlogFilename)) {
-                    setupGtidSet();
-                }
-                if (binlogFilename == null) {
-                    fetchBinlogFilenameAndPosition();
-                }
-                if (binlogPosition < 4) {
-                    if (logger.isLoggable(Level.WARNING)) {
-                        logger.warning("Binary log position adjusted from " + binlogPosition + " to " + 4);
-                    }
-                    binlogPosition = 4;
-                }
-                setupConnection();
-                gtid = null;
-                tx = false;
-
-                requestBinaryLogStream();
-            } catch (IOException e) {
-                disconnectChannel();
-                throw e;
-            } finally {
-                if (cancelDisconnect != null) {
-                    try {
-                        cancelDisconnect.call();
-                    } catch (Exception e) {
-                        if (logger.isLoggable(Level.WARNING)) {
-                            logger.warning("\"" + e.getMessage() +
-                                "\" was thrown while canceling scheduled disconnect call");
-                        }
-                    }
-                }
-            }
-            connected = true;
+            openReplicationStream();
             notifyWhenDisconnected = true;
-            if (logger.isLoggable(Level.INFO)) {
-                String position;
-                synchronized (gtidSetAccessLock) {
-                    position = gtidSet != null ? gtidSet.toString() : binlogFilename + "/" + binlogPosition;
-                }
-                logger.info("Connected to " + hostname + ":" + port + " at " + position +
-                    " (" + (blocking ? "sid:" + serverId + ", " : "") + "cid:" + connectionId + ")");
-            }
             for (LifecycleListener lifecycleListener : lifecycleListeners) {
                 lifecycleListener.onConnect(this);
             }
             if (keepAlive && !isKeepAliveThreadRunning()) {
                 spawnKeepAliveThread();
             }
-            ensureEventDataDeserializer(EventType.ROTATE, RotateEventDataDeserializer.class);
-            synchronized (gtidSetAccessLock) {
-                if (this.gtidEnabled) {
-                    ensureGtidEventDataDeserializer();
-                }
-            }
+            prepareEventDeserializer();
             listenForEventPackets();
         } finally {
             connectLock.unlock();
@@ -673,6 +736,95 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         }
     }
 
+    /**
+     * Establish connection, authenticate and request binary log stream (everything {@link #connect()} does before
+     * it notifies lifecycle listeners and starts to listen for events).
+     */
+    void openReplicationStream() throws IOException {
+        Callable cancelDisconnect = null;
+        try {
+            try {
+                long start = System.currentTimeMillis();
+                channel = openChannel();
+                if (connectTimeout > 0 && !isKeepAliveThreadRunning()) {
+                    cancelDisconnect = scheduleDisconnectIn(connectTimeout -
+                        (System.currentTimeMillis() - start));
+                }
+                if (channel.getInputStream().peek() == -1) {
+                    throw new EOFException();
+                }
+            } catch (IOException e) {
+                throw new IOException("Failed to connect to MySQL on " + hostname + ":" + port +
+                    ". Please make sure it's running.", e);
+            }
+            GreetingPacket greetingPacket = receiveGreeting();
+
+            resolveDatabaseVersion(greetingPacket);
+            tryUpgradeToSSL(greetingPacket);
+
+            new Authenticator(greetingPacket, channel, schema, username, password).authenticate();
+            channel.authenticationComplete();
+
+            connectionId = greetingPacket.getThreadId();
+
+            for (LifecycleListener lifecycleListener : lifecycleListeners) {
+                lifecycleListener.beforeConnect(this);
+            }
+
+            if ("".equals(binlogFilename)) {
+                setupGtidSet();
+            }
+            if (binlogFilename == null) {
+                fetchBinlogFilenameAndPosition();
+            }
+            if (binlogPosition < 4) {
+                if (logger.isLoggable(Level.WARNING)) {
+                    logger.warning("Binary log position adjusted from " + binlogPosition + " to " + 4);
+                }
+                binlogPosition = 4;
+            }
+            setupConnection();
+            gtid = null;
+            tx = false;
+
+            requestBinaryLogStream();
+        } catch (IOException e) {
+            disconnectChannel();
+            throw e;
+        } finally {
+            if (cancelDisconnect != null) {
+                try {
+                    cancelDisconnect.call();
+                } catch (Exception e) {
+                    if (logger.isLoggable(Level.WARNING)) {
+                        logger.warning("\"" + e.getMessage() +
+                            "\" was thrown while canceling scheduled disconnect call");
+                    }
+                }
+            }
+        }
+        eventLastSeen = System.currentTimeMillis(); // otherwise keepalive might drop restored connection right away
+        connected = true;
+        if (logger.isLoggable(Level.INFO)) {
+            String position;
+            synchronized (gtidSetAccessLock) {
+                position = gtidSet != null ? gtidSet.toString() : binlogFilename + "/" + binlogPosition;
+            }
+            logger.info("Connected to " + hostname + ":" + port + " at " + position +
+                " (" + (blocking ? "sid:" + serverId + ", " : "") + "cid:" + connectionId + ")");
+        }
+    }
+
+    void prepareEventDeserializer() {
+        ensureEventDataDeserializer(EventType.ROTATE, RotateEventDataDeserializer.class);
+        eventDeserializer.setDeferredRows(rowsDecodingExecutor != null);
+        synchronized (gtidSetAccessLock) {
+            if (this.gtidEnabled) {
+                ensureGtidEventDataDeserializer();
+            }
+        }
+    }
+
     private void resolveDatabaseVersion(GreetingPacket packet) {
         this.databaseVersion = BinaryLogDatabaseVersion.parse(packet.getServerVersion());
         logger.info("Database version: " + this.databaseVersion);
@@ -697,8 +849,12 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     }
 
     private PacketChannel openChannel() throws IOException {
-        Socket socket = socketFactory != null ? socketFactory.createSocket() : new Socket();
+        Socket socket = socketFactory != null ? socketFactory.createSocket() :
+            useSocketChannel ? SocketChannel.open().socket() : new Socket();
         socket.connect(new InetSocketAddress(hostname, port), (int) connectTimeout);
+        if (useSocketChannel && socket.getChannel() != null) {
+            return new PacketChannel(socket.getChannel(), socketChannelBufferSize, useDirectBuffer);
+        }
         return new PacketChannel(socket);
     }
 
@@ -776,7 +932,7 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
                         sslMode == SSLMode.REQUIRED || sslMode == SSLMode.PREFERRED ?
                             DEFAULT_REQUIRED_SSL_MODE_SOCKET_FACTORY :
                             DEFAULT_VERIFY_CA_SSL_MODE_SOCKET_FACTORY;
-                channel.upgradeToSSL(sslSocketFactory, null);
+                channel.upgradeToSSL(sslSocketFactory, null, sslBufferSize);
                 logger.info("SSL enabled");
                 return true;
             }
@@ -896,17 +1052,7 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
                             logger.info("threadExecutor is shut down, terminating keepalive thread");
                             return;
                         }
-                        boolean connectionLost = false;
-                        if (heartbeatInterval > 0) {
-                            connectionLost = System.currentTimeMillis() - eventLastSeen > keepAliveInterval;
-                        } else {
-                            try {
-                                channel.write(new PingCommand());
-                            } catch (IOException e) {
-                                connectionLost = true;
-                            }
-                        }
-                        if (connectionLost) {
+                        if (isConnectionLost()) {
                             logger.info("Keepalive: Trying to restore lost connection to " + hostname + ":" + port);
                             try {
                                 terminateConnect(useNonGracefulDisconnect);
@@ -925,12 +1071,39 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         }
     }
 
+    /**
+     * @return true if no events (heartbeats included) were received within keepAliveInterval (in case heartbeat is
+     * enabled) or COM_PING cannot be sent (otherwise), false if connection is still alive
+     */
+    boolean isConnectionLost() {
+        if (heartbeatInterval > 0) {
+            return System.currentTimeMillis() - eventLastSeen > keepAliveInterval;
+        }
+        try {
+            channel.write(new PingCommand());
+        } catch (IOException e) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Close the channel (as keepalive thread does when connection is considered lost).
+     */
+    void dropConnection() throws IOException {
+        disconnectChannel(useNonGracefulDisconnect);
+    }
+
     private Thread newNamedThread(Runnable runnable, String threadName) {
         Thread thread = threadFactory == null ? new Thread(runnable) : threadFactory.newThread(runnable);
         thread.setName(threadName);
         return thread;
     }
 
+    String getHostnameAndPort() {
+        return hostname + ":" + port;
+    }
+
     boolean isKeepAliveThreadRunning() {
         try {
             keepAliveThreadExecutorLock.lock();
@@ -1071,55 +1244,47 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
     protected void listenForEventPackets() throws IOException {
         abortRequest = false;
         ByteArrayInputStream inputStream = channel.getInputStream();
+        PacketRing packetRing = readAheadCapacity > 0 ? startReadAhead(inputStream) : null;
         boolean completeShutdown = false;
         try {
-            while (!abortRequest && inputStream.peek() != -1) {
-                int packetLength = inputStream.readInteger(3);
-                inputStream.skip(1); // 1 byte for sequence
-                int marker = inputStream.read();
-                if (marker == 0xFF) {
-                    ErrorPacket errorPacket = new ErrorPacket(inputStream.read(packetLength - 1));
-                    throw new ServerException(errorPacket.getErrorMessage(), errorPacket.getErrorCode(),
-                        errorPacket.getSqlState());
-                }
-                if (marker == 0xFE && !blocking) {
-                    completeShutdown = true;
-                    break;
-                }
-                Event event;
-                try {
-                    event = eventDeserializer.nextEvent(packetLength == MAX_PACKET_LENGTH ?
-                        new ByteArrayInputStream(readPacketSplitInChunks(inputStream, packetLength - 1)) :
-                        inputStream);
-                    if (event == null) {
-                        throw new EOFException();
+            if (packetRing == null) {
+                PacketBuffer packetBuffer = new PacketBuffer();
+                while (!abortRequest && inputStream.peek() != -1) {
+                    int packetLength = inputStream.readInteger(3);
+                    inputStream.skip(1); // 1 byte for sequence
+                    packetBuffer.read(inputStream, packetLength);
+                    if (!handleEventPacket(packetBuffer)) {
+                        completeShutdown = true;
+                        break;
                     }
-                } catch (Exception e) {
-                    Throwable cause = e instanceof EventDataDeserializationException ? e.getCause() : e;
-                    if (cause instanceof EOFException || cause instanceof SocketException) {
-                        throw e;
+                }
+            } else {
+                PacketBuffer packetBuffer;
+                while (!abortRequest && (packetBuffer = packetRing.take()) != null) {
+                    boolean proceed;
+                    try {
+                        proceed = handleEventPacket(packetBuffer);
+                    } finally {
+                        packetRing.release();
                     }
-                    if (isConnected()) {
-                        for (LifecycleListener lifecycleListener : lifecycleListeners) {
-                            lifecycleListener.onEventDeserializationFailure(this, e);
-                        }
+                    if (!proceed) {
+                        completeShutdown = true;
+                        break;
                     }
-                    continue;
-                }
-                if (isConnected()) {
-                    eventLastSeen = System.currentTimeMillis();
-                    updateGtidSet(event);
-                    notifyEventListeners(event);
-                    updateClientBinlogFilenameAndPosition(event);
                 }
             }
+            closeRowsDecodingPipeline();
         } catch (Exception e) {
+            Exception failure = closeRowsDecodingPipelineQuietly(e);
             if (isConnected()) {
                 for (LifecycleListener lifecycleListener : lifecycleListeners) {
-                    lifecycleListener.onCommunicationFailure(this, e);
+                    lifecycleListener.onCommunicationFailure(this, failure);
                 }
             }
         } finally {
+            if (packetRing != null) {
+                packetRing.close(null); // unblocks read-ahead thread (if it's waiting for a free slot)
+            }
             abortRequest = false;
             if (isConnected()) {
                 if (completeShutdown) {
@@ -1131,16 +1296,201 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
         }
     }
 
-    private byte[] readPacketSplitInChunks(ByteArrayInputStream inputStream, int packetLength) throws IOException {
-        byte[] result = inputStream.read(packetLength);
-        int chunkLength;
-        do {
-            chunkLength = inputStream.readInteger(3);
-            inputStream.skip(1); // 1 byte for sequence
-            result = Arrays.copyOf(result, result.length + chunkLength);
-            inputStream.fill(result, result.length - chunkLength, chunkLength);
-        } while (chunkLength == Packet.MAX_LENGTH);
-        return result;
+    private PacketRing startReadAhead(final ByteArrayInputStream inputStream) {
+        final PacketRing packetRing = new PacketRing(readAheadCapacity, 16 * 1024, 1024 * 1024);
+        newNamedThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PacketBuffer packetBuffer;
+                    while (inputStream.peek() != -1 && (packetBuffer = packetRing.claim()) != null) {
+                        int packetLength = inputStream.readInteger(3);
+                        inputStream.skip(1); // 1 byte for sequence
+                        packetBuffer.read(inputStream, packetLength);
+                        packetRing.publish();
+                    }
+                    packetRing.close(null);
+                } catch (Exception e) {
+                    packetRing.close(e);
+                }
+            }
+        }, "blc-readahead-" + hostname + ":" + port).start();
+        return packetRing;
+    }
+
+    /**
+     * Same cleanup {@link #listenForEventPackets()} does once stream ends (used when packets are read by
+     * {@link BinaryLogClientEventLoop}).
+     * @param failure exception stream was terminated with, null if it ended normally
+     * @param completeShutdown true if server signaled the end of the stream (non-blocking mode)
+     */
+    void onEventStreamEnd(Exception failure, boolean completeShutdown) {
+        failure = closeRowsDecodingPipelineQuietly(failure);
+        if (failure != null && isConnected()) {
+            for (LifecycleListener lifecycleListener : lifecycleListeners) {
+                lifecycleListener.onCommunicationFailure(this, failure);
+            }
+        }
+        try {
+            if (isConnected()) {
+                if (completeShutdown) {
+                    disconnect();
+                } else {
+                    disconnectChannel();
+                }
+            }
+        } catch (IOException e) {
+            if (logger.isLoggable(Level.WARNING)) {
+                logger.warning("\"" + e.getMessage() + "\" was thrown while closing the channel");
+            }
+        }
+        for (LifecycleListener lifecycleListener : lifecycleListeners) {
+            lifecycleListener.onDisconnect(this);
+        }
+    }
+
+    /**
+     * @param packet complete (framed) event packet
+     * @return false if server signaled the end of the stream (non-blocking mode), true otherwise
+     * @throws IOException if connection needs to be closed
+     */
+    boolean handleEventPacket(PacketBuffer packet) throws IOException {
+        int marker = packet.getBytes()[0] & 0xFF;
+        if (marker == 0xFF) {
+            ErrorPacket errorPacket = new ErrorPacket(Arrays.copyOfRange(packet.getBytes(), 1, packet.getLength()));
+            throw new ServerException(errorPacket.getErrorMessage(), errorPacket.getErrorCode(),
+                errorPacket.getSqlState());
+        }
+        if (marker == 0xFE && !blocking) {
+            return false;
+        }
+        Event event;
+        try {
+            event = eventDeserializer.nextEvent(packet.getInputStream(1));
+            if (event == null) {
+                throw new EOFException();
+            }
+        } catch (Exception e) {
+            Throwable cause = e instanceof EventDataDeserializationException ? e.getCause() : e;
+            if (cause instanceof EOFException || cause instanceof SocketException) {
+                throw e;
+            }
+            if (isConnected()) {
+                for (LifecycleListener lifecycleListener : lifecycleListeners) {
+                    lifecycleListener.onEventDeserializationFailure(this, e);
+                }
+            }
+            return true;
+        }
+        if (rowsDecodingExecutor != null) {
+            if (isConnected()) {
+                eventLastSeen = System.currentTimeMillis();
+            }
+            if (rowsDecodingPipeline == null) {
+                rowsDecodingPipeline = startRowsDecodingPipeline();
+            }
+            rowsDecodingPipeline.submit(event);
+            return true;
+        }
+        if (isConnected()) {
+            eventLastSeen = System.currentTimeMillis();
+            dispatchEvent(event);
+        }
+        return true;
+    }
+
+    private void dispatchEvent(Event event) {
+        updateGtidSet(event);
+        notifyEventListeners(event);
+        updateClientBinlogFilenameAndPosition(event);
+    }
+
+    private RowsDecodingPipeline startRowsDecodingPipeline() {
+        return new RowsDecodingPipeline(rowsDecodingExecutor, ROWS_DECODING_QUEUE_CAPACITY,
+            new RowsDecodingPipeline.Sink() {
+
+                @Override
+                public boolean isOpen() {
+                    return isConnected();
+                }
+
+                @Override
+                public void onEvent(Event event) {
+                    if (isConnected()) {
+                        dispatchEvent(event);
+                    }
+                }
+
+                @Override
+                public void onEventDeserializationFailure(Exception exception) {
+                    if (isConnected()) {
+                        for (LifecycleListener lifecycleListener : lifecycleListeners) {
+                            lifecycleListener.onEventDeserializationFailure(BinaryLogClient.this, exception);
+                        }
+                    }
+                }
+
+                @Override
+                public void onDeliveryFailure(Throwable failure) {
+                    abortEventStream();
+                }
+            },
+            new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return newNamedThread(runnable, "blc-sequencer-" + hostname + ":" + port);
+                }
+            });
+    }
+
+    /**
+     * Wait for the events that are still being decoded to be delivered.
+     * @throws IOException if delivery failed (e.g. {@link EventListener} threw an exception)
+     */
+    private void closeRowsDecodingPipeline() throws IOException {
+        RowsDecodingPipeline rowsDecodingPipeline = this.rowsDecodingPipeline;
+        if (rowsDecodingPipeline != null) {
+            this.rowsDecodingPipeline = null;
+            rowsDecodingPipeline.close();
+        }
+    }
+
+    /**
+     * @param failure exception stream was terminated with (null if it ended normally)
+     * @return exception delivery of events failed with (e.g. thrown by {@link EventListener}), given failure otherwise
+     */
+    private Exception closeRowsDecodingPipelineQuietly(Exception failure) {
+        try {
+            closeRowsDecodingPipeline();
+        } catch (Exception e) {
+            if (failure != null && logger.isLoggable(Level.FINE)) {
+                logger.fine("\"" + failure.getMessage() + "\" was superseded by \"" + e.getMessage() + "\"");
+            }
+            return e;
+        }
+        return failure;
+    }
+
+    /**
+     * Make the thread reading events stop (as if server closed the connection), without waiting for the next event.
+     */
+    private void abortEventStream() {
+        BinaryLogClientEventLoop eventLoop = this.eventLoop;
+        if (eventLoop != null) {
+            eventLoop.terminate(this);
+            return;
+        }
+        PacketChannel channel = this.channel;
+        if (channel != null && channel.isOpen()) {
+            try {
+                channel.close(); // connected flag is left as is (failure is reported by the reading thread)
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.WARNING)) {
+                    logger.warning("\"" + e.getMessage() + "\" was thrown while closing the channel");
+                }
+            }
+        }
     }
 
     private void updateClientBinlogFilenameAndPosition(Event event) {
@@ -1334,6 +1684,10 @@ public class BinaryLogClient implements BinaryLogClientMXBean {
      * As the result following {@link #connect()} resumes client from where it left off.
      */
     public void disconnect() throws IOException {
+        BinaryLogClientEventLoop eventLoop = this.eventLoop;
+        if (eventLoop != null) {
+            eventLoop.unregister(this);
+        }
         terminateKeepAliveThread();
         terminateConnect();
     }
@@ -0,0 +1,674 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.io.NonBlockingReadable;
+import com.github.shyiko.mysql.binlog.network.protocol.Packet;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketBuffer;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketChannel;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketRing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event loop allowing many {@link BinaryLogClient}s to share a handful of threads (instead of occupying one thread
+ * for {@link BinaryLogClient#connect()} plus one keepalive thread each).
+ * <p>
+ * Connection is established (greeting, SSL, authentication, COM_BINLOG_DUMP) on a "blc-connect-*" thread. After
+ * that socket channel is switched to non-blocking mode and registered with a {@link Selector} of the "blc-event-loop"
+ * thread, which frames packets into a per-client queue. Packets are deserialized and dispatched to
+ * {@link BinaryLogClient.EventListener}s on one of the "blc-decoder-*" threads (never more than one thread per
+ * client at a time, so that order of events is preserved). Once client's queue is full, client's channel is no
+ * longer read from until decoder catches up. Keepalive (COM_PING / heartbeat check & reconnect) is a timer task of
+ * the event loop.
+ * <p>
+ * {@link BinaryLogClient.LifecycleListener}s are notified the same way they are in case of
+ * {@link BinaryLogClient#connect()}. {@link BinaryLogClient#disconnect()} stops the client (and its keepalive).
+ * <p>
+ * Clients must be configured with {@link BinaryLogClient#setUseSocketChannel(boolean)}. SSL connections must be
+ * using {@link com.github.shyiko.mysql.binlog.network.SSLEngineFactory}-capable SSL socket factory (which
+ * default ones are, see {@link com.github.shyiko.mysql.binlog.network.DefaultSSLSocketFactory#isSSLEngineCapable()}).
+ */
+public class BinaryLogClientEventLoop implements Closeable {
+
+    /**
+     * Max number of channel reads per client per selection (so that a client whose server keeps on sending data
+     * cannot starve the rest).
+     */
+    private static final int MAX_READS_PER_SELECTION = 16;
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ExecutorService decodeExecutor;
+    private final ExecutorService connectExecutor;
+    private final boolean ownsExecutors;
+    private final int packetQueueCapacity;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>(); // accessed by event loop thread only
+    private final ConcurrentMap<BinaryLogClient, Registration> registrations =
+        new ConcurrentHashMap<BinaryLogClient, Registration>();
+    private volatile boolean running = true;
+
+    public BinaryLogClientEventLoop() throws IOException {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param decodeThreads number of threads used to deserialize events (and notify listeners)
+     * @throws IOException if selector cannot be opened
+     */
+    public BinaryLogClientEventLoop(int decodeThreads) throws IOException {
+        this(Executors.newFixedThreadPool(decodeThreads, namedThreadFactory("blc-decoder-")),
+            Executors.newCachedThreadPool(namedThreadFactory("blc-connect-")), 64, true);
+    }
+
+    /**
+     * @param decodeExecutor executor used to deserialize events (and notify listeners)
+     * @param connectExecutor executor used to establish connections (blocking)
+     * @param packetQueueCapacity max number of packets read ahead of deserialization (per client)
+     * @throws IOException if selector cannot be opened
+     */
+    public BinaryLogClientEventLoop(ExecutorService decodeExecutor, ExecutorService connectExecutor,
+                                    int packetQueueCapacity) throws IOException {
+        this(decodeExecutor, connectExecutor, packetQueueCapacity, false);
+    }
+
+    private BinaryLogClientEventLoop(ExecutorService decodeExecutor, ExecutorService connectExecutor,
+                                     int packetQueueCapacity, boolean ownsExecutors) throws IOException {
+        if (packetQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Packet queue capacity must be greater than 0");
+        }
+        this.decodeExecutor = decodeExecutor;
+        this.connectExecutor = connectExecutor;
+        this.packetQueueCapacity = packetQueueCapacity;
+        this.ownsExecutors = ownsExecutors;
+        this.selector = Selector.open();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "blc-event-loop");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private static ThreadFactory namedThreadFactory(final String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Connect client to the replication stream (asynchronously). Connection failures are logged and (if client has
+     * keepalive enabled) retried every keepAliveInterval.
+     * @param client client configured with {@link BinaryLogClient#setUseSocketChannel(boolean)}
+     * @throws IllegalArgumentException if client is not configured to use socket channel
+     * @throws IllegalStateException if client is already connected (or event loop is closed)
+     */
+    public void connect(BinaryLogClient client) {
+        if (!client.isUseSocketChannel()) {
+            throw new IllegalArgumentException("BinaryLogClientEventLoop requires setUseSocketChannel(true)");
+        }
+        if (!running) {
+            throw new IllegalStateException("BinaryLogClientEventLoop is closed");
+        }
+        if (client.isConnected() || client.eventLoop != null) {
+            throw new IllegalStateException("BinaryLogClient is already connected");
+        }
+        final Registration registration = new Registration(client);
+        if (registrations.putIfAbsent(client, registration) != null) {
+            throw new IllegalStateException("BinaryLogClient is already connected");
+        }
+        client.eventLoop = this;
+        submitConnect(registration);
+        if (client.isKeepAlive()) {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    registration.scheduleKeepAlive();
+                }
+            });
+        }
+    }
+
+    /**
+     * Called by {@link BinaryLogClient#disconnect()}.
+     */
+    void unregister(BinaryLogClient client) {
+        final Registration registration = registrations.remove(client);
+        if (registration == null) {
+            return;
+        }
+        registration.cancelled = true;
+        client.eventLoop = null;
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (registration.keepAlive != null) {
+                    registration.keepAlive.cancelled = true;
+                }
+                Connection connection = registration.connection;
+                if (connection != null) {
+                    connection.terminate(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Terminate current connection of the client (as if server closed it). Called by {@link BinaryLogClient} when
+     * events can no longer be delivered.
+     */
+    void terminate(BinaryLogClient client) {
+        final Registration registration = registrations.get(client);
+        if (registration == null) {
+            return;
+        }
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                Connection connection = registration.connection;
+                if (connection != null) {
+                    connection.terminate(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return number of clients registered with this event loop
+     */
+    public int getNumberOfClients() {
+        return registrations.size();
+    }
+
+    /**
+     * Disconnect all clients and stop the event loop.
+     */
+    @Override
+    public void close() throws IOException {
+        for (BinaryLogClient client : new ArrayList<BinaryLogClient>(registrations.keySet())) {
+            try {
+                client.disconnect();
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.WARNING)) {
+                    logger.warning("Failed to disconnect " + client.getHostnameAndPort() + ": " + e.getMessage());
+                }
+            }
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownsExecutors) {
+            decodeExecutor.shutdown();
+            connectExecutor.shutdownNow();
+        }
+        selector.close();
+    }
+
+    private void submitConnect(final Registration registration) {
+        registration.connecting = true;
+        try {
+            connectExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    registration.connect();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            registration.connecting = false;
+        }
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void loop() {
+        while (running) {
+            // tasks queued while these are running (e.g. onReadable of the client that hit MAX_READS_PER_SELECTION)
+            // wait for the next pass (selector.wakeup() makes sure select below doesn't block)
+            for (int n = tasks.size(); n > 0; n--) {
+                runSafely(tasks.poll());
+            }
+            long timeout = runDueTimers();
+            try {
+                selector.select(timeout);
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.WARNING)) {
+                    logger.log(Level.WARNING, "Selector failure", e);
+                }
+            }
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                if (key.isValid()) {
+                    ((Connection) key.attachment()).onReadable();
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            ((Connection) key.attachment()).terminate(null);
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            if (logger.isLoggable(Level.WARNING)) {
+                logger.log(Level.WARNING, "Event loop task failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return number of milliseconds until next timer is due (0 if there are no timers)
+     */
+    private long runDueTimers() {
+        while (!timers.isEmpty()) {
+            Timer timer = timers.peek();
+            if (timer.cancelled) {
+                timers.poll();
+                continue;
+            }
+            long delay = timer.deadline - System.currentTimeMillis();
+            if (delay > 0) {
+                return delay;
+            }
+            timers.poll();
+            runSafely(timer.task);
+        }
+        return 0;
+    }
+
+    private Timer schedule(Runnable task, long delay) {
+        Timer timer = new Timer(System.currentTimeMillis() + delay, task);
+        timers.add(timer);
+        return timer;
+    }
+
+    private static final class Timer implements Comparable<Timer> {
+
+        private final long deadline;
+        private final Runnable task;
+        private boolean cancelled;
+
+        private Timer(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timer that) {
+            return Long.compare(deadline, that.deadline);
+        }
+    }
+
+    /**
+     * Client registered with the event loop (outlives connections, which come and go as client reconnects).
+     */
+    private final class Registration {
+
+        private final BinaryLogClient client;
+        private volatile boolean cancelled;
+        private volatile boolean connecting;
+        private volatile Connection connection;
+        private Timer keepAlive; // accessed by event loop thread only
+
+        private Registration(BinaryLogClient client) {
+            this.client = client;
+        }
+
+        private void connect() {
+            try {
+                if (cancelled) {
+                    return;
+                }
+                client.openReplicationStream();
+                PacketChannel channel = client.channel;
+                NonBlockingReadable readable = channel.getNonBlockingReadable();
+                SocketChannel socketChannel = channel.getSocketChannel();
+                if (readable == null || socketChannel == null) {
+                    client.dropConnection();
+                    throw new IOException("Channel cannot be used in non-blocking mode (make sure socket factory is " +
+                        "not set and SSL socket factory is SSLEngineFactory-capable)");
+                }
+                for (BinaryLogClient.LifecycleListener lifecycleListener : client.getLifecycleListeners()) {
+                    lifecycleListener.onConnect(client);
+                }
+                client.prepareEventDeserializer();
+                socketChannel.configureBlocking(false);
+                final Connection connection = new Connection(this, socketChannel, readable);
+                this.connection = connection;
+                execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        connection.register();
+                    }
+                });
+                if (cancelled) {
+                    execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            connection.terminate(null);
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                if (logger.isLoggable(Level.WARNING)) {
+                    logger.warning("Failed to connect to " + client.getHostnameAndPort() + ": " + e.getMessage() +
+                        (client.isKeepAlive() ? ". Next attempt in " + client.getKeepAliveInterval() + "ms" : ""));
+                }
+            } finally {
+                connecting = false;
+            }
+        }
+
+        private void scheduleKeepAlive() {
+            if (cancelled) {
+                return;
+            }
+            keepAlive = schedule(new Runnable() {
+                @Override
+                public void run() {
+                    keepAlive();
+                    scheduleKeepAlive();
+                }
+            }, client.getKeepAliveInterval());
+        }
+
+        private void keepAlive() {
+            if (cancelled || connecting) {
+                return;
+            }
+            Connection connection = this.connection;
+            if (connection == null) {
+                submitConnect(this);
+            } else
+            if (!connection.finished && client.isConnectionLost()) {
+                logger.info("Keepalive: Trying to restore lost connection to " + client.getHostnameAndPort());
+                connection.reconnect = true;
+                try {
+                    client.dropConnection();
+                } catch (IOException e) {
+                    // ignore
+                }
+                connection.terminate(null);
+            }
+        }
+
+        private void onConnectionFinished(Connection connection) {
+            if (this.connection == connection) {
+                this.connection = null;
+            }
+            if (connection.reconnect && !cancelled) {
+                submitConnect(this);
+            }
+        }
+    }
+
+    /**
+     * Single connection of a client. Packets are framed by the event loop thread and consumed by decoder threads.
+     */
+    private final class Connection {
+
+        private final Registration registration;
+        private final SocketChannel socketChannel;
+        private final NonBlockingReadable readable;
+        private final PacketRing packetRing;
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private final AtomicBoolean finishing = new AtomicBoolean();
+        private volatile boolean finished;
+        private volatile boolean suspended;
+        private volatile boolean reconnect;
+        // accessed by event loop thread only
+        private SelectionKey key;
+        private boolean terminated;
+        private PacketBuffer packet;
+        private int chunkLength;
+        private int chunkRemaining = -1; // -1 means header is expected next
+
+        private Connection(Registration registration, SocketChannel socketChannel, NonBlockingReadable readable) {
+            this.registration = registration;
+            this.socketChannel = socketChannel;
+            this.readable = readable;
+            this.packetRing = new PacketRing(packetQueueCapacity, 16 * 1024, 1024 * 1024);
+        }
+
+        private void register() {
+            if (terminated) {
+                return;
+            }
+            try {
+                key = socketChannel.register(selector, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                terminate(e);
+                return;
+            }
+            onReadable(); // packets which arrived along with the response to COM_BINLOG_DUMP are already buffered
+        }
+
+        private void onReadable() {
+            try {
+                for (int reads = 0; !terminated; reads++) {
+                    frame();
+                    if (suspended) {
+                        return;
+                    }
+                    if (reads == MAX_READS_PER_SELECTION) {
+                        // let other clients go first (read buffer might hold data selector doesn't know about)
+                        execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                onReadable();
+                            }
+                        });
+                        return;
+                    }
+                    int remaining = readable.getBuffer().remaining();
+                    int read = readable.readAvailable();
+                    if (read == -1) {
+                        frame();
+                        terminate(null);
+                        return;
+                    }
+                    if (read == 0 && readable.getBuffer().remaining() == remaining) {
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                terminate(e);
+            }
+        }
+
+        /**
+         * Move complete packets from the read buffer to the packet queue.
+         */
+        private void frame() {
+            ByteBuffer buffer = readable.getBuffer();
+            while (true) {
+                if (packet == null) {
+                    packet = packetRing.tryClaim();
+                    if (packet == null) {
+                        suspend();
+                        return;
+                    }
+                    packet.clear();
+                }
+                if (chunkRemaining == -1) {
+                    if (buffer.remaining() < 4) {
+                        return;
+                    }
+                    chunkLength = (buffer.getShort() & 0xFFFF) | (buffer.get() & 0xFF) << 16;
+                    buffer.get(); // 1 byte for sequence
+                    chunkRemaining = chunkLength;
+                }
+                int length = Math.min(chunkRemaining, buffer.remaining());
+                if (length > 0) {
+                    packet.append(buffer, length);
+                    chunkRemaining -= length;
+                }
+                if (chunkRemaining > 0) {
+                    return;
+                }
+                chunkRemaining = -1;
+                if (chunkLength == Packet.MAX_LENGTH) {
+                    continue; // https://dev.mysql.com/doc/internals/en/sending-more-than-16mbyte.html
+                }
+                packet = null;
+                packetRing.publish();
+                scheduleDrain();
+            }
+        }
+
+        private void suspend() {
+            suspended = true;
+            key.interestOps(0);
+            if (packetRing.size() < packetRing.getCapacity()) {
+                resume(); // decoder released a slot in between
+            }
+        }
+
+        private void resume() {
+            if (!suspended || terminated) {
+                return;
+            }
+            suspended = false;
+            key.interestOps(SelectionKey.OP_READ);
+            onReadable();
+        }
+
+        private void terminate(Exception failure) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            if (key != null) {
+                key.cancel();
+            }
+            packetRing.close(failure);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (drainScheduled.compareAndSet(false, true)) {
+                try {
+                    decodeExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            drain();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    drainScheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Deserialize queued packets (and notify listeners). Runs on a decoder thread.
+         */
+        private void drain() {
+            try {
+                for (PacketBuffer packet; !finished && (packet = packetRing.poll()) != null; ) {
+                    boolean proceed;
+                    try {
+                        proceed = registration.client.handleEventPacket(packet);
+                    } catch (Exception e) {
+                        finish(e, false);
+                        return;
+                    } finally {
+                        packetRing.release();
+                        if (suspended) {
+                            execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    resume();
+                                }
+                            });
+                        }
+                    }
+                    if (!proceed) {
+                        finish(null, true);
+                        return;
+                    }
+                }
+                if (!finished && packetRing.isClosed() && packetRing.size() == 0) {
+                    finish(packetRing.getFailure(), false);
+                }
+            } finally {
+                drainScheduled.set(false);
+                if (!finished && (packetRing.size() > 0 || packetRing.isClosed())) {
+                    scheduleDrain();
+                }
+            }
+        }
+
+        private void finish(Exception failure, boolean completeShutdown) {
+            if (!finishing.compareAndSet(false, true)) {
+                return;
+            }
+            finished = true;
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    terminate(null);
+                }
+            });
+            registration.client.onEventStreamEnd(failure, completeShutdown);
+            registration.onConnectionFinished(this);
+        }
+    }
+
+}
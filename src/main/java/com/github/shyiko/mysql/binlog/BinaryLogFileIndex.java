@@ -0,0 +1,529 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.MariadbGtidEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import com.github.shyiko.mysql.binlog.io.MappedFileInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse index of a binary log file, built in a single header-only pass (only FORMAT_DESCRIPTION and GTID event
+ * bodies are decoded) and meant to be stored next to the file (see {@link #save(File)} / {@link #load(File)}).
+ * <p>
+ * Index consists of
+ * <ul>
+ *     <li>checkpoints (one per {@code interval} events), each holding position & timestamp of the event and positions
+ *     of the TABLE_MAP events in effect at that point (so that {@link BinaryLogFileReader#seek(long, long)} doesn't
+ *     need to go through the whole file);</li>
+ *     <li>position of each GTID (MySQL "source_id:transaction_id" / MariaDB "domain_id-server_id-sequence") event.</li>
+ * </ul>
+ * Typical usage:
+ * <pre>
+ * BinaryLogFileIndex.Checkpoint checkpoint = index.findCheckpointByTimestamp(timestamp);
+ * BinaryLogFileReader reader = new BinaryLogFileReader(new MappedFileInputStream(file));
+ * reader.seek(checkpoint.getPosition(), checkpoint.getContextPosition());
+ * // read (and discard) events until the one with timestamp &gt;= requested is found
+ * </pre>
+ */
+public class BinaryLogFileIndex {
+
+    private static final byte[] MAGIC_HEADER = new byte[]{'B', 'L', 'F', 'I'};
+    private static final int VERSION = 1;
+    private static final int EVENT_HEADER_LENGTH = 19;
+
+    private final long fileLength;
+    private final int interval;
+    private final List<Checkpoint> checkpoints;
+    private final List<String> gtidSources;
+    private int[] gtidSourceIndexes;
+    private long[] gtidNumbers;
+    private long[] gtidPositions;
+    private int numberOfGtids;
+    private final Map<String, Integer> gtidSourceIndexBySource = new HashMap<String, Integer>();
+    // per source (sorted by number, see indexGtids())
+    private long[][] gtidNumbersBySource;
+    private long[][] gtidPositionsBySource;
+
+    private BinaryLogFileIndex(long fileLength, int interval, List<Checkpoint> checkpoints, List<String> gtidSources,
+                               int numberOfGtids) {
+        this.fileLength = fileLength;
+        this.interval = interval;
+        this.checkpoints = checkpoints;
+        this.gtidSources = gtidSources;
+        for (int i = 0; i < gtidSources.size(); i++) {
+            gtidSourceIndexBySource.put(gtidSources.get(i), i);
+        }
+        this.gtidSourceIndexes = new int[Math.max(numberOfGtids, 16)];
+        this.gtidNumbers = new long[gtidSourceIndexes.length];
+        this.gtidPositions = new long[gtidSourceIndexes.length];
+    }
+
+    /**
+     * @see #build(File, int)
+     */
+    public static BinaryLogFileIndex build(File file) throws IOException {
+        return build(file, 1000);
+    }
+
+    /**
+     * @param file binary log file
+     * @param interval number of events between checkpoints
+     * @return index of the file
+     * @throws IOException if file is not a valid binary log or reading fails
+     */
+    public static BinaryLogFileIndex build(File file, int interval) throws IOException {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be greater than 0");
+        }
+        MappedFileInputStream mappedInputStream = new MappedFileInputStream(file);
+        try {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(mappedInputStream);
+            if (!Arrays.equals(inputStream.read(BinaryLogFileReader.MAGIC_HEADER.length),
+                    BinaryLogFileReader.MAGIC_HEADER)) {
+                throw new IOException("Not a valid binary log");
+            }
+            long fileLength = mappedInputStream.size();
+            BinaryLogFileIndex index = new BinaryLogFileIndex(fileLength, interval, new ArrayList<Checkpoint>(),
+                new ArrayList<String>(), 0);
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            List<Long> tableMapPositions = new ArrayList<Long>();
+            long maxTimestamp = 0;
+            long position = BinaryLogFileReader.MAGIC_HEADER.length;
+            for (int eventIndex = 0; position + EVENT_HEADER_LENGTH <= fileLength; eventIndex++) {
+                mappedInputStream.seek(position);
+                long timestamp = inputStream.readLong(4) * 1000L;
+                EventType eventType = EventType.byEventNumber(inputStream.readInteger(1));
+                inputStream.skip(4); // server id
+                long eventLength = inputStream.readLong(4);
+                if (eventLength < EVENT_HEADER_LENGTH) {
+                    throw new IOException("Event at " + position + " has invalid length (" + eventLength + ")");
+                }
+                if (eventIndex % interval == 0) {
+                    long[] tableMaps = new long[tableMapPositions.size()];
+                    for (int i = 0; i < tableMaps.length; i++) {
+                        tableMaps[i] = tableMapPositions.get(i);
+                    }
+                    index.checkpoints.add(new Checkpoint(position, timestamp, maxTimestamp, tableMaps));
+                }
+                if (eventType == EventType.TABLE_MAP) {
+                    tableMapPositions.add(position);
+                } else
+                if (eventType == EventType.FORMAT_DESCRIPTION || eventType == EventType.GTID ||
+                        eventType == EventType.MARIADB_GTID) {
+                    mappedInputStream.seek(position);
+                    Event event = eventDeserializer.nextEvent(new ByteArrayInputStream(mappedInputStream));
+                    String gtid = gtidOf(event.getData());
+                    if (gtid != null) {
+                        index.addGtid(gtid, position);
+                    }
+                    tableMapPositions.clear();
+                } else
+                if (eventType == EventType.ANONYMOUS_GTID || eventType == EventType.QUERY ||
+                        eventType == EventType.XID || eventType == EventType.XA_PREPARE) {
+                    tableMapPositions.clear(); // TABLE_MAPs do not outlive the statement
+                }
+                maxTimestamp = Math.max(maxTimestamp, timestamp);
+                position += eventLength;
+            }
+            index.indexGtids();
+            return index;
+        } finally {
+            mappedInputStream.close();
+        }
+    }
+
+    private static String gtidOf(EventData eventData) {
+        if (eventData instanceof GtidEventData) {
+            return ((GtidEventData) eventData).getMySqlGtid().toString();
+        }
+        if (eventData instanceof MariadbGtidEventData) {
+            MariadbGtidEventData data = (MariadbGtidEventData) eventData;
+            return data.getDomainId() + "-" + data.getServerId() + "-" + data.getSequence();
+        }
+        return null;
+    }
+
+    private void addGtid(String gtid, long position) {
+        int separatorIndex = Math.max(gtid.lastIndexOf(':'), gtid.lastIndexOf('-'));
+        String source = gtid.substring(0, separatorIndex);
+        long number = Long.parseLong(gtid.substring(separatorIndex + 1));
+        Integer sourceIndex = gtidSourceIndexBySource.get(source);
+        if (sourceIndex == null) {
+            sourceIndex = gtidSources.size();
+            gtidSources.add(source);
+            gtidSourceIndexBySource.put(source, sourceIndex);
+        }
+        addGtid(sourceIndex, number, position);
+    }
+
+    private void addGtid(int sourceIndex, long number, long position) {
+        if (numberOfGtids == gtidPositions.length) {
+            int capacity = numberOfGtids << 1;
+            gtidSourceIndexes = Arrays.copyOf(gtidSourceIndexes, capacity);
+            gtidNumbers = Arrays.copyOf(gtidNumbers, capacity);
+            gtidPositions = Arrays.copyOf(gtidPositions, capacity);
+        }
+        gtidSourceIndexes[numberOfGtids] = sourceIndex;
+        gtidNumbers[numberOfGtids] = number;
+        gtidPositions[numberOfGtids] = position;
+        numberOfGtids++;
+    }
+
+    /**
+     * Split GTIDs (kept in the file order) by source, sorting each group by number (so that
+     * {@link #findPositionByGtid(String)} can use binary search).
+     */
+    private void indexGtids() {
+        int numberOfSources = gtidSources.size();
+        int[] counts = new int[numberOfSources];
+        for (int i = 0; i < numberOfGtids; i++) {
+            counts[gtidSourceIndexes[i]]++;
+        }
+        gtidNumbersBySource = new long[numberOfSources][];
+        gtidPositionsBySource = new long[numberOfSources][];
+        for (int i = 0; i < numberOfSources; i++) {
+            gtidNumbersBySource[i] = new long[counts[i]];
+            gtidPositionsBySource[i] = new long[counts[i]];
+            counts[i] = 0;
+        }
+        boolean sorted = true;
+        for (int i = 0; i < numberOfGtids; i++) {
+            int sourceIndex = gtidSourceIndexes[i], j = counts[sourceIndex]++;
+            long[] numbers = gtidNumbersBySource[sourceIndex];
+            numbers[j] = gtidNumbers[i];
+            gtidPositionsBySource[sourceIndex][j] = gtidPositions[i];
+            sorted &= j == 0 || numbers[j - 1] <= numbers[j];
+        }
+        if (!sorted) {
+            for (int i = 0; i < numberOfSources; i++) {
+                sortByNumber(gtidNumbersBySource[i], gtidPositionsBySource[i]);
+            }
+        }
+    }
+
+    private static void sortByNumber(final long[] numbers, long[] positions) {
+        Integer[] order = new Integer[numbers.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // stable (GTID that occurs more than once resolves to its first occurrence)
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                long n1 = numbers[o1], n2 = numbers[o2];
+                return n1 < n2 ? -1 : n1 == n2 ? 0 : 1;
+            }
+        });
+        long[] sortedNumbers = new long[numbers.length], sortedPositions = new long[numbers.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedNumbers[i] = numbers[order[i]];
+            sortedPositions[i] = positions[order[i]];
+        }
+        System.arraycopy(sortedNumbers, 0, numbers, 0, numbers.length);
+        System.arraycopy(sortedPositions, 0, positions, 0, positions.length);
+    }
+
+    /**
+     * @return length of the file at the time index was built (index of a binary log file that grew since then does
+     * not cover events past this point)
+     */
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * @return number of events between checkpoints
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    public List<Checkpoint> getCheckpoints() {
+        return Collections.unmodifiableList(checkpoints);
+    }
+
+    /**
+     * @return number of GTID events in the file
+     */
+    public int getNumberOfGtids() {
+        return numberOfGtids;
+    }
+
+    /**
+     * @param position position within the file
+     * @return last checkpoint at or before the given position, null if position precedes first event
+     */
+    public Checkpoint findCheckpoint(long position) {
+        int low = 0, high = checkpoints.size() - 1, result = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (checkpoints.get(middle).getPosition() <= position) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result == -1 ? null : checkpoints.get(result);
+    }
+
+    /**
+     * @param timestamp timestamp (in milliseconds)
+     * @return last checkpoint such that all events before it have timestamp less than the given one (meaning first
+     * event with timestamp &gt;= requested is at or after this checkpoint), null if index has no checkpoints
+     */
+    public Checkpoint findCheckpointByTimestamp(long timestamp) {
+        // precedingMaxTimestamp is non-decreasing
+        int low = 0, high = checkpoints.size() - 1, result = checkpoints.isEmpty() ? -1 : 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (checkpoints.get(middle).getPrecedingMaxTimestamp() < timestamp) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result == -1 ? null : checkpoints.get(result);
+    }
+
+    /**
+     * @param gtid MySQL ("source_id:transaction_id") or MariaDB ("domain_id-server_id-sequence") GTID
+     * @return position of the GTID event, -1 if GTID is not in the file
+     */
+    public long findPositionByGtid(String gtid) {
+        int separatorIndex = Math.max(gtid.lastIndexOf(':'), gtid.lastIndexOf('-'));
+        if (separatorIndex == -1) {
+            return -1;
+        }
+        Integer sourceIndex = gtidSourceIndexBySource.get(gtid.substring(0, separatorIndex));
+        if (sourceIndex == null) {
+            return -1;
+        }
+        long number;
+        try {
+            number = Long.parseLong(gtid.substring(separatorIndex + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        long[] numbers = gtidNumbersBySource[sourceIndex];
+        int low = 0, high = numbers.length - 1, result = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (numbers[middle] < number) {
+                low = middle + 1;
+            } else {
+                if (numbers[middle] == number) {
+                    result = middle;
+                }
+                high = middle - 1;
+            }
+        }
+        return result == -1 ? -1 : gtidPositionsBySource[sourceIndex][result];
+    }
+
+    public void save(File file) throws IOException {
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            writeTo(outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    public static BinaryLogFileIndex load(File file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return readFrom(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Write index in a binary (little-endian) format: magic header, version, file length, interval, checkpoints
+     * (position, timestamp, preceding max timestamp, TABLE_MAP positions), GTID sources (length-prefixed UTF-8
+     * strings) and GTIDs (source index, number, position).
+     * @param outputStream stream to write index to (not closed by this method)
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(outputStream);
+        out.write(MAGIC_HEADER);
+        out.writeInteger(VERSION, 1);
+        out.writeLong(fileLength, 8);
+        out.writeInteger(interval, 4);
+        out.writeInteger(checkpoints.size(), 4);
+        for (Checkpoint checkpoint : checkpoints) {
+            out.writeLong(checkpoint.position, 8);
+            out.writeLong(checkpoint.timestamp, 8);
+            out.writeLong(checkpoint.precedingMaxTimestamp, 8);
+            out.writeInteger(checkpoint.tableMapPositions.length, 4);
+            for (long tableMapPosition : checkpoint.tableMapPositions) {
+                out.writeLong(tableMapPosition, 8);
+            }
+        }
+        out.writeInteger(gtidSources.size(), 4);
+        for (String source : gtidSources) {
+            byte[] bytes = source.getBytes("UTF-8");
+            out.writeInteger(bytes.length, 2);
+            out.write(bytes);
+        }
+        out.writeInteger(numberOfGtids, 4);
+        for (int i = 0; i < numberOfGtids; i++) {
+            out.writeInteger(gtidSourceIndexes[i], 4);
+            out.writeLong(gtidNumbers[i], 8);
+            out.writeLong(gtidPositions[i], 8);
+        }
+        out.flush();
+    }
+
+    /**
+     * @param inputStream stream to read index from (not closed by this method)
+     * @return index
+     * @throws IOException if stream does not contain a valid index (or reading fails)
+     * @see #writeTo(OutputStream)
+     */
+    public static BinaryLogFileIndex readFrom(InputStream inputStream) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(inputStream);
+        if (!Arrays.equals(in.read(MAGIC_HEADER.length), MAGIC_HEADER)) {
+            throw new IOException("Not a valid binary log index");
+        }
+        int version = in.readInteger(1);
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary log index version " + version);
+        }
+        long fileLength = in.readLong(8);
+        int interval = in.readInteger(4);
+        int numberOfCheckpoints = in.readInteger(4);
+        List<Checkpoint> checkpoints = new ArrayList<Checkpoint>(numberOfCheckpoints);
+        for (int i = 0; i < numberOfCheckpoints; i++) {
+            long position = in.readLong(8);
+            long timestamp = in.readLong(8);
+            long precedingMaxTimestamp = in.readLong(8);
+            long[] tableMapPositions = new long[in.readInteger(4)];
+            for (int j = 0; j < tableMapPositions.length; j++) {
+                tableMapPositions[j] = in.readLong(8);
+            }
+            checkpoints.add(new Checkpoint(position, timestamp, precedingMaxTimestamp, tableMapPositions));
+        }
+        int numberOfSources = in.readInteger(4);
+        List<String> sources = new ArrayList<String>(numberOfSources);
+        for (int i = 0; i < numberOfSources; i++) {
+            sources.add(new String(in.read(in.readInteger(2)), "UTF-8"));
+        }
+        int numberOfGtids = in.readInteger(4);
+        BinaryLogFileIndex index = new BinaryLogFileIndex(fileLength, interval, checkpoints, sources, numberOfGtids);
+        for (int i = 0; i < numberOfGtids; i++) {
+            int sourceIndex = in.readInteger(4);
+            if (sourceIndex < 0 || sourceIndex >= numberOfSources) {
+                throw new IOException("Binary log index refers to unknown GTID source #" + sourceIndex);
+            }
+            index.addGtid(sourceIndex, in.readLong(8), in.readLong(8));
+        }
+        index.indexGtids();
+        return index;
+    }
+
+    /**
+     * Indexed event.
+     */
+    public static final class Checkpoint {
+
+        private final long position;
+        private final long timestamp;
+        private final long precedingMaxTimestamp;
+        private final long[] tableMapPositions;
+
+        private Checkpoint(long position, long timestamp, long precedingMaxTimestamp, long[] tableMapPositions) {
+            this.position = position;
+            this.timestamp = timestamp;
+            this.precedingMaxTimestamp = precedingMaxTimestamp;
+            this.tableMapPositions = tableMapPositions;
+        }
+
+        /**
+         * @return position of the event
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return timestamp (in milliseconds) of the event
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return max timestamp (in milliseconds) among events preceding this one (0 if there are none)
+         */
+        public long getPrecedingMaxTimestamp() {
+            return precedingMaxTimestamp;
+        }
+
+        /**
+         * @return positions of the TABLE_MAP events in effect at this point
+         */
+        public long[] getTableMapPositions() {
+            return tableMapPositions.clone();
+        }
+
+        /**
+         * @return position to pass to {@link BinaryLogFileReader#seek(long, long)} along with {@link #getPosition()}
+         */
+        public long getContextPosition() {
+            return tableMapPositions.length == 0 ? position : tableMapPositions[0];
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("Checkpoint");
+            sb.append("{position=").append(position);
+            sb.append(", timestamp=").append(timestamp);
+            sb.append(", precedingMaxTimestamp=").append(precedingMaxTimestamp);
+            sb.append(", tableMapPositions=").append(Arrays.toString(tableMapPositions));
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+}
@@ -16,8 +16,10 @@
 package com.github.shyiko.mysql.binlog;
 
 import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.MappedFileInputStream;
 
 import java.io.BufferedInputStream;
 import java.io.Closeable;
@@ -29,6 +31,12 @@ import java.util.Arrays;
 
 /**
  * MySQL binary log file reader.
+ * <p>
+ * Reader created over {@link MappedFileInputStream} (e.g. {@code new BinaryLogFileReader(new
+ * MappedFileInputStream(file))}) decodes events straight from the mapped file and supports {@link #seek(long)}.
+ * <p>
+ * To scan through the file quickly (e.g. to count events or to find a particular GTID) pass in
+ * {@link EventDeserializer} with {@link EventDeserializer#setHeaderOnly(boolean)} enabled.
  *
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
@@ -36,7 +44,8 @@ public class BinaryLogFileReader implements Closeable {
 
     public static final byte[] MAGIC_HEADER = new byte[]{(byte) 0xfe, (byte) 0x62, (byte) 0x69, (byte) 0x6e};
 
-    private final ByteArrayInputStream inputStream;
+    private final MappedFileInputStream mappedInputStream;
+    private ByteArrayInputStream inputStream;
     private final EventDeserializer eventDeserializer;
 
     public BinaryLogFileReader(File file) throws IOException {
@@ -58,6 +67,7 @@ public class BinaryLogFileReader implements Closeable {
         if (eventDeserializer == null) {
             throw new IllegalArgumentException("Event deserializer cannot be NULL");
         }
+        this.mappedInputStream = inputStream instanceof MappedFileInputStream ? (MappedFileInputStream) inputStream : null;
         this.inputStream = new ByteArrayInputStream(inputStream);
         try {
             byte[] magicHeader = this.inputStream.read(MAGIC_HEADER.length);
@@ -83,6 +93,63 @@ public class BinaryLogFileReader implements Closeable {
         return eventDeserializer.nextEvent(inputStream);
     }
 
+    /**
+     * Position reader at the event starting at the given offset. FORMAT_DESCRIPTION and TABLE_MAP events preceding
+     * it are decoded (so that event deserializer is in the same state it would have been after sequential read)
+     * while the rest of them are skipped based on their headers alone.
+     * @param position offset of the event within the file (as in {@link
+     * com.github.shyiko.mysql.binlog.event.EventHeaderV4#getPosition()}), 4 being the first one
+     * @throws IOException if position is not an event boundary or reading fails
+     * @throws UnsupportedOperationException if reader was not created over {@link MappedFileInputStream}
+     */
+    public void seek(long position) throws IOException {
+        seek(position, MAGIC_HEADER.length);
+    }
+
+    /**
+     * Same as {@link #seek(long)} except that only events starting at {@code contextPosition} are examined (in
+     * addition to the FORMAT_DESCRIPTION event), which is enough as long as TABLE_MAP events needed to decode events
+     * at {@code position} come after {@code contextPosition} (e.g. when it is the start of the enclosing transaction).
+     * @param position offset of the event within the file
+     * @param contextPosition offset of the event (at or before {@code position}) to start decoding TABLE_MAPs from
+     * @throws IOException if position is not an event boundary or reading fails
+     * @throws UnsupportedOperationException if reader was not created over {@link MappedFileInputStream}
+     */
+    public void seek(long position, long contextPosition) throws IOException {
+        if (mappedInputStream == null) {
+            throw new UnsupportedOperationException("seek(position) requires MappedFileInputStream");
+        }
+        if (contextPosition < MAGIC_HEADER.length || contextPosition > position) {
+            throw new IllegalArgumentException("Context position must be within [4, " + position + "]");
+        }
+        if (contextPosition > MAGIC_HEADER.length) {
+            mappedInputStream.seek(MAGIC_HEADER.length);
+            eventDeserializer.nextEvent(new ByteArrayInputStream(mappedInputStream)); // FORMAT_DESCRIPTION
+        }
+        ByteArrayInputStream headerStream = new ByteArrayInputStream(mappedInputStream);
+        long offset = contextPosition;
+        while (offset < position) {
+            mappedInputStream.seek(offset);
+            headerStream.skip(4); // timestamp
+            EventType eventType = EventType.byEventNumber(headerStream.readInteger(1));
+            headerStream.skip(4); // server id
+            long eventLength = headerStream.readLong(4);
+            if (eventLength <= 0) {
+                throw new IOException("Event at " + offset + " has invalid length (" + eventLength + ")");
+            }
+            if (eventType == EventType.TABLE_MAP || eventType == EventType.FORMAT_DESCRIPTION) {
+                mappedInputStream.seek(offset);
+                eventDeserializer.nextEvent(new ByteArrayInputStream(mappedInputStream));
+            }
+            offset += eventLength;
+        }
+        if (offset != position) {
+            throw new IOException("Position " + position + " is not an event boundary");
+        }
+        mappedInputStream.seek(position);
+        inputStream = new ByteArrayInputStream(mappedInputStream);
+    }
+
     @Override
     public void close() throws IOException {
         inputStream.close();
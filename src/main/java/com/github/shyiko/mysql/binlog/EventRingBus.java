@@ -0,0 +1,303 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link BinaryLogClient.EventListener} publishing events into a fixed-size ring, read by any number of
+ * {@link EventConsumer}s, each on its own thread and at its own pace (tracked by the consumer's sequence). Unlike
+ * listeners registered with the {@link BinaryLogClient} directly (which are called one after another, on the thread
+ * that reads events), consumers don't block each other: publisher only waits (according to the
+ * {@link WaitStrategy}) when the slowest of consumers falls behind by the size of the ring. Events are not copied
+ * (all the consumers see the same {@link Event} instance, which is why they must not modify it) and no memory is
+ * allocated per event (besides the event itself).
+ * <p>
+ * Consumers get events in batches (everything published since the last time consumer checked the ring), with the
+ * last event of the batch flagged as such (e.g. to flush buffered writes). Exception thrown by the consumer is logged
+ * and the consumer moves on to the next event. {@link Error} (e.g. {@link OutOfMemoryError}) is logged too, but it
+ * stops the consumer (which then no longer holds back the publisher nor gets any more events).
+ * <p>
+ * Typical usage:
+ * <pre>
+ * EventRingBus bus = new EventRingBus(4096, EventRingBus.WaitStrategy.PARK);
+ * bus.addConsumer("metrics", metricsConsumer);
+ * bus.addConsumer("archiver", archiveConsumer);
+ * client.registerEventListener(bus);
+ * ...
+ * client.disconnect();
+ * bus.close();
+ * </pre>
+ * {@link #onEvent(Event)} is expected to be called from one thread (the one that reads events). Note that the ring
+ * keeps a reference to the last (size of the ring) events.
+ */
+public class EventRingBus implements BinaryLogClient.EventListener, Closeable {
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    private final Event[] ring;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final ThreadFactory threadFactory;
+    private final AtomicLong cursor = new AtomicLong(-1); // sequence of the last published event
+    private final List<ConsumerWorker> workers = new ArrayList<ConsumerWorker>();
+
+    private ConsumerWorker[] gatingWorkers = new ConsumerWorker[0]; // publisher thread only
+    private long nextSequence; // publisher thread only
+    private long cachedGatingSequence = -1; // publisher thread only
+    private volatile boolean started;
+    private volatile boolean closed;
+
+    public EventRingBus(int size, WaitStrategy waitStrategy) {
+        this(size, waitStrategy, null);
+    }
+
+    /**
+     * @param size number of slots in the ring (power of 2)
+     * @param waitStrategy how both publisher and consumers wait (for the free slot and next event respectively)
+     * @param threadFactory factory of the consumer threads (null to use plain threads)
+     */
+    public EventRingBus(int size, WaitStrategy waitStrategy, ThreadFactory threadFactory) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size of the ring must be a power of 2");
+        }
+        this.ring = new Event[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Add consumer (and start its thread). Consumers must be added before the first event is published.
+     * @param name name of the consumer (used as the name of its thread)
+     * @param consumer consumer
+     */
+    public synchronized void addConsumer(String name, EventConsumer consumer) {
+        if (started || closed) {
+            throw new IllegalStateException("Consumers must be added before the first event is published");
+        }
+        ConsumerWorker worker = new ConsumerWorker(consumer);
+        Thread thread = threadFactory == null ? new Thread(worker) : threadFactory.newThread(worker);
+        thread.setName(name);
+        worker.thread = thread;
+        workers.add(worker);
+        thread.start();
+    }
+
+    /**
+     * @return sequence of the last published event (-1 if nothing was published yet)
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * @return number of events published but not yet processed by the slowest of consumers
+     */
+    public long getBacklog() {
+        long cursor = this.cursor.get();
+        return cursor - getMinimumSequence(cursor, getWorkers());
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        if (!started) {
+            start();
+        }
+        if (closed) {
+            throw new IllegalStateException("Bus is closed");
+        }
+        long sequence = nextSequence;
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > cachedGatingSequence) {
+            long gatingSequence;
+            int counter = 0;
+            while (wrapPoint > (gatingSequence = getMinimumSequence(sequence - 1, gatingWorkers))) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("Interrupted while waiting for the free slot");
+                }
+                waitStrategy.idle(counter);
+                if (counter != Integer.MAX_VALUE) {
+                    counter++; // saturate (wrapping around would get waiting thread back to spinning)
+                }
+            }
+            cachedGatingSequence = gatingSequence;
+        }
+        ring[(int) sequence & mask] = event;
+        nextSequence = sequence + 1;
+        cursor.lazySet(sequence); // ordered after the write to the slot
+    }
+
+    private synchronized void start() {
+        gatingWorkers = workers.toArray(new ConsumerWorker[workers.size()]);
+        started = true;
+    }
+
+    private synchronized ConsumerWorker[] getWorkers() {
+        return workers.toArray(new ConsumerWorker[workers.size()]);
+    }
+
+    private static long getMinimumSequence(long minimum, ConsumerWorker[] workers) {
+        for (ConsumerWorker worker : workers) {
+            long sequence = worker.sequence.get();
+            if (sequence < minimum) {
+                minimum = sequence;
+            }
+        }
+        return minimum;
+    }
+
+    /**
+     * Wait for consumers to process published events and stop consumer threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        for (ConsumerWorker worker : getWorkers()) {
+            for (;;) {
+                try {
+                    worker.thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Consumer of the events published to the {@link EventRingBus}.
+     */
+    public interface EventConsumer {
+
+        /**
+         * @param event event (shared with other consumers)
+         * @param sequence sequence of the event (0 for the first event published to the bus)
+         * @param endOfBatch true if this is the last of the events available to consumer at the moment
+         */
+        void onEvent(Event event, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    /**
+     * How to wait for the next event (consumer) or free slot (publisher).
+     */
+    public enum WaitStrategy {
+        /**
+         * Spin (lowest latency, occupies a core per waiting thread).
+         */
+        BUSY_SPIN {
+            @Override
+            void idle(int counter) {
+            }
+        },
+        /**
+         * Spin for a while and then yield.
+         */
+        YIELD {
+            @Override
+            void idle(int counter) {
+                if (counter >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        },
+        /**
+         * Spin, then yield, then park for {@link #PARK_NANOS} at a time (least CPU, highest latency).
+         */
+        PARK {
+            @Override
+            void idle(int counter) {
+                if (counter >= 2 * SPIN_TRIES) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else if (counter >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        };
+
+        public static final long PARK_NANOS = 100000L;
+        private static final int SPIN_TRIES = 100;
+
+        /**
+         * @param counter number of times this method was called in a row
+         */
+        abstract void idle(int counter);
+    }
+
+    private final class ConsumerWorker implements Runnable {
+
+        private final EventConsumer consumer;
+        private final AtomicLong sequence = new AtomicLong(-1); // sequence of the last processed event
+        private Thread thread;
+
+        ConsumerWorker(EventConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            long nextSequence = 0;
+            int counter = 0;
+            for (;;) {
+                long availableSequence = cursor.get();
+                if (availableSequence < nextSequence) {
+                    if (closed && cursor.get() < nextSequence) {
+                        return;
+                    }
+                    waitStrategy.idle(counter);
+                    if (counter != Integer.MAX_VALUE) {
+                        counter++;
+                    }
+                    continue;
+                }
+                counter = 0;
+                for (; nextSequence <= availableSequence; nextSequence++) {
+                    Event event = ring[(int) nextSequence & mask];
+                    try {
+                        consumer.onEvent(event, nextSequence, nextSequence == availableSequence);
+                    } catch (Exception e) {
+                        if (logger.isLoggable(Level.WARNING)) {
+                            logger.log(Level.WARNING, thread.getName() + " choked on " + event, e);
+                        }
+                    } catch (Throwable e) {
+                        // consumer is dead (and must not keep publisher waiting for it forever)
+                        sequence.set(Long.MAX_VALUE);
+                        if (logger.isLoggable(Level.SEVERE)) {
+                            logger.log(Level.SEVERE, thread.getName() + " died on " + event +
+                                " (no further events are going to be delivered to it)", e);
+                        }
+                        return;
+                    }
+                }
+                sequence.lazySet(availableSequence);
+            }
+        }
+    }
+
+}
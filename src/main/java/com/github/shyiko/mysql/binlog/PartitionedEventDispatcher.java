@@ -0,0 +1,580 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeader;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link BinaryLogClient.EventListener} spreading WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events across a fixed number
+ * of lanes, each with its own thread calling the (shared) listener. Events are assigned to lanes by the hash of
+ * either database and table name ({@link Partitioning#TABLE}) or primary key of the row
+ * ({@link Partitioning#PRIMARY_KEY}), so that changes of the same table (row) are delivered in the order they appear
+ * in the binlog, while changes of different tables (rows) are delivered in parallel.
+ * <p>
+ * {@link Partitioning#PRIMARY_KEY} relies on the primary key columns listed in TABLE_MAP
+ * ({@link TableMapEventMetadata#getSimplePrimaryKeys()}, which requires binlog_row_metadata=FULL (MySQL 8.0.1+)).
+ * Rows of the same event that belong to different lanes are delivered as separate events (sharing the header of the
+ * original one). Tables without (simple) primary key are partitioned by table. Events which rows lack primary key
+ * columns (as well as UPDATE_ROWS moving the row between lanes, i.e. primary key update) act as a barrier (see below).
+ * Note that per-row ordering is not enough for the tables with unique secondary keys or foreign keys to be applied
+ * in parallel (use {@link Partitioning#TABLE} for those).
+ * <p>
+ * TABLE_MAP is delivered in the lane of each rows event that refers to it (right in front of it, unless the same
+ * TABLE_MAP was already delivered in that lane), and so the listener should keep track of TABLE_MAPs per thread
+ * (or by table id). XID and XA_PREPARE are queued (as a marker) in every lane that got rows events of the transaction
+ * and delivered by the lane that gets to that marker last, so that transaction is never seen as committed before all
+ * of its rows are, while the dispatcher moves on to the next transaction right away (meaning commits of the
+ * transactions that don't share lanes can be delivered out of order, and rows of the next transaction can be
+ * delivered before the commit of the previous one). QUERY (except BEGIN) and ROTATE events act as a barrier:
+ * dispatcher waits for all the lanes to catch up and then calls the listener itself. Rest of the events (GTID,
+ * FORMAT_DESCRIPTION, HEARTBEAT, etc.) are passed to the listener right away (on the thread that calls
+ * {@link #onEvent(Event)}), without waiting for the rows events that precede them. Use {@link #getWatermark()} to find
+ * out position up to which all the events were processed (it doesn't go past XID until XID is delivered).
+ * <p>
+ * Exception thrown by the listener on any of the lanes stops that lane (and freezes the watermark) and is rethrown
+ * (wrapped) by the following {@link #onEvent(Event)}.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(listener, 8,
+ *     PartitionedEventDispatcher.Partitioning.PRIMARY_KEY);
+ * client.registerEventListener(dispatcher);
+ * ...
+ * client.disconnect();
+ * dispatcher.close();
+ * </pre>
+ * {@link #onEvent(Event)} is expected to be called from one thread (the one that reads events).
+ */
+public class PartitionedEventDispatcher implements BinaryLogClient.EventListener, Closeable {
+
+    private static final int LANE_CAPACITY = 1024;
+
+    private final BinaryLogClient.EventListener eventListener;
+    private final Partitioning partitioning;
+    private final Lane[] lanes;
+    private final Map<Long, Event> tableMapEventByTableId = new HashMap<Long, Event>();
+    private final boolean[] laneInTransaction; // lanes that got events since the last commit (or barrier)
+
+    private volatile long dispatchedPosition;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+
+    public PartitionedEventDispatcher(BinaryLogClient.EventListener eventListener, int numberOfLanes,
+            Partitioning partitioning) {
+        this(eventListener, numberOfLanes, partitioning, null);
+    }
+
+    /**
+     * @param eventListener listener to call (concurrently, from all the lanes), must be thread-safe
+     * @param numberOfLanes number of lanes (threads)
+     * @param partitioning how to assign rows events to lanes
+     * @param threadFactory factory of the lane threads (null to use plain threads)
+     */
+    public PartitionedEventDispatcher(BinaryLogClient.EventListener eventListener, int numberOfLanes,
+            Partitioning partitioning, ThreadFactory threadFactory) {
+        if (numberOfLanes < 1) {
+            throw new IllegalArgumentException("Number of lanes must be greater than 0");
+        }
+        this.eventListener = eventListener;
+        this.partitioning = partitioning;
+        this.lanes = new Lane[numberOfLanes];
+        this.laneInTransaction = new boolean[numberOfLanes];
+        for (int i = 0; i < numberOfLanes; i++) {
+            lanes[i] = new Lane();
+        }
+        for (int i = 0; i < numberOfLanes; i++) {
+            Thread thread = threadFactory == null ? new Thread(lanes[i]) : threadFactory.newThread(lanes[i]);
+            thread.setName("blc-lane-" + i);
+            lanes[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    public int getNumberOfLanes() {
+        return lanes.length;
+    }
+
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+
+    /**
+     * @return position (within the binlog file of the last ROTATE) up to which all the events were processed by the
+     * listener (0 until the first event that carries position)
+     */
+    public long getWatermark() {
+        long watermark = dispatchedPosition; // read first (tasks dispatched after that start at or past it)
+        for (Lane lane : lanes) {
+            long position = lane.getPendingPosition();
+            if (position >= 0 && position < watermark) {
+                watermark = position;
+            }
+        }
+        return watermark;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        if (closed) {
+            throw new IllegalStateException("Dispatcher is closed");
+        }
+        ensureNoFailure();
+        EventHeader eventHeader = event.getHeader();
+        EventType eventType = eventHeader.getEventType();
+        long position = 0, nextPosition = 0;
+        if (eventHeader instanceof EventHeaderV4) {
+            nextPosition = ((EventHeaderV4) eventHeader).getNextPosition();
+            position = nextPosition == 0 ? 0 : ((EventHeaderV4) eventHeader).getPosition();
+        }
+        try {
+            if (eventType == EventType.TABLE_MAP) {
+                TableMapEventData eventData = event.getData();
+                if (eventData != null) {
+                    tableMapEventByTableId.put(eventData.getTableId(), event);
+                }
+            } else if (EventType.isRowMutation(eventType) && event.getData() != null) {
+                dispatchRows(event, position);
+            } else if (eventType == EventType.XID || eventType == EventType.XA_PREPARE) {
+                dispatchCommit(event, position);
+            } else if (eventType == EventType.ROTATE || eventType == EventType.QUERY && !isBegin(event)) {
+                dispatchBarrier(null, event);
+                if (eventType == EventType.ROTATE && event.getData() != null) {
+                    // positions that follow are those of the next file
+                    dispatchedPosition = ((RotateEventData) event.getData()).getBinlogPosition();
+                    return;
+                }
+            } else {
+                eventListener.onEvent(event);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dispatching " + event, e);
+        }
+        if (nextPosition != 0) {
+            dispatchedPosition = nextPosition;
+        }
+    }
+
+    private void dispatchRows(Event event, long position) throws InterruptedException {
+        EventData eventData = event.getData();
+        long tableId = getTableId(eventData);
+        Event tableMapEvent = tableMapEventByTableId.get(tableId);
+        TableMapEventData tableMapEventData = tableMapEvent == null ? null : (TableMapEventData) tableMapEvent.getData();
+        int tableLane = tableMapEventData == null ? laneOf(Long.valueOf(tableId).hashCode()) :
+            laneOf(31 * hashOf(tableMapEventData.getDatabase()) + hashOf(tableMapEventData.getTable()));
+        List<Integer> primaryKey = null;
+        if (partitioning == Partitioning.PRIMARY_KEY && tableMapEventData != null &&
+                tableMapEventData.getEventMetadata() != null) {
+            primaryKey = tableMapEventData.getEventMetadata().getSimplePrimaryKeys();
+        }
+        if (primaryKey == null || primaryKey.isEmpty()) {
+            submit(tableLane, tableMapEvent, event, position);
+            return;
+        }
+        // from here on, events that can't be partitioned by primary key go through barrier (and not the table lane)
+        // as other rows of the same table might be queued in any of the lanes
+        EventHeader eventHeader = event.getHeader();
+        if (eventData instanceof WriteRowsEventData) {
+            WriteRowsEventData data = (WriteRowsEventData) eventData;
+            int[] laneByRow = lanesOf(data.getRows(), indexesOf(primaryKey, data.getIncludedColumns()));
+            if (laneByRow == null) {
+                dispatchBarrier(tableMapEvent, event);
+                return;
+            }
+            for (int lane = 0; lane < lanes.length; lane++) {
+                List<Serializable[]> rows = rowsOf(data.getRows(), laneByRow, lane);
+                if (rows == data.getRows()) {
+                    submit(lane, tableMapEvent, event, position);
+                } else if (!rows.isEmpty()) {
+                    WriteRowsEventData laneData = new WriteRowsEventData();
+                    laneData.setTableId(data.getTableId());
+                    laneData.setIncludedColumns(data.getIncludedColumns());
+                    laneData.setRows(rows);
+                    submit(lane, tableMapEvent, new Event(eventHeader, laneData), position);
+                }
+            }
+        } else if (eventData instanceof DeleteRowsEventData) {
+            DeleteRowsEventData data = (DeleteRowsEventData) eventData;
+            int[] laneByRow = lanesOf(data.getRows(), indexesOf(primaryKey, data.getIncludedColumns()));
+            if (laneByRow == null) {
+                dispatchBarrier(tableMapEvent, event);
+                return;
+            }
+            for (int lane = 0; lane < lanes.length; lane++) {
+                List<Serializable[]> rows = rowsOf(data.getRows(), laneByRow, lane);
+                if (rows == data.getRows()) {
+                    submit(lane, tableMapEvent, event, position);
+                } else if (!rows.isEmpty()) {
+                    DeleteRowsEventData laneData = new DeleteRowsEventData();
+                    laneData.setTableId(data.getTableId());
+                    laneData.setIncludedColumns(data.getIncludedColumns());
+                    laneData.setRows(rows);
+                    submit(lane, tableMapEvent, new Event(eventHeader, laneData), position);
+                }
+            }
+        } else if (eventData instanceof UpdateRowsEventData) {
+            UpdateRowsEventData data = (UpdateRowsEventData) eventData;
+            int[] beforeIndexes = indexesOf(primaryKey, data.getIncludedColumnsBeforeUpdate());
+            if (beforeIndexes == null) {
+                dispatchBarrier(tableMapEvent, event);
+                return;
+            }
+            int[] afterIndexes = indexesOf(primaryKey, data.getIncludedColumns());
+            List<Map.Entry<Serializable[], Serializable[]>> allRows = data.getRows();
+            int[] laneByRow = new int[allRows.size()];
+            int i = 0;
+            for (Map.Entry<Serializable[], Serializable[]> row : allRows) {
+                Serializable[] before = row.getKey(), after = row.getValue();
+                int lane = laneOf(hashOf(before, beforeIndexes));
+                int hash = 1; // columns missing from the after image (binlog_row_image=minimal) are unchanged
+                for (int j = 0; j < beforeIndexes.length; j++) {
+                    int index = afterIndexes == null ? -1 : afterIndexes[j];
+                    hash = 31 * hash + hashOf(index < 0 || index >= after.length ?
+                        before[beforeIndexes[j]] : after[index]);
+                }
+                if (laneOf(hash) != lane) {
+                    // primary key changed (and so did the lane), order across both lanes has to be kept
+                    dispatchBarrier(tableMapEvent, event);
+                    return;
+                }
+                laneByRow[i++] = lane;
+            }
+            for (int lane = 0; lane < lanes.length; lane++) {
+                List<Map.Entry<Serializable[], Serializable[]>> rows = rowsOf(allRows, laneByRow, lane);
+                if (rows == allRows) {
+                    submit(lane, tableMapEvent, event, position);
+                } else if (!rows.isEmpty()) {
+                    UpdateRowsEventData laneData = new UpdateRowsEventData();
+                    laneData.setTableId(data.getTableId());
+                    laneData.setIncludedColumnsBeforeUpdate(data.getIncludedColumnsBeforeUpdate());
+                    laneData.setIncludedColumns(data.getIncludedColumns());
+                    laneData.setRows(rows);
+                    submit(lane, tableMapEvent, new Event(eventHeader, laneData), position);
+                }
+            }
+        } else {
+            submit(tableLane, tableMapEvent, event, position);
+        }
+    }
+
+    private void submit(int index, Event tableMapEvent, Event event, long position) throws InterruptedException {
+        Lane lane = lanes[index];
+        if (tableMapEvent != null) {
+            TableMapEventData tableMapEventData = tableMapEvent.getData();
+            if (lane.tableMapEventByTableId.put(tableMapEventData.getTableId(), tableMapEvent) != tableMapEvent) {
+                // position of the rows event (and not the TABLE_MAP) so that watermark never goes back
+                lane.put(new Task(tableMapEvent, position, null));
+            }
+        }
+        lane.put(new Task(event, position, null));
+        laneInTransaction[index] = true;
+    }
+
+    /**
+     * Queue commit marker in every lane that got events of the transaction (the last lane to get to it delivers the
+     * event). Commit of the transaction that doesn't have any events in the lanes is delivered right away.
+     */
+    private void dispatchCommit(Event event, long position) throws InterruptedException {
+        int numberOfLanes = 0;
+        for (boolean inTransaction : laneInTransaction) {
+            if (inTransaction) {
+                numberOfLanes++;
+            }
+        }
+        if (numberOfLanes == 0) {
+            eventListener.onEvent(event);
+            return;
+        }
+        AtomicInteger countdown = new AtomicInteger(numberOfLanes);
+        for (int i = 0; i < lanes.length; i++) {
+            if (laneInTransaction[i]) {
+                laneInTransaction[i] = false;
+                lanes[i].put(new Task(event, position, countdown));
+            }
+        }
+    }
+
+    /**
+     * Wait for all the lanes to catch up and call the listener on the current thread.
+     */
+    private void dispatchBarrier(Event tableMapEvent, Event event) throws InterruptedException {
+        awaitLanes();
+        if (tableMapEvent != null) {
+            eventListener.onEvent(tableMapEvent);
+        }
+        eventListener.onEvent(event);
+    }
+
+    private void awaitLanes() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.awaitEmpty();
+        }
+        Arrays.fill(laneInTransaction, false);
+    }
+
+    private void ensureNoFailure() {
+        Throwable failure = this.failure;
+        if (failure != null) {
+            throw new IllegalStateException("Event listener failed on one of the lanes", failure);
+        }
+    }
+
+    /**
+     * Wait for all the lanes to process queued events and stop lane threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                lane.notifyAll();
+            }
+        }
+        boolean interrupted = false;
+        for (Lane lane : lanes) {
+            for (;;) {
+                try {
+                    lane.thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int laneOf(int hash) {
+        return ((hash ^ (hash >>> 16)) & 0x7fffffff) % lanes.length;
+    }
+
+    /**
+     * @return lane of each row (null if any of the primary key columns is missing from the row image)
+     */
+    private int[] lanesOf(List<Serializable[]> rows, int[] indexes) {
+        if (indexes == null) {
+            return null;
+        }
+        int[] result = new int[rows.size()];
+        int i = 0;
+        for (Serializable[] row : rows) {
+            result[i++] = laneOf(hashOf(row, indexes));
+        }
+        return result;
+    }
+
+    /**
+     * @return rows of the given lane (rows themselves if all of them belong to that lane)
+     */
+    private static <T> List<T> rowsOf(List<T> rows, int[] laneByRow, int lane) {
+        int count = 0;
+        for (int rowLane : laneByRow) {
+            if (rowLane == lane) {
+                count++;
+            }
+        }
+        if (count == laneByRow.length) {
+            return rows;
+        }
+        List<T> result = new ArrayList<T>(count);
+        if (count != 0) {
+            int i = 0;
+            for (T row : rows) {
+                if (laneByRow[i++] == lane) {
+                    result.add(row);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return index of each of the primary key columns within the row image (null if any of them is not included)
+     */
+    private static int[] indexesOf(List<Integer> primaryKey, BitSet includedColumns) {
+        if (includedColumns == null) {
+            return null;
+        }
+        int[] result = new int[primaryKey.size()];
+        for (int i = 0; i < result.length; i++) {
+            int column = primaryKey.get(i);
+            if (!includedColumns.get(column)) {
+                return null;
+            }
+            result[i] = includedColumns.get(0, column).cardinality();
+        }
+        return result;
+    }
+
+    private static int hashOf(Serializable[] row, int[] indexes) {
+        int hash = 1;
+        for (int index : indexes) {
+            hash = 31 * hash + hashOf(index < row.length ? row[index] : null);
+        }
+        return hash;
+    }
+
+    private static int hashOf(Object value) {
+        if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        }
+        return value == null ? 0 : value.hashCode();
+    }
+
+    private static long getTableId(EventData eventData) {
+        if (eventData instanceof WriteRowsEventData) {
+            return ((WriteRowsEventData) eventData).getTableId();
+        }
+        if (eventData instanceof UpdateRowsEventData) {
+            return ((UpdateRowsEventData) eventData).getTableId();
+        }
+        if (eventData instanceof DeleteRowsEventData) {
+            return ((DeleteRowsEventData) eventData).getTableId();
+        }
+        return -1;
+    }
+
+    private static boolean isBegin(Event event) {
+        QueryEventData eventData = event.getData();
+        return eventData != null && "BEGIN".equals(eventData.getSql());
+    }
+
+    /**
+     * @see #PartitionedEventDispatcher(BinaryLogClient.EventListener, int, Partitioning)
+     */
+    public enum Partitioning {
+        /**
+         * By database and table name.
+         */
+        TABLE,
+        /**
+         * By primary key (falling back to {@link #TABLE} if primary key is unknown).
+         */
+        PRIMARY_KEY
+    }
+
+    /**
+     * Event queued for delivery.
+     */
+    private static final class Task {
+
+        private final Event event;
+        private final long position;
+        private final AtomicInteger countdown; // number of lanes yet to get to the event (null if there is only one)
+
+        Task(Event event, long position, AtomicInteger countdown) {
+            this.event = event;
+            this.position = position;
+            this.countdown = countdown;
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        private final ArrayDeque<Task> tasks = new ArrayDeque<Task>(); // head stays until processed
+        private final Map<Long, Event> tableMapEventByTableId = new HashMap<Long, Event>(); // dispatcher thread only
+        private Thread thread;
+        private boolean stopped;
+
+        synchronized void put(Task task) throws InterruptedException {
+            while (tasks.size() >= LANE_CAPACITY && !stopped) {
+                wait();
+            }
+            ensureNoFailure();
+            tasks.addLast(task);
+            notifyAll();
+        }
+
+        synchronized void awaitEmpty() throws InterruptedException {
+            while (!tasks.isEmpty() && !stopped) {
+                wait();
+            }
+            ensureNoFailure();
+        }
+
+        /**
+         * @return position of the oldest task which is yet to be processed (-1 if there is none)
+         */
+        synchronized long getPendingPosition() {
+            Task task = tasks.peekFirst();
+            return task == null ? -1 : task.position;
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                Task task;
+                synchronized (this) {
+                    while (tasks.isEmpty() && !closed) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            // lane is stopped by close()
+                        }
+                    }
+                    if (tasks.isEmpty()) {
+                        return;
+                    }
+                    task = tasks.peekFirst();
+                }
+                try {
+                    if (task.countdown == null || task.countdown.decrementAndGet() == 0) {
+                        eventListener.onEvent(task.event);
+                    }
+                } catch (Throwable e) {
+                    synchronized (this) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                        stopped = true;
+                        notifyAll();
+                    }
+                    return;
+                }
+                synchronized (this) {
+                    tasks.pollFirst();
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+}
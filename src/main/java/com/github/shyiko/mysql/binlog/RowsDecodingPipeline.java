@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDataDeserializationException;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer.EventDataWrapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decodes rows of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events (deserialized with
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setDeferredRows(boolean)}) on the
+ * executor, while keeping events in the order they were read: each event is queued (as a future) and a single
+ * sequencer thread hands them over to the {@link Sink} one by one (waiting for the rows of the event to be decoded
+ * if they aren't yet). Events without rows skip the executor.
+ * <p>
+ * Once {@link Sink} fails, the rest of the events are discarded, {@link Sink#onDeliveryFailure(Throwable)} is called
+ * (so that connection can be aborted without waiting for the next event to arrive) and the failure is rethrown by
+ * the following {@link #submit(Event)} / {@link #close()}.
+ * <p>
+ * {@link #submit(Event)} and {@link #close()} are expected to be called from one thread (the one that reads events).
+ */
+class RowsDecodingPipeline {
+
+    private final Executor executor;
+    private final Sink sink;
+    private final BlockingQueue<PendingEvent> queue;
+    private final Thread sequencer;
+    private final PendingEvent end = new PendingEvent(null, null);
+    private volatile Throwable failure;
+    private boolean closed;
+
+    /**
+     * @param executor executor to decode rows on
+     * @param capacity max number of events that can be in flight (read but not yet delivered)
+     * @param sink receiver of the events
+     * @param threadFactory factory of the sequencer thread
+     */
+    RowsDecodingPipeline(Executor executor, int capacity, Sink sink, ThreadFactory threadFactory) {
+        this.executor = executor;
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<PendingEvent>(capacity);
+        this.sequencer = threadFactory.newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                sequence();
+            }
+        });
+        this.sequencer.start();
+    }
+
+    /**
+     * @param event event to deliver (once its rows are decoded)
+     * @throws IOException if delivery of one of the previous events failed (e.g. because of the exception thrown by
+     * {@link BinaryLogClient.EventListener}) or thread got interrupted while waiting for the space in the queue
+     */
+    void submit(Event event) throws IOException {
+        rethrowFailure();
+        PendingEvent pendingEvent = new PendingEvent(event, getRows(event.getData()));
+        if (pendingEvent.rows == null) {
+            pendingEvent.run();
+        } else {
+            try {
+                executor.execute(pendingEvent);
+            } catch (RejectedExecutionException e) {
+                pendingEvent.run(); // executor is shutting down
+            }
+        }
+        put(pendingEvent);
+    }
+
+    /**
+     * Wait for all the submitted events to be delivered (for as long as {@link Sink#isOpen()}). Calling this method
+     * more than once has no effect.
+     * @throws IOException if delivery of one of the events failed
+     */
+    void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        put(end);
+        try {
+            while (sequencer.isAlive() && sink.isOpen()) {
+                sequencer.join(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        rethrowFailure();
+    }
+
+    private void put(PendingEvent pendingEvent) throws InterruptedIOException {
+        try {
+            queue.put(pendingEvent);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable failure = this.failure;
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    private void sequence() {
+        for (;;) {
+            PendingEvent pendingEvent;
+            try {
+                pendingEvent = queue.take();
+            } catch (InterruptedException e) {
+                failure = e;
+                continue; // queue must still be drained (otherwise submit might block forever)
+            }
+            if (pendingEvent == end) {
+                break;
+            }
+            if (failure != null) {
+                continue;
+            }
+            try {
+                Event event;
+                try {
+                    event = getUninterruptibly(pendingEvent);
+                } catch (ExecutionException e) {
+                    sink.onEventDeserializationFailure(
+                        new EventDataDeserializationException(pendingEvent.event.getHeader(), e.getCause()));
+                    continue;
+                }
+                sink.onEvent(event);
+            } catch (Throwable e) {
+                failure = e; // rethrown by the next submit/close
+                sink.onDeliveryFailure(e);
+            }
+        }
+    }
+
+    private static Event getUninterruptibly(PendingEvent pendingEvent) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    return pendingEvent.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static List<?> getRows(EventData eventData) {
+        eventData = EventDataWrapper.internal(eventData);
+        if (eventData instanceof WriteRowsEventData) {
+            return ((WriteRowsEventData) eventData).getRows();
+        }
+        if (eventData instanceof UpdateRowsEventData) {
+            return ((UpdateRowsEventData) eventData).getRows();
+        }
+        if (eventData instanceof DeleteRowsEventData) {
+            return ((DeleteRowsEventData) eventData).getRows();
+        }
+        return null;
+    }
+
+    /**
+     * Event waiting for its rows to be decoded.
+     */
+    private static final class PendingEvent extends FutureTask<Event> {
+
+        private final Event event;
+        private final List<?> rows;
+
+        PendingEvent(final Event event, final List<?> rows) {
+            super(new Callable<Event>() {
+
+                @Override
+                public Event call() throws Exception {
+                    if (rows != null) {
+                        rows.size(); // decodes deferred rows
+                    }
+                    return event;
+                }
+            });
+            this.event = event;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Receiver of the events (called from the sequencer thread).
+     */
+    interface Sink {
+
+        /**
+         * @return false if events are no longer being accepted (and so there is no point in waiting for them to be
+         * delivered)
+         */
+        boolean isOpen();
+
+        void onEvent(Event event) throws Exception;
+
+        void onEventDeserializationFailure(Exception exception);
+
+        /**
+         * Called (once) when {@link #onEvent(Event)} throws an exception. Reading thread is expected to be woken up
+         * (e.g. by closing the channel) so that it picks up the failure (see {@link RowsDecodingPipeline#close()}).
+         * @param failure exception thrown by {@link #onEvent(Event)}
+         */
+        void onDeliveryFailure(Throwable failure);
+    }
+
+}
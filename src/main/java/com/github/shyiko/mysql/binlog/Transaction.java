@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+
+import java.util.List;
+
+/**
+ * Events of a single transaction (from GTID/BEGIN up to and including XID/COMMIT/ROLLBACK/XA_PREPARE, or a single
+ * auto-committed statement such as DDL), as assembled by {@link TransactionAssembler}.
+ * <p>
+ * Transaction that doesn't fit {@link TransactionAssembler#setMaxTransactionSize(long)} is delivered in fragments
+ * (sharing GTID, binlog filename and start position), the last of which is the one with
+ * {@link #isLastFragment()} == true (unless transaction gets interrupted, in which case the last fragment goes to
+ * {@link TransactionAssembler.TransactionListener#onTransactionAborted(Transaction)}). Note that the last fragment is not
+ * necessarily a commit - check {@link #getOutcome()} before applying the transaction.
+ */
+public class Transaction {
+
+    private final String gtid;
+    private final String binlogFilename;
+    private final long startPosition;
+    private final long endPosition;
+    private final long commitTimestamp;
+    private final List<Event> events;
+    private final int fragmentIndex;
+    private final boolean lastFragment;
+    private final Outcome outcome;
+
+    Transaction(String gtid, String binlogFilename, long startPosition, long endPosition, long commitTimestamp,
+            List<Event> events, int fragmentIndex, boolean lastFragment, Outcome outcome) {
+        this.gtid = gtid;
+        this.binlogFilename = binlogFilename;
+        this.startPosition = startPosition;
+        this.endPosition = endPosition;
+        this.commitTimestamp = commitTimestamp;
+        this.events = events;
+        this.fragmentIndex = fragmentIndex;
+        this.lastFragment = lastFragment;
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return GTID (MySQL "source_id:transaction_id" / MariaDB "domain_id-server_id-sequence"), null if GTIDs are not
+     * enabled
+     */
+    public String getGtid() {
+        return gtid;
+    }
+
+    /**
+     * @return binlog file transaction is in, null if unknown (ROTATE hasn't been seen yet)
+     */
+    public String getBinlogFilename() {
+        return binlogFilename;
+    }
+
+    /**
+     * @return position of the first event of the transaction
+     */
+    public long getStartPosition() {
+        return startPosition;
+    }
+
+    /**
+     * @return position right after the last event of this transaction (fragment)
+     */
+    public long getEndPosition() {
+        return endPosition;
+    }
+
+    /**
+     * @return timestamp (in milliseconds) of the event that terminated the transaction, 0 for the fragments other
+     * than the last one
+     */
+    public long getCommitTimestamp() {
+        return commitTimestamp;
+    }
+
+    /**
+     * @return events of the transaction (fragment), in the binlog order
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return 0-based index of the fragment (always 0 for transactions that weren't split)
+     */
+    public int getFragmentIndex() {
+        return fragmentIndex;
+    }
+
+    /**
+     * @return true if this is the last (or the only) fragment of the transaction
+     */
+    public boolean isLastFragment() {
+        return lastFragment;
+    }
+
+    /**
+     * @return how transaction ended, null for the fragments other than the last one (as well as for the transactions
+     * passed to {@link TransactionAssembler.TransactionListener#onTransactionAborted(Transaction)})
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Transaction");
+        sb.append("{gtid=").append(gtid);
+        sb.append(", binlogFilename=").append(binlogFilename);
+        sb.append(", startPosition=").append(startPosition);
+        sb.append(", endPosition=").append(endPosition);
+        sb.append(", commitTimestamp=").append(commitTimestamp);
+        sb.append(", numberOfEvents=").append(events.size());
+        sb.append(", fragmentIndex=").append(fragmentIndex);
+        sb.append(", lastFragment=").append(lastFragment);
+        sb.append(", outcome=").append(outcome);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * @see #getOutcome()
+     */
+    public enum Outcome {
+        /**
+         * XID, COMMIT, XA COMMIT ... ONE PHASE or an auto-committed statement (including XA COMMIT of the transaction
+         * prepared earlier).
+         */
+        COMMIT,
+        /**
+         * ROLLBACK (e.g. transaction that modified non-transactional table before it was rolled back) or
+         * XA ROLLBACK of the transaction prepared earlier. Changes of the transaction must be discarded.
+         */
+        ROLLBACK,
+        /**
+         * XA_PREPARE. Transaction is neither committed nor rolled back yet - that is decided by XA COMMIT /
+         * XA ROLLBACK, which comes later (as a transaction on its own, referring to this one by XID).
+         */
+        XA_PREPARED
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeader;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.MariadbGtidEventData;
+import com.github.shyiko.mysql.binlog.event.MySqlGtid;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
+import com.github.shyiko.mysql.binlog.event.XAPrepareEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer.EventDataWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link BinaryLogClient.EventListener} grouping events into {@link Transaction}s. Transaction starts with GTID
+ * (ANONYMOUS_GTID, MARIADB_GTID) or BEGIN / XA START (if there is no GTID in front of it) and ends with XID, COMMIT,
+ * ROLLBACK or XA_PREPARE (XA COMMIT / XA ROLLBACK that follow later are transactions on their own). Statement that
+ * is not wrapped in BEGIN ... COMMIT (e.g. DDL, or MariaDB event group flagged with
+ * {@link MariadbGtidEventData#FL_STANDALONE}) is a transaction by itself. How the transaction ended (committed, rolled
+ * back or XA-prepared) is reported by {@link Transaction#getOutcome()}.
+ * <p>
+ * Events that are not part of any transaction (ROTATE, FORMAT_DESCRIPTION, HEARTBEAT, etc.) are not delivered.
+ * Neither are events of the transaction that was already in progress when assembler got the first event (as
+ * well as any transaction that is interrupted by the start of another one). If the interrupted transaction already
+ * had some of its fragments delivered (see below), the listener is told so via
+ * {@link TransactionListener#onTransactionAborted(Transaction)}.
+ * <p>
+ * Events are buffered until the end of the transaction, unless their total size exceeds
+ * {@link #setMaxTransactionSize(long)}, in which case buffered events are flushed to the listener as a fragment of
+ * the transaction (see {@link Transaction#getFragmentIndex()}), keeping at most that many bytes (as measured by the
+ * length of the events in the binlog) in memory.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * client.registerEventListener(new TransactionAssembler(new TransactionAssembler.TransactionListener() {
+ *
+ *     public void onTransaction(Transaction transaction) {
+ *         ...
+ *     }
+ * }));
+ * </pre>
+ * Not thread-safe (listener is called by the thread delivering events).
+ */
+public class TransactionAssembler implements BinaryLogClient.EventListener {
+
+    private final TransactionListener transactionListener;
+    private long maxTransactionSize = 64 * 1024 * 1024;
+
+    private String binlogFilename;
+    private boolean started;
+    private boolean inTransaction; // BEGIN (or equivalent) seen, and so a single statement doesn't end transaction
+    private String gtid;
+    private long startPosition;
+    private long endPosition;
+    private List<Event> events = new ArrayList<Event>();
+    private long size;
+    private int fragmentIndex;
+
+    public TransactionAssembler(TransactionListener transactionListener) {
+        this.transactionListener = transactionListener;
+    }
+
+    public long getMaxTransactionSize() {
+        return maxTransactionSize;
+    }
+
+    /**
+     * @param maxTransactionSize max total length (in bytes) of the events buffered before they are delivered as a
+     * fragment of the transaction (64MB by default)
+     */
+    public void setMaxTransactionSize(long maxTransactionSize) {
+        if (maxTransactionSize <= 0) {
+            throw new IllegalArgumentException("Max transaction size must be greater than 0");
+        }
+        this.maxTransactionSize = maxTransactionSize;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        EventHeader eventHeader = event.getHeader();
+        EventData eventData = EventDataWrapper.internal(event.getData());
+        switch (eventHeader.getEventType()) {
+            case ROTATE:
+                if (eventData != null) {
+                    binlogFilename = ((RotateEventData) eventData).getBinlogFilename();
+                }
+                break;
+            case GTID:
+                MySqlGtid mySqlGtid = eventData != null ? ((GtidEventData) eventData).getMySqlGtid() : null;
+                begin(eventHeader, mySqlGtid != null ? mySqlGtid.toString() : null);
+                add(event);
+                break;
+            case ANONYMOUS_GTID:
+                begin(eventHeader, null);
+                add(event);
+                break;
+            case MARIADB_GTID:
+                if (eventData == null) {
+                    begin(eventHeader, null);
+                } else {
+                    MariadbGtidEventData mariadbGtidEventData = (MariadbGtidEventData) eventData;
+                    begin(eventHeader, mariadbGtidEventData.getDomainId() + "-" + eventHeader.getServerId() + "-" +
+                        mariadbGtidEventData.getSequence());
+                    // unless standalone, GTID event stands in for BEGIN
+                    inTransaction = (mariadbGtidEventData.getFlags() & MariadbGtidEventData.FL_STANDALONE) == 0;
+                }
+                add(event);
+                break;
+            case QUERY:
+                String sql = eventData != null ? ((QueryEventData) eventData).getSql() : null;
+                if (sql == null) {
+                    if (started) {
+                        add(event);
+                    }
+                } else
+                if ("BEGIN".equals(sql) || sql.regionMatches(true, 0, "XA START", 0, 8)) {
+                    if (!started) {
+                        begin(eventHeader, null);
+                    }
+                    inTransaction = true;
+                    add(event);
+                } else
+                if ("COMMIT".equals(sql) || "ROLLBACK".equals(sql)) {
+                    if (started) {
+                        add(event);
+                        commit(eventHeader, "COMMIT".equals(sql) ? Transaction.Outcome.COMMIT :
+                            Transaction.Outcome.ROLLBACK);
+                    }
+                } else {
+                    if (!started) {
+                        begin(eventHeader, null);
+                    }
+                    add(event);
+                    if (!inTransaction) {
+                        // auto-commit statement (e.g. DDL)
+                        commit(eventHeader, sql.regionMatches(true, 0, "XA ROLLBACK", 0, 11) ?
+                            Transaction.Outcome.ROLLBACK : Transaction.Outcome.COMMIT);
+                    }
+                }
+                break;
+            case XID:
+                if (started) {
+                    add(event);
+                    commit(eventHeader, Transaction.Outcome.COMMIT);
+                }
+                break;
+            case XA_PREPARE:
+                if (started) {
+                    add(event);
+                    // XA COMMIT ... ONE PHASE is logged as XA_PREPARE (flagged as one-phase)
+                    boolean onePhase = eventData != null && ((XAPrepareEventData) eventData).isOnePhase();
+                    commit(eventHeader, onePhase ? Transaction.Outcome.COMMIT : Transaction.Outcome.XA_PREPARED);
+                }
+                break;
+            default:
+                if (started) {
+                    add(event);
+                }
+        }
+    }
+
+    private void begin(EventHeader eventHeader, String gtid) {
+        if (started) {
+            // previous transaction never ended
+            if (fragmentIndex > 0) {
+                Transaction transaction = new Transaction(this.gtid, binlogFilename, startPosition, endPosition, 0,
+                    events, fragmentIndex, true, null);
+                events = new ArrayList<Event>();
+                transactionListener.onTransactionAborted(transaction);
+            }
+            reset();
+        }
+        this.started = true;
+        this.gtid = gtid;
+        this.startPosition = eventHeader instanceof EventHeaderV4 ? ((EventHeaderV4) eventHeader).getPosition() : 0;
+    }
+
+    private void add(Event event) {
+        EventHeader eventHeader = event.getHeader();
+        long eventSize = eventHeader.getHeaderLength() + eventHeader.getDataLength();
+        if (size + eventSize > maxTransactionSize && !events.isEmpty()) {
+            flush(0, null);
+            fragmentIndex++;
+        }
+        events.add(event);
+        size += eventSize;
+        if (eventHeader instanceof EventHeaderV4) {
+            endPosition = ((EventHeaderV4) eventHeader).getNextPosition();
+        }
+    }
+
+    private void commit(EventHeader eventHeader, Transaction.Outcome outcome) {
+        flush(eventHeader.getTimestamp(), outcome);
+        reset();
+    }
+
+    /**
+     * @param outcome null unless this is the last fragment
+     */
+    private void flush(long commitTimestamp, Transaction.Outcome outcome) {
+        Transaction transaction = new Transaction(gtid, binlogFilename, startPosition, endPosition, commitTimestamp,
+            events, fragmentIndex, outcome != null, outcome);
+        events = new ArrayList<Event>();
+        size = 0;
+        transactionListener.onTransaction(transaction);
+    }
+
+    private void reset() {
+        started = false;
+        inTransaction = false;
+        gtid = null;
+        startPosition = endPosition = 0;
+        if (!events.isEmpty()) {
+            events = new ArrayList<Event>();
+        }
+        size = 0;
+        fragmentIndex = 0;
+    }
+
+    /**
+     * {@link Transaction} listener.
+     */
+    public interface TransactionListener {
+
+        /**
+         * @param transaction transaction (fragment). Transaction that is delivered here is not necessarily committed
+         * (see {@link Transaction#getOutcome()})
+         */
+        void onTransaction(Transaction transaction);
+
+        /**
+         * Called when transaction is interrupted by the start of another one after some of its fragments were
+         * already delivered to {@link #onTransaction(Transaction)}. Such transaction is never going to be committed
+         * (fragments delivered so far need to be discarded).
+         * @param transaction the rest of the transaction (events buffered since the last delivered fragment, possibly
+         * none), with {@link Transaction#getFragmentIndex()} following the last delivered one,
+         * {@link Transaction#isLastFragment()} == true and {@link Transaction#getCommitTimestamp()} == 0
+         */
+        default void onTransactionAborted(Transaction transaction) { }
+    }
+
+}
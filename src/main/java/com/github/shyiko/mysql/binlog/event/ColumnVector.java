@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event;
+
+import com.github.shyiko.mysql.binlog.event.deserialization.AbstractRowsEventDataDeserializer;
+import com.github.shyiko.mysql.binlog.event.deserialization.ColumnType;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Values of a single column of the {@link RowBatch}.
+ * <p>
+ * Depending on the {@link #getKind() kind} values are stored either in a {@code long[]}
+ * (TINY/SHORT/INT24/LONG/LONGLONG/YEAR/ENUM/SET/BIT, DATE/TIME/DATETIME/TIMESTAMP (and their _V2 versions) as
+ * number of microseconds (since the epoch for DATE/DATETIME/TIMESTAMP and since midnight for TIME)), a {@code double[]}
+ * (FLOAT/DOUBLE) or as byte ranges of the slab shared by all columns of the batch (CHAR/VARCHAR/BINARY/VARBINARY,
+ * BLOB/TEXT, JSON, GEOMETRY, NEWDECIMAL (in binary form, see {@link #getDecimal(int)})).
+ * <p>
+ * Arrays returned by {@link #getLongs()}, {@link #getDoubles()}, {@link #getOffsets()} and {@link #getLengths()} might
+ * be longer than the number of rows in the batch.
+ */
+public class ColumnVector implements Serializable {
+
+    /**
+     * Storage of the column values.
+     */
+    public enum Kind {
+        LONG,
+        DOUBLE,
+        BYTES
+    }
+
+    private final int column;
+    private final ColumnType type;
+    private final int meta;
+    private final Kind kind;
+    private final long[] nulls;
+    private final long[] longs;
+    private final double[] doubles;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final byte[] slab;
+
+    public ColumnVector(int column, ColumnType type, int meta, Kind kind, long[] nulls, long[] longs,
+                        double[] doubles, int[] offsets, int[] lengths, byte[] slab) {
+        this.column = column;
+        this.type = type;
+        this.meta = meta;
+        this.kind = kind;
+        this.nulls = nulls;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.slab = slab;
+    }
+
+    /**
+     * @return ordinal position of the column (within the table)
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return actual type of the column (CHAR columns holding ENUM/SET are reported as ENUM/SET)
+     */
+    public ColumnType getType() {
+        return type;
+    }
+
+    /**
+     * @return column metadata (as found in TABLE_MAP)
+     */
+    public int getMeta() {
+        return meta;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public long getLong(int row) {
+        return longs[row];
+    }
+
+    public double getDouble(int row) {
+        return doubles[row];
+    }
+
+    /**
+     * @param row row index
+     * @return copy of the value (of the {@link Kind#BYTES} column)
+     */
+    public byte[] getBytes(int row) {
+        return Arrays.copyOfRange(slab, offsets[row], offsets[row] + lengths[row]);
+    }
+
+    /**
+     * @param row row index
+     * @return value of the NEWDECIMAL column
+     */
+    public BigDecimal getDecimal(int row) {
+        return AbstractRowsEventDataDeserializer.asBigDecimal(meta & 0xFF, meta >> 8, slab, offsets[row]);
+    }
+
+    /**
+     * @return null bitmap (bit {@code row % 64} of the {@code row / 64} element is set if value is null)
+     */
+    public long[] getNulls() {
+        return nulls;
+    }
+
+    /**
+     * @return values of the {@link Kind#LONG} column, null for columns of other kinds
+     */
+    public long[] getLongs() {
+        return longs;
+    }
+
+    /**
+     * @return values of the {@link Kind#DOUBLE} column, null for columns of other kinds
+     */
+    public double[] getDoubles() {
+        return doubles;
+    }
+
+    /**
+     * @return offsets (within the {@link #getSlab() slab}) of the values of the {@link Kind#BYTES} column, null for
+     * columns of other kinds
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return lengths of the values of the {@link Kind#BYTES} column, null for columns of other kinds
+     */
+    public int[] getLengths() {
+        return lengths;
+    }
+
+    /**
+     * @return slab shared by all {@link Kind#BYTES} columns of the batch
+     */
+    public byte[] getSlab() {
+        return slab;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("ColumnVector");
+        sb.append("{column=").append(column);
+        sb.append(", type=").append(type);
+        sb.append(", kind=").append(kind);
+        sb.append('}');
+        return sb.toString();
+    }
+}
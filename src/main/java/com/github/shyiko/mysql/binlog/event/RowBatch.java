@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event;
+
+import java.io.Serializable;
+
+/**
+ * Rows of a single WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS event in a columnar form (one {@link ColumnVector} per
+ * column present in the row image).
+ */
+public class RowBatch implements Serializable {
+
+    private final int numberOfRows;
+    private final ColumnVector[] columns;
+
+    public RowBatch(int numberOfRows, ColumnVector[] columns) {
+        this.numberOfRows = numberOfRows;
+        this.columns = columns;
+    }
+
+    public int getNumberOfRows() {
+        return numberOfRows;
+    }
+
+    public int getNumberOfColumns() {
+        return columns.length;
+    }
+
+    /**
+     * @param index index of the column within the row image (i.e. among included columns)
+     * @return column vector
+     */
+    public ColumnVector getColumn(int index) {
+        return columns[index];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("RowBatch");
+        sb.append("{numberOfRows=").append(numberOfRows);
+        sb.append(", numberOfColumns=").append(columns.length);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event;
+
+import java.util.BitSet;
+
+/**
+ * Columnar counterpart of {@link WriteRowsEventData}, {@link UpdateRowsEventData} and {@link DeleteRowsEventData}
+ * (see {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setColumnarRows(boolean)}).
+ * <p>
+ * {@link #getRows()} holds inserted rows in case of WRITE_ROWS, rows after update in case of UPDATE_ROWS and
+ * deleted rows in case of DELETE_ROWS. {@link #getRowsBeforeUpdate()} is only set in case of UPDATE_ROWS.
+ */
+public class RowBatchEventData implements EventData {
+
+    private long tableId;
+    private BitSet includedColumnsBeforeUpdate;
+    private BitSet includedColumns;
+    private RowBatch rowsBeforeUpdate;
+    private RowBatch rows;
+
+    public long getTableId() {
+        return tableId;
+    }
+
+    public void setTableId(long tableId) {
+        this.tableId = tableId;
+    }
+
+    public BitSet getIncludedColumnsBeforeUpdate() {
+        return includedColumnsBeforeUpdate;
+    }
+
+    public void setIncludedColumnsBeforeUpdate(BitSet includedColumnsBeforeUpdate) {
+        this.includedColumnsBeforeUpdate = includedColumnsBeforeUpdate;
+    }
+
+    public BitSet getIncludedColumns() {
+        return includedColumns;
+    }
+
+    public void setIncludedColumns(BitSet includedColumns) {
+        this.includedColumns = includedColumns;
+    }
+
+    public RowBatch getRowsBeforeUpdate() {
+        return rowsBeforeUpdate;
+    }
+
+    public void setRowsBeforeUpdate(RowBatch rowsBeforeUpdate) {
+        this.rowsBeforeUpdate = rowsBeforeUpdate;
+    }
+
+    public RowBatch getRows() {
+        return rows;
+    }
+
+    public void setRows(RowBatch rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("RowBatchEventData");
+        sb.append("{tableId=").append(tableId);
+        if (includedColumnsBeforeUpdate != null) {
+            sb.append(", includedColumnsBeforeUpdate=").append(includedColumnsBeforeUpdate);
+        }
+        sb.append(", includedColumns=").append(includedColumns);
+        if (rowsBeforeUpdate != null) {
+            sb.append(", rowsBeforeUpdate=").append(rowsBeforeUpdate);
+        }
+        sb.append(", rows=").append(rows);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event;
+
+/**
+ * Data of a WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS event whose body was skipped (without being deserialized) because
+ * table it belongs to was rejected by
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setTableFilter}.
+ */
+public class SkippedRowsEventData implements EventData {
+
+    private long tableId;
+    private String database;
+    private String table;
+
+    public SkippedRowsEventData() {
+    }
+
+    public SkippedRowsEventData(long tableId, String database, String table) {
+        this.tableId = tableId;
+        this.database = database;
+        this.table = table;
+    }
+
+    public long getTableId() {
+        return tableId;
+    }
+
+    public void setTableId(long tableId) {
+        this.tableId = tableId;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("SkippedRowsEventData");
+        sb.append("{tableId=").append(tableId);
+        sb.append(", database='").append(database).append('\'');
+        sb.append(", table='").append(table).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
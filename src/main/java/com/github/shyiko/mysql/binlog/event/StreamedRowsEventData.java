@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event;
+
+import java.util.BitSet;
+
+/**
+ * Data of a WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS event whose rows were delivered to
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.RowSink} during deserialization (see
+ * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#setRowSink}).
+ */
+public class StreamedRowsEventData implements EventData {
+
+    private long tableId;
+    private BitSet includedColumnsBeforeUpdate;
+    private BitSet includedColumns;
+    private int numberOfRows;
+
+    public long getTableId() {
+        return tableId;
+    }
+
+    public void setTableId(long tableId) {
+        this.tableId = tableId;
+    }
+
+    /**
+     * @return columns present in the before image (UPDATE_ROWS only)
+     */
+    public BitSet getIncludedColumnsBeforeUpdate() {
+        return includedColumnsBeforeUpdate;
+    }
+
+    public void setIncludedColumnsBeforeUpdate(BitSet includedColumnsBeforeUpdate) {
+        this.includedColumnsBeforeUpdate = includedColumnsBeforeUpdate;
+    }
+
+    public BitSet getIncludedColumns() {
+        return includedColumns;
+    }
+
+    public void setIncludedColumns(BitSet includedColumns) {
+        this.includedColumns = includedColumns;
+    }
+
+    /**
+     * @return number of rows (pairs of row images in case of UPDATE_ROWS)
+     */
+    public int getNumberOfRows() {
+        return numberOfRows;
+    }
+
+    public void setNumberOfRows(int numberOfRows) {
+        this.numberOfRows = numberOfRows;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("StreamedRowsEventData");
+        sb.append("{tableId=").append(tableId);
+        if (includedColumnsBeforeUpdate != null) {
+            sb.append(", includedColumnsBeforeUpdate=").append(includedColumnsBeforeUpdate);
+        }
+        sb.append(", includedColumns=").append(includedColumns);
+        sb.append(", numberOfRows=").append(numberOfRows);
+        sb.append('}');
+        return sb.toString();
+    }
+}
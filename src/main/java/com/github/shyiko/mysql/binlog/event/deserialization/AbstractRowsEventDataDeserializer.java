@@ -16,14 +16,24 @@
 package com.github.shyiko.mysql.binlog.event.deserialization;
 
 import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.LRUCache;
 import com.github.shyiko.mysql.binlog.event.TableMapEventData;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -68,17 +78,35 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
 
     private static final int DIG_PER_DEC = 9;
     private static final int[] DIG_TO_BYTES = {0, 1, 1, 2, 2, 3, 3, 4, 4, 4};
+    private static final int MAX_UNSCALED_LONG_PRECISION = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_UNSCALED_LONG_PRECISION + 1];
+    private static final BigInteger[] BIG_POWERS_OF_TEN = new BigInteger[MAX_UNSCALED_LONG_PRECISION + 1];
+    static {
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = i == 0 ? 1 : POWERS_OF_TEN[i - 1] * 10;
+            BIG_POWERS_OF_TEN[i] = BigInteger.valueOf(POWERS_OF_TEN[i]);
+        }
+    }
     private static final long TIMEF_OFS = 0x800000000000L;
     private static final long TIMEF_INT_OFS = 0x800000;
+    private static final int[] FRACTIONAL_SECONDS_MULTIPLIER = {1, 10000, 100, 1};
 
     private final Map<Long, TableMapEventData> tableMapEventByTableId;
+    // accessed from the deserialization thread only (lazily decoded rows hold onto the plan directly)
+    private final Map<Long, RowDecoderPlan> rowDecoderPlanByTableId =
+        new LRUCache<Long, RowDecoderPlan>(100, 0.75f, 10000);
 
     private boolean deserializeDateAndTimeAsLong;
+    private boolean deserializeDateAndTimeAsJavaTime;
     private Long invalidDateAndTimeRepresentation;
     private boolean microsecondsPrecision;
     private boolean deserializeCharAndBinaryAsByteArray;
+    private boolean deserializeDecimalAsByteArray;
     private boolean deserializeIntegerAsByteArray;
     private boolean deserializeWithNewTimeV2;
+    private boolean lazyRows;
+    private boolean deferredRows;
+    private Map<String, Map<String, BitSet>> columnProjectionByTable = Collections.emptyMap();
 
     public AbstractRowsEventDataDeserializer(Map<Long, TableMapEventData> tableMapEventByTableId) {
         this.tableMapEventByTableId = tableMapEventByTableId;
@@ -88,11 +116,19 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         this.deserializeDateAndTimeAsLong = value;
     }
 
+    void setDeserializeDateAndTimeAsJavaTime(boolean value) {
+        this.deserializeDateAndTimeAsJavaTime = value;
+    }
+
     // value to return in case of 0000-00-00 00:00:00, 0000-00-00, etc.
     void setInvalidDateAndTimeRepresentation(Long value) {
         this.invalidDateAndTimeRepresentation = value;
     }
 
+    Long getInvalidDateAndTimeRepresentation() {
+        return invalidDateAndTimeRepresentation;
+    }
+
     void setMicrosecondsPrecision(boolean value) {
         this.microsecondsPrecision = value;
     }
@@ -101,6 +137,10 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         this.deserializeCharAndBinaryAsByteArray = value;
     }
 
+    void setDeserializeDecimalAsByteArray(boolean value) {
+        this.deserializeDecimalAsByteArray = value;
+    }
+
     void setDeserializeIntegerAsByteArray(boolean deserializeIntegerAsByteArray) {
         this.deserializeIntegerAsByteArray = deserializeIntegerAsByteArray;
     }
@@ -109,50 +149,271 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         this.deserializeWithNewTimeV2 = deserializeWithNewTimeV2;
     }
 
+    void setLazyRows(boolean lazyRows) {
+        this.lazyRows = lazyRows;
+    }
+
+    void setDeferredRows(boolean deferredRows) {
+        this.deferredRows = deferredRows;
+    }
+
+    /**
+     * @param columnProjectionByTable columns to decode (by database and table name), tables not present in the map
+     * are decoded in full
+     */
+    void setColumnProjection(Map<String, Map<String, BitSet>> columnProjectionByTable) {
+        this.columnProjectionByTable = columnProjectionByTable;
+    }
+
+    /**
+     * @param tableMapEvent TABLE_MAP of the table
+     * @return columns (ordinal positions) to decode, null if all of them
+     */
+    protected BitSet getColumnProjection(TableMapEventData tableMapEvent) {
+        String database = tableMapEvent.getDatabase(), table = tableMapEvent.getTable();
+        if (database == null || table == null || columnProjectionByTable.isEmpty()) {
+            return null;
+        }
+        Map<String, BitSet> columnProjection = columnProjectionByTable.get(database);
+        return columnProjection == null ? null : columnProjection.get(table);
+    }
+
+    /**
+     * @return true if rows should be decoded on first access instead of during deserialization of the event (either
+     * one by one or all at once, see {@link EventDeserializer#setDeferredRows(boolean)})
+     * @see #deserializeRowsLazily(RowDecoderPlan, BitSet[], ByteArrayInputStream, LazyRowList.RowDecoder)
+     */
+    protected boolean isLazyRows() {
+        return lazyRows || deferredRows;
+    }
+
+    /**
+     * Capture remaining row images (without decoding any of the cells). Unless lazy rows are enabled, images are not
+     * even walked through (and so whole event body gets decoded on first access).
+     * @param plan plan of the table rows belong to
+     * @param rowImages columns present in each of the images constituting a single row (e.g. before and after
+     * images in case of UPDATE_ROWS)
+     * @param inputStream stream positioned at the beginning of the first row
+     * @param decoder decoder of a single row (invoked on first access)
+     * @param <E> row type
+     * @return list of rows
+     * @throws IOException in case of EOF
+     */
+    <E> List<E> deserializeRowsLazily(RowDecoderPlan plan, BitSet[] rowImages,
+            ByteArrayInputStream inputStream, LazyRowList.RowDecoder<E> decoder) throws IOException {
+        byte[] data = inputStream.read(inputStream.available());
+        if (!lazyRows) {
+            return new DeferredRowList<E>(decoder, data);
+        }
+        ByteArrayInputStream rowsInputStream = new ByteArrayInputStream(data);
+        int[] offsets = new int[16];
+        int numberOfRows = 0;
+        while (rowsInputStream.available() > 0) {
+            if (numberOfRows + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length << 1);
+            }
+            offsets[numberOfRows++] = rowsInputStream.getPosition();
+            for (BitSet includedColumns : rowImages) {
+                deserializeOrSkipRow(plan, includedColumns, rowsInputStream, true);
+            }
+        }
+        offsets[numberOfRows] = data.length;
+        return new LazyRowList<E>(decoder, data, Arrays.copyOf(offsets, numberOfRows + 1));
+    }
+
     protected Serializable[] deserializeRow(long tableId, BitSet includedColumns, ByteArrayInputStream inputStream)
             throws IOException {
+        return deserializeRow(getTableMapEvent(tableId), includedColumns, inputStream);
+    }
+
+    protected TableMapEventData getTableMapEvent(long tableId) throws IOException {
         TableMapEventData tableMapEvent = tableMapEventByTableId.get(tableId);
         if (tableMapEvent == null) {
             throw new MissingTableMapEventException("No TableMapEventData has been found for table id:" + tableId +
                 ". Usually that means that you have started reading binary log 'within the logical event group'" +
                 " (e.g. from WRITE_ROWS and not proceeding TABLE_MAP");
         }
-        byte[] types = tableMapEvent.getColumnTypes();
-        int[] metadata = tableMapEvent.getColumnMetadata();
-        Serializable[] result = new Serializable[numberOfBitsSet(includedColumns)];
-        BitSet nullColumns = inputStream.readBitSet(result.length, true);
-        for (int i = 0, numberOfSkippedColumns = 0; i < types.length; i++) {
-            if (!includedColumns.get(i)) {
-                numberOfSkippedColumns++;
-                continue;
-            }
-            int index = i - numberOfSkippedColumns;
+        return tableMapEvent;
+    }
+
+    protected Serializable[] deserializeRow(TableMapEventData tableMapEvent, BitSet includedColumns,
+            ByteArrayInputStream inputStream) throws IOException {
+        return deserializeOrSkipRow(getRowDecoderPlan(tableMapEvent), includedColumns, inputStream, false);
+    }
+
+    Serializable[] deserializeRow(RowDecoderPlan plan, BitSet includedColumns, ByteArrayInputStream inputStream)
+            throws IOException {
+        return deserializeOrSkipRow(plan, includedColumns, inputStream, false);
+    }
+
+    /**
+     * Move past the row without decoding any of its cells.
+     * @param tableMapEvent TABLE_MAP of the table row belongs to
+     * @param includedColumns columns present in the row image
+     * @param inputStream stream positioned at the beginning of the row
+     * @throws IOException in case of EOF
+     */
+    protected void skipRow(TableMapEventData tableMapEvent, BitSet includedColumns,
+            ByteArrayInputStream inputStream) throws IOException {
+        deserializeOrSkipRow(getRowDecoderPlan(tableMapEvent), includedColumns, inputStream, true);
+    }
+
+    /**
+     * @param tableMapEvent TABLE_MAP of the table
+     * @return plan compiled for the given TABLE_MAP (and current projection), reused until either of them changes
+     */
+    RowDecoderPlan getRowDecoderPlan(TableMapEventData tableMapEvent) {
+        BitSet columnProjection = getColumnProjection(tableMapEvent);
+        RowDecoderPlan plan = rowDecoderPlanByTableId.get(tableMapEvent.getTableId());
+        if (plan == null || !plan.isCompiledFor(tableMapEvent, columnProjection)) {
+            plan = new RowDecoderPlan(tableMapEvent, columnProjection);
+            rowDecoderPlanByTableId.put(tableMapEvent.getTableId(), plan);
+        }
+        return plan;
+    }
+
+    /**
+     * @param skip true to skip all cells (in which case result is null)
+     */
+    private Serializable[] deserializeOrSkipRow(RowDecoderPlan plan, BitSet includedColumns,
+            ByteArrayInputStream inputStream, boolean skip) throws IOException {
+        ColumnType[] types = plan.getTypes();
+        int[] metas = plan.getMetas(), lengths = plan.getLengths();
+        boolean[] skipped = plan.getSkipped();
+        Charset[] charsets = plan.getCharsets();
+        int numberOfColumns = numberOfBitsSet(includedColumns);
+        Serializable[] result = skip ? null : new Serializable[numberOfColumns];
+        BitSet nullColumns = inputStream.readBitSet(numberOfColumns, true);
+        for (int i = includedColumns.nextSetBit(0), index = 0; i >= 0 && i < types.length;
+             i = includedColumns.nextSetBit(i + 1), index++) {
             if (!nullColumns.get(index)) {
-                // mysql-5.6.24 sql/log_event.cc log_event_print_value (line 1980)
-                int typeCode = types[i] & 0xFF, meta = metadata[i], length = 0;
-                if (typeCode == ColumnType.STRING.getCode()) {
-                    if (meta >= 256) {
-                        int meta0 = meta >> 8, meta1 = meta & 0xFF;
-                        if ((meta0 & 0x30) != 0x30) {
-                            typeCode = meta0 | 0x30;
-                            length = meta1 | (((meta0 & 0x30) ^ 0x30) << 4);
-                        } else {
-                            // mysql-5.6.24 sql/rpl_utility.h enum_field_types (line 278)
-                            if (meta0 == ColumnType.ENUM.getCode() || meta0 == ColumnType.SET.getCode()) {
-                                typeCode = meta0;
-                            }
-                            length = meta1;
-                        }
-                    } else {
-                        length = meta;
-                    }
+                if (skip || skipped[i]) {
+                    skipCell(types[i], metas[i], lengths[i], inputStream);
+                } else {
+                    result[index] = charsets == null || charsets[i] == null ?
+                        deserializeCell(types[i], metas[i], lengths[i], inputStream) :
+                        deserializeCell(types[i], metas[i], lengths[i], charsets[i], inputStream);
                 }
-                result[index] = deserializeCell(ColumnType.byCode(typeCode), meta, length, inputStream);
             }
         }
         return result;
     }
 
+    /**
+     * @param typeCode type of the column as stated in TABLE_MAP
+     * @param meta column metadata
+     * @return actual type of the column (metadata of CHAR column carries real type (ENUM or SET))
+     */
+    static int realTypeCode(int typeCode, int meta) {
+        // mysql-5.6.24 sql/log_event.cc log_event_print_value (line 1980)
+        if (typeCode == ColumnType.STRING.getCode() && meta >= 256) {
+            int meta0 = meta >> 8;
+            if ((meta0 & 0x30) != 0x30) {
+                return meta0 | 0x30;
+            }
+            // mysql-5.6.24 sql/rpl_utility.h enum_field_types (line 278)
+            if (meta0 == ColumnType.ENUM.getCode() || meta0 == ColumnType.SET.getCode()) {
+                return meta0;
+            }
+        }
+        return typeCode;
+    }
+
+    /**
+     * @param typeCode type of the column as stated in TABLE_MAP
+     * @param meta column metadata
+     * @return length of the CHAR/ENUM/SET column (0 for columns of other types)
+     */
+    static int realLength(int typeCode, int meta) {
+        if (typeCode != ColumnType.STRING.getCode()) {
+            return 0;
+        }
+        if (meta >= 256) {
+            int meta0 = meta >> 8, meta1 = meta & 0xFF;
+            if ((meta0 & 0x30) != 0x30) {
+                return meta1 | (((meta0 & 0x30) ^ 0x30) << 4);
+            }
+            return meta1;
+        }
+        return meta;
+    }
+
+    /**
+     * Counterpart of {@link #deserializeCell(ColumnType, int, int, ByteArrayInputStream)} that only moves the stream
+     * past the value (subclasses changing the number of bytes a cell occupies must override both).
+     * @param type column type
+     * @param meta column metadata
+     * @param length length of the CHAR/ENUM/SET value
+     * @param inputStream stream positioned at the beginning of the value
+     * @throws IOException in case of EOF or unsupported type
+     */
+    protected void skipCell(ColumnType type, int meta, int length, ByteArrayInputStream inputStream)
+            throws IOException {
+        int fractionalSecondsLength = (meta + 1) / 2;
+        switch (type) {
+            case BIT:
+                inputStream.skip(((meta >> 8) * 8 + (meta & 0xFF) + 7) >> 3);
+                break;
+            case TINY: case YEAR:
+                inputStream.skip(1);
+                break;
+            case SHORT:
+                inputStream.skip(2);
+                break;
+            case INT24: case DATE: case TIME:
+                inputStream.skip(3);
+                break;
+            case LONG: case FLOAT: case TIMESTAMP:
+                inputStream.skip(4);
+                break;
+            case LONGLONG: case DOUBLE: case DATETIME:
+                inputStream.skip(8);
+                break;
+            case NEWDECIMAL:
+                inputStream.skip(decimalLength(meta & 0xFF, meta >> 8));
+                break;
+            case TIME_V2:
+                inputStream.skip(3 + fractionalSecondsLength);
+                break;
+            case TIMESTAMP_V2:
+                inputStream.skip(4 + fractionalSecondsLength);
+                break;
+            case DATETIME_V2:
+                inputStream.skip(5 + fractionalSecondsLength);
+                break;
+            case STRING:
+                inputStream.skip(length < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2));
+                break;
+            case VARCHAR: case VAR_STRING:
+                inputStream.skip(meta < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2));
+                break;
+            case BLOB: case GEOMETRY: case JSON:
+                inputStream.skip(inputStream.readInteger(meta));
+                break;
+            case ENUM: case SET:
+                inputStream.skip(length);
+                break;
+            default:
+                throw new IOException("Unsupported type " + type);
+        }
+    }
+
+    /**
+     * Same as {@link #deserializeCell(ColumnType, int, int, ByteArrayInputStream)} but for the column which charset
+     * is known (from TABLE_MAP metadata).
+     */
+    protected Serializable deserializeCell(ColumnType type, int meta, int length, Charset charset,
+            ByteArrayInputStream inputStream) throws IOException {
+        switch (type) {
+            case STRING:
+                return deserializeString(length, charset, inputStream);
+            case VARCHAR: case VAR_STRING:
+                return deserializeVarString(meta, charset, inputStream);
+            default:
+                return deserializeCell(type, meta, length, inputStream);
+        }
+    }
+
     protected Serializable deserializeCell(ColumnType type, int meta, int length, ByteArrayInputStream inputStream)
             throws IOException {
         switch (type) {
@@ -262,11 +523,18 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeNewDecimal(int meta, ByteArrayInputStream inputStream) throws IOException {
-        int precision = meta & 0xFF, scale = meta >> 8, x = precision - scale;
+        int precision = meta & 0xFF, scale = meta >> 8;
+        byte[] value = inputStream.read(decimalLength(precision, scale));
+        if (deserializeDecimalAsByteArray) {
+            return value;
+        }
+        return asBigDecimal(precision, scale, value, 0);
+    }
+
+    static int decimalLength(int precision, int scale) {
+        int x = precision - scale;
         int ipd = x / DIG_PER_DEC, fpd = scale / DIG_PER_DEC;
-        int decimalLength = (ipd << 2) + DIG_TO_BYTES[x - ipd * DIG_PER_DEC] +
-            (fpd << 2) + DIG_TO_BYTES[scale - fpd * DIG_PER_DEC];
-        return asBigDecimal(precision, scale, inputStream.read(decimalLength));
+        return (ipd << 2) + DIG_TO_BYTES[x - ipd * DIG_PER_DEC] + (fpd << 2) + DIG_TO_BYTES[scale - fpd * DIG_PER_DEC];
     }
 
     private Long castTimestamp(Long timestamp, int fsp) {
@@ -282,6 +550,9 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         value >>>= 5;
         int month = value % 16;
         int year = value >> 4;
+        if (deserializeDateAndTimeAsJavaTime) {
+            return isValidDate(year, month, day) ? LocalDate.of(year, month, 1).plusDays(day - 1) : null;
+        }
         Long timestamp = asUnixTime(year, month, day, 0, 0, 0, 0);
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, 0);
@@ -291,8 +562,11 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
 
     protected Serializable deserializeTime(ByteArrayInputStream inputStream) throws IOException {
         int value = inputStream.readInteger(3);
-        int[] split = split(value, 100, 3);
-        Long timestamp = asUnixTime(1970, 1, 1, split[2], split[1], split[0], 0);
+        int hour = value / 10000, minute = value / 100 % 100, second = value % 100;
+        if (deserializeDateAndTimeAsJavaTime) {
+            return Duration.ofSeconds(hour * 3600L + minute * 60L + second);
+        }
+        Long timestamp = asUnixTime(1970, 1, 1, hour, minute, second, 0);
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, 0);
         }
@@ -313,7 +587,10 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
 
             + fractional-seconds storage (size depends on meta)
         */
-        long time = bigEndianLong(inputStream.read(3), 0, 3);
+        if (deserializeDateAndTimeAsJavaTime) {
+            return Duration.ofNanos(timeV2Micros(readTimeV2(meta, inputStream)) * 1000);
+        }
+        long time = inputStream.readBigEndianLong(3);
         int fsp = deserializeFractionalSeconds(meta, inputStream);
         Long timestamp = asUnixTime(1970, 1, 1,
             bitSlice(time, 2, 10, 24),
@@ -328,14 +605,38 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeTimeV2New(int meta, ByteArrayInputStream inputStream) throws IOException {
+        long packed = readTimeV2(meta, inputStream);
+        if (deserializeDateAndTimeAsJavaTime) {
+            return Duration.ofNanos(timeV2Micros(packed) * 1000);
+        }
+        return packed;
+    }
+
+    /**
+     * @param packed TIME_V2 value in the packed format of MySQL (as returned by
+     * {@link #readTimeV2(int, ByteArrayInputStream)})
+     * @return signed number of microseconds
+     */
+    static long timeV2Micros(long packed) {
+        long absolute = Math.abs(packed), hms = absolute >> 24;
+        long result = (((hms >> 12) & 0x3FF) * 3600L + ((hms >> 6) & 0x3F) * 60L + (hms & 0x3F)) * 1000000L +
+            (absolute & 0xFFFFFF);
+        return packed < 0 ? -result : result;
+    }
+
+    /**
+     * @return TIME_V2 value in the packed format of MySQL (sign, 24 bits of microseconds, hour (10 bits),
+     * minute (6 bits), second (6 bits))
+     */
+    static long readTimeV2(int meta, ByteArrayInputStream inputStream) throws IOException {
         long result;
         long intPart;
         long fracPart;
 
         switch (meta) {
             case 1: case 2:
-                intPart = bigEndianLong(inputStream.read(3), 0, 3) - TIMEF_INT_OFS;
-                fracPart = bigEndianLong(inputStream.read(1), 0, 1);
+                intPart = inputStream.readBigEndianLong(3) - TIMEF_INT_OFS;
+                fracPart = inputStream.readBigEndianLong(1);
 
                 if (intPart < 0 && fracPart != 0) {
                     /*
@@ -361,8 +662,8 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
                 result = (intPart << 24) + (fracPart * 10000);
                 break;
             case 3: case 4:
-                intPart = bigEndianLong(inputStream.read(3), 0, 3) - TIMEF_INT_OFS;
-                fracPart = bigEndianLong(inputStream.read(2), 0, 2);
+                intPart = inputStream.readBigEndianLong(3) - TIMEF_INT_OFS;
+                fracPart = inputStream.readBigEndianLong(2);
                 if (intPart < 0 && fracPart != 0) {
                     /*
                        Fix reverse fractional part order: "0x10000 - fracPart".
@@ -374,10 +675,10 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
                 result = (intPart << 24) + (fracPart * 100);
                 break;
             case 5: case 6:
-                result = bigEndianLong(inputStream.read(6), 0, 6) - TIMEF_OFS;
+                result = inputStream.readBigEndianLong(6) - TIMEF_OFS;
                 break;
             default:
-                intPart = bigEndianLong(inputStream.read(3), 0, 3) - TIMEF_INT_OFS;
+                intPart = inputStream.readBigEndianLong(3) - TIMEF_INT_OFS;
                 result = intPart << 24;
         }
 
@@ -385,7 +686,11 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeTimestamp(ByteArrayInputStream inputStream) throws IOException {
-        long timestamp = inputStream.readLong(4) * 1000;
+        long seconds = inputStream.readLong(4);
+        if (deserializeDateAndTimeAsJavaTime) {
+            return Instant.ofEpochSecond(seconds);
+        }
+        long timestamp = seconds * 1000;
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, 0);
         }
@@ -393,9 +698,12 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeTimestampV2(int meta, ByteArrayInputStream inputStream) throws IOException {
-        long millis = bigEndianLong(inputStream.read(4), 0, 4);
+        long seconds = inputStream.readBigEndianLong(4);
         int fsp = deserializeFractionalSeconds(meta, inputStream);
-        long timestamp = millis * 1000 + fsp / 1000;
+        if (deserializeDateAndTimeAsJavaTime) {
+            return Instant.ofEpochSecond(seconds, fsp * 1000L);
+        }
+        long timestamp = seconds * 1000 + fsp / 1000;
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, fsp);
         }
@@ -403,8 +711,14 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Serializable deserializeDatetime(ByteArrayInputStream inputStream) throws IOException {
-        int[] split = split(inputStream.readLong(8), 100, 6);
-        Long timestamp = asUnixTime(split[5], split[4], split[3], split[2], split[1], split[0], 0);
+        long value = inputStream.readLong(8);
+        int date = (int) (value / 1000000), time = (int) (value % 1000000);
+        int year = date / 10000, month = date / 100 % 100, day = date % 100,
+            hour = time / 10000, minute = time / 100 % 100, second = time % 100;
+        if (deserializeDateAndTimeAsJavaTime) {
+            return isValidDate(year, month, day) ? localDateTime(year, month, day, hour, minute, second, 0) : null;
+        }
+        Long timestamp = asUnixTime(year, month, day, hour, minute, second, 0);
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, 0);
         }
@@ -426,18 +740,17 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
 
             + fractional-seconds storage (size depends on meta)
         */
-        long datetime = bigEndianLong(inputStream.read(5), 0, 5);
+        long datetime = inputStream.readBigEndianLong(5);
         int yearMonth = bitSlice(datetime, 1, 17, 40);
         int fsp = deserializeFractionalSeconds(meta, inputStream);
-        Long timestamp = asUnixTime(
-            yearMonth / 13,
-            yearMonth % 13,
-            bitSlice(datetime, 18, 5, 40),
-            bitSlice(datetime, 23, 5, 40),
-            bitSlice(datetime, 28, 6, 40),
-            bitSlice(datetime, 34, 6, 40),
-            fsp / 1000
-        );
+        int year = yearMonth / 13, month = yearMonth % 13, day = bitSlice(datetime, 18, 5, 40),
+            hour = bitSlice(datetime, 23, 5, 40), minute = bitSlice(datetime, 28, 6, 40),
+            second = bitSlice(datetime, 34, 6, 40);
+        if (deserializeDateAndTimeAsJavaTime) {
+            return isValidDate(year, month, day) ?
+                localDateTime(year, month, day, hour, minute, second, fsp * 1000) : null;
+        }
+        Long timestamp = asUnixTime(year, month, day, hour, minute, second, fsp / 1000);
         if (deserializeDateAndTimeAsLong) {
             return castTimestamp(timestamp, fsp);
         }
@@ -445,6 +758,21 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         return timestamp != null ? convertLongTimestamptWithFSP(timestamp, fsp) : null;
     }
 
+    private static boolean isValidDate(int year, int month, int day) {
+        // https://dev.mysql.com/doc/refman/5.0/en/datetime.html
+        return year != 0 && month != 0 && day != 0;
+    }
+
+    /**
+     * Out-of-range days (e.g. 2019-02-31, allowed with ALLOW_INVALID_DATES) are carried over to the next month
+     * (same as in case of {@link UnixTime#from(int, int, int, int, int, int, int)}).
+     */
+    // checkstyle, please ignore ParameterNumber for the next line
+    private static LocalDateTime localDateTime(int year, int month, int day, int hour, int minute, int second,
+                                               int nanos) {
+        return LocalDate.of(year, month, 1).plusDays(day - 1).atTime(hour, minute, second, nanos);
+    }
+
     private java.sql.Timestamp convertLongTimestamptWithFSP(Long timestamp, int fsp) {
         java.sql.Timestamp ts = new java.sql.Timestamp(timestamp);
         ts.setNanos(fsp * 1000);
@@ -474,6 +802,24 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         return inputStream.readString(varcharLength);
     }
 
+    protected Serializable deserializeString(int length, Charset charset, ByteArrayInputStream inputStream)
+            throws IOException {
+        int stringLength = length < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2);
+        if (deserializeCharAndBinaryAsByteArray) {
+            return inputStream.read(stringLength);
+        }
+        return inputStream.readString(stringLength, charset);
+    }
+
+    protected Serializable deserializeVarString(int meta, Charset charset, ByteArrayInputStream inputStream)
+            throws IOException {
+        int varcharLength = meta < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2);
+        if (deserializeCharAndBinaryAsByteArray) {
+            return inputStream.read(varcharLength);
+        }
+        return inputStream.readString(varcharLength, charset);
+    }
+
     protected Serializable deserializeBlob(int meta, ByteArrayInputStream inputStream) throws IOException {
         int blobLength = inputStream.readInteger(meta);
         return inputStream.read(blobLength);
@@ -508,28 +854,34 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
     }
 
     protected Long asUnixTime(int year, int month, int day, int hour, int minute, int second, int millis) {
-        // https://dev.mysql.com/doc/refman/5.0/en/datetime.html
-        if (year == 0 || month == 0 || day == 0) {
+        if (!isValidDate(year, month, day)) {
             return invalidDateAndTimeRepresentation;
         }
         return UnixTime.from(year, month, day, hour, minute, second, millis);
     }
 
     protected int deserializeFractionalSeconds(int meta, ByteArrayInputStream inputStream) throws IOException {
+        return readFractionalSeconds(meta, inputStream);
+    }
+
+    /**
+     * @return fractional part of the TIME_V2/DATETIME_V2/TIMESTAMP_V2 value (in microseconds)
+     */
+    static int readFractionalSeconds(int meta, ByteArrayInputStream inputStream) throws IOException {
         int length = (meta + 1) / 2;
         if (length > 0) {
-            int fraction = bigEndianInteger(inputStream.read(length), 0, length);
-            return fraction * (int) Math.pow(100, 3 - length);
+            int fraction = (int) inputStream.readBigEndianLong(length);
+            return fraction * FRACTIONAL_SECONDS_MULTIPLIER[length];
         }
         return 0;
     }
 
-    private static int bitSlice(long value, int bitOffset, int numberOfBits, int payloadSize) {
+    static int bitSlice(long value, int bitOffset, int numberOfBits, int payloadSize) {
         long result = value >> payloadSize - (bitOffset + numberOfBits);
         return (int) (result & ((1 << numberOfBits) - 1));
     }
 
-    private static int numberOfBitsSet(BitSet bitSet) {
+    static int numberOfBitsSet(BitSet bitSet) {
         int result = 0;
         for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
             result++;
@@ -537,59 +889,96 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         return result;
     }
 
-    private static int[] split(long value, int divider, int length) {
-        int[] result = new int[length];
-        for (int i = 0; i < length - 1; i++) {
-            result[i] = (int) (value % divider);
-            value /= divider;
-        }
-        result[length - 1] = (int) value;
-        return result;
+    public static BigDecimal asBigDecimal(int precision, int scale, byte[] value) {
+        return asBigDecimal(precision, scale, value, 0);
     }
 
-    public static BigDecimal asBigDecimal(int precision, int scale, byte[] value) {
-        boolean positive = (value[0] & 0x80) == 0x80;
-        value[0] ^= 0x80;
-        if (!positive) {
-            for (int i = 0; i < value.length; i++) {
-                value[i] ^= 0xFF;
+    /**
+     * @param precision precision of the DECIMAL column
+     * @param scale scale of the DECIMAL column
+     * @param value packed (binary) representation of the value (left unmodified)
+     * @param offset offset of the value within the array
+     * @return value as BigDecimal (of the given scale)
+     */
+    public static BigDecimal asBigDecimal(int precision, int scale, byte[] value, int offset) {
+        if (precision <= MAX_UNSCALED_LONG_PRECISION) {
+            return BigDecimal.valueOf(asUnscaledLong(precision, scale, value, offset), scale);
+        }
+        boolean positive = (value[offset] & 0x80) == 0x80;
+        int mask = positive ? 0 : 0xFF;
+        int x = precision - scale;
+        int ipDigits = x / DIG_PER_DEC, fpDigits = scale / DIG_PER_DEC;
+        int numberOfGroups = ipDigits + fpDigits + 2; // incl. leading and trailing partial groups (possibly empty)
+        BigInteger unscaled = BigInteger.ZERO;
+        long chunk = 0;
+        int chunkDigits = 0;
+        for (int group = 0, position = offset; group < numberOfGroups; group++) {
+            int digits = group == 0 ? x - ipDigits * DIG_PER_DEC :
+                group == numberOfGroups - 1 ? scale - fpDigits * DIG_PER_DEC : DIG_PER_DEC;
+            if (digits == 0) {
+                continue;
+            }
+            if (chunkDigits + digits > MAX_UNSCALED_LONG_PRECISION) {
+                unscaled = unscaled.multiply(BIG_POWERS_OF_TEN[chunkDigits]).add(BigInteger.valueOf(chunk));
+                chunk = 0;
+                chunkDigits = 0;
             }
+            chunk = chunk * POWERS_OF_TEN[digits] + decimalGroup(value, offset, position, DIG_TO_BYTES[digits], mask);
+            chunkDigits += digits;
+            position += DIG_TO_BYTES[digits];
+        }
+        unscaled = unscaled.multiply(BIG_POWERS_OF_TEN[chunkDigits]).add(BigInteger.valueOf(chunk));
+        return new BigDecimal(positive ? unscaled : unscaled.negate(), scale);
+    }
+
+    /**
+     * Allocation-free alternative to {@link #asBigDecimal(int, int, byte[], int)} for DECIMAL columns of precision
+     * up to 18 (e.g. for the consumers that re-encode values on their own).
+     * @param precision precision of the DECIMAL column (&lt;= 18)
+     * @param scale scale of the DECIMAL column
+     * @param value packed (binary) representation of the value (left unmodified)
+     * @param offset offset of the value within the array
+     * @return unscaled value (value * 10^scale)
+     */
+    public static long asUnscaledLong(int precision, int scale, byte[] value, int offset) {
+        if (precision > MAX_UNSCALED_LONG_PRECISION) {
+            throw new IllegalArgumentException("DECIMAL(" + precision + "," + scale + ") does not fit into long");
         }
+        boolean positive = (value[offset] & 0x80) == 0x80;
+        int mask = positive ? 0 : 0xFF;
         int x = precision - scale;
-        int ipDigits = x / DIG_PER_DEC;
-        int ipDigitsX = x - ipDigits * DIG_PER_DEC;
-        int ipSize = (ipDigits << 2) + DIG_TO_BYTES[ipDigitsX];
-        int offset = DIG_TO_BYTES[ipDigitsX];
-        BigDecimal ip = offset > 0 ? BigDecimal.valueOf(bigEndianInteger(value, 0, offset)) : BigDecimal.ZERO;
-        for (; offset < ipSize; offset += 4) {
-            int i = bigEndianInteger(value, offset, 4);
-            ip = ip.movePointRight(DIG_PER_DEC).add(BigDecimal.valueOf(i));
+        int ipDigits = x / DIG_PER_DEC, ipDigitsX = x - ipDigits * DIG_PER_DEC;
+        int fpDigits = scale / DIG_PER_DEC, fpDigitsX = scale - fpDigits * DIG_PER_DEC;
+        long result = 0;
+        int position = offset;
+        if (ipDigitsX > 0) {
+            result = decimalGroup(value, offset, position, DIG_TO_BYTES[ipDigitsX], mask);
+            position += DIG_TO_BYTES[ipDigitsX];
         }
-        int shift = 0;
-        BigDecimal fp = BigDecimal.ZERO;
-        for (; shift + DIG_PER_DEC <= scale; shift += DIG_PER_DEC, offset += 4) {
-            int i = bigEndianInteger(value, offset, 4);
-            fp = fp.add(BigDecimal.valueOf(i).movePointLeft(shift + DIG_PER_DEC));
+        for (int i = 0; i < ipDigits + fpDigits; i++, position += 4) {
+            result = result * POWERS_OF_TEN[DIG_PER_DEC] + decimalGroup(value, offset, position, 4, mask);
         }
-        if (shift < scale) {
-            int i = bigEndianInteger(value, offset, DIG_TO_BYTES[scale - shift]);
-            fp = fp.add(BigDecimal.valueOf(i).movePointLeft(scale));
+        if (fpDigitsX > 0) {
+            result = result * POWERS_OF_TEN[fpDigitsX] +
+                decimalGroup(value, offset, position, DIG_TO_BYTES[fpDigitsX], mask);
         }
-        BigDecimal result = ip.add(fp);
-        return positive ? result : result.negate();
+        return positive ? result : -result;
     }
 
-    private static int bigEndianInteger(byte[] bytes, int offset, int length) {
+    /**
+     * @param start offset of the packed value (first byte of which carries the sign bit)
+     * @param mask 0xFF if value is negative (in which case all the bits are inverted), 0 otherwise
+     */
+    private static int decimalGroup(byte[] bytes, int start, int offset, int length, int mask) {
         int result = 0;
-        for (int i = offset; i < (offset + length); i++) {
-            byte b = bytes[i];
-            result = (result << 8) | (b >= 0 ? (int) b : (b + 256));
+        for (int i = offset; i < offset + length; i++) {
+            result = (result << 8) | ((bytes[i] ^ mask) & 0xFF);
         }
-        return result;
+        return offset == start ? result ^ (0x80 << ((length - 1) << 3)) : result;
     }
 
-    private static long bigEndianLong(byte[] bytes, int offset, int length) {
-        long result = 0;
+    private static int bigEndianInteger(byte[] bytes, int offset, int length) {
+        int result = 0;
         for (int i = offset; i < (offset + length); i++) {
             byte b = bytes[i];
             result = (result << 8) | (b >= 0 ? (int) b : (b + 256));
@@ -608,6 +997,15 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
         private static final int[] LEAP_YEAR_DAYS_BY_MONTH = new int[] {
             0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335, 366
         };
+        private static final int MIN_TABULATED_YEAR = 1582;
+        private static final int MAX_TABULATED_YEAR = 9999;
+        // number of days between 1970-01-01 and January 1 of the year
+        private static final int[] DAYS_BY_YEAR = new int[MAX_TABULATED_YEAR - MIN_TABULATED_YEAR + 1];
+        static {
+            for (int year = MIN_TABULATED_YEAR; year <= MAX_TABULATED_YEAR; year++) {
+                DAYS_BY_YEAR[year - MIN_TABULATED_YEAR] = daysUpToYear(year);
+            }
+        }
 
         /**
          * Calendar::getTimeInMillis but magnitude faster for all dates starting from October 15, 1582
@@ -629,15 +1027,14 @@ public abstract class AbstractRowsEventDataDeserializer<T extends EventData> imp
             if (year < 1582 || (year == 1582 && (month < 10 || (month == 10 && day < 15)))) {
                 return fallbackToGC(year, month, day, hour, minute, second, millis);
             }
-            long timestamp = 0;
+            long days = year <= MAX_TABULATED_YEAR ? DAYS_BY_YEAR[year - MIN_TABULATED_YEAR] : daysUpToYear(year);
+            days += (isLeapYear(year) ? LEAP_YEAR_DAYS_BY_MONTH[month - 1] : YEAR_DAYS_BY_MONTH[month - 1]) + day - 1;
+            return (days * 24 * 60 * 60 + hour * 60 * 60 + minute * 60 + second) * 1000 + millis;
+        }
+
+        private static int daysUpToYear(int year) {
             int numberOfLeapYears = leapYears(1970, year);
-            timestamp += 366L * 24 * 60 * 60 * numberOfLeapYears;
-            timestamp += 365L * 24 * 60 * 60 * (year - 1970 - numberOfLeapYears);
-            long daysUpToMonth = isLeapYear(year) ? LEAP_YEAR_DAYS_BY_MONTH[month - 1] : YEAR_DAYS_BY_MONTH[month - 1];
-            timestamp += ((daysUpToMonth + day - 1) * 24 * 60 * 60) +
-                (hour * 60 * 60) + (minute * 60) + (second);
-            timestamp = timestamp * 1000 + millis;
-            return timestamp;
+            return 366 * numberOfLeapYears + 365 * (year - 1970 - numberOfLeapYears);
         }
 
         // checkstyle, please ignore ParameterNumber for the next line
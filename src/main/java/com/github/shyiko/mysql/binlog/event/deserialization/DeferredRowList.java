@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Rows of a *RowsEventData kept in the binary form (as they came in the binary log) until the list is first accessed,
+ * at which point all of them are decoded at once (by the thread that made the access). Unlike {@link LazyRowList},
+ * event deserialization doesn't even walk the rows to find where each one starts.
+ *
+ * @param <E> row type
+ * @see EventDeserializer#setDeferredRows(boolean)
+ */
+class DeferredRowList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    private transient LazyRowList.RowDecoder<E> decoder;
+    private transient byte[] data;
+    private transient List<E> rows;
+
+    /**
+     * @param decoder row decoder
+     * @param data row images
+     */
+    DeferredRowList(LazyRowList.RowDecoder<E> decoder, byte[] data) {
+        this.decoder = decoder;
+        this.data = data;
+    }
+
+    private synchronized List<E> rows() {
+        if (rows == null) {
+            List<E> result = new ArrayList<E>();
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
+            try {
+                while (inputStream.available() > 0) {
+                    result.add(decoder.decode(inputStream));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to deserialize row #" + result.size(), e);
+            }
+            rows = result;
+            decoder = null;
+            data = null;
+        }
+        return rows;
+    }
+
+    @Override
+    public E get(int index) {
+        return rows().get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows().size();
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<E>(this);
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.EventHeader;
+
+/**
+ * Thrown when CRC32 checksum stored at the end of the event does not match the one computed over the event bytes
+ * (see {@link EventDeserializer#setChecksumVerification(boolean)}).
+ */
+public class EventChecksumMismatchException extends EventDataDeserializationException {
+
+    private final long expectedChecksum;
+    private final long actualChecksum;
+
+    public EventChecksumMismatchException(EventHeader eventHeader, long expectedChecksum, long actualChecksum) {
+        super(String.format("Checksum mismatch (expected %08x, got %08x) in %s",
+            expectedChecksum, actualChecksum, eventHeader), eventHeader);
+        this.expectedChecksum = expectedChecksum;
+        this.actualChecksum = actualChecksum;
+    }
+
+    /**
+     * @return checksum stored in the event
+     */
+    public long getExpectedChecksum() {
+        return expectedChecksum;
+    }
+
+    /**
+     * @return checksum computed over the event bytes
+     */
+    public long getActualChecksum() {
+        return actualChecksum;
+    }
+}
@@ -31,6 +31,11 @@ public class EventDataDeserializationException extends IOException {
         this.eventHeader = eventHeader;
     }
 
+    protected EventDataDeserializationException(String message, EventHeader eventHeader) {
+        super(message);
+        this.eventHeader = eventHeader;
+    }
+
     public EventHeader getEventHeader() {
         return eventHeader;
     }
@@ -21,27 +21,60 @@ import com.github.shyiko.mysql.binlog.event.EventHeader;
 import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.FormatDescriptionEventData;
 import com.github.shyiko.mysql.binlog.event.LRUCache;
+import com.github.shyiko.mysql.binlog.event.RowBatchEventData;
+import com.github.shyiko.mysql.binlog.event.SkippedRowsEventData;
+import com.github.shyiko.mysql.binlog.event.StreamedRowsEventData;
 import com.github.shyiko.mysql.binlog.event.TableMapEventData;
 import com.github.shyiko.mysql.binlog.event.TransactionPayloadEventData;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
 public class EventDeserializer {
 
+    private static final EventType[] ROWS_EVENT_TYPES = {EventType.WRITE_ROWS, EventType.UPDATE_ROWS,
+        EventType.DELETE_ROWS, EventType.EXT_WRITE_ROWS, EventType.EXT_UPDATE_ROWS, EventType.EXT_DELETE_ROWS};
+    // needed to keep track of binlog position / GTID set (see BinaryLogClient#updateGtidSet)
+    private static final EnumSet<EventType> HEADER_ONLY_EVENT_TYPES = EnumSet.of(EventType.ROTATE,
+        EventType.FORMAT_DESCRIPTION, EventType.GTID, EventType.MARIADB_GTID, EventType.MARIADB_GTID_LIST,
+        EventType.QUERY, EventType.ANNOTATE_ROWS, EventType.XID, EventType.TABLE_MAP);
+
     private final EventHeaderDeserializer eventHeaderDeserializer;
     private final EventDataDeserializer defaultEventDataDeserializer;
     private final Map<EventType, EventDataDeserializer> eventDataDeserializers;
 
     private EnumSet<CompatibilityMode> compatibilitySet = EnumSet.noneOf(CompatibilityMode.class);
     private int checksumLength;
+    private boolean lazyRows;
+    private boolean deferredRows;
+    private final Map<String, Map<String, BitSet>> columnProjectionByTable =
+        new ConcurrentHashMap<String, Map<String, BitSet>>();
+    private TableFilter tableFilter;
+    private boolean headerOnly;
+    private boolean checksumVerification;
+    private final CRC32 crc32 = new CRC32();
+    private final AtomicLong numberOfUnverifiedEvents = new AtomicLong();
+    // rows deserializers registered before setColumnarRows/setRowSink (null if neither is on) and the ones that
+    // replaced them
+    private Map<EventType, EventDataDeserializer> replacedRowsEventDataDeserializers;
+    private final Map<EventType, EventDataDeserializer> replacingRowsEventDataDeserializers =
+        new HashMap<EventType, EventDataDeserializer>();
+    // decision for the last seen TABLE_MAP (rows events of a single table usually come in a row)
+    private TableMapEventData lastFilteredTableMapEvent;
+    private boolean lastFilteredTableMapEventAccepted;
 
     private final Map<Long, TableMapEventData> tableMapEventByTableId;
 
@@ -183,10 +216,217 @@ public class EventDeserializer {
         }
     }
 
+    /**
+     * Defer decoding of rows of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events until they are accessed.
+     * Events data keeps row images in the binary form and {@code getRows()} returns a list which decodes each row on
+     * first access (saving CPU &amp; memory for events that get filtered out downstream).
+     * Note that in this mode failures to decode a row are reported (as RuntimeException) by the list accessors.
+     * @param lazyRows true to enable lazy row decoding, false (default) otherwise
+     */
+    public void setLazyRows(boolean lazyRows) {
+        this.lazyRows = lazyRows;
+        for (EventDataDeserializer eventDataDeserializer : eventDataDeserializers.values()) {
+            ensureCompatibility(eventDataDeserializer);
+        }
+    }
+
+    /**
+     * Defer decoding of rows of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events until {@code getRows()} list is first
+     * accessed, at which point all the rows of the event are decoded at once (by the thread that made the access).
+     * Deserialization of the event itself is then reduced to resolving the TABLE_MAP and copying the row images, which
+     * lets rows of different events be decoded in parallel (see
+     * {@link com.github.shyiko.mysql.binlog.BinaryLogClient#setRowsDecodingExecutor(java.util.concurrent.Executor)}).
+     * Has no effect if {@link #setLazyRows(boolean)} is enabled.
+     * Note that in this mode failures to decode a row are reported (as RuntimeException) by the list accessors.
+     * @param deferredRows true to defer row decoding, false (default) otherwise
+     */
+    public void setDeferredRows(boolean deferredRows) {
+        this.deferredRows = deferredRows;
+        for (EventDataDeserializer eventDataDeserializer : eventDataDeserializers.values()) {
+            ensureCompatibility(eventDataDeserializer);
+        }
+    }
+
+    /**
+     * Decode only some of the columns of the table. Cells of other columns are skipped over (without being
+     * materialized) and left null in rows of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events (so that the shape of the
+     * rows stays the same).
+     * @param database database name
+     * @param table table name
+     * @param columns ordinal positions (0-based, as in {@link TableMapEventData#getColumnTypes()}) of the columns to
+     * decode, null to decode all of them (default)
+     */
+    public void setColumnProjection(String database, String table, BitSet columns) {
+        Map<String, BitSet> columnProjection = columnProjectionByTable.get(database);
+        if (columns == null) {
+            if (columnProjection != null) {
+                columnProjection.remove(table);
+            }
+            return;
+        }
+        if (columnProjection == null) {
+            columnProjection = new ConcurrentHashMap<String, BitSet>();
+            Map<String, BitSet> existing = columnProjectionByTable.putIfAbsent(database, columnProjection);
+            if (existing != null) {
+                columnProjection = existing;
+            }
+        }
+        columnProjection.put(table, (BitSet) columns.clone());
+        for (EventDataDeserializer eventDataDeserializer : eventDataDeserializers.values()) {
+            ensureCompatibility(eventDataDeserializer);
+        }
+    }
+
+    /**
+     * Deserialize WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events into {@link RowBatchEventData} (columnar, with values
+     * stored in primitive vectors) instead of {@link com.github.shyiko.mysql.binlog.event.WriteRowsEventData} & co.
+     * Replaces deserializers registered for these event types (until columnar rows are turned off).
+     * @param columnarRows true to deserialize rows into {@link RowBatchEventData}, false (default) to deserialize
+     * them into Serializable[]|s
+     * @see RowBatchEventDataDeserializer
+     */
+    public void setColumnarRows(boolean columnarRows) {
+        if (columnarRows) {
+            replaceRowsEventDataDeserializers(
+                new RowBatchEventDataDeserializer(tableMapEventByTableId, false),
+                new RowBatchEventDataDeserializer(tableMapEventByTableId, true),
+                new RowBatchEventDataDeserializer(tableMapEventByTableId, false),
+                new RowBatchEventDataDeserializer(tableMapEventByTableId, false).
+                    setMayContainExtraInformation(true),
+                new RowBatchEventDataDeserializer(tableMapEventByTableId, true).
+                    setMayContainExtraInformation(true),
+                new RowBatchEventDataDeserializer(tableMapEventByTableId, false).
+                    setMayContainExtraInformation(true)
+            );
+        } else {
+            restoreRowsEventDataDeserializers(RowBatchEventDataDeserializer.class);
+        }
+    }
+
+    /**
+     * Deliver cells of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events to the sink (as they are being decoded) instead of
+     * collecting them into Serializable[]|s. Events carry {@link StreamedRowsEventData} in this case.
+     * Replaces deserializers registered for these event types (until sink is reset to null).
+     * @param rowSink sink (called by the thread deserializing events), null to go back to Serializable[]|s
+     * (default)
+     * @see RowSinkEventDataDeserializer
+     */
+    public void setRowSink(RowSink rowSink) {
+        if (rowSink != null) {
+            replaceRowsEventDataDeserializers(
+                new RowSinkEventDataDeserializer(tableMapEventByTableId, rowSink, false, true),
+                new RowSinkEventDataDeserializer(tableMapEventByTableId, rowSink, true, true),
+                new RowSinkEventDataDeserializer(tableMapEventByTableId, rowSink, true, false),
+                new RowSinkEventDataDeserializer(tableMapEventByTableId, rowSink, false, true).
+                    setMayContainExtraInformation(true),
+                new RowSinkEventDataDeserializer(tableMapEventByTableId, rowSink, true, true).
+                    setMayContainExtraInformation(true),
+                new RowSinkEventDataDeserializer(tableMapEventByTableId, rowSink, true, false).
+                    setMayContainExtraInformation(true)
+            );
+        } else {
+            restoreRowsEventDataDeserializers(RowSinkEventDataDeserializer.class);
+        }
+    }
+
+    private void replaceRowsEventDataDeserializers(EventDataDeserializer... rowsEventDataDeserializers) {
+        if (replacedRowsEventDataDeserializers == null) {
+            replacedRowsEventDataDeserializers = new HashMap<EventType, EventDataDeserializer>();
+            for (EventType eventType : ROWS_EVENT_TYPES) {
+                replacedRowsEventDataDeserializers.put(eventType, eventDataDeserializers.get(eventType));
+            }
+        }
+        for (int i = 0; i < ROWS_EVENT_TYPES.length; i++) {
+            setEventDataDeserializer(ROWS_EVENT_TYPES[i], rowsEventDataDeserializers[i]);
+            replacingRowsEventDataDeserializers.put(ROWS_EVENT_TYPES[i], rowsEventDataDeserializers[i]);
+        }
+    }
+
+    /**
+     * Put back deserializers replaced by {@link #replaceRowsEventDataDeserializers}, except for the ones that have
+     * been changed (through {@link #setEventDataDeserializer(EventType, EventDataDeserializer)}) since then.
+     * @param type type of the deserializers being turned off
+     */
+    private void restoreRowsEventDataDeserializers(Class<? extends EventDataDeserializer> type) {
+        if (replacedRowsEventDataDeserializers == null) {
+            return;
+        }
+        boolean stillReplaced = false;
+        for (EventType eventType : ROWS_EVENT_TYPES) {
+            EventDataDeserializer eventDataDeserializer = eventDataDeserializers.get(eventType);
+            if (eventDataDeserializer == null ||
+                eventDataDeserializer != replacingRowsEventDataDeserializers.get(eventType)) {
+                continue;
+            }
+            if (!type.isInstance(eventDataDeserializer)) {
+                stillReplaced = true; // e.g. columnar rows got turned off while row sink is on
+                continue;
+            }
+            EventDataDeserializer replacedEventDataDeserializer = replacedRowsEventDataDeserializers.get(eventType);
+            if (replacedEventDataDeserializer != null) {
+                setEventDataDeserializer(eventType, replacedEventDataDeserializer);
+            } else {
+                eventDataDeserializers.remove(eventType);
+            }
+            replacingRowsEventDataDeserializers.remove(eventType);
+        }
+        if (!stillReplaced) {
+            replacedRowsEventDataDeserializers = null;
+            replacingRowsEventDataDeserializers.clear();
+        }
+    }
+
+    /**
+     * Skip rows events of the tables rejected by the filter (table is resolved using TABLE_MAP that preceded rows
+     * event). Body of such events is skipped without being deserialized and {@link SkippedRowsEventData} is returned
+     * in place of the regular *RowsEventData.
+     * @param tableFilter filter, null to deserialize rows of all tables (default)
+     * @see PatternTableFilter
+     */
+    public void setTableFilter(TableFilter tableFilter) {
+        this.tableFilter = tableFilter;
+        this.lastFilteredTableMapEvent = null;
+    }
+
+    /**
+     * Deserialize event headers only (e.g. to quickly reach a position within the binlog or to count events by type).
+     * Except for ROTATE, FORMAT_DESCRIPTION, GTID (MARIADB_GTID, MARIADB_GTID_LIST), QUERY (ANNOTATE_ROWS), XID and
+     * TABLE_MAP (which are needed to keep track of where reader is, including transaction boundaries
+     * {@link com.github.shyiko.mysql.binlog.BinaryLogClient} relies on to maintain GTID set), bodies of the events are
+     * skipped (based on {@link EventHeader#getDataLength()}) and events carry null data.
+     * @param headerOnly true to skip bodies of the events, false to deserialize them (default)
+     */
+    public void setHeaderOnly(boolean headerOnly) {
+        this.headerOnly = headerOnly;
+    }
+
+    /**
+     * Verify CRC32 checksum of each event (when binlog_checksum is CRC32) before deserializing it. Event that fails
+     * the check is skipped and {@link EventChecksumMismatchException} is thrown (which {@link
+     * com.github.shyiko.mysql.binlog.BinaryLogClient} reports through
+     * {@link com.github.shyiko.mysql.binlog.BinaryLogClient.LifecycleListener#onEventDeserializationFailure}).
+     * Checksum is computed straight over the buffered event bytes, which means that events coming from a stream that
+     * is not {@link com.github.shyiko.mysql.binlog.io.ByteBufferBacked} (or not buffered in full) are not verified
+     * (see {@link #getNumberOfUnverifiedEvents()}).
+     * @param checksumVerification true to verify checksums, false to skip them (default)
+     */
+    public void setChecksumVerification(boolean checksumVerification) {
+        this.checksumVerification = checksumVerification;
+    }
+
+    /**
+     * @return number of events which went without checksum verification (despite
+     * {@link #setChecksumVerification(boolean)} being on and binlog_checksum being CRC32) because they were not
+     * buffered in full
+     */
+    public long getNumberOfUnverifiedEvents() {
+        return numberOfUnverifiedEvents.get();
+    }
+
     private void ensureCompatibility(EventDataDeserializer eventDataDeserializer) {
         if (eventDataDeserializer instanceof AbstractRowsEventDataDeserializer) {
-            AbstractRowsEventDataDeserializer deserializer =
-                (AbstractRowsEventDataDeserializer) eventDataDeserializer;
+            AbstractRowsEventDataDeserializer<?> deserializer =
+                (AbstractRowsEventDataDeserializer<?>) eventDataDeserializer;
             boolean deserializeDateAndTimeAsLong =
                 compatibilitySet.contains(CompatibilityMode.DATE_AND_TIME_AS_LONG) ||
                 compatibilitySet.contains(CompatibilityMode.DATE_AND_TIME_AS_LONG_MICRO);
@@ -194,6 +434,13 @@ public class EventDeserializer {
             deserializer.setMicrosecondsPrecision(
                 compatibilitySet.contains(CompatibilityMode.DATE_AND_TIME_AS_LONG_MICRO)
             );
+            boolean deserializeDateAndTimeAsJavaTime =
+                compatibilitySet.contains(CompatibilityMode.DATE_AND_TIME_AS_JAVA_TIME);
+            if (deserializeDateAndTimeAsJavaTime && deserializeDateAndTimeAsLong) {
+                throw new IllegalArgumentException("DATE_AND_TIME_AS_JAVA_TIME cannot be combined with " +
+                    "DATE_AND_TIME_AS_LONG or DATE_AND_TIME_AS_LONG_MICRO");
+            }
+            deserializer.setDeserializeDateAndTimeAsJavaTime(deserializeDateAndTimeAsJavaTime);
             if (compatibilitySet.contains(CompatibilityMode.INVALID_DATE_AND_TIME_AS_ZERO)) {
                 deserializer.setInvalidDateAndTimeRepresentation(0L);
             }
@@ -214,10 +461,16 @@ public class EventDeserializer {
             deserializer.setDeserializeCharAndBinaryAsByteArray(
                 compatibilitySet.contains(CompatibilityMode.CHAR_AND_BINARY_AS_BYTE_ARRAY)
             );
+            deserializer.setDeserializeDecimalAsByteArray(
+                compatibilitySet.contains(CompatibilityMode.DECIMAL_AS_BYTE_ARRAY)
+            );
             deserializer.setDeserializeIntegerAsByteArray(
                 compatibilitySet.contains(CompatibilityMode.INTEGER_AS_BYTE_ARRAY)
             );
             deserializer.setDeserializeWithNewTimeV2(compatibilitySet.contains(CompatibilityMode.USE_NEW_TIME_DESERIALIZER));
+            deserializer.setLazyRows(lazyRows);
+            deserializer.setDeferredRows(deferredRows);
+            deserializer.setColumnProjection(columnProjectionByTable);
         }
     }
 
@@ -230,11 +483,33 @@ public class EventDeserializer {
         if (inputStream.peek() == -1) {
             return null;
         }
+        ByteBuffer eventBuffer = checksumVerification ? inputStream.peekResident() : null;
         EventHeader eventHeader = eventHeaderDeserializer.deserialize(inputStream);
+        if (checksumVerification && checksumLength == ChecksumType.CRC32.getLength() &&
+                eventHeader.getEventType() != EventType.FORMAT_DESCRIPTION) {
+            EventChecksumMismatchException checksumMismatch = verifyChecksum(eventHeader, eventBuffer);
+            if (checksumMismatch != null) {
+                inputStream.skip(eventHeader.getDataLength());
+                throw checksumMismatch;
+            }
+        }
+        if (headerOnly && !HEADER_ONLY_EVENT_TYPES.contains(eventHeader.getEventType())) {
+            if (inputStream.skip(eventHeader.getDataLength()) != eventHeader.getDataLength()) {
+                throw new EOFException("Failed to skip body of the " + eventHeader.getEventType() + " event");
+            }
+            return new Event(eventHeader, null);
+        }
         EventData eventData;
         switch (eventHeader.getEventType()) {
             case FORMAT_DESCRIPTION:
                 eventData = deserializeFormatDescriptionEventData(inputStream, eventHeader);
+                // checksum type is only known once FORMAT_DESCRIPTION is deserialized
+                if (checksumVerification && checksumLength == ChecksumType.CRC32.getLength()) {
+                    EventChecksumMismatchException checksumMismatch = verifyChecksum(eventHeader, eventBuffer);
+                    if (checksumMismatch != null) {
+                        throw checksumMismatch;
+                    }
+                }
                 break;
             case TABLE_MAP:
                 eventData = deserializeTableMapEventData(inputStream, eventHeader);
@@ -243,12 +518,40 @@ public class EventDeserializer {
                 eventData = deserializeTransactionPayloadEventData(inputStream, eventHeader);
                 break;
             default:
-                EventDataDeserializer eventDataDeserializer = getEventDataDeserializer(eventHeader.getEventType());
-                eventData = deserializeEventData(inputStream, eventHeader, eventDataDeserializer);
+                eventData = tableFilter != null && EventType.isRowMutation(eventHeader.getEventType()) ?
+                    skipRowsEventDataIfFiltered(inputStream, eventHeader) : null;
+                if (eventData == null) {
+                    EventDataDeserializer eventDataDeserializer = getEventDataDeserializer(eventHeader.getEventType());
+                    eventData = deserializeEventData(inputStream, eventHeader, eventDataDeserializer);
+                }
         }
         return new Event(eventHeader, eventData);
     }
 
+    /**
+     * @param eventBuffer buffered bytes of the event (starting with the header), null if there are none
+     * @return null if checksum matches (or event is not buffered in full), exception to throw otherwise
+     */
+    private EventChecksumMismatchException verifyChecksum(EventHeader eventHeader, ByteBuffer eventBuffer) {
+        int checksumLength = ChecksumType.CRC32.getLength();
+        long eventLength = eventHeader.getHeaderLength() + eventHeader.getDataLength();
+        if (eventBuffer == null || eventLength > eventBuffer.remaining()) {
+            numberOfUnverifiedEvents.getAndIncrement();
+            return null;
+        }
+        if (eventLength < eventHeader.getHeaderLength() + checksumLength) {
+            return null;
+        }
+        int checksumOffset = eventBuffer.position() + (int) eventLength - checksumLength;
+        long expectedChecksum = eventBuffer.getInt(checksumOffset) & 0xFFFFFFFFL;
+        eventBuffer.limit(checksumOffset);
+        crc32.reset();
+        crc32.update(eventBuffer);
+        long actualChecksum = crc32.getValue();
+        return expectedChecksum == actualChecksum ? null :
+            new EventChecksumMismatchException(eventHeader, expectedChecksum, actualChecksum);
+    }
+
     private EventData deserializeFormatDescriptionEventData(ByteArrayInputStream inputStream, EventHeader eventHeader)
             throws EventDataDeserializationException {
         EventDataDeserializer eventDataDeserializer =
@@ -328,6 +631,40 @@ public class EventDeserializer {
         return eventData;
     }
 
+    /**
+     * @return {@link SkippedRowsEventData} if table rows event belongs to was rejected by the {@link #tableFilter}
+     * (in which case event body is skipped), null otherwise (in which case stream is left intact)
+     */
+    private EventData skipRowsEventDataIfFiltered(ByteArrayInputStream inputStream, EventHeader eventHeader)
+            throws EventDataDeserializationException {
+        int eventBodyLength = (int) eventHeader.getDataLength() - checksumLength;
+        if (eventBodyLength < 6 || !inputStream.markSupported()) {
+            return null;
+        }
+        try {
+            inputStream.mark(6);
+            long tableId = inputStream.readLong(6);
+            TableMapEventData tableMapEvent = tableMapEventByTableId.get(tableId);
+            if (tableMapEvent == null || isAccepted(tableMapEvent)) {
+                inputStream.reset();
+                return null;
+            }
+            inputStream.skip(eventBodyLength - 6 + checksumLength);
+            return new SkippedRowsEventData(tableId, tableMapEvent.getDatabase(), tableMapEvent.getTable());
+        } catch (IOException e) {
+            throw new EventDataDeserializationException(eventHeader, e);
+        }
+    }
+
+    private boolean isAccepted(TableMapEventData tableMapEvent) {
+        if (tableMapEvent != lastFilteredTableMapEvent) {
+            lastFilteredTableMapEventAccepted =
+                tableFilter.accept(tableMapEvent.getDatabase(), tableMapEvent.getTable());
+            lastFilteredTableMapEvent = tableMapEvent;
+        }
+        return lastFilteredTableMapEventAccepted;
+    }
+
     private EventData deserializeEventData(ByteArrayInputStream inputStream, EventHeader eventHeader,
             EventDataDeserializer eventDataDeserializer) throws EventDataDeserializationException {
         int eventBodyLength = (int) eventHeader.getDataLength() - checksumLength;
@@ -371,6 +708,13 @@ public class EventDeserializer {
          * Same as {@link CompatibilityMode#DATE_AND_TIME_AS_LONG} but values are returned in microseconds.
          */
         DATE_AND_TIME_AS_LONG_MICRO,
+        /**
+         * Return DATE values as java.time.LocalDate|s, DATETIME/DATETIME_V2 as java.time.LocalDateTime|s,
+         * TIMESTAMP/TIMESTAMP_V2 as java.time.Instant|s and TIME/TIME_V2 as java.time.Duration|s (TIME may be negative
+         * or exceed 24 hours). Unlike the default representation none of them loses microseconds.
+         * Values with year/month/day of 0 are returned as null.
+         */
+        DATE_AND_TIME_AS_JAVA_TIME,
         /**
          * Return 0 instead of null if year/month/day is 0.
          * Affects DATETIME/DATETIME_V2/DATE/TIME/TIME_V2.
@@ -398,6 +742,14 @@ public class EventDeserializer {
          * Return TINY/SHORT/INT24/LONG/LONGLONG values as byte[]|s (instead of int|s).
          */
         INTEGER_AS_BYTE_ARRAY,
+        /**
+         * Return NEWDECIMAL values as byte[]|s (packed binary representation, as found in the binlog) instead of
+         * java.math.BigDecimal|s.
+         *
+         * @see AbstractRowsEventDataDeserializer#asUnscaledLong(int, int, byte[], int)
+         * @see AbstractRowsEventDataDeserializer#asBigDecimal(int, int, byte[], int)
+         */
+        DECIMAL_AS_BYTE_ARRAY,
         /**
          * Use new time deserializer; fix for negative TIME values
          */
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * Rows of a *RowsEventData kept in the binary form (as they came in the binary log). Each row is decoded on first
+ * access (and cached afterwards).
+ *
+ * @param <E> row type
+ * @see EventDeserializer#setLazyRows(boolean)
+ */
+class LazyRowList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    private final transient RowDecoder<E> decoder;
+    private final transient byte[] data;
+    private final transient int[] offsets;
+    private final transient Object[] rows;
+
+    /**
+     * @param decoder row decoder
+     * @param data row images
+     * @param offsets offset of each row in {@code data} followed by the end offset of the last row
+     */
+    LazyRowList(RowDecoder<E> decoder, byte[] data, int[] offsets) {
+        this.decoder = decoder;
+        this.data = data;
+        this.offsets = offsets;
+        this.rows = new Object[offsets.length - 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized E get(int index) {
+        if (index < 0 || index >= rows.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + rows.length);
+        }
+        Object row = rows[index];
+        if (row == null) {
+            int offset = offsets[index];
+            try {
+                row = decoder.decode(new ByteArrayInputStream(data, offset, offsets[index + 1] - offset));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to deserialize row #" + index, e);
+            }
+            rows[index] = row;
+        }
+        return (E) row;
+    }
+
+    @Override
+    public int size() {
+        return rows.length;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<E>(this);
+    }
+
+    /**
+     * Decoder of a single row.
+     * @param <E> row type
+     */
+    interface RowDecoder<E> {
+
+        E decode(ByteArrayInputStream inputStream) throws IOException;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata.DefaultCharset;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapping between MySQL collations (as found in TABLE_MAP metadata, QUERY status variables, etc.) and java charsets.
+ * Charsets are resolved once (when class is loaded) and then looked up by collation id.
+ */
+public final class MysqlCharsets {
+
+    private static final Charset[] CHARSET_BY_COLLATION = new Charset[512];
+
+    static {
+        // mysql-8.0 "SELECT id, character_set_name FROM information_schema.collations"
+        // (binary (63) as well as charsets not supported by JRE are intentionally left unmapped)
+        map("Big5", 1, 84);
+        map("IBM850", 4, 80);
+        map("KOI8-R", 7, 74);
+        // MySQL's latin1 is actually cp1252
+        map("windows-1252", 5, 8, 15, 31, 47, 48, 49, 94);
+        map("ISO-8859-2", 9, 21, 27, 77);
+        map("US-ASCII", 11, 65);
+        map("EUC-JP", 12, 91);
+        map("Shift_JIS", 13, 88);
+        map("windows-1251", 14, 23, 50, 51, 52);
+        map("ISO-8859-8", 16, 71);
+        map("TIS-620", 18, 89);
+        map("EUC-KR", 19, 85);
+        map("ISO-8859-13", 20, 41, 42, 79);
+        map("KOI8-U", 22, 75);
+        map("GB2312", 24, 86);
+        map("ISO-8859-7", 25, 70);
+        map("windows-1250", 26, 34, 44, 66, 99);
+        map("GBK", 28, 87);
+        map("windows-1257", 29, 58, 59);
+        map("ISO-8859-9", 30, 78);
+        map("UTF-8", 33, 76, 83);
+        mapRange("UTF-8", 192, 211);
+        map("UTF-8", 223);
+        map("UTF-16BE", 35, 90, 159); // ucs2
+        mapRange("UTF-16BE", 128, 151);
+        map("IBM866", 36, 68);
+        map("x-MacCentralEurope", 38, 43);
+        map("x-MacRoman", 39, 53);
+        map("IBM852", 40, 81);
+        map("UTF-8", 45, 46); // utf8mb4
+        mapRange("UTF-8", 224, 247);
+        mapRange("UTF-8", 255, 323);
+        map("UTF-16BE", 54, 55); // utf16
+        mapRange("UTF-16BE", 101, 124);
+        map("UTF-16LE", 56, 62);
+        map("windows-1256", 57, 67);
+        map("UTF-32BE", 60, 61);
+        mapRange("UTF-32BE", 160, 183);
+        map("windows-31j", 95, 96);
+        map("x-eucJP-Open", 97, 98);
+        mapRange("GB18030", 248, 250);
+    }
+
+    private MysqlCharsets() {
+    }
+
+    private static void map(String charsetName, int... collations) {
+        Charset charset;
+        try {
+            charset = Charset.forName(charsetName);
+        } catch (IllegalArgumentException e) {
+            return; // not supported by this JRE (fallback to default charset)
+        }
+        for (int collation : collations) {
+            CHARSET_BY_COLLATION[collation] = charset;
+        }
+    }
+
+    private static void mapRange(String charsetName, int fromCollation, int toCollation) {
+        int[] collations = new int[toCollation - fromCollation + 1];
+        for (int i = 0; i < collations.length; i++) {
+            collations[i] = fromCollation + i;
+        }
+        map(charsetName, collations);
+    }
+
+    /**
+     * @param collation MySQL collation id
+     * @return charset, null if collation is unknown (or binary)
+     */
+    public static Charset forCollation(int collation) {
+        return collation >= 0 && collation < CHARSET_BY_COLLATION.length ? CHARSET_BY_COLLATION[collation] : null;
+    }
+
+    /**
+     * Resolve charset of each of the CHAR/VARCHAR columns (based on DEFAULT_CHARSET / COLUMN_CHARSET metadata,
+     * which MySQL 8.0+ writes with binlog_row_metadata=FULL).
+     * @param columnTypes column types (as stated in TABLE_MAP)
+     * @param columnMetadata column metadata
+     * @param metadata optional TABLE_MAP metadata
+     * @return charset of each column (null if unknown or not applicable), null if charsets are not known at all
+     */
+    static Charset[] forColumns(byte[] columnTypes, int[] columnMetadata, TableMapEventMetadata metadata) {
+        if (metadata == null || (metadata.getColumnCharsets() == null && metadata.getDefaultCharset() == null)) {
+            return null;
+        }
+        List<Integer> columnCharsets = metadata.getColumnCharsets();
+        DefaultCharset defaultCharset = metadata.getDefaultCharset();
+        Map<Integer, Integer> charsetCollations = defaultCharset != null ? defaultCharset.getCharsetCollations() : null;
+        Charset[] result = new Charset[columnTypes.length];
+        for (int i = 0, characterColumnIndex = 0; i < columnTypes.length; i++) {
+            int typeCode = AbstractRowsEventDataDeserializer.realTypeCode(columnTypes[i] & 0xFF, columnMetadata[i]);
+            if (!isCharacterType(typeCode)) {
+                continue;
+            }
+            Integer collation;
+            if (columnCharsets != null) {
+                collation = characterColumnIndex < columnCharsets.size() ?
+                    columnCharsets.get(characterColumnIndex) : null;
+            } else {
+                collation = charsetCollations != null ? charsetCollations.get(characterColumnIndex) : null;
+                if (collation == null) {
+                    collation = defaultCharset.getDefaultCharsetCollation();
+                }
+            }
+            result[i] = collation != null ? forCollation(collation) : null;
+            characterColumnIndex++;
+        }
+        return result;
+    }
+
+    /**
+     * mysql-8.0 sql/log_event.cc is_character_type
+     */
+    private static boolean isCharacterType(int typeCode) {
+        return typeCode == ColumnType.STRING.getCode() || typeCode == ColumnType.VARCHAR.getCode() ||
+            typeCode == ColumnType.VAR_STRING.getCode() || typeCode == ColumnType.BLOB.getCode() ||
+            typeCode == ColumnType.TINY_BLOB.getCode() || typeCode == ColumnType.MEDIUM_BLOB.getCode() ||
+            typeCode == ColumnType.LONG_BLOB.getCode();
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * {@link TableFilter} built out of include/exclude rules. Table is accepted if it matches any of the include rules
+ * (or there are none) and none of the exclude ones. Literal rules are matched with a hash lookup, so that large
+ * number of them doesn't slow down the filter.
+ * <pre>
+ * new PatternTableFilter()
+ *     .include("shop", "orders")
+ *     .include(Pattern.compile("tenant_\\d+"), Pattern.compile("invoice.*"))
+ *     .exclude("shop", "orders_archive");
+ * </pre>
+ */
+public class PatternTableFilter implements TableFilter {
+
+    private static final String ANY_TABLE = "*";
+
+    private final Rules includes = new Rules();
+    private final Rules excludes = new Rules();
+
+    /**
+     * @param database database name
+     * @param table table name, null to include all tables of the database
+     * @return this filter
+     */
+    public PatternTableFilter include(String database, String table) {
+        includes.add(database, table);
+        return this;
+    }
+
+    /**
+     * @param database database name pattern (must match entire name)
+     * @param table table name pattern (must match entire name), null to include all tables of matching databases
+     * @return this filter
+     */
+    public PatternTableFilter include(Pattern database, Pattern table) {
+        includes.add(database, table);
+        return this;
+    }
+
+    /**
+     * @param database database name
+     * @param table table name, null to exclude all tables of the database
+     * @return this filter
+     */
+    public PatternTableFilter exclude(String database, String table) {
+        excludes.add(database, table);
+        return this;
+    }
+
+    /**
+     * @param database database name pattern (must match entire name)
+     * @param table table name pattern (must match entire name), null to exclude all tables of matching databases
+     * @return this filter
+     */
+    public PatternTableFilter exclude(Pattern database, Pattern table) {
+        excludes.add(database, table);
+        return this;
+    }
+
+    @Override
+    public boolean accept(String database, String table) {
+        return (includes.isEmpty() || includes.matches(database, table)) && !excludes.matches(database, table);
+    }
+
+    private static final class Rules {
+
+        private final Map<String, Set<String>> tablesByDatabase = new HashMap<String, Set<String>>();
+        private final List<Pattern[]> patterns = new ArrayList<Pattern[]>();
+
+        private void add(String database, String table) {
+            Set<String> tables = tablesByDatabase.get(database);
+            if (tables == null) {
+                tablesByDatabase.put(database, tables = new HashSet<String>());
+            }
+            tables.add(table == null ? ANY_TABLE : table);
+        }
+
+        private void add(Pattern database, Pattern table) {
+            patterns.add(new Pattern[]{database, table});
+        }
+
+        private boolean isEmpty() {
+            return tablesByDatabase.isEmpty() && patterns.isEmpty();
+        }
+
+        private boolean matches(String database, String table) {
+            Set<String> tables = tablesByDatabase.get(database);
+            if (tables != null && (tables.contains(table) || tables.contains(ANY_TABLE))) {
+                return true;
+            }
+            for (Pattern[] pattern : patterns) {
+                if (pattern[0].matcher(database).matches() &&
+                    (pattern[1] == null || pattern[1].matcher(table).matches())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
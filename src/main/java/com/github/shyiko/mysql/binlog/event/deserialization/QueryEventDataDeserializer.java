@@ -17,14 +17,43 @@ package com.github.shyiko.mysql.binlog.event.deserialization;
 
 import com.github.shyiko.mysql.binlog.event.QueryEventData;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.StringCache;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
 public class QueryEventDataDeserializer implements EventDataDeserializer<QueryEventData> {
 
+    private static final int Q_FLAGS2_CODE = 0;
+    private static final int Q_SQL_MODE_CODE = 1;
+    private static final int Q_CATALOG_CODE = 2;
+    private static final int Q_AUTO_INCREMENT = 3;
+    private static final int Q_CHARSET_CODE = 4;
+    private static final int Q_TIME_ZONE_CODE = 5;
+    private static final int Q_CATALOG_NZ_CODE = 6;
+    private static final int Q_LC_TIME_NAMES_CODE = 7;
+    private static final int Q_CHARSET_DATABASE_CODE = 8;
+    private static final int Q_TABLE_MAP_FOR_UPDATE_CODE = 9;
+    private static final int Q_MASTER_DATA_WRITTEN_CODE = 10;
+    private static final int Q_INVOKER = 11;
+    private static final int Q_UPDATED_DB_NAMES = 12;
+    private static final int Q_MICROSECONDS = 13;
+    private static final int Q_EXPLICIT_DEFAULTS_FOR_TIMESTAMP = 16;
+    private static final int Q_DDL_LOGGED_WITH_XID = 17;
+    private static final int Q_DEFAULT_COLLATION_FOR_UTF8MB4 = 18;
+    private static final int Q_SQL_REQUIRE_PRIMARY_KEY = 19;
+    private static final int Q_DEFAULT_TABLE_ENCRYPTION = 20;
+    private static final int Q_HRNOW = 128; // MariaDB
+    private static final int Q_XID = 129; // MariaDB
+    private static final int OVER_MAX_DBS_IN_EVENT_MTS = 254;
+
+    // database names (64 characters max, utf8mb3)
+    private final StringCache nameCache = new StringCache(StandardCharsets.UTF_8, 256, 64 * 3);
+
     @Override
     public QueryEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
         QueryEventData eventData = new QueryEventData();
@@ -32,9 +61,64 @@ public class QueryEventDataDeserializer implements EventDataDeserializer<QueryEv
         eventData.setExecutionTime(inputStream.readLong(4));
         inputStream.skip(1); // length of the name of the database
         eventData.setErrorCode(inputStream.readInteger(2));
-        inputStream.skip(inputStream.readInteger(2)); // status variables block
-        eventData.setDatabase(inputStream.readZeroTerminatedString());
-        eventData.setSql(inputStream.readString(inputStream.available()));
+        Charset charset = readCharset(inputStream.read(inputStream.readInteger(2))); // status variables block
+        eventData.setDatabase(inputStream.readZeroTerminatedString(nameCache));
+        int sqlLength = inputStream.available();
+        eventData.setSql(charset != null ? inputStream.readString(sqlLength, charset) :
+            inputStream.readString(sqlLength));
         return eventData;
     }
+
+    /**
+     * @param statusVariables status variables block
+     * @return character_set_client (Q_CHARSET_CODE), null if not present (or cannot be determined)
+     */
+    private static Charset readCharset(byte[] statusVariables) throws IOException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(statusVariables);
+        // mysql-8.0 libbinlogevents/src/statement_events.cpp Query_event::Query_event
+        while (inputStream.available() > 0) {
+            int code = inputStream.read();
+            switch (code) {
+                case Q_CHARSET_CODE:
+                    return MysqlCharsets.forCollation(inputStream.readInteger(2));
+                case Q_FLAGS2_CODE: case Q_AUTO_INCREMENT: case Q_MASTER_DATA_WRITTEN_CODE:
+                    inputStream.skip(4);
+                    break;
+                case Q_SQL_MODE_CODE: case Q_TABLE_MAP_FOR_UPDATE_CODE: case Q_DDL_LOGGED_WITH_XID: case Q_XID:
+                    inputStream.skip(8);
+                    break;
+                case Q_CATALOG_CODE:
+                    inputStream.skip(inputStream.read() + 1);
+                    break;
+                case Q_TIME_ZONE_CODE: case Q_CATALOG_NZ_CODE:
+                    inputStream.skip(inputStream.read());
+                    break;
+                case Q_LC_TIME_NAMES_CODE: case Q_CHARSET_DATABASE_CODE: case Q_DEFAULT_COLLATION_FOR_UTF8MB4:
+                    inputStream.skip(2);
+                    break;
+                case Q_INVOKER:
+                    inputStream.skip(inputStream.read());
+                    inputStream.skip(inputStream.read());
+                    break;
+                case Q_UPDATED_DB_NAMES:
+                    int numberOfDatabases = inputStream.read();
+                    if (numberOfDatabases != OVER_MAX_DBS_IN_EVENT_MTS) {
+                        for (int i = 0; i < numberOfDatabases; i++) {
+                            inputStream.readZeroTerminatedString();
+                        }
+                    }
+                    break;
+                case Q_MICROSECONDS: case Q_HRNOW:
+                    inputStream.skip(3);
+                    break;
+                case Q_EXPLICIT_DEFAULTS_FOR_TIMESTAMP: case Q_SQL_REQUIRE_PRIMARY_KEY:
+                case Q_DEFAULT_TABLE_ENCRYPTION:
+                    inputStream.skip(1);
+                    break;
+                default:
+                    return null; // length of the value is unknown (and so are the offsets of the rest of variables)
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.ColumnVector;
+import com.github.shyiko.mysql.binlog.event.RowBatch;
+import com.github.shyiko.mysql.binlog.event.RowBatchEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Deserializes WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events into {@link RowBatchEventData} (values are decoded straight
+ * into primitive column vectors, without boxing or allocation of java.util.Date|s).
+ * <p>
+ * Compatibility modes affecting representation of the values (e.g. DATE_AND_TIME_AS_LONG or
+ * CHAR_AND_BINARY_AS_BYTE_ARRAY) do not apply here (see {@link ColumnVector} for the format of each type), with the
+ * exception of INVALID_DATE_AND_TIME_AS_* (0000-00-00 is reported as null otherwise).
+ *
+ * @see EventDeserializer#setColumnarRows(boolean)
+ */
+public class RowBatchEventDataDeserializer extends AbstractRowsEventDataDeserializer<RowBatchEventData> {
+
+    private final boolean updateRows;
+    private boolean mayContainExtraInformation;
+
+    /**
+     * @param tableMapEventByTableId TABLE_MAP events by table id
+     * @param updateRows true if deserializer is going to be used for UPDATE_ROWS events (which carry row images
+     * before and after update)
+     */
+    public RowBatchEventDataDeserializer(Map<Long, TableMapEventData> tableMapEventByTableId, boolean updateRows) {
+        super(tableMapEventByTableId);
+        this.updateRows = updateRows;
+    }
+
+    public RowBatchEventDataDeserializer setMayContainExtraInformation(boolean mayContainExtraInformation) {
+        this.mayContainExtraInformation = mayContainExtraInformation;
+        return this;
+    }
+
+    @Override
+    public RowBatchEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
+        RowBatchEventData eventData = new RowBatchEventData();
+        eventData.setTableId(inputStream.readLong(6));
+        inputStream.skip(2); // reserved
+        if (mayContainExtraInformation) {
+            int extraInfoLength = inputStream.readInteger(2);
+            inputStream.skip(extraInfoLength - 2);
+        }
+        int numberOfColumns = inputStream.readPackedInteger();
+        RowDecoderPlan plan = getRowDecoderPlan(getTableMapEvent(eventData.getTableId()));
+        if (updateRows) {
+            eventData.setIncludedColumnsBeforeUpdate(inputStream.readBitSet(numberOfColumns, true));
+            eventData.setIncludedColumns(inputStream.readBitSet(numberOfColumns, true));
+            Builder before = new Builder(plan, eventData.getIncludedColumnsBeforeUpdate()),
+                after = new Builder(plan, eventData.getIncludedColumns());
+            while (inputStream.available() > 0) {
+                before.appendRow(inputStream);
+                after.appendRow(inputStream);
+            }
+            eventData.setRowsBeforeUpdate(before.build());
+            eventData.setRows(after.build());
+        } else {
+            eventData.setIncludedColumns(inputStream.readBitSet(numberOfColumns, true));
+            Builder rows = new Builder(plan, eventData.getIncludedColumns());
+            while (inputStream.available() > 0) {
+                rows.appendRow(inputStream);
+            }
+            eventData.setRows(rows.build());
+        }
+        return eventData;
+    }
+
+    private static ColumnVector.Kind kindOf(ColumnType type) {
+        switch (type) {
+            case FLOAT: case DOUBLE:
+                return ColumnVector.Kind.DOUBLE;
+            case NEWDECIMAL: case STRING: case VARCHAR: case VAR_STRING: case BLOB: case GEOMETRY: case JSON:
+                return ColumnVector.Kind.BYTES;
+            default:
+                return ColumnVector.Kind.LONG;
+        }
+    }
+
+    /**
+     * Row image accumulator (one per row image, so two in case of UPDATE_ROWS).
+     */
+    private final class Builder implements RowSink {
+
+        private final RowImageDecoder decoder;
+        private final int numberOfColumns;
+        private final int[] indexByColumn;
+        private final ColumnVector.Kind[] kinds;
+        private final long[][] nulls;
+        private final long[][] longValues;
+        private final double[][] doubleValues;
+        private final int[][] valueOffsets;
+        private final int[][] valueLengths;
+        private byte[] slab = new byte[256];
+        private int slabLength;
+        private int numberOfRows;
+        private int capacity = 16;
+
+        private Builder(RowDecoderPlan plan, BitSet includedColumns) {
+            decoder = new RowImageDecoder(RowBatchEventDataDeserializer.this, plan, includedColumns);
+            numberOfColumns = decoder.getNumberOfColumns();
+            indexByColumn = new int[plan.getNumberOfColumns()];
+            kinds = new ColumnVector.Kind[numberOfColumns];
+            nulls = new long[numberOfColumns][];
+            longValues = new long[numberOfColumns][];
+            doubleValues = new double[numberOfColumns][];
+            valueOffsets = new int[numberOfColumns][];
+            valueLengths = new int[numberOfColumns][];
+            for (int index = 0; index < numberOfColumns; index++) {
+                indexByColumn[decoder.getColumn(index)] = index;
+                kinds[index] = kindOf(decoder.getType(index));
+                nulls[index] = new long[(capacity + 63) >>> 6];
+                switch (kinds[index]) {
+                    case LONG:
+                        longValues[index] = new long[capacity];
+                        break;
+                    case DOUBLE:
+                        doubleValues[index] = new double[capacity];
+                        break;
+                    default:
+                        valueOffsets[index] = new int[capacity];
+                        valueLengths[index] = new int[capacity];
+                }
+            }
+        }
+
+        private void appendRow(ByteArrayInputStream inputStream) throws IOException {
+            decoder.decode(inputStream, this, false);
+        }
+
+        @Override
+        public void onRowStart(TableMapEventData tableMapEvent, boolean beforeImage) {
+            if (numberOfRows == capacity) {
+                grow();
+            }
+        }
+
+        @Override
+        public void onNull(int column) {
+            nulls[indexByColumn[column]][numberOfRows >>> 6] |= 1L << numberOfRows;
+        }
+
+        @Override
+        public void onLong(int column, long value) {
+            longValues[indexByColumn[column]][numberOfRows] = value;
+        }
+
+        @Override
+        public void onDouble(int column, double value) {
+            doubleValues[indexByColumn[column]][numberOfRows] = value;
+        }
+
+        @Override
+        public void onBytes(int column, byte[] buffer, int offset, int length) {
+            int index = indexByColumn[column];
+            if (slab.length - slabLength < length) {
+                slab = Arrays.copyOf(slab, Math.max(slab.length << 1, slabLength + length));
+            }
+            System.arraycopy(buffer, offset, slab, slabLength, length);
+            valueOffsets[index][numberOfRows] = slabLength;
+            valueLengths[index][numberOfRows] = length;
+            slabLength += length;
+        }
+
+        @Override
+        public void onDecimal(int column, int precision, int scale, byte[] buffer, int offset, int length) {
+            onBytes(column, buffer, offset, length);
+        }
+
+        @Override
+        public void onTemporal(int column, long micros) {
+            longValues[indexByColumn[column]][numberOfRows] = micros;
+        }
+
+        @Override
+        public void onRowEnd() {
+            numberOfRows++;
+        }
+
+        private void grow() {
+            capacity <<= 1;
+            for (int index = 0; index < numberOfColumns; index++) {
+                nulls[index] = Arrays.copyOf(nulls[index], (capacity + 63) >>> 6);
+                if (longValues[index] != null) {
+                    longValues[index] = Arrays.copyOf(longValues[index], capacity);
+                }
+                if (doubleValues[index] != null) {
+                    doubleValues[index] = Arrays.copyOf(doubleValues[index], capacity);
+                }
+                if (valueOffsets[index] != null) {
+                    valueOffsets[index] = Arrays.copyOf(valueOffsets[index], capacity);
+                    valueLengths[index] = Arrays.copyOf(valueLengths[index], capacity);
+                }
+            }
+        }
+
+        private RowBatch build() {
+            ColumnVector[] vectors = new ColumnVector[numberOfColumns];
+            for (int index = 0; index < numberOfColumns; index++) {
+                vectors[index] = new ColumnVector(decoder.getColumn(index), decoder.getType(index),
+                    decoder.getMeta(index), kinds[index], nulls[index], longValues[index], doubleValues[index],
+                    valueOffsets[index], valueLengths[index], slab);
+            }
+            return new RowBatch(numberOfRows, vectors);
+        }
+    }
+
+}
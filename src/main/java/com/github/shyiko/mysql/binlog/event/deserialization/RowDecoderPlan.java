@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+
+import java.nio.charset.Charset;
+import java.util.BitSet;
+
+/**
+ * Per-table decoding plan: actual type, metadata, length and charset of each column (as well as whether column is to
+ * be skipped because of projection) resolved once per TABLE_MAP instead of for every cell of every row.
+ * <p>
+ * Immutable (and so safe to share with rows decoded lazily on another thread).
+ */
+final class RowDecoderPlan {
+
+    private final TableMapEventData tableMapEvent;
+    private final BitSet columnProjection;
+    private final ColumnType[] types;
+    private final int[] metas;
+    private final int[] lengths;
+    private final boolean[] skipped;
+    private final Charset[] charsets;
+
+    /**
+     * @param tableMapEvent TABLE_MAP of the table
+     * @param columnProjection columns to decode, null if all of them
+     */
+    RowDecoderPlan(TableMapEventData tableMapEvent, BitSet columnProjection) {
+        this.tableMapEvent = tableMapEvent;
+        this.columnProjection = columnProjection;
+        byte[] columnTypes = tableMapEvent.getColumnTypes();
+        int[] metadata = tableMapEvent.getColumnMetadata();
+        int numberOfColumns = columnTypes.length;
+        types = new ColumnType[numberOfColumns];
+        metas = new int[numberOfColumns];
+        lengths = new int[numberOfColumns];
+        skipped = new boolean[numberOfColumns];
+        for (int i = 0; i < numberOfColumns; i++) {
+            int typeCode = columnTypes[i] & 0xFF, meta = metadata[i];
+            types[i] = ColumnType.byCode(AbstractRowsEventDataDeserializer.realTypeCode(typeCode, meta));
+            metas[i] = meta;
+            lengths[i] = AbstractRowsEventDataDeserializer.realLength(typeCode, meta);
+            skipped[i] = columnProjection != null && !columnProjection.get(i);
+        }
+        charsets = MysqlCharsets.forColumns(columnTypes, metadata, tableMapEvent.getEventMetadata());
+    }
+
+    /**
+     * @return true if plan was compiled for the given TABLE_MAP and projection (both compared by identity, as
+     * TABLE_MAP gets deserialized anew each time it's seen in the binlog and projection is copied on each change)
+     */
+    boolean isCompiledFor(TableMapEventData tableMapEvent, BitSet columnProjection) {
+        return this.tableMapEvent == tableMapEvent && this.columnProjection == columnProjection;
+    }
+
+    TableMapEventData getTableMapEvent() {
+        return tableMapEvent;
+    }
+
+    int getNumberOfColumns() {
+        return types.length;
+    }
+
+    /**
+     * @param column ordinal position of the column within the table
+     */
+    ColumnType getType(int column) {
+        return types[column];
+    }
+
+    int getMeta(int column) {
+        return metas[column];
+    }
+
+    int getLength(int column) {
+        return lengths[column];
+    }
+
+    boolean isSkipped(int column) {
+        return skipped[column];
+    }
+
+    ColumnType[] getTypes() {
+        return types;
+    }
+
+    int[] getMetas() {
+        return metas;
+    }
+
+    int[] getLengths() {
+        return lengths;
+    }
+
+    boolean[] getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return charset of each column (null if unknown), null if TABLE_MAP carries no charset information
+     */
+    Charset[] getCharsets() {
+        return charsets;
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Decoder of a row image of a particular table, feeding {@link RowSink}. Column types are taken from
+ * {@link RowDecoderPlan} of the table (rather than resolved for each row).
+ * <p>
+ * Not thread-safe.
+ */
+class RowImageDecoder {
+
+    private final AbstractRowsEventDataDeserializer<?> deserializer;
+    private final TableMapEventData tableMapEvent;
+    private final int numberOfColumns;
+    private final int[] columns;
+    private final ColumnType[] types;
+    private final int[] metas;
+    private final int[] lengths;
+    private final boolean[] skipped;
+    private final byte[] nullBitmap;
+    private byte[] scratch = new byte[64];
+
+    RowImageDecoder(AbstractRowsEventDataDeserializer<?> deserializer, RowDecoderPlan plan, BitSet includedColumns) {
+        this.deserializer = deserializer;
+        this.tableMapEvent = plan.getTableMapEvent();
+        numberOfColumns = AbstractRowsEventDataDeserializer.numberOfBitsSet(includedColumns);
+        columns = new int[numberOfColumns];
+        types = new ColumnType[numberOfColumns];
+        metas = new int[numberOfColumns];
+        lengths = new int[numberOfColumns];
+        skipped = new boolean[numberOfColumns];
+        nullBitmap = new byte[(numberOfColumns + 7) >> 3];
+        for (int i = 0, index = 0; i < plan.getNumberOfColumns(); i++) {
+            if (!includedColumns.get(i)) {
+                continue;
+            }
+            columns[index] = i;
+            types[index] = plan.getType(i);
+            metas[index] = plan.getMeta(i);
+            lengths[index] = plan.getLength(i);
+            skipped[index] = plan.isSkipped(i);
+            index++;
+        }
+    }
+
+    TableMapEventData getTableMapEvent() {
+        return tableMapEvent;
+    }
+
+    int getNumberOfColumns() {
+        return numberOfColumns;
+    }
+
+    /**
+     * @param index index of the column within the row image
+     * @return ordinal position of the column within the table
+     */
+    int getColumn(int index) {
+        return columns[index];
+    }
+
+    ColumnType getType(int index) {
+        return types[index];
+    }
+
+    int getMeta(int index) {
+        return metas[index];
+    }
+
+    void decode(ByteArrayInputStream inputStream, RowSink sink, boolean beforeImage) throws IOException {
+        sink.onRowStart(tableMapEvent, beforeImage);
+        inputStream.fill(nullBitmap, 0, nullBitmap.length);
+        for (int index = 0; index < numberOfColumns; index++) {
+            if ((nullBitmap[index >> 3] & (1 << (index & 7))) != 0) {
+                sink.onNull(columns[index]);
+            } else
+            if (skipped[index]) {
+                deserializer.skipCell(types[index], metas[index], lengths[index], inputStream);
+                sink.onNull(columns[index]);
+            } else {
+                decodeCell(index, inputStream, sink);
+            }
+        }
+        sink.onRowEnd();
+    }
+
+    private void decodeCell(int index, ByteArrayInputStream inputStream, RowSink sink) throws IOException {
+        int column = columns[index], meta = metas[index];
+        switch (types[index]) {
+            case TINY:
+                sink.onLong(column, (byte) inputStream.readInteger(1));
+                break;
+            case SHORT:
+                sink.onLong(column, (short) inputStream.readInteger(2));
+                break;
+            case INT24:
+                sink.onLong(column, (inputStream.readInteger(3) << 8) >> 8);
+                break;
+            case LONG:
+                sink.onLong(column, inputStream.readInteger(4));
+                break;
+            case LONGLONG:
+                sink.onLong(column, inputStream.readLong(8));
+                break;
+            case YEAR:
+                int year = inputStream.readInteger(1);
+                sink.onLong(column, year == 0 ? 0 : 1900 + year);
+                break;
+            case ENUM:
+                sink.onLong(column, inputStream.readInteger(lengths[index]));
+                break;
+            case SET:
+                sink.onLong(column, inputStream.readLong(lengths[index]));
+                break;
+            case BIT:
+                int bitLength = (meta >> 8) * 8 + (meta & 0xFF);
+                sink.onLong(column, inputStream.readBigEndianLong((bitLength + 7) >> 3));
+                break;
+            case FLOAT:
+                sink.onDouble(column, Float.intBitsToFloat(inputStream.readInteger(4)));
+                break;
+            case DOUBLE:
+                sink.onDouble(column, Double.longBitsToDouble(inputStream.readLong(8)));
+                break;
+            case DATE:
+                int date = inputStream.readInteger(3);
+                onTemporal(column, date >> 9, (date >>> 5) % 16, date % 32, 0, 0, 0, 0, sink);
+                break;
+            case TIME:
+                int time = inputStream.readInteger(3);
+                sink.onTemporal(column, ((time / 10000) * 3600L + (time / 100 % 100) * 60L + time % 100) * 1000000L);
+                break;
+            case TIME_V2:
+                sink.onTemporal(column, AbstractRowsEventDataDeserializer.timeV2Micros(
+                    AbstractRowsEventDataDeserializer.readTimeV2(meta, inputStream)));
+                break;
+            case TIMESTAMP:
+                sink.onTemporal(column, inputStream.readLong(4) * 1000000L);
+                break;
+            case TIMESTAMP_V2:
+                long seconds = inputStream.readBigEndianLong(4);
+                sink.onTemporal(column,
+                    seconds * 1000000L + AbstractRowsEventDataDeserializer.readFractionalSeconds(meta, inputStream));
+                break;
+            case DATETIME:
+                long datetime = inputStream.readLong(8);
+                long datePart = datetime / 1000000, timePart = datetime % 1000000;
+                onTemporal(column, (int) (datePart / 10000), (int) (datePart / 100 % 100), (int) (datePart % 100),
+                    (int) (timePart / 10000), (int) (timePart / 100 % 100), (int) (timePart % 100), 0, sink);
+                break;
+            case DATETIME_V2:
+                long datetimeV2 = inputStream.readBigEndianLong(5);
+                int yearMonth = AbstractRowsEventDataDeserializer.bitSlice(datetimeV2, 1, 17, 40);
+                onTemporal(column, yearMonth / 13, yearMonth % 13,
+                    AbstractRowsEventDataDeserializer.bitSlice(datetimeV2, 18, 5, 40),
+                    AbstractRowsEventDataDeserializer.bitSlice(datetimeV2, 23, 5, 40),
+                    AbstractRowsEventDataDeserializer.bitSlice(datetimeV2, 28, 6, 40),
+                    AbstractRowsEventDataDeserializer.bitSlice(datetimeV2, 34, 6, 40),
+                    AbstractRowsEventDataDeserializer.readFractionalSeconds(meta, inputStream), sink);
+                break;
+            case NEWDECIMAL:
+                int precision = meta & 0xFF, scale = meta >> 8;
+                int decimalLength = AbstractRowsEventDataDeserializer.decimalLength(precision, scale);
+                sink.onDecimal(column, precision, scale, read(decimalLength, inputStream), 0, decimalLength);
+                break;
+            case STRING:
+                onBytes(column, lengths[index] < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2),
+                    inputStream, sink);
+                break;
+            case VARCHAR: case VAR_STRING:
+                onBytes(column, meta < 256 ? inputStream.readInteger(1) : inputStream.readInteger(2),
+                    inputStream, sink);
+                break;
+            case BLOB: case GEOMETRY: case JSON:
+                onBytes(column, inputStream.readInteger(meta), inputStream, sink);
+                break;
+            default:
+                throw new IOException("Unsupported type " + types[index]);
+        }
+    }
+
+    private void onTemporal(int column, int year, int month, int day, int hour, int minute, int second, long micros,
+                            RowSink sink) {
+        if (year == 0 || month == 0 || day == 0) {
+            Long invalidDateAndTimeRepresentation = deserializer.getInvalidDateAndTimeRepresentation();
+            if (invalidDateAndTimeRepresentation == null) {
+                sink.onNull(column);
+            } else {
+                sink.onTemporal(column, invalidDateAndTimeRepresentation);
+            }
+            return;
+        }
+        sink.onTemporal(column,
+            AbstractRowsEventDataDeserializer.UnixTime.from(year, month, day, hour, minute, second, 0) * 1000 + micros);
+    }
+
+    private void onBytes(int column, int length, ByteArrayInputStream inputStream, RowSink sink) throws IOException {
+        sink.onBytes(column, read(length, inputStream), 0, length);
+    }
+
+    private byte[] read(int length, ByteArrayInputStream inputStream) throws IOException {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(scratch.length << 1, length)];
+        }
+        inputStream.fill(scratch, 0, length);
+        return scratch;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+
+/**
+ * Receiver of the cells of WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events, driven by the deserializer as it decodes them
+ * (no intermediate objects are created per cell). {@code column} is the ordinal position of the column within the
+ * table (as in {@link TableMapEventData#getColumnTypes()}). Cells come in the column order and only for columns
+ * included in the row image.
+ * <p>
+ * Values are delivered in the same format as {@link com.github.shyiko.mysql.binlog.event.ColumnVector} stores them:
+ * <pre>
+ * TINY/SHORT/INT24/LONG/LONGLONG/YEAR/ENUM/SET/BIT: {@link #onLong(int, long)}
+ * FLOAT/DOUBLE: {@link #onDouble(int, double)}
+ * NEWDECIMAL: {@link #onDecimal(int, int, int, byte[], int, int)}
+ * DATE/DATETIME/DATETIME_V2/TIMESTAMP/TIMESTAMP_V2: {@link #onTemporal(int, long)} (microseconds since the epoch)
+ * TIME/TIME_V2: {@link #onTemporal(int, long)} (microseconds since midnight, might be negative)
+ * CHAR/VARCHAR/BINARY/VARBINARY/BLOB/TEXT/JSON/GEOMETRY: {@link #onBytes(int, byte[], int, int)}
+ * </pre>
+ * Columns excluded with {@link EventDeserializer#setColumnProjection} are reported as null.
+ * Byte arrays passed to the sink are only valid for the duration of the call (they are reused).
+ *
+ * @see EventDeserializer#setRowSink(RowSink)
+ */
+public interface RowSink {
+
+    /**
+     * @param tableMapEvent TABLE_MAP of the table row belongs to
+     * @param beforeImage true in case of row image before the change (UPDATE_ROWS (first image), DELETE_ROWS),
+     * false otherwise (WRITE_ROWS, UPDATE_ROWS (second image))
+     */
+    void onRowStart(TableMapEventData tableMapEvent, boolean beforeImage);
+
+    void onNull(int column);
+
+    void onLong(int column, long value);
+
+    void onDouble(int column, double value);
+
+    void onBytes(int column, byte[] buffer, int offset, int length);
+
+    /**
+     * @param column column
+     * @param precision precision of the column
+     * @param scale scale of the column
+     * @param buffer buffer holding value in MySQL binary format (see
+     * {@link AbstractRowsEventDataDeserializer#asBigDecimal(int, int, byte[])})
+     * @param offset offset of the value within the buffer
+     * @param length length of the value
+     */
+    void onDecimal(int column, int precision, int scale, byte[] buffer, int offset, int length);
+
+    void onTemporal(int column, long micros);
+
+    void onRowEnd();
+
+}
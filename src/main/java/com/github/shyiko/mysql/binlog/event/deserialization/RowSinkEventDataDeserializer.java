@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.StreamedRowsEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Deserializes WRITE_ROWS/UPDATE_ROWS/DELETE_ROWS events by feeding cells into {@link RowSink} (as they are
+ * decoded), leaving only {@link StreamedRowsEventData} summary in the event.
+ *
+ * @see EventDeserializer#setRowSink(RowSink)
+ */
+public class RowSinkEventDataDeserializer extends AbstractRowsEventDataDeserializer<StreamedRowsEventData> {
+
+    private final RowSink rowSink;
+    private final boolean beforeImage;
+    private final boolean afterImage;
+    private boolean mayContainExtraInformation;
+
+    /**
+     * @param tableMapEventByTableId TABLE_MAP events by table id
+     * @param rowSink sink
+     * @param beforeImage true if rows contain image before the change (UPDATE_ROWS, DELETE_ROWS)
+     * @param afterImage true if rows contain image after the change (WRITE_ROWS, UPDATE_ROWS)
+     */
+    public RowSinkEventDataDeserializer(Map<Long, TableMapEventData> tableMapEventByTableId, RowSink rowSink,
+                                        boolean beforeImage, boolean afterImage) {
+        super(tableMapEventByTableId);
+        this.rowSink = rowSink;
+        this.beforeImage = beforeImage;
+        this.afterImage = afterImage;
+    }
+
+    public RowSinkEventDataDeserializer setMayContainExtraInformation(boolean mayContainExtraInformation) {
+        this.mayContainExtraInformation = mayContainExtraInformation;
+        return this;
+    }
+
+    @Override
+    public StreamedRowsEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
+        StreamedRowsEventData eventData = new StreamedRowsEventData();
+        eventData.setTableId(inputStream.readLong(6));
+        inputStream.skip(2); // reserved
+        if (mayContainExtraInformation) {
+            int extraInfoLength = inputStream.readInteger(2);
+            inputStream.skip(extraInfoLength - 2);
+        }
+        int numberOfColumns = inputStream.readPackedInteger();
+        RowDecoderPlan plan = getRowDecoderPlan(getTableMapEvent(eventData.getTableId()));
+        if (beforeImage && afterImage) {
+            eventData.setIncludedColumnsBeforeUpdate(inputStream.readBitSet(numberOfColumns, true));
+        }
+        eventData.setIncludedColumns(inputStream.readBitSet(numberOfColumns, true));
+        RowImageDecoder before = beforeImage ? new RowImageDecoder(this, plan,
+            afterImage ? eventData.getIncludedColumnsBeforeUpdate() : eventData.getIncludedColumns()) : null;
+        RowImageDecoder after = afterImage ? new RowImageDecoder(this, plan, eventData.getIncludedColumns()) : null;
+        int numberOfRows = 0;
+        while (inputStream.available() > 0) {
+            if (before != null) {
+                before.decode(inputStream, rowSink, true);
+            }
+            if (after != null) {
+                after.decode(inputStream, rowSink, false);
+            }
+            numberOfRows++;
+        }
+        eventData.setNumberOfRows(numberOfRows);
+        return eventData;
+    }
+
+}
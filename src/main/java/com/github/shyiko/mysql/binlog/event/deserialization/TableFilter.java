@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+/**
+ * Decides which tables rows events are deserialized for.
+ *
+ * @see EventDeserializer#setTableFilter(TableFilter)
+ * @see PatternTableFilter
+ */
+public interface TableFilter {
+
+    /**
+     * @param database database name
+     * @param table table name
+     * @return true if rows of the table should be deserialized, false if they should be skipped
+     */
+    boolean accept(String database, String table);
+
+}
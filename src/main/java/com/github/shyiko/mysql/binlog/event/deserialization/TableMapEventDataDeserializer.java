@@ -18,8 +18,10 @@ package com.github.shyiko.mysql.binlog.event.deserialization;
 import com.github.shyiko.mysql.binlog.event.TableMapEventData;
 import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.StringCache;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,15 +31,17 @@ import java.util.List;
 public class TableMapEventDataDeserializer implements EventDataDeserializer<TableMapEventData> {
 
     private final TableMapEventMetadataDeserializer metadataDeserializer = new TableMapEventMetadataDeserializer();
+    // database/table names (64 characters max, utf8mb3)
+    private final StringCache nameCache = new StringCache(StandardCharsets.UTF_8, 1024, 64 * 3);
 
     @Override
     public TableMapEventData deserialize(ByteArrayInputStream inputStream) throws IOException {
         TableMapEventData eventData = new TableMapEventData();
         eventData.setTableId(inputStream.readLong(6));
         inputStream.skip(3); // 2 bytes reserved for future use + 1 for the length of database name
-        eventData.setDatabase(inputStream.readZeroTerminatedString());
+        eventData.setDatabase(inputStream.readZeroTerminatedString(nameCache));
         inputStream.skip(1); // table name
-        eventData.setTable(inputStream.readZeroTerminatedString());
+        eventData.setTable(inputStream.readZeroTerminatedString(nameCache));
         int numberOfColumns = inputStream.readPackedInteger();
         eventData.setColumnTypes(inputStream.read(numberOfColumns));
         inputStream.readPackedInteger(); // metadata length
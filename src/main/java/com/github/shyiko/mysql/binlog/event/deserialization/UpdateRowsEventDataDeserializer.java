@@ -61,15 +61,29 @@ public class UpdateRowsEventDataDeserializer extends AbstractRowsEventDataDeseri
 
     private List<Map.Entry<Serializable[], Serializable[]>> deserializeRows(UpdateRowsEventData eventData,
             ByteArrayInputStream inputStream) throws IOException {
-        long tableId = eventData.getTableId();
-        BitSet includedColumnsBeforeUpdate = eventData.getIncludedColumnsBeforeUpdate(),
-               includedColumns = eventData.getIncludedColumns();
+        final RowDecoderPlan plan = getRowDecoderPlan(getTableMapEvent(eventData.getTableId()));
+        final BitSet includedColumnsBeforeUpdate = eventData.getIncludedColumnsBeforeUpdate(),
+                     includedColumns = eventData.getIncludedColumns();
+        if (isLazyRows()) {
+            return deserializeRowsLazily(plan, new BitSet[]{includedColumnsBeforeUpdate, includedColumns},
+                inputStream, new LazyRowList.RowDecoder<Map.Entry<Serializable[], Serializable[]>>() {
+
+                    @Override
+                    public Map.Entry<Serializable[], Serializable[]> decode(ByteArrayInputStream inputStream)
+                            throws IOException {
+                        return new AbstractMap.SimpleEntry<Serializable[], Serializable[]>(
+                                deserializeRow(plan, includedColumnsBeforeUpdate, inputStream),
+                                deserializeRow(plan, includedColumns, inputStream)
+                        );
+                    }
+                });
+        }
         List<Map.Entry<Serializable[], Serializable[]>> rows =
                 new ArrayList<Map.Entry<Serializable[], Serializable[]>>();
         while (inputStream.available() > 0) {
             rows.add(new AbstractMap.SimpleEntry<Serializable[], Serializable[]>(
-                    deserializeRow(tableId, includedColumnsBeforeUpdate, inputStream),
-                    deserializeRow(tableId, includedColumns, inputStream)
+                    deserializeRow(plan, includedColumnsBeforeUpdate, inputStream),
+                    deserializeRow(plan, includedColumns, inputStream)
             ));
         }
         return rows;
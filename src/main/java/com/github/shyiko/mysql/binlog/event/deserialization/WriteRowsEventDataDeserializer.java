@@ -57,11 +57,22 @@ public class WriteRowsEventDataDeserializer extends AbstractRowsEventDataDeseria
         return eventData;
     }
 
-    private List<Serializable[]> deserializeRows(long tableId, BitSet includedColumns, ByteArrayInputStream inputStream)
-            throws IOException {
+    private List<Serializable[]> deserializeRows(long tableId, final BitSet includedColumns,
+            ByteArrayInputStream inputStream) throws IOException {
+        final RowDecoderPlan plan = getRowDecoderPlan(getTableMapEvent(tableId));
+        if (isLazyRows()) {
+            return deserializeRowsLazily(plan, new BitSet[]{includedColumns}, inputStream,
+                new LazyRowList.RowDecoder<Serializable[]>() {
+
+                    @Override
+                    public Serializable[] decode(ByteArrayInputStream inputStream) throws IOException {
+                        return deserializeRow(plan, includedColumns, inputStream);
+                    }
+                });
+        }
         List<Serializable[]> result = new LinkedList<Serializable[]>();
         while (inputStream.available() > 0) {
-            result.add(deserializeRow(tableId, includedColumns, inputStream));
+            result.add(deserializeRow(plan, includedColumns, inputStream));
         }
         return result;
     }
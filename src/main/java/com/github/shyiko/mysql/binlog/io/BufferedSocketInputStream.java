@@ -18,15 +18,16 @@ package com.github.shyiko.mysql.binlog.io;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
-public class BufferedSocketInputStream extends FilterInputStream {
+public class BufferedSocketInputStream extends FilterInputStream implements ByteBufferBacked {
 
-    private byte[] buffer;
-    private int offset;
-    private int limit;
+    private final byte[] buffer;
+    private final ByteBuffer byteBuffer;
 
     public BufferedSocketInputStream(InputStream in) {
         this(in, 512 * 1024);
@@ -35,40 +36,66 @@ public class BufferedSocketInputStream extends FilterInputStream {
     public BufferedSocketInputStream(InputStream in, int bufferSize) {
         super(in);
         this.buffer = new byte[bufferSize];
+        this.byteBuffer = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+        this.byteBuffer.limit(0);
+    }
+
+    @Override
+    public ByteBuffer getBuffer() {
+        return byteBuffer;
     }
 
     @Override
     public int available() throws IOException {
-        return limit - offset + in.available();
+        return byteBuffer.remaining() + in.available();
     }
 
     @Override
     public int read() throws IOException {
-        if (offset < limit) {
-            return buffer[offset++] & 0xff;
+        if (!byteBuffer.hasRemaining() && !fill()) {
+            return -1;
         }
-        offset = 0;
-        limit = in.read(buffer, 0, buffer.length);
-        return limit != -1 ? buffer[offset++] & 0xff : -1;
+        return byteBuffer.get() & 0xff;
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        if (offset >= limit) {
+        if (!byteBuffer.hasRemaining()) {
             if (len >= buffer.length) {
                 return in.read(b, off, len);
             }
-            offset = 0;
-            limit = in.read(buffer, 0, buffer.length);
-
-            if (limit == -1) {
+            if (!fill()) {
                 return -1;
             }
         }
-        int bytesRemainingInBuffer = Math.min(len, limit - offset);
-        System.arraycopy(buffer, offset, b, off, bytesRemainingInBuffer);
-        offset += bytesRemainingInBuffer;
+        int bytesRemainingInBuffer = Math.min(len, byteBuffer.remaining());
+        byteBuffer.get(b, off, bytesRemainingInBuffer);
         return bytesRemainingInBuffer;
     }
 
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        int remaining = byteBuffer.remaining();
+        if (remaining == 0) {
+            return in.skip(n);
+        }
+        int skipped = (int) Math.min(n, remaining);
+        byteBuffer.position(byteBuffer.position() + skipped);
+        return skipped;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read == -1) {
+            byteBuffer.limit(0);
+            return false;
+        }
+        byteBuffer.limit(read);
+        byteBuffer.position(0);
+        return true;
+    }
+
 }
@@ -18,6 +18,10 @@ package com.github.shyiko.mysql.binlog.io;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 
 /**
@@ -26,18 +30,30 @@ import java.util.BitSet;
 public class ByteArrayInputStream extends InputStream {
 
     private InputStream inputStream;
+    private ByteBufferBacked bufferBacked;
+    private ByteBuffer buffer;
     private int peek = -1;
     private int pos, markPosition;
     private int blockLength = -1;
+    private int markPeek = -1, markBlockLength = -1;
     private int initialBlockLength = -1;
 
     public ByteArrayInputStream(InputStream inputStream) {
         this.inputStream = inputStream;
+        this.bufferBacked = inputStream instanceof ByteBufferBacked ? (ByteBufferBacked) inputStream : null;
         this.pos = 0;
     }
 
     public ByteArrayInputStream(byte[] bytes) {
-        this(new java.io.ByteArrayInputStream(bytes));
+        this(bytes, 0, bytes.length);
+    }
+
+    public ByteArrayInputStream(byte[] bytes, int offset, int length) {
+        this(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    public ByteArrayInputStream(ByteBuffer buffer) {
+        this(new ByteBufferInputStream(buffer));
     }
 
     /**
@@ -47,6 +63,11 @@ public class ByteArrayInputStream extends InputStream {
 	 * @return the integer from the binlog
      */
     public int readInteger(int length) throws IOException {
+        if (length <= 4 && isResident(length)) {
+            int result = (int) getLittleEndian(buffer, buffer.position(), length);
+            consumeResident(length);
+            return result;
+        }
         int result = 0;
         for (int i = 0; i < length; ++i) {
             result |= (this.read() << (i << 3));
@@ -61,6 +82,11 @@ public class ByteArrayInputStream extends InputStream {
 	 * @return the long from the binlog
      */
     public long readLong(int length) throws IOException {
+        if (length <= 8 && isResident(length)) {
+            long result = getLittleEndian(buffer, buffer.position(), length);
+            consumeResident(length);
+            return result;
+        }
         long result = 0;
         for (int i = 0; i < length; ++i) {
             result |= (((long) this.read()) << (i << 3));
@@ -68,6 +94,91 @@ public class ByteArrayInputStream extends InputStream {
         return result;
     }
 
+    /**
+     * @param length number of bytes
+     * @return true if next {@code length} bytes are already in the buffer of the underlying
+     * {@link ByteBufferBacked} stream (and so they can be decoded without going through {@link #read()})
+     */
+    private boolean isResident(int length) {
+        if (bufferBacked == null || peek != -1) {
+            return false;
+        }
+        buffer = bufferBacked.getBuffer();
+        return buffer.remaining() >= length && (blockLength == -1 || blockLength >= length);
+    }
+
+    /**
+     * @return view of the bytes that follow (peeked byte included) and are already in the buffer of the
+     * underlying {@link ByteBufferBacked} stream (up to the end of the current block, if any) in little-endian byte
+     * order, null if bytes are not available in such form. Nothing is consumed (view must not be written to).
+     */
+    public ByteBuffer peekResident() {
+        if (bufferBacked == null) {
+            return null;
+        }
+        ByteBuffer buffer = bufferBacked.getBuffer();
+        int position = buffer.position(), length = buffer.remaining();
+        if (peek != -1) {
+            if (position == 0) {
+                return null; // peeked byte came from a buffer the stream has already moved past
+            }
+            position--;
+            length++;
+        }
+        if (blockLength != -1) {
+            length = Math.min(length, peek != -1 ? blockLength + 1 : blockLength);
+        }
+        ByteBuffer result = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        result.limit(position + length);
+        result.position(position);
+        return result;
+    }
+
+    private void consumeResident(int length) {
+        buffer.position(buffer.position() + length);
+        if (blockLength != -1) {
+            blockLength -= length;
+        }
+        pos += length;
+    }
+
+    private static long getLittleEndian(ByteBuffer buffer, int offset, int length) {
+        switch (length) {
+            case 1:
+                return buffer.get(offset) & 0xFFL;
+            case 2:
+                return buffer.getShort(offset) & 0xFFFFL;
+            case 3:
+                return (buffer.getShort(offset) & 0xFFFFL) | (buffer.get(offset + 2) & 0xFFL) << 16;
+            case 4:
+                return buffer.getInt(offset) & 0xFFFFFFFFL;
+            case 6:
+                return (buffer.getInt(offset) & 0xFFFFFFFFL) | (buffer.getShort(offset + 4) & 0xFFFFL) << 32;
+            case 8:
+                return buffer.getLong(offset);
+            default:
+                long result = 0;
+                for (int i = 0; i < length; ++i) {
+                    result |= (buffer.get(offset + i) & 0xFFL) << (i << 3);
+                }
+                return result;
+        }
+    }
+
+    /**
+     * Read long written in big-endian format (as some of the column values are).
+     * @param length length of the long to read
+     * @throws IOException in case of EOF
+     * @return the long
+     */
+    public long readBigEndianLong(int length) throws IOException {
+        long result = 0;
+        for (int i = 0; i < length; ++i) {
+            result = (result << 8) | this.read();
+        }
+        return result;
+    }
+
     /**
      * Read fixed length string.
 	 * @param length length of string to read
@@ -78,6 +189,22 @@ public class ByteArrayInputStream extends InputStream {
         return new String(read(length));
     }
 
+    /**
+     * Read fixed length string (decoding it straight from the underlying buffer whenever possible).
+     * @param length length of string to read
+     * @param charset charset of the string
+     * @throws IOException in case of EOF
+     * @return string
+     */
+    public String readString(int length, Charset charset) throws IOException {
+        if (isResident(length) && buffer.hasArray()) {
+            String result = decode(buffer.array(), buffer.arrayOffset() + buffer.position(), length, charset);
+            consumeResident(length);
+            return result;
+        }
+        return decode(read(length), 0, length, charset);
+    }
+
     /**
      * Read variable-length string. Preceding packed integer indicates the length of the string.
 	 * @throws IOException in case of EOF
@@ -93,11 +220,93 @@ public class ByteArrayInputStream extends InputStream {
 	 * @return string
      */
     public String readZeroTerminatedString() throws IOException {
+        int length = residentZeroTerminatedStringLength();
+        if (length != -1) {
+            String result = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            consumeResident(length + 1);
+            return result;
+        }
+        return new String(readZeroTerminatedBytes());
+    }
+
+    /**
+     * Read variable-length string. End is indicated by 0x00 byte.
+     * @param charset charset of the string
+     * @throws IOException in case of EOF
+     * @return string
+     */
+    public String readZeroTerminatedString(Charset charset) throws IOException {
+        int length = residentZeroTerminatedStringLength();
+        if (length != -1) {
+            String result = decode(buffer.array(), buffer.arrayOffset() + buffer.position(), length, charset);
+            consumeResident(length + 1);
+            return result;
+        }
+        byte[] bytes = readZeroTerminatedBytes();
+        return decode(bytes, 0, bytes.length, charset);
+    }
+
+    /**
+     * Read variable-length string (reusing previously decoded instance if there is one in cache).
+     * End is indicated by 0x00 byte.
+     * @param cache cache of strings
+     * @throws IOException in case of EOF
+     * @return string
+     */
+    public String readZeroTerminatedString(StringCache cache) throws IOException {
+        int length = residentZeroTerminatedStringLength();
+        if (length != -1) {
+            String result = cache.get(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            consumeResident(length + 1);
+            return result;
+        }
+        byte[] bytes = readZeroTerminatedBytes();
+        return cache.get(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return length of the zero-terminated string if the whole of it (including terminator) is resident
+     * (and backed by an array), -1 otherwise
+     */
+    private int residentZeroTerminatedStringLength() {
+        if (isResident(1) && buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset() + buffer.position(),
+                limit = blockLength == -1 ? buffer.remaining() : Math.min(buffer.remaining(), blockLength);
+            for (int i = 0; i < limit; i++) {
+                if (array[offset + i] == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private byte[] readZeroTerminatedBytes() throws IOException {
         ByteArrayOutputStream s = new ByteArrayOutputStream();
         for (int b; (b = this.read()) != 0; ) {
             s.writeInteger(b, 1);
         }
-        return new String(s.toByteArray());
+        return s.toByteArray();
+    }
+
+    private static String decode(byte[] bytes, int offset, int length, Charset charset) {
+        if (isAsciiCompatible(charset)) {
+            int i = offset, end = offset + length;
+            while (i < end && bytes[i] >= 0) {
+                i++;
+            }
+            if (i == end) {
+                // pure ASCII (byte to char, no need to go through CharsetDecoder)
+                return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+            }
+        }
+        return new String(bytes, offset, length, charset);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset) ||
+            StandardCharsets.US_ASCII.equals(charset) || "windows-1252".equals(charset.name());
     }
 
     public byte[] read(int length) throws IOException {
@@ -122,7 +331,13 @@ public class ByteArrayInputStream extends InputStream {
 
     public BitSet readBitSet(int length, boolean bigEndian) throws IOException {
         // according to MySQL internals the amount of storage required for N columns is INT((N+7)/8) bytes
-        byte[] bytes = read((length + 7) >> 3);
+        int numberOfBytes = (length + 7) >> 3;
+        if (isResident(numberOfBytes)) {
+            BitSet result = readResidentBitSet(length, numberOfBytes, bigEndian);
+            consumeResident(numberOfBytes);
+            return result;
+        }
+        byte[] bytes = read(numberOfBytes);
         bytes = bigEndian ? bytes : reverse(bytes);
         BitSet result = new BitSet();
         for (int i = 0; i < length; i++) {
@@ -133,6 +348,20 @@ public class ByteArrayInputStream extends InputStream {
         return result;
     }
 
+    private BitSet readResidentBitSet(int length, int numberOfBytes, boolean bigEndian) {
+        int offset = buffer.position();
+        long[] words = new long[(numberOfBytes + 7) >> 3];
+        for (int i = 0; i < numberOfBytes; i++) {
+            long b = buffer.get(bigEndian ? offset + i : offset + numberOfBytes - 1 - i) & 0xFFL;
+            words[i >> 3] |= b << ((i & 7) << 3);
+        }
+        int tail = length & 63;
+        if (tail != 0) {
+            words[words.length - 1] &= (1L << tail) - 1;
+        }
+        return BitSet.valueOf(words);
+    }
+
     private byte[] reverse(byte[] bytes) {
         for (int i = 0, length = bytes.length >> 1; i < length; i++) {
             int j = bytes.length - 1 - i;
@@ -149,14 +378,11 @@ public class ByteArrayInputStream extends InputStream {
 	 * @return integer
      */
     public int readPackedInteger() throws IOException {
-        Number number = readPackedNumber();
-        if (number == null) {
-            throw new IOException("Unexpected NULL where int should have been");
-        }
-        if (number.longValue() > Integer.MAX_VALUE) {
+        long number = readPackedValue("int");
+        if (number > Integer.MAX_VALUE) {
             throw new IOException("Stumbled upon long even though int expected");
         }
-        return number.intValue();
+        return (int) number;
     }
 
     /**
@@ -165,11 +391,23 @@ public class ByteArrayInputStream extends InputStream {
      * @return long
      */
     public long readPackedLong() throws IOException {
-        Number number = readPackedNumber();
-        if (number == null) {
-            throw new IOException("Unexpected NULL where long should have been");
+        return readPackedValue("long");
+    }
+
+    private long readPackedValue(String expectedType) throws IOException {
+        int b = this.read();
+        if (b < 251) {
+            return b;
+        } else if (b == 251) {
+            throw new IOException("Unexpected NULL where " + expectedType + " should have been");
+        } else if (b == 252) {
+            return readInteger(2);
+        } else if (b == 253) {
+            return readInteger(3);
+        } else if (b == 254) {
+            return readLong(8);
         }
-        return number.longValue();
+        throw new IOException("Unexpected packed number byte " + b);
     }
 
     /**
@@ -215,6 +453,13 @@ public class ByteArrayInputStream extends InputStream {
 
     @Override
     public int read() throws IOException {
+        if (isResident(1)) {
+            if (blockLength != -1) {
+                blockLength--;
+            }
+            this.pos += 1;
+            return buffer.get() & 0xFF;
+        }
         int result;
         if (peek == -1) {
             result = readWithinBlockBoundaries();
@@ -229,6 +474,30 @@ public class ByteArrayInputStream extends InputStream {
         return result;
     }
 
+    @Override
+    public long skip(long n) throws IOException {
+        if (n > 0 && n <= Integer.MAX_VALUE && isResident((int) n)) {
+            consumeResident((int) n);
+            return n;
+        }
+        if (n <= 0 || peek != -1) {
+            return super.skip(n);
+        }
+        // let underlying stream skip (e.g. seek) instead of reading bytes in order to discard them
+        long skipped = 0, length = blockLength == -1 ? n : Math.min(n, blockLength);
+        for (long s; skipped < length && (s = inputStream.skip(length - skipped)) > 0; ) {
+            skipped += s;
+        }
+        pos += (int) skipped;
+        if (blockLength != -1) {
+            blockLength -= (int) skipped;
+        }
+        if (skipped < length) {
+            skipped += super.skip(length - skipped);
+        }
+        return skipped;
+    }
+
     private int readWithinBlockBoundaries() throws IOException {
         if (blockLength != -1) {
             if (blockLength == 0) {
@@ -263,6 +532,7 @@ public class ByteArrayInputStream extends InputStream {
 
         if (peek != -1) {
             peek = -1;
+            this.pos += 1;
             read = read <= 0 ? 1 : read + 1;
         }
 
@@ -307,6 +577,8 @@ public class ByteArrayInputStream extends InputStream {
     @Override
     public synchronized void mark(int readlimit) {
         markPosition = pos;
+        markPeek = peek;
+        markBlockLength = blockLength;
         inputStream.mark(readlimit);
     }
 
@@ -318,6 +590,8 @@ public class ByteArrayInputStream extends InputStream {
     @Override
     public synchronized void reset() throws IOException {
         pos = markPosition;
+        peek = markPeek;
+        blockLength = markBlockLength;
         inputStream.reset();
     }
 
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implemented by input streams which keep read-ahead data in a {@link ByteBuffer}. {@link ByteArrayInputStream}
+ * uses it to decode values straight from the buffer (instead of calling {@link java.io.InputStream#read()} once per
+ * byte).
+ */
+public interface ByteBufferBacked {
+
+    /**
+     * @return buffer holding bytes that were already received but not yet consumed (between buffer's position and
+     * limit) in little-endian byte order. Advancing position consumes the bytes. Stream may switch to a different
+     * buffer on {@link java.io.InputStream#read()} (or any other call made to the stream itself) and so the result
+     * must not be cached across such calls.
+     */
+    ByteBuffer getBuffer();
+}
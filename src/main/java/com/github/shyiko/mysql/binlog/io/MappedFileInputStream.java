@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream over a memory-mapped (read-only) file, supporting random access through {@link #seek(long)}.
+ * <p>
+ * Files larger than the window size (2GB by default) are mapped window by window (next window is mapped as soon as
+ * less than 64KB are left in the current one).
+ */
+public class MappedFileInputStream extends InputStream implements ByteBufferBacked {
+
+    private static final int REMAP_THRESHOLD = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private long windowOffset;
+    private ByteBuffer window;
+    private long markPosition;
+
+    public MappedFileInputStream(File file) throws IOException {
+        this(file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param file file to map
+     * @param windowSize max number of bytes mapped at a time
+     * @throws IOException if file cannot be opened or mapped
+     */
+    public MappedFileInputStream(File file, int windowSize) throws IOException {
+        if (windowSize <= REMAP_THRESHOLD) {
+            throw new IllegalArgumentException("Window size must be greater than " + REMAP_THRESHOLD);
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            this.channel = randomAccessFile.getChannel();
+            this.size = channel.size();
+            this.windowSize = windowSize;
+            map(0);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return size of the file
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return offset (within the file) of the next byte to be read
+     */
+    public long position() {
+        return windowOffset + window.position();
+    }
+
+    /**
+     * @param position offset (within the file) of the next byte to be read
+     * @throws IOException if position is outside of the file or mapping fails
+     */
+    public void seek(long position) throws IOException {
+        if (position < 0 || position > size) {
+            throw new EOFException("Position " + position + " is outside of the file (size " + size + ")");
+        }
+        if (position >= windowOffset && position - windowOffset <= window.limit()) {
+            window.position((int) (position - windowOffset));
+        } else {
+            map(position);
+        }
+    }
+
+    @Override
+    public ByteBuffer getBuffer() {
+        if (window.remaining() < REMAP_THRESHOLD && windowOffset + window.limit() < size) {
+            try {
+                map(position());
+            } catch (IOException e) {
+                // leave current window in place (next read() is going to retry and report the failure)
+            }
+        }
+        return window;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!window.hasRemaining() && !nextWindow()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!window.hasRemaining() && !nextWindow()) {
+            return -1;
+        }
+        int read = Math.min(len, window.remaining());
+        window.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, size - position()));
+        seek(position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(size - position(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        markPosition = position();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        seek(markPosition);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean nextWindow() throws IOException {
+        long position = position();
+        if (position >= size) {
+            return false;
+        }
+        map(position);
+        return true;
+    }
+
+    private void map(long position) throws IOException {
+        long length = Math.min(windowSize, size - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+        windowOffset = position;
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.io.IOException;
+
+/**
+ * Implemented by {@link ByteBufferBacked} streams on top of a channel which can be switched to non-blocking mode
+ * (and driven by a {@link java.nio.channels.Selector}).
+ */
+public interface NonBlockingReadable extends ByteBufferBacked {
+
+    /**
+     * Append whatever can be read from the channel without blocking to the buffer (unconsumed bytes are retained).
+     * @return number of bytes read from the channel (0 if nothing was available or buffer is full), -1 in case of EOF
+     * @throws IOException if reading fails
+     */
+    int readAvailable() throws IOException;
+}
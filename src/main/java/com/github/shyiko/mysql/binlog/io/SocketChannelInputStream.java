@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * {@link InputStream} on top of a (blocking) {@link ReadableByteChannel}. Data is read into a single reusable
+ * (optionally direct) {@link ByteBuffer} which is exposed through {@link ByteBufferBacked} so that
+ * {@link ByteArrayInputStream} could decode packet headers and event bodies without going through
+ * {@link #read()} byte by byte. Once channel is switched to non-blocking mode, only {@link #readAvailable()} can be
+ * used.
+ */
+public class SocketChannelInputStream extends InputStream implements NonBlockingReadable {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    public SocketChannelInputStream(ReadableByteChannel channel) {
+        this(channel, 512 * 1024, false);
+    }
+
+    /**
+     * @param channel channel to read from (must be in blocking mode)
+     * @param bufferSize size of the read buffer
+     * @param direct true if buffer should be allocated outside of the heap (saves a copy inside of the channel),
+     * false otherwise
+     */
+    public SocketChannelInputStream(ReadableByteChannel channel, int bufferSize, boolean direct) {
+        this.channel = channel;
+        this.buffer = (direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.limit(0);
+    }
+
+    @Override
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffer.remaining();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!buffer.hasRemaining() && fill() == -1) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            if (len >= buffer.capacity()) {
+                return readChannel(ByteBuffer.wrap(b, off, len));
+            }
+            if (fill() == -1) {
+                return -1;
+            }
+        }
+        int bytesRemainingInBuffer = Math.min(len, buffer.remaining());
+        buffer.get(b, off, bytesRemainingInBuffer);
+        return bytesRemainingInBuffer;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = 0;
+        while (skipped < n) {
+            if (!buffer.hasRemaining() && fill() == -1) {
+                break;
+            }
+            int chunk = (int) Math.min(n - skipped, buffer.remaining());
+            buffer.position(buffer.position() + chunk);
+            skipped += chunk;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int readAvailable() throws IOException {
+        buffer.compact();
+        try {
+            return buffer.hasRemaining() ? channel.read(buffer) : 0;
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private int fill() throws IOException {
+        buffer.clear();
+        int read = readChannel(buffer);
+        buffer.flip();
+        return read;
+    }
+
+    private int readChannel(ByteBuffer target) throws IOException {
+        int read;
+        do {
+            read = channel.read(target);
+        } while (read == 0);
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@link OutputStream} on top of a {@link WritableByteChannel}. Unlike {@link java.nio.channels.Channels#newOutputStream}
+ * it can be used with a channel in non-blocking mode (in which case, whenever socket send buffer is full, writer
+ * waits for the channel to become writable).
+ */
+public class SocketChannelOutputStream extends OutputStream {
+
+    private final WritableByteChannel channel;
+
+    public SocketChannelOutputStream(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        write(ByteBuffer.wrap(b, off, len));
+    }
+
+    /**
+     * Write all remaining bytes of the buffer.
+     */
+    public synchronized void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0 && channel instanceof SelectableChannel) {
+                awaitWritable((SelectableChannel) channel);
+            }
+        }
+    }
+
+    /**
+     * Block until channel (in non-blocking mode) becomes writable. Selector is opened only for the duration of the
+     * wait (send buffer is rarely full) so that channel could be switched back to blocking mode afterwards.
+     */
+    private static void awaitWritable(SelectableChannel channel) throws IOException {
+        Selector selector = Selector.open();
+        try {
+            channel.register(selector, SelectionKey.OP_WRITE);
+            selector.select();
+        } finally {
+            selector.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import java.nio.charset.Charset;
+
+/**
+ * Bounded (direct-mapped) cache of strings keyed by their binary representation. Intended for the values which keep
+ * on repeating from one event to another (database and table names), lookup of which (on hit) allocates nothing.
+ * <p>
+ * Safe to share between threads (entries are immutable, losing a race merely results in a miss).
+ */
+public class StringCache {
+
+    private final Charset charset;
+    private final Entry[] entries;
+    private final int maxLength;
+
+    /**
+     * @param charset charset of the strings
+     * @param capacity number of entries (rounded up to the power of 2)
+     * @param maxLength max length (in bytes) of the string to cache (longer strings are decoded each time)
+     */
+    public StringCache(Charset charset, int capacity, int maxLength) {
+        this.charset = charset;
+        this.entries = new Entry[Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1];
+        this.maxLength = maxLength;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @param bytes array holding binary representation of the string
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     * @return string
+     */
+    public String get(byte[] bytes, int offset, int length) {
+        if (length > maxLength) {
+            return new String(bytes, offset, length, charset);
+        }
+        int hash = 1;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int index = (hash ^ (hash >>> 16)) & (entries.length - 1);
+        Entry entry = entries[index];
+        if (entry != null && entry.hash == hash && entry.matches(bytes, offset, length)) {
+            return entry.value;
+        }
+        entry = new Entry(hash, bytes, offset, length, new String(bytes, offset, length, charset));
+        entries[index] = entry;
+        return entry.value;
+    }
+
+    private static final class Entry {
+
+        private final int hash;
+        private final byte[] bytes;
+        private final String value;
+
+        private Entry(int hash, byte[] bytes, int offset, int length, String value) {
+            this.hash = hash;
+            this.bytes = new byte[length];
+            System.arraycopy(bytes, offset, this.bytes, 0, length);
+            this.value = value;
+        }
+
+        private boolean matches(byte[] bytes, int offset, int length) {
+            if (this.bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.bytes[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -19,6 +19,8 @@ import com.github.shyiko.mysql.binlog.BinaryLogClient;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventHeader;
 import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventChecksumMismatchException;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
 
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -34,12 +36,18 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
     private AtomicLong totalNumberOfEventsSeen = new AtomicLong();
     private AtomicLong totalBytesReceived = new AtomicLong();
     private AtomicLong numberOfSkippedEvents = new AtomicLong();
+    private AtomicLong numberOfChecksumMismatches = new AtomicLong();
     private AtomicLong numberOfDisconnects = new AtomicLong();
+    // null unless created with the client (unverified events are counted by its EventDeserializer)
+    private final BinaryLogClient binaryLogClient;
+    private AtomicLong numberOfUnverifiedEventsBeforeReset = new AtomicLong();
 
     public BinaryLogClientStatistics() {
+        this.binaryLogClient = null;
     }
 
     public BinaryLogClientStatistics(BinaryLogClient binaryLogClient) {
+        this.binaryLogClient = binaryLogClient;
         binaryLogClient.registerEventListener(this);
         binaryLogClient.registerLifecycleListener(this);
     }
@@ -87,6 +95,21 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
         return numberOfSkippedEvents.get();
     }
 
+    @Override
+    public long getNumberOfChecksumMismatches() {
+        return numberOfChecksumMismatches.get();
+    }
+
+    @Override
+    public long getNumberOfUnverifiedEvents() {
+        if (binaryLogClient == null) {
+            return 0;
+        }
+        long numberOfUnverifiedEvents = binaryLogClient.getEventDeserializer().getNumberOfUnverifiedEvents();
+        // max(0, ...) in case EventDeserializer was replaced since the last reset()
+        return Math.max(0, numberOfUnverifiedEvents - numberOfUnverifiedEventsBeforeReset.get());
+    }
+
     @Override
     public long getNumberOfDisconnects() {
         return numberOfDisconnects.get();
@@ -99,7 +122,12 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
         totalNumberOfEventsSeen.set(0);
         totalBytesReceived.set(0);
         numberOfSkippedEvents.set(0);
+        numberOfChecksumMismatches.set(0);
         numberOfDisconnects.set(0);
+        if (binaryLogClient != null) {
+            EventDeserializer eventDeserializer = binaryLogClient.getEventDeserializer();
+            numberOfUnverifiedEventsBeforeReset.set(eventDeserializer.getNumberOfUnverifiedEvents());
+        }
     }
 
     @Override
@@ -114,6 +142,9 @@ public class BinaryLogClientStatistics implements BinaryLogClientStatisticsMXBea
     @Override
     public void onEventDeserializationFailure(BinaryLogClient client, Exception ex) {
         numberOfSkippedEvents.getAndIncrement();
+        if (ex instanceof EventChecksumMismatchException) {
+            numberOfChecksumMismatches.getAndIncrement();
+        }
         lastEventHeader.set(null);
         timestampOfLastEvent.set(getCurrentTimeMillis());
         totalNumberOfEventsSeen.getAndIncrement();
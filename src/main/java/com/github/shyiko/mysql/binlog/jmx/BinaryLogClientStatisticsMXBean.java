@@ -26,6 +26,26 @@ public interface BinaryLogClientStatisticsMXBean {
     long getTotalNumberOfEventsSeen();
     long getTotalBytesReceived();
     long getNumberOfSkippedEvents();
+
+    /**
+     * Number of events skipped because their checksum did not match (subset of {@link #getNumberOfSkippedEvents()}).
+     * Declared as a default method (returning 0) so that existing implementations of this interface keep compiling.
+     * @return number of checksum mismatches since the last {@link #reset()}
+     */
+    default long getNumberOfChecksumMismatches() {
+        return 0;
+    }
+
+    /**
+     * Number of events that were not verified (despite checksum verification being on) because they were not
+     * buffered in full (see
+     * {@link com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer#getNumberOfUnverifiedEvents()}).
+     * @return number of unverified events since the last {@link #reset()}
+     */
+    default long getNumberOfUnverifiedEvents() {
+        return 0;
+    }
+
     long getNumberOfDisconnects();
     void reset();
 
@@ -16,6 +16,7 @@
 package com.github.shyiko.mysql.binlog.network;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.net.Socket;
@@ -25,7 +26,7 @@ import java.security.GeneralSecurityException;
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
  */
-public class DefaultSSLSocketFactory implements SSLSocketFactory {
+public class DefaultSSLSocketFactory implements SSLSocketFactory, SSLEngineFactory {
 
     private final String protocol;
 
@@ -42,13 +43,7 @@ public class DefaultSSLSocketFactory implements SSLSocketFactory {
 
     @Override
     public SSLSocket createSocket(Socket socket) throws SocketException {
-        SSLContext sc;
-        try {
-            sc = SSLContext.getInstance(this.protocol);
-            initSSLContext(sc);
-        } catch (GeneralSecurityException e) {
-            throw new SocketException(e.getMessage());
-        }
+        SSLContext sc = createSSLContext();
         try {
             return (SSLSocket) sc.getSocketFactory()
                 .createSocket(socket, socket.getInetAddress().getHostName(), socket.getPort(), true);
@@ -57,6 +52,41 @@ public class DefaultSSLSocketFactory implements SSLSocketFactory {
         }
     }
 
+    @Override
+    public SSLEngine createSSLEngine(String host, int port) throws SocketException {
+        SSLEngine engine = createSSLContext().createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        return engine;
+    }
+
+    /**
+     * @return true if connection established over a {@link java.nio.channels.SocketChannel} can be secured with
+     * {@link #createSSLEngine(String, int)}, false if subclass overrides {@link #createSocket(Socket)} without also
+     * overriding {@link #createSSLEngine(String, int)} (engine would bypass whatever customization is applied to
+     * the socket, so {@link SSLSocket} is used instead)
+     */
+    public boolean isSSLEngineCapable() {
+        return !isOverridden("createSocket", Socket.class) || isOverridden("createSSLEngine", String.class, int.class);
+    }
+
+    private boolean isOverridden(String name, Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod(name, parameterTypes).getDeclaringClass() != DefaultSSLSocketFactory.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private SSLContext createSSLContext() throws SocketException {
+        try {
+            SSLContext sc = SSLContext.getInstance(this.protocol);
+            initSSLContext(sc);
+            return sc;
+        } catch (GeneralSecurityException e) {
+            throw new SocketException(e.getMessage());
+        }
+    }
+
     protected void initSSLContext(SSLContext sc) throws GeneralSecurityException {
         sc.init(null, null, null);
     }
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network;
+
+import com.github.shyiko.mysql.binlog.io.ByteBufferBacked;
+import com.github.shyiko.mysql.binlog.io.NonBlockingReadable;
+import com.github.shyiko.mysql.binlog.io.SocketChannelOutputStream;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * TLS over a (blocking) {@link SocketChannel} driven by {@link SSLEngine}.
+ * <p>
+ * Records are unwrapped straight into a single application buffer which is reused for the whole lifetime of the
+ * connection and exposed through {@link ByteBufferBacked} (so that {@link
+ * com.github.shyiko.mysql.binlog.io.ByteArrayInputStream} can decode values without going through
+ * {@link InputStream#read()}). Unlike {@link javax.net.ssl.SSLSocket} streams, reads and writes are not serialized
+ * against each other (only writes are).
+ */
+public class SSLEngineChannel {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final SocketChannelOutputStream channelOutputStream;
+    private final SSLEngine engine;
+    private final boolean directBuffer;
+    private ByteBuffer netIn; // encrypted bytes received from the server (between position and limit)
+    private final ByteBuffer appIn; // decrypted bytes not yet consumed (between position and limit)
+    private ByteBuffer netOut;
+    private final Object writeLock = new Object();
+
+    private final InputStream inputStream = new SSLEngineInputStream();
+    private final OutputStream outputStream = new SSLEngineOutputStream();
+
+    /**
+     * @param channel connected (blocking) socket channel
+     * @param engine engine in client mode
+     * @param bufferSize min size of the application buffer
+     * @param directBuffer true if network buffers should be allocated outside of the heap, false otherwise
+     */
+    public SSLEngineChannel(SocketChannel channel, SSLEngine engine, int bufferSize, boolean directBuffer) {
+        this.channel = channel;
+        this.channelOutputStream = new SocketChannelOutputStream(channel);
+        this.engine = engine;
+        this.directBuffer = directBuffer;
+        int packetBufferSize = engine.getSession().getPacketBufferSize();
+        this.netIn = allocate(packetBufferSize);
+        this.netIn.limit(0);
+        this.netOut = allocate(packetBufferSize);
+        this.appIn = ByteBuffer.allocate(Math.max(bufferSize, engine.getSession().getApplicationBufferSize()))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        this.appIn.limit(0);
+    }
+
+    public SSLEngine getEngine() {
+        return engine;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    public void handshake() throws IOException {
+        engine.beginHandshake();
+        HandshakeStatus status = engine.getHandshakeStatus();
+        while (status != HandshakeStatus.FINISHED && status != HandshakeStatus.NOT_HANDSHAKING) {
+            if (status == HandshakeStatus.NEED_TASK) {
+                runDelegatedTasks();
+            } else if (status == HandshakeStatus.NEED_WRAP) {
+                wrap(EMPTY);
+            } else if (!unwrap()) {
+                throw new EOFException("Connection closed during SSL handshake");
+            }
+            status = engine.getHandshakeStatus();
+        }
+    }
+
+    /**
+     * Send close_notify (best effort).
+     */
+    public void closeOutbound() {
+        engine.closeOutbound();
+        try {
+            wrap(EMPTY);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Unwrap one record (reading from the channel as many times as needed). Note that record might not carry any
+     * application data (e.g. in case of handshake or session ticket).
+     * @return false if channel has reached EOF (or engine has been closed) and no more data was produced
+     */
+    private boolean unwrap() throws IOException {
+        appIn.compact();
+        try {
+            while (true) {
+                SSLEngineResult result = engine.unwrap(netIn, appIn);
+                switch (result.getStatus()) {
+                    case OK:
+                        handleHandshakeStatus(result.getHandshakeStatus());
+                        return true;
+                    case BUFFER_UNDERFLOW:
+                        if (!readChannel()) {
+                            return appIn.position() > 0;
+                        }
+                        break;
+                    case BUFFER_OVERFLOW:
+                        if (appIn.position() > 0) {
+                            return true;
+                        }
+                        throw new SSLException("Application buffer is too small (" + appIn.capacity() + " bytes)");
+                    case CLOSED:
+                        return appIn.position() > 0;
+                    default:
+                        throw new SSLException("Unexpected unwrap result " + result);
+                }
+            }
+        } finally {
+            appIn.flip();
+        }
+    }
+
+    /**
+     * Unwrap records fully received so far (without touching the channel).
+     */
+    private void unwrapAvailable() throws IOException {
+        appIn.compact();
+        try {
+            while (netIn.hasRemaining()) {
+                SSLEngineResult result = engine.unwrap(netIn, appIn);
+                if (result.getStatus() != SSLEngineResult.Status.OK) {
+                    break; // BUFFER_UNDERFLOW (partial record), BUFFER_OVERFLOW (application buffer is full) or CLOSED
+                }
+                handleHandshakeStatus(result.getHandshakeStatus());
+            }
+        } finally {
+            appIn.flip();
+        }
+    }
+
+    private int readChannelNonBlocking() throws IOException {
+        netIn.compact();
+        try {
+            return netIn.hasRemaining() ? channel.read(netIn) : 0;
+        } finally {
+            netIn.flip();
+        }
+    }
+
+    private boolean readChannel() throws IOException {
+        netIn.compact();
+        try {
+            if (!netIn.hasRemaining()) {
+                ByteBuffer buffer = allocate(Math.max(netIn.capacity() << 1,
+                    engine.getSession().getPacketBufferSize()));
+                netIn.flip();
+                buffer.put(netIn);
+                netIn = buffer;
+            }
+            int read;
+            while ((read = channel.read(netIn)) == 0) {
+                // blocking channel returns 0 only if there is no room left (which is not the case here)
+            }
+            return read != -1;
+        } finally {
+            netIn.flip();
+        }
+    }
+
+    private void wrap(ByteBuffer src) throws IOException {
+        synchronized (writeLock) {
+            do {
+                netOut.clear();
+                SSLEngineResult result = engine.wrap(src, netOut);
+                switch (result.getStatus()) {
+                    case OK:
+                        break;
+                    case BUFFER_OVERFLOW:
+                        netOut = allocate(Math.max(netOut.capacity() << 1, engine.getSession().getPacketBufferSize()));
+                        continue;
+                    case CLOSED:
+                        if (netOut.position() == 0) {
+                            if (src.hasRemaining()) {
+                                throw new SSLException("SSLEngine is closed");
+                            }
+                            return;
+                        }
+                        break;
+                    default:
+                        throw new SSLException("Unexpected wrap result " + result);
+                }
+                netOut.flip();
+                channelOutputStream.write(netOut);
+                if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+                    runDelegatedTasks();
+                }
+            } while (src.hasRemaining());
+        }
+    }
+
+    private void handleHandshakeStatus(HandshakeStatus status) throws IOException {
+        if (status == HandshakeStatus.NEED_TASK) {
+            runDelegatedTasks();
+        } else if (status == HandshakeStatus.NEED_WRAP) {
+            wrap(EMPTY); // e.g. key update
+        }
+    }
+
+    private void runDelegatedTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return directBuffer ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private class SSLEngineInputStream extends InputStream implements NonBlockingReadable {
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return appIn;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!appIn.hasRemaining() && !fill()) {
+                return -1;
+            }
+            return appIn.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!appIn.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int read = Math.min(len, appIn.remaining());
+            appIn.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0 || !appIn.hasRemaining() && !fill()) {
+                return 0;
+            }
+            int skipped = (int) Math.min(n, appIn.remaining());
+            appIn.position(appIn.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return appIn.remaining();
+        }
+
+        @Override
+        public int readAvailable() throws IOException {
+            int read = readChannelNonBlocking();
+            unwrapAvailable();
+            return read;
+        }
+
+        private boolean fill() throws IOException {
+            while (!appIn.hasRemaining()) {
+                if (!unwrap()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private class SSLEngineOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            wrap(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network;
+
+import javax.net.ssl.SSLEngine;
+import java.net.SocketException;
+
+/**
+ * Optionally implemented by {@link SSLSocketFactory}s capable of producing {@link SSLEngine}s (used when
+ * connection is established over a {@link java.nio.channels.SocketChannel}).
+ */
+public interface SSLEngineFactory {
+
+    /**
+     * @param host server's hostname
+     * @param port server's port
+     * @return engine in client mode
+     * @throws SocketException if engine cannot be created
+     */
+    SSLEngine createSSLEngine(String host, int port) throws SocketException;
+}
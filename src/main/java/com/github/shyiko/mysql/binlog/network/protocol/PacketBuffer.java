@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reusable, growable buffer complete packets are assembled in. Payload of a packet split into
+ * {@link Packet#MAX_LENGTH} chunks (https://dev.mysql.com/doc/internals/en/sending-more-than-16mbyte.html) is read
+ * chunk by chunk straight into the buffer, which grows geometrically (so that assembling a N-byte packet costs O(N)
+ * no matter how many chunks it consists of).
+ * <p>
+ * Buffer that had to grow beyond "maxRetainedCapacity" (e.g. because of a huge LOB transaction) is released once
+ * next packet is read.
+ */
+public class PacketBuffer {
+
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private byte[] bytes;
+    private int length;
+
+    public PacketBuffer() {
+        this(64 * 1024, 16 * 1024 * 1024);
+    }
+
+    /**
+     * @param initialCapacity initial size of the buffer
+     * @param maxRetainedCapacity max size of the buffer kept between packets
+     */
+    public PacketBuffer(int initialCapacity, int maxRetainedCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = Math.max(initialCapacity, maxRetainedCapacity);
+        this.bytes = new byte[initialCapacity];
+    }
+
+    /**
+     * Read payload of the packet (including all of its chunks). Packet header (length + sequence) is expected to be
+     * already consumed.
+     * @param inputStream stream to read packet from
+     * @param packetLength length of the packet (as specified in the header)
+     * @throws IOException in case of EOF
+     */
+    public void read(ByteArrayInputStream inputStream, int packetLength) throws IOException {
+        clear();
+        append(inputStream, packetLength);
+        int chunkLength = packetLength;
+        while (chunkLength == Packet.MAX_LENGTH) {
+            chunkLength = inputStream.readInteger(3);
+            inputStream.skip(1); // 1 byte for sequence
+            append(inputStream, chunkLength);
+        }
+    }
+
+    /**
+     * Discard content of the buffer (releasing it, if it's larger than "maxRetainedCapacity").
+     */
+    public void clear() {
+        if (bytes.length > maxRetainedCapacity) {
+            bytes = new byte[initialCapacity];
+        }
+        length = 0;
+    }
+
+    /**
+     * Append part of the packet's payload (used when packets are framed incrementally, e.g. by a non-blocking reader).
+     * @param buffer buffer to copy bytes from (its position is advanced by {@code length})
+     * @param length number of bytes to copy
+     */
+    public void append(ByteBuffer buffer, int length) {
+        ensureCapacity(this.length + length);
+        buffer.get(bytes, this.length, length);
+        this.length += length;
+    }
+
+    private void append(ByteArrayInputStream inputStream, int chunkLength) throws IOException {
+        ensureCapacity(length + chunkLength);
+        inputStream.fill(bytes, length, chunkLength);
+        length += chunkLength;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            int newCapacity = (int) Math.min(Math.max((long) bytes.length << 1, capacity), Integer.MAX_VALUE - 8);
+            if (newCapacity < capacity) {
+                throw new OutOfMemoryError("Packet is too large (" + capacity + " bytes)");
+            }
+            bytes = Arrays.copyOf(bytes, newCapacity);
+        }
+    }
+
+    /**
+     * @return underlying array (valid until next {@link #read(ByteArrayInputStream, int)})
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return length of the packet
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @param offset offset within the packet
+     * @return stream over packet's content starting from the given offset
+     */
+    public ByteArrayInputStream getInputStream(int offset) {
+        return new ByteArrayInputStream(bytes, offset, length - offset);
+    }
+
+}
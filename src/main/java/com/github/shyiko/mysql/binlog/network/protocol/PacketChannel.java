@@ -18,16 +18,24 @@ package com.github.shyiko.mysql.binlog.network.protocol;
 import com.github.shyiko.mysql.binlog.io.BufferedSocketInputStream;
 import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import com.github.shyiko.mysql.binlog.io.NonBlockingReadable;
+import com.github.shyiko.mysql.binlog.io.SocketChannelInputStream;
+import com.github.shyiko.mysql.binlog.io.SocketChannelOutputStream;
+import com.github.shyiko.mysql.binlog.network.DefaultSSLSocketFactory;
 import com.github.shyiko.mysql.binlog.network.IdentityVerificationException;
+import com.github.shyiko.mysql.binlog.network.SSLEngineChannel;
+import com.github.shyiko.mysql.binlog.network.SSLEngineFactory;
 import com.github.shyiko.mysql.binlog.network.SSLSocketFactory;
 import com.github.shyiko.mysql.binlog.network.protocol.command.Command;
 
 import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.channels.Channel;
+import java.nio.channels.SocketChannel;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
@@ -37,6 +45,10 @@ public class PacketChannel implements Channel {
     private boolean authenticationComplete;
     private boolean isSSL = false;
     private Socket socket;
+    private SocketChannel socketChannel;
+    private boolean directBuffer;
+    private SSLEngineChannel sslEngineChannel;
+    private NonBlockingReadable nonBlockingReadable;
     private ByteArrayInputStream inputStream;
     private ByteArrayOutputStream outputStream;
     private boolean shouldUseSoLinger0 = false;
@@ -51,6 +63,23 @@ public class PacketChannel implements Channel {
         this.outputStream = new ByteArrayOutputStream(socket.getOutputStream());
     }
 
+    /**
+     * @param socketChannel connected (blocking) socket channel
+     * @param bufferSize size of the read buffer
+     * @param directBuffer true if read buffer should be allocated outside of the heap, false otherwise
+     * @throws IOException if channel's output stream cannot be obtained
+     */
+    public PacketChannel(SocketChannel socketChannel, int bufferSize, boolean directBuffer) throws IOException {
+        this.socket = socketChannel.socket();
+        this.socketChannel = socketChannel;
+        this.directBuffer = directBuffer;
+        SocketChannelInputStream socketChannelInputStream =
+            new SocketChannelInputStream(socketChannel, bufferSize, directBuffer);
+        this.nonBlockingReadable = socketChannelInputStream;
+        this.inputStream = new ByteArrayInputStream(socketChannelInputStream);
+        this.outputStream = new ByteArrayOutputStream(new SocketChannelOutputStream(socketChannel));
+    }
+
     public ByteArrayInputStream getInputStream() {
         return inputStream;
     }
@@ -59,6 +88,21 @@ public class PacketChannel implements Channel {
         return outputStream;
     }
 
+    /**
+     * @return underlying socket channel, null if channel was created over a {@link Socket}
+     */
+    public SocketChannel getSocketChannel() {
+        return socketChannel;
+    }
+
+    /**
+     * @return stream backing {@link #getInputStream()} if it can be driven by a {@link java.nio.channels.Selector}
+     * (once socket channel is switched to non-blocking mode), null otherwise
+     */
+    public NonBlockingReadable getNonBlockingReadable() {
+        return nonBlockingReadable;
+    }
+
     public void authenticationComplete() {
         authenticationComplete = true;
     }
@@ -95,19 +139,56 @@ public class PacketChannel implements Channel {
     }
 
     public void upgradeToSSL(SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier) throws IOException {
-        SSLSocket sslSocket = sslSocketFactory.createSocket(this.socket);
-        sslSocket.startHandshake();
-        socket = sslSocket;
-        inputStream = new ByteArrayInputStream(sslSocket.getInputStream());
-        outputStream = new ByteArrayOutputStream(sslSocket.getOutputStream());
-        if (hostnameVerifier != null && !hostnameVerifier.verify(sslSocket.getInetAddress().getHostName(),
-            sslSocket.getSession())) {
-            throw new IdentityVerificationException("\"" + sslSocket.getInetAddress().getHostName() +
-                "\" identity was not confirmed");
+        upgradeToSSL(sslSocketFactory, hostnameVerifier, 512 * 1024);
+    }
+
+    /**
+     * @param sslSocketFactory factory used to layer SSL over the existing connection. If channel was created over a
+     * {@link SocketChannel} and factory is also a {@link SSLEngineFactory}, TLS is handled by {@link SSLEngineChannel}
+     * (instead of {@link SSLSocket}), unless factory is a {@link DefaultSSLSocketFactory} subclass customizing
+     * {@link DefaultSSLSocketFactory#createSocket(Socket)} only
+     * (see {@link DefaultSSLSocketFactory#isSSLEngineCapable()})
+     * @param hostnameVerifier hostname verifier, nullable
+     * @param bufferSize size of the buffer decrypted data is read into
+     * @throws IOException if handshake fails or server's identity was not confirmed
+     */
+    public void upgradeToSSL(SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier, int bufferSize)
+            throws IOException {
+        String hostname = socket.getInetAddress().getHostName();
+        SSLSession session;
+        if (socketChannel != null && isSSLEngineCapable(sslSocketFactory)) {
+            SSLEngineChannel sslChannel = new SSLEngineChannel(socketChannel,
+                ((SSLEngineFactory) sslSocketFactory).createSSLEngine(hostname, socket.getPort()), bufferSize,
+                directBuffer);
+            sslChannel.handshake();
+            sslEngineChannel = sslChannel;
+            nonBlockingReadable = (NonBlockingReadable) sslChannel.getInputStream();
+            inputStream = new ByteArrayInputStream(sslChannel.getInputStream());
+            outputStream = new ByteArrayOutputStream(sslChannel.getOutputStream());
+            session = sslChannel.getEngine().getSession();
+        } else {
+            SSLSocket sslSocket = sslSocketFactory.createSocket(this.socket);
+            sslSocket.startHandshake();
+            socket = sslSocket;
+            nonBlockingReadable = null;
+            inputStream = new ByteArrayInputStream(
+                new BufferedSocketInputStream(sslSocket.getInputStream(), bufferSize));
+            outputStream = new ByteArrayOutputStream(sslSocket.getOutputStream());
+            session = sslSocket.getSession();
+        }
+        if (hostnameVerifier != null && !hostnameVerifier.verify(hostname, session)) {
+            throw new IdentityVerificationException("\"" + hostname + "\" identity was not confirmed");
         }
         isSSL = true;
     }
 
+    private static boolean isSSLEngineCapable(SSLSocketFactory sslSocketFactory) {
+        if (sslSocketFactory instanceof DefaultSSLSocketFactory) {
+            return ((DefaultSSLSocketFactory) sslSocketFactory).isSSLEngineCapable();
+        }
+        return sslSocketFactory instanceof SSLEngineFactory;
+    }
+
     public boolean isSSL() {
         return isSSL;
     }
@@ -123,6 +204,9 @@ public class PacketChannel implements Channel {
 
     @Override
     public void close() throws IOException {
+        if (sslEngineChannel != null) {
+            sslEngineChannel.closeOutbound();
+        }
         if (shouldUseSoLinger0) {
             try {
                 socket.setSoLinger(true, 0);
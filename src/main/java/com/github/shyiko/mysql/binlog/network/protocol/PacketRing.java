@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer/single-consumer ring of preallocated {@link PacketBuffer}s.
+ * <p>
+ * Producer {@link #claim()}s a free slot, fills it and {@link #publish()}es it. Consumer {@link #take()}s the oldest
+ * published slot and {@link #release()}s it once done. Producer is blocked while the ring is full (backpressure),
+ * consumer - while it's empty. Producer signals the end of the stream (or a failure) with {@link #close(Exception)}.
+ */
+public class PacketRing {
+
+    private final PacketBuffer[] slots;
+
+    private volatile long head; // next slot to take (written by consumer only)
+    private volatile long tail; // next slot to publish (written by producer only)
+    private volatile boolean closed;
+    private volatile Exception failure;
+
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param capacity number of slots
+     * @param slotInitialCapacity initial size of each slot
+     * @param slotMaxRetainedCapacity max size of each slot kept between packets
+     */
+    public PacketRing(int capacity, int slotInitialCapacity, int slotMaxRetainedCapacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        slots = new PacketBuffer[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new PacketBuffer(slotInitialCapacity, slotMaxRetainedCapacity);
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return next free slot (waiting for one to become available if ring is full), null if ring was closed
+     */
+    public PacketBuffer claim() {
+        long position = tail;
+        while (position - head == slots.length) {
+            if (closed) {
+                return null;
+            }
+            waitingProducer = Thread.currentThread();
+            if (position - head == slots.length && !closed) {
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+        }
+        return closed ? null : slots[(int) (position % slots.length)];
+    }
+
+    /**
+     * Non-blocking version of {@link #claim()}.
+     * @return next free slot, null if ring is full or closed
+     */
+    public PacketBuffer tryClaim() {
+        long position = tail;
+        return closed || position - head == slots.length ? null : slots[(int) (position % slots.length)];
+    }
+
+    /**
+     * Make slot returned by the last {@link #claim()} available to the consumer.
+     */
+    public void publish() {
+        tail = tail + 1;
+        unpark(waitingConsumer);
+    }
+
+    /**
+     * @return oldest published slot (waiting for one to become available if ring is empty), null if ring was closed
+     * and all published slots were consumed
+     * @throws IOException if producer has failed
+     */
+    public PacketBuffer take() throws IOException {
+        long position = head;
+        while (position == tail) {
+            if (closed) {
+                if (position != tail) {
+                    break; // slot published right before close
+                }
+                Exception exception = failure;
+                if (exception == null) {
+                    return null;
+                }
+                throw exception instanceof IOException ? (IOException) exception : new IOException(exception);
+            }
+            waitingConsumer = Thread.currentThread();
+            if (position == tail && !closed) {
+                LockSupport.park(this);
+            }
+            waitingConsumer = null;
+        }
+        return slots[(int) (position % slots.length)];
+    }
+
+    /**
+     * Non-blocking version of {@link #take()}.
+     * @return oldest published slot, null if there is none (use {@link #isClosed()} / {@link #getFailure()} to tell
+     * whether more are coming)
+     */
+    public PacketBuffer poll() {
+        long position = head;
+        return position == tail ? null : slots[(int) (position % slots.length)];
+    }
+
+    /**
+     * Return slot obtained with the last {@link #take()} back to the producer.
+     */
+    public void release() {
+        head = head + 1;
+        unpark(waitingProducer);
+    }
+
+    /**
+     * @return number of published slots not yet released by the consumer
+     */
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Close the ring, waking up both producer and consumer. Slots published before the ring was closed are still
+     * delivered to the consumer.
+     * @param failure reason, null in case of regular end of the stream
+     */
+    public synchronized void close(Exception failure) {
+        if (!closed) {
+            this.failure = failure;
+            closed = true;
+        }
+        unpark(waitingProducer);
+        unpark(waitingConsumer);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return failure ring was closed with, null if ring is open or was closed because of a regular end of the stream
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+}
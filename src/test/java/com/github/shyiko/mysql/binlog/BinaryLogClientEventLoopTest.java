@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.network.ServerException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class BinaryLogClientEventLoopTest {
+
+    private FakeMysqlServer server;
+    private BinaryLogClientEventLoop eventLoop;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new FakeMysqlServer();
+        eventLoop = new BinaryLogClientEventLoop(2);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        eventLoop.close();
+        server.close();
+    }
+
+    @Test(timeOut = 15000)
+    public void testEventOrdering() throws Exception {
+        BinaryLogClient[] clients = new BinaryLogClient[3];
+        CapturingEventListener[] eventListeners = new CapturingEventListener[clients.length];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = newClient();
+            clients[i].setSocketChannelBufferSize(64); // smaller than some of the packets
+            eventListeners[i] = new CapturingEventListener();
+            clients[i].registerEventListener(eventListeners[i]);
+            eventLoop.connect(clients[i]);
+        }
+        FakeMysqlServer.Session[] sessions = new FakeMysqlServer.Session[clients.length];
+        for (int i = 0; i < clients.length; i++) {
+            sessions[i] = server.awaitSession(3000);
+            sessions[i].send(FakeMysqlServer.tableMapEvent(1, "db", "t"));
+        }
+        for (int value = 0; value < 500; value++) {
+            for (FakeMysqlServer.Session session : sessions) {
+                session.send(FakeMysqlServer.writeRowsEvent(1, value, -value));
+            }
+        }
+        for (FakeMysqlServer.Session session : sessions) {
+            session.send(FakeMysqlServer.xidEvent(1));
+        }
+        assertEquals(eventLoop.getNumberOfClients(), clients.length);
+        for (CapturingEventListener eventListener : eventListeners) {
+            eventListener.waitFor(EventType.XID, 1, 5000);
+            List<WriteRowsEventData> writeRowsEvents = eventListener.getEvents(WriteRowsEventData.class);
+            assertEquals(writeRowsEvents.size(), 500);
+            for (int value = 0; value < 500; value++) {
+                List<Serializable[]> rows = writeRowsEvents.get(value).getRows();
+                assertEquals(rows.get(0), new Serializable[]{value});
+                assertEquals(rows.get(1), new Serializable[]{-value});
+            }
+        }
+        for (BinaryLogClient client : clients) {
+            client.disconnect();
+        }
+        assertEquals(eventLoop.getNumberOfClients(), 0);
+    }
+
+    @Test(timeOut = 30000)
+    public void testBackpressure() throws Exception {
+        eventLoop.close();
+        eventLoop = new BinaryLogClientEventLoop(Executors.newFixedThreadPool(1), Executors.newCachedThreadPool(), 2);
+        BinaryLogClient client = newClient();
+        final CountDownLatch listenerReleased = new CountDownLatch(1);
+        final List<Serializable> values = new CopyOnWriteArrayList<Serializable>();
+        CountDownEventListener eventListener = new CountDownEventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                try {
+                    listenerReleased.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                if (event.getData() instanceof WriteRowsEventData) {
+                    values.add(((WriteRowsEventData) event.getData()).getRows().get(0)[0]);
+                }
+                super.onEvent(event);
+            }
+        };
+        client.registerEventListener(eventListener);
+        eventLoop.connect(client);
+        final FakeMysqlServer.Session session = server.awaitSession(3000);
+        session.send(FakeMysqlServer.tableMapEvent(1, "db", "t"));
+        final int[] row = new int[16 * 1024]; // 80KB+ per event
+        // 16MB is more than socket buffers (plus packet queue) can hold
+        Future<?> sending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        row[0] = i;
+                        session.send(FakeMysqlServer.writeRowsEvent(1, row));
+                    }
+                    session.send(FakeMysqlServer.xidEvent(1));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        try {
+            sending.get(1, TimeUnit.SECONDS);
+            fail("Event loop kept on reading while listener was blocked");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        listenerReleased.countDown();
+        sending.get(10, TimeUnit.SECONDS);
+        eventListener.waitFor(EventType.XID, 1, 10000);
+        assertEquals(values.size(), 200);
+        for (int i = 0; i < 200; i++) {
+            assertEquals(values.get(i), i);
+        }
+        client.disconnect();
+    }
+
+    @Test(timeOut = 30000)
+    public void testFloodingClientDoesNotStarveOthers() throws Exception {
+        BinaryLogClient floodingClient = newClient();
+        floodingClient.setSocketChannelBufferSize(64); // so that there is always more to read
+        eventLoop.connect(floodingClient);
+        final FakeMysqlServer.Session floodingSession = server.awaitSession(3000);
+        final AtomicBoolean flooding = new AtomicBoolean(true);
+        StringBuilder sb = new StringBuilder("INSERT INTO t VALUES ('");
+        while (sb.length() < 256 * 1024) {
+            sb.append("0123456789abcdef");
+        }
+        final byte[] queryEvent = FakeMysqlServer.queryEvent(sb.append("')").toString());
+        Future<?> sending = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                while (flooding.get()) {
+                    floodingSession.send(queryEvent);
+                }
+                return null;
+            }
+        });
+        try {
+            Thread.sleep(200); // let flooding begin
+            BinaryLogClient client = newClient();
+            client.setKeepAlive(true);
+            client.setKeepAliveInterval(300);
+            client.setHeartbeatInterval(100); // connection is considered lost after 300ms of silence
+            CapturingEventListener eventListener = new CapturingEventListener();
+            client.registerEventListener(eventListener);
+            eventLoop.connect(client);
+            FakeMysqlServer.Session session = server.awaitSession(3000);
+            session.send(FakeMysqlServer.queryEvent("BEGIN"));
+            eventListener.waitFor(EventType.QUERY, 1, 3000); // reads are not starved
+            // no heartbeats are coming
+            assertTrue(session.awaitClosed(3000)); // keepalive timer is not starved
+            server.awaitSession(3000);
+            assertFalse(sending.isDone());
+            client.disconnect();
+        } finally {
+            flooding.set(false);
+            floodingClient.disconnect();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testDisconnectOnEOF() throws Exception {
+        BinaryLogClient client = newClient();
+        CapturingEventListener eventListener = new CapturingEventListener();
+        client.registerEventListener(eventListener);
+        CapturingLifecycleListener lifecycleListener = new CapturingLifecycleListener();
+        client.registerLifecycleListener(lifecycleListener);
+        eventLoop.connect(client);
+        FakeMysqlServer.Session session = server.awaitSession(3000);
+        session.send(FakeMysqlServer.queryEvent("BEGIN"));
+        eventListener.waitFor(EventType.QUERY, 1, 3000);
+        assertTrue(lifecycleListener.connected.await(3000, TimeUnit.MILLISECONDS));
+        session.close();
+        assertTrue(lifecycleListener.disconnected.await(3000, TimeUnit.MILLISECONDS));
+        assertFalse(client.isConnected());
+        assertTrue(lifecycleListener.failures.isEmpty());
+        client.disconnect();
+    }
+
+    @Test(timeOut = 15000)
+    public void testDisconnectOnFailure() throws Exception {
+        BinaryLogClient client = newClient();
+        CapturingLifecycleListener lifecycleListener = new CapturingLifecycleListener();
+        client.registerLifecycleListener(lifecycleListener);
+        eventLoop.connect(client);
+        FakeMysqlServer.Session session = server.awaitSession(3000);
+        session.sendError(1236, "HY000", "Could not find first log file name in binary log index file");
+        assertTrue(lifecycleListener.disconnected.await(3000, TimeUnit.MILLISECONDS));
+        assertFalse(client.isConnected());
+        assertEquals(lifecycleListener.failures.size(), 1);
+        ServerException failure = (ServerException) lifecycleListener.failures.get(0);
+        assertEquals(failure.getErrorCode(), 1236);
+        assertTrue(session.awaitClosed(3000));
+        client.disconnect();
+    }
+
+    @Test(timeOut = 15000)
+    public void testDisconnectOnEventListenerFailureWithRowsDecodingExecutor() throws Exception {
+        BinaryLogClient client = newClient();
+        client.setRowsDecodingExecutor(executor);
+        client.registerEventListener(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                if (event.getData() instanceof WriteRowsEventData) {
+                    throw new IllegalStateException("listener failure");
+                }
+            }
+        });
+        CapturingLifecycleListener lifecycleListener = new CapturingLifecycleListener();
+        client.registerLifecycleListener(lifecycleListener);
+        eventLoop.connect(client);
+        FakeMysqlServer.Session session = server.awaitSession(3000);
+        session.send(FakeMysqlServer.tableMapEvent(1, "db", "t"),
+            FakeMysqlServer.writeRowsEvent(1, 1)); // and nothing after that
+        assertTrue(lifecycleListener.disconnected.await(3000, TimeUnit.MILLISECONDS));
+        assertTrue(session.awaitClosed(3000));
+        assertFalse(client.isConnected());
+        assertEquals(lifecycleListener.failures.size(), 1);
+        assertTrue(lifecycleListener.failures.get(0).getCause() instanceof IllegalStateException);
+        client.disconnect();
+    }
+
+    @Test(timeOut = 15000)
+    public void testKeepAliveReconnect() throws Exception {
+        BinaryLogClient client = newClient();
+        client.setKeepAlive(true);
+        client.setKeepAliveInterval(300);
+        client.setHeartbeatInterval(100); // connection is considered lost after 300ms of silence
+        CapturingEventListener eventListener = new CapturingEventListener();
+        client.registerEventListener(eventListener);
+        eventLoop.connect(client);
+        FakeMysqlServer.Session session = server.awaitSession(3000);
+        session.send(FakeMysqlServer.queryEvent("BEGIN"));
+        eventListener.waitFor(EventType.QUERY, 1, 3000);
+        // no heartbeats are coming
+        FakeMysqlServer.Session restoredSession = server.awaitSession(5000);
+        assertTrue(session.awaitClosed(3000));
+        assertEquals(server.getNumberOfConnections(), 2);
+        restoredSession.send(FakeMysqlServer.queryEvent("COMMIT"));
+        eventListener.waitFor(EventType.QUERY, 1, 3000);
+        assertEquals(eventLoop.getNumberOfClients(), 1);
+        client.disconnect();
+        assertTrue(restoredSession.awaitClosed(3000));
+        assertEquals(eventLoop.getNumberOfClients(), 0);
+    }
+
+    private BinaryLogClient newClient() {
+        BinaryLogClient client = new BinaryLogClient("localhost", server.getPort(), "root", "mysql");
+        client.setUseSocketChannel(true);
+        client.setKeepAlive(false);
+        return client;
+    }
+
+    private static class CapturingLifecycleListener extends BinaryLogClient.AbstractLifecycleListener {
+
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private final CountDownLatch disconnected = new CountDownLatch(1);
+        private final List<Exception> failures = new CopyOnWriteArrayList<Exception>();
+
+        @Override
+        public void onConnect(BinaryLogClient client) {
+            connected.countDown();
+        }
+
+        @Override
+        public void onCommunicationFailure(BinaryLogClient client, Exception ex) {
+            failures.add(ex);
+        }
+
+        @Override
+        public void onDisconnect(BinaryLogClient client) {
+            disconnected.countDown();
+        }
+    }
+
+}
@@ -15,6 +15,11 @@
  */
 package com.github.shyiko.mysql.binlog;
 
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
 import com.github.shyiko.mysql.binlog.jmx.BinaryLogClientStatistics;
 import com.github.shyiko.mysql.binlog.network.SocketFactory;
 import org.testng.annotations.Test;
@@ -22,15 +27,23 @@ import org.testng.annotations.Test;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -178,6 +191,268 @@ public class BinaryLogClientTest {
         }
     }
 
+    @Test(timeOut = 15000)
+    public void testSocketChannel() throws Exception {
+        FakeMysqlServer server = new FakeMysqlServer();
+        try {
+            BinaryLogClient binaryLogClient = new BinaryLogClient("localhost", server.getPort(), "root", "mysql");
+            binaryLogClient.setUseSocketChannel(true);
+            binaryLogClient.setSocketChannelBufferSize(64); // smaller than some of the packets
+            binaryLogClient.setKeepAlive(false);
+            CapturingEventListener eventListener = new CapturingEventListener();
+            binaryLogClient.registerEventListener(eventListener);
+            binaryLogClient.connect(3000);
+            try {
+                assertNotNull(binaryLogClient.channel.getSocketChannel());
+                FakeMysqlServer.Session session = server.awaitSession(3000);
+                session.send(FakeMysqlServer.queryEvent("BEGIN"),
+                    FakeMysqlServer.tableMapEvent(1, "db", "t"),
+                    FakeMysqlServer.writeRowsEvent(1, 1, 2, 3),
+                    FakeMysqlServer.xidEvent(7));
+                eventListener.waitFor(EventType.XID, 1, 3000);
+                List<WriteRowsEventData> writeRowsEvents = eventListener.getEvents(WriteRowsEventData.class);
+                assertEquals(writeRowsEvents.size(), 1);
+                assertEquals(writeRowsEvents.get(0).getRows().size(), 3);
+                assertEquals(writeRowsEvents.get(0).getRows().get(2), new Serializable[]{3});
+                assertEquals(eventListener.getEvents(QueryEventData.class).get(0).getSql(), "BEGIN");
+                assertEquals(binaryLogClient.getBinlogFilename(), "mysql-bin.000001");
+                assertTrue(binaryLogClient.getBinlogPosition() > 4);
+            } finally {
+                binaryLogClient.disconnect();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testReadAhead() throws Exception {
+        FakeMysqlServer server = new FakeMysqlServer();
+        try {
+            BinaryLogClient binaryLogClient = new BinaryLogClient("localhost", server.getPort(), "root", "mysql");
+            binaryLogClient.setReadAheadCapacity(2);
+            binaryLogClient.setKeepAlive(false);
+            final CountDownLatch listenerReleased = new CountDownLatch(1);
+            final List<Serializable> values = new CopyOnWriteArrayList<Serializable>();
+            CapturingEventListener eventListener = new CapturingEventListener() {
+
+                @Override
+                public void onEvent(Event event) {
+                    try {
+                        listenerReleased.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (event.getData() instanceof WriteRowsEventData) {
+                        values.add(((WriteRowsEventData) event.getData()).getRows().get(0)[0]);
+                    }
+                    super.onEvent(event);
+                }
+            };
+            binaryLogClient.registerEventListener(eventListener);
+            binaryLogClient.connect(3000);
+            try {
+                FakeMysqlServer.Session session = server.awaitSession(3000);
+                session.send(FakeMysqlServer.tableMapEvent(1, "db", "t"));
+                for (int i = 0; i < 100; i++) {
+                    session.send(FakeMysqlServer.writeRowsEvent(1, i));
+                }
+                session.send(FakeMysqlServer.xidEvent(1));
+                boolean readAheadThreadStarted = awaitThread("blc-readahead-localhost:" + server.getPort(), 3000);
+                listenerReleased.countDown();
+                assertTrue(readAheadThreadStarted);
+                eventListener.waitFor(EventType.XID, 1, 3000);
+                assertEquals(values.size(), 100);
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(values.get(i), i);
+                }
+            } finally {
+                binaryLogClient.disconnect();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testRowsDecodingExecutor() throws Exception {
+        FakeMysqlServer server = new FakeMysqlServer();
+        ExecutorService rowsDecodingExecutor = Executors.newFixedThreadPool(4);
+        try {
+            BinaryLogClient binaryLogClient = new BinaryLogClient("localhost", server.getPort(), "root", "mysql");
+            binaryLogClient.setKeepAlive(false);
+            binaryLogClient.setRowsDecodingExecutor(rowsDecodingExecutor);
+            final List<String> threads = new CopyOnWriteArrayList<String>();
+            final List<Serializable> values = new CopyOnWriteArrayList<Serializable>();
+            final List<String> rowLists = new CopyOnWriteArrayList<String>();
+            CapturingEventListener eventListener = new CapturingEventListener() {
+
+                @Override
+                public void onEvent(Event event) {
+                    if (event.getData() instanceof WriteRowsEventData) {
+                        List<Serializable[]> rows = ((WriteRowsEventData) event.getData()).getRows();
+                        threads.add(Thread.currentThread().getName());
+                        rowLists.add(rows.getClass().getSimpleName());
+                        values.add(rows.get(0)[0]);
+                    }
+                    super.onEvent(event);
+                }
+            };
+            binaryLogClient.registerEventListener(eventListener);
+            binaryLogClient.connect(3000);
+            try {
+                FakeMysqlServer.Session session = server.awaitSession(3000);
+                session.send(FakeMysqlServer.tableMapEvent(1, "db", "t"));
+                for (int i = 0; i < 100; i++) {
+                    session.send(FakeMysqlServer.writeRowsEvent(1, i));
+                }
+                session.send(FakeMysqlServer.xidEvent(1));
+                eventListener.waitFor(EventType.XID, 1, 3000);
+                assertEquals(values.size(), 100);
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(values.get(i), i);
+                    assertEquals(threads.get(i), "blc-sequencer-localhost:" + server.getPort());
+                    assertEquals(rowLists.get(i), "DeferredRowList");
+                }
+            } finally {
+                binaryLogClient.disconnect();
+            }
+            threads.clear();
+            rowLists.clear();
+            binaryLogClient.setRowsDecodingExecutor(null);
+            binaryLogClient.connect(3000);
+            try {
+                FakeMysqlServer.Session session = server.awaitSession(3000);
+                session.send(FakeMysqlServer.tableMapEvent(1, "db", "t"),
+                    FakeMysqlServer.writeRowsEvent(1, 100),
+                    FakeMysqlServer.xidEvent(2));
+                eventListener.waitFor(EventType.XID, 1, 3000);
+                assertEquals(values.get(100), 100);
+                assertFalse(threads.get(0).startsWith("blc-sequencer-"));
+                assertFalse(rowLists.get(0).equals("DeferredRowList")); // deferred rows are turned back off
+            } finally {
+                binaryLogClient.disconnect();
+            }
+        } finally {
+            rowsDecodingExecutor.shutdownNow();
+            server.close();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testRowsDecodingExecutorWithFailingEventListener() throws Exception {
+        FakeMysqlServer server = new FakeMysqlServer();
+        ExecutorService rowsDecodingExecutor = Executors.newFixedThreadPool(4);
+        try {
+            BinaryLogClient binaryLogClient = new BinaryLogClient("localhost", server.getPort(), "root", "mysql");
+            binaryLogClient.setKeepAlive(false);
+            binaryLogClient.setRowsDecodingExecutor(rowsDecodingExecutor);
+            binaryLogClient.registerEventListener(new BinaryLogClient.EventListener() {
+
+                @Override
+                public void onEvent(Event event) {
+                    if (event.getData() instanceof WriteRowsEventData) {
+                        throw new IllegalStateException("listener failure");
+                    }
+                }
+            });
+            final List<Exception> failures = new CopyOnWriteArrayList<Exception>();
+            final CountDownLatch disconnected = new CountDownLatch(1);
+            binaryLogClient.registerLifecycleListener(new BinaryLogClient.AbstractLifecycleListener() {
+
+                @Override
+                public void onCommunicationFailure(BinaryLogClient client, Exception ex) {
+                    failures.add(ex);
+                }
+
+                @Override
+                public void onDisconnect(BinaryLogClient client) {
+                    disconnected.countDown();
+                }
+            });
+            binaryLogClient.connect(3000);
+            try {
+                FakeMysqlServer.Session session = server.awaitSession(3000);
+                session.send(FakeMysqlServer.tableMapEvent(1, "db", "t"),
+                    FakeMysqlServer.writeRowsEvent(1, 1)); // and nothing after that
+                assertTrue(disconnected.await(3000, TimeUnit.MILLISECONDS));
+                assertTrue(session.awaitClosed(3000));
+                assertEquals(failures.size(), 1);
+                assertTrue(failures.get(0).getMessage().contains("choked on"), failures.get(0).getMessage());
+                assertTrue(failures.get(0).getCause() instanceof IllegalStateException);
+                assertFalse(binaryLogClient.isConnected());
+            } finally {
+                binaryLogClient.disconnect();
+            }
+        } finally {
+            rowsDecodingExecutor.shutdownNow();
+            server.close();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testHeaderOnlyWithGtidSet() throws Exception {
+        FakeMysqlServer server = new FakeMysqlServer();
+        try {
+            BinaryLogClient binaryLogClient = new BinaryLogClient("localhost", server.getPort(), "root", "mysql");
+            binaryLogClient.setKeepAlive(false);
+            binaryLogClient.setGtidSet("");
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            eventDeserializer.setHeaderOnly(true);
+            binaryLogClient.setEventDeserializer(eventDeserializer);
+            final List<Exception> failures = new CopyOnWriteArrayList<Exception>();
+            binaryLogClient.registerLifecycleListener(new BinaryLogClient.AbstractLifecycleListener() {
+
+                @Override
+                public void onCommunicationFailure(BinaryLogClient client, Exception ex) {
+                    failures.add(ex);
+                }
+
+                @Override
+                public void onEventDeserializationFailure(BinaryLogClient client, Exception ex) {
+                    failures.add(ex);
+                }
+            });
+            CapturingEventListener eventListener = new CapturingEventListener();
+            binaryLogClient.registerEventListener(eventListener);
+            binaryLogClient.connect(3000);
+            try {
+                UUID serverId = UUID.fromString("24bc7850-2c16-11e6-a073-0242ac110002");
+                FakeMysqlServer.Session session = server.awaitSession(3000);
+                session.send(FakeMysqlServer.gtidEvent(serverId, 1),
+                    FakeMysqlServer.queryEvent("BEGIN"),
+                    FakeMysqlServer.tableMapEvent(1, "db", "t"),
+                    FakeMysqlServer.writeRowsEvent(1, 1),
+                    FakeMysqlServer.xidEvent(1),
+                    FakeMysqlServer.gtidEvent(serverId, 2),
+                    FakeMysqlServer.queryEvent("CREATE TABLE t2 (id INT)"),
+                    FakeMysqlServer.gtidEvent(serverId, 3),
+                    FakeMysqlServer.queryEvent("BEGIN"));
+                eventListener.waitFor(EventType.QUERY, 3, 3000);
+                assertTrue(failures.isEmpty(), failures.toString());
+                assertTrue(binaryLogClient.isConnected());
+                assertEquals(eventListener.getEvents(QueryEventData.class).get(1).getSql(), "CREATE TABLE t2 (id INT)");
+                assertEquals(binaryLogClient.getGtidSet(), serverId + ":1-2"); // transaction 3 is not committed yet
+            } finally {
+                binaryLogClient.disconnect();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private static boolean awaitThread(String name, long timeout) throws InterruptedException {
+        for (long deadline = System.currentTimeMillis() + timeout; System.currentTimeMillis() < deadline; ) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals(name) && thread.isAlive()) {
+                    return true;
+                }
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
     /*
     @Test
     public void testDeadlockyCode() throws IOException, InterruptedException {
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.io.MappedFileInputStream;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class BinaryLogFileIndexTest {
+
+    private static final File FILE = new File("src/test/resources/mysql-bin.checksum-crc32");
+
+    @Test
+    public void testCheckpoints() throws Exception {
+        List<Event> events = readAll();
+        BinaryLogFileIndex index = BinaryLogFileIndex.build(FILE, 10);
+        assertEquals(index.getFileLength(), FILE.length());
+        assertEquals(index.getCheckpoints().size(), (events.size() + 9) / 10);
+        BinaryLogFileReader reader = new BinaryLogFileReader(new MappedFileInputStream(FILE));
+        try {
+            for (int i = index.getCheckpoints().size() - 1; i >= 0; i--) {
+                BinaryLogFileIndex.Checkpoint checkpoint = index.getCheckpoints().get(i);
+                EventHeaderV4 header = events.get(i * 10).getHeader();
+                assertEquals(checkpoint.getPosition(), header.getPosition());
+                assertEquals(checkpoint.getTimestamp(), header.getTimestamp());
+                reader.seek(checkpoint.getPosition(), checkpoint.getContextPosition());
+                for (int j = i * 10; j < Math.min(i * 10 + 10, events.size()); j++) {
+                    assertEquals(toString(reader.readEvent()), toString(events.get(j)));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        assertNull(index.findCheckpoint(3));
+        assertEquals(index.findCheckpoint(FILE.length()),
+            index.getCheckpoints().get(index.getCheckpoints().size() - 1));
+    }
+
+    @Test
+    public void testLookupByTimestamp() throws Exception {
+        List<Event> events = readAll();
+        BinaryLogFileIndex index = BinaryLogFileIndex.build(FILE, 7);
+        for (Event event : events) {
+            long timestamp = event.getHeader().getTimestamp();
+            BinaryLogFileIndex.Checkpoint checkpoint = index.findCheckpointByTimestamp(timestamp);
+            for (Event e : events) {
+                EventHeaderV4 header = e.getHeader();
+                if (header.getPosition() >= checkpoint.getPosition()) {
+                    break;
+                }
+                assertTrue(header.getTimestamp() < timestamp || checkpoint == index.getCheckpoints().get(0));
+            }
+        }
+    }
+
+    @Test
+    public void testLookupByGtid() throws Exception {
+        // FORMAT_DESCRIPTION (checksum NONE) followed by GTID events
+        byte[] formatDescription = new byte[4 + 19];
+        DataInputStream fileInputStream = new DataInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.checksum-none"));
+        try {
+            fileInputStream.readFully(formatDescription);
+            int eventLength = new com.github.shyiko.mysql.binlog.io.ByteArrayInputStream(
+                Arrays.copyOfRange(formatDescription, 4 + 9, 4 + 13)).readInteger(4);
+            formatDescription = Arrays.copyOf(formatDescription, 4 + eventLength);
+            fileInputStream.readFully(formatDescription, 4 + 19, eventLength - 19);
+        } finally {
+            fileInputStream.close();
+        }
+        File file = File.createTempFile("mysql-bin", ".gtid");
+        file.deleteOnExit();
+        com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream out =
+            new com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream(new FileOutputStream(file));
+        try {
+            out.write(formatDescription);
+            long position = formatDescription.length;
+            // 101..103 of the first source, followed by 210, 200, ..., 20 of the second one (out of order)
+            for (int i = 1; i <= 3 + 20; i++) {
+                out.writeLong(1525433751 + i, 4); // timestamp
+                out.writeInteger(33, 1); // GTID
+                out.writeLong(1, 4); // server id
+                out.writeLong(19 + 25, 4); // event length
+                out.writeLong(position + 19 + 25, 4); // next position
+                out.writeInteger(0, 2); // flags
+                out.writeInteger(1, 1); // commit flag
+                out.write(new byte[]{(byte) 0xa1, 0x7b, (byte) 0xa7, 0x1e, 0x3c, (byte) 0xa6, 0x11, (byte) 0xe8,
+                    (byte) 0x8b, 0x6d, 0x02, 0x42, (byte) 0xac, 0x11, 0x00, (byte) (i <= 3 ? 0x02 : 0x03)});
+                out.writeLong(i <= 3 ? 100 + i : 10 * (25 - i), 8); // transaction id
+                position += 19 + 25;
+            }
+        } finally {
+            out.close();
+        }
+        BinaryLogFileIndex index = BinaryLogFileIndex.build(file);
+        assertEquals(index.getNumberOfGtids(), 23);
+        assertEquals(index.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110002:101"), formatDescription.length);
+        assertEquals(index.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110002:103"),
+            formatDescription.length + 2 * (19 + 25));
+        assertEquals(index.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110002:104"), -1);
+        assertEquals(index.findPositionByGtid("00000000-0000-0000-0000-000000000000:101"), -1);
+        for (int i = 4; i <= 23; i++) {
+            assertEquals(index.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110003:" + 10 * (25 - i)),
+                formatDescription.length + (i - 1) * (19 + 25));
+        }
+        assertEquals(index.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110003:205"), -1);
+        assertEquals(index.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110003:101"), -1);
+        ByteArrayOutputStream persisted = new ByteArrayOutputStream();
+        index.writeTo(persisted);
+        BinaryLogFileIndex copy = BinaryLogFileIndex.readFrom(new ByteArrayInputStream(persisted.toByteArray()));
+        assertEquals(copy.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110002:102"),
+            formatDescription.length + 19 + 25);
+        assertEquals(copy.findPositionByGtid("a17ba71e-3ca6-11e8-8b6d-0242ac110003:20"),
+            formatDescription.length + 22 * (19 + 25));
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        BinaryLogFileIndex index = BinaryLogFileIndex.build(FILE, 5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+        BinaryLogFileIndex copy = BinaryLogFileIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(copy.getFileLength(), index.getFileLength());
+        assertEquals(copy.getInterval(), 5);
+        assertEquals(copy.getCheckpoints().toString(), index.getCheckpoints().toString());
+        assertEquals(copy.getNumberOfGtids(), index.getNumberOfGtids());
+    }
+
+    private static List<Event> readAll() throws Exception {
+        List<Event> events = new ArrayList<Event>();
+        BinaryLogFileReader reader = new BinaryLogFileReader(new FileInputStream(FILE));
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                events.add(event);
+            }
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+
+    private static String toString(Event event) {
+        return event.toString().replaceAll("\\[B@\\w+", "byte[]");
+    }
+
+}
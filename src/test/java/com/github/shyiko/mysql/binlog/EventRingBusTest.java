@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class EventRingBusTest {
+
+    @Test
+    public void testEachConsumerGetsAllEventsInOrder() throws Exception {
+        for (EventRingBus.WaitStrategy waitStrategy : EventRingBus.WaitStrategy.values()) {
+            EventRingBus bus = new EventRingBus(16, waitStrategy);
+            List<RecordingConsumer> consumers = new ArrayList<RecordingConsumer>();
+            for (int i = 0; i < 3; i++) {
+                RecordingConsumer consumer = new RecordingConsumer(i == 0);
+                consumers.add(consumer);
+                bus.addConsumer("consumer-" + i, consumer);
+            }
+            List<Event> events = new ArrayList<Event>();
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    Event event = new Event(new EventHeaderV4(), null);
+                    events.add(event);
+                    bus.onEvent(event);
+                    assertTrue(bus.getBacklog() <= 16);
+                }
+            } finally {
+                bus.close();
+            }
+            assertEquals(bus.getCursor(), 999);
+            assertEquals(bus.getBacklog(), 0);
+            for (RecordingConsumer consumer : consumers) {
+                assertEquals(consumer.events.size(), events.size());
+                for (int i = 0; i < events.size(); i++) {
+                    assertSame(consumer.events.get(i), events.get(i));
+                    assertEquals(consumer.sequences.get(i).longValue(), i);
+                }
+                assertTrue(consumer.endOfBatch.get(consumer.endOfBatch.size() - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testConsumerFailureDoesNotStopConsumer() throws Exception {
+        EventRingBus bus = new EventRingBus(4, EventRingBus.WaitStrategy.YIELD);
+        final List<Long> sequences = new ArrayList<Long>();
+        bus.addConsumer("consumer", new EventRingBus.EventConsumer() {
+
+            @Override
+            public void onEvent(Event event, long sequence, boolean endOfBatch) throws Exception {
+                if (sequence % 2 == 0) {
+                    throw new UnsupportedOperationException();
+                }
+                sequences.add(sequence);
+            }
+        });
+        try {
+            for (int i = 0; i < 10; i++) {
+                bus.onEvent(new Event(new EventHeaderV4(), null));
+            }
+        } finally {
+            bus.close();
+        }
+        assertEquals(sequences.size(), 5);
+        assertEquals(sequences.get(4).longValue(), 9);
+    }
+
+    @Test(timeOut = 15000)
+    public void testDeadConsumerDoesNotBlockPublisher() throws Exception {
+        EventRingBus bus = new EventRingBus(4, EventRingBus.WaitStrategy.PARK);
+        final List<Long> sequences = new ArrayList<Long>();
+        bus.addConsumer("consumer", new EventRingBus.EventConsumer() {
+
+            @Override
+            public void onEvent(Event event, long sequence, boolean endOfBatch) throws Exception {
+                if (sequence == 2) {
+                    throw new AssertionError();
+                }
+                sequences.add(sequence);
+            }
+        });
+        RecordingConsumer consumer = new RecordingConsumer(false);
+        bus.addConsumer("another-consumer", consumer);
+        try {
+            for (int i = 0; i < 100; i++) {
+                bus.onEvent(new Event(new EventHeaderV4(), null));
+            }
+        } finally {
+            bus.close();
+        }
+        assertEquals(sequences, Arrays.asList(0L, 1L));
+        assertEquals(consumer.events.size(), 100);
+        assertEquals(bus.getBacklog(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testConsumerCannotBeAddedAfterFirstEvent() throws Exception {
+        EventRingBus bus = new EventRingBus(4, EventRingBus.WaitStrategy.PARK);
+        try {
+            bus.onEvent(new Event(new EventHeaderV4(), null));
+            bus.addConsumer("consumer", new RecordingConsumer(false));
+        } finally {
+            bus.close();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSizeMustBePowerOfTwo() throws Exception {
+        new EventRingBus(10, EventRingBus.WaitStrategy.PARK);
+    }
+
+    private static final class RecordingConsumer implements EventRingBus.EventConsumer {
+
+        private final boolean slow;
+        private final List<Event> events = new ArrayList<Event>();
+        private final List<Long> sequences = new ArrayList<Long>();
+        private final List<Boolean> endOfBatch = new ArrayList<Boolean>();
+
+        private RecordingConsumer(boolean slow) {
+            this.slow = slow;
+        }
+
+        @Override
+        public void onEvent(Event event, long sequence, boolean endOfBatch) throws Exception {
+            if (slow && sequence % 100 == 0) {
+                Thread.sleep(1);
+            }
+            events.add(event);
+            sequences.add(sequence);
+            this.endOfBatch.add(endOfBatch);
+        }
+    }
+
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import com.github.shyiko.mysql.binlog.network.protocol.command.CommandType;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MySQL server speaking just enough of the protocol for {@link BinaryLogClient} to connect (greeting,
+ * mysql_native_password authentication, queries client issues before COM_BINLOG_DUMP) and stream binlog events
+ * handed to it by the test. binlog_checksum is reported as NONE.
+ */
+public class FakeMysqlServer implements Closeable {
+
+    private static final int QUERY = 2;
+    private static final int XID = 16;
+    private static final int TABLE_MAP = 19;
+    private static final int WRITE_ROWS = 23;
+    private static final int GTID = 33;
+
+    private final ServerSocketChannel serverSocketChannel;
+    private final BlockingQueue<Session> sessions = new LinkedBlockingQueue<Session>();
+    private final CopyOnWriteArrayList<Session> allSessions = new CopyOnWriteArrayList<Session>();
+    private volatile int numberOfConnections;
+
+    public FakeMysqlServer() throws IOException {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress("localhost", 0));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "fake-mysql-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocketChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of connections accepted so far
+     */
+    public int getNumberOfConnections() {
+        return numberOfConnections;
+    }
+
+    /**
+     * @param timeout timeout in milliseconds
+     * @return next session which requested binlog stream
+     */
+    public Session awaitSession(long timeout) throws InterruptedException {
+        Session session = sessions.poll(timeout, TimeUnit.MILLISECONDS);
+        if (session == null) {
+            throw new AssertionError("No COM_BINLOG_DUMP received in " + timeout + "ms");
+        }
+        return session;
+    }
+
+    private void accept() {
+        while (serverSocketChannel.isOpen()) {
+            final SocketChannel socketChannel;
+            try {
+                socketChannel = serverSocketChannel.accept();
+            } catch (IOException e) {
+                return;
+            }
+            numberOfConnections++;
+            final Session session = new Session(socketChannel);
+            allSessions.add(session);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    session.serve();
+                }
+            }, "fake-mysql-session-" + numberOfConnections);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocketChannel.close();
+        for (Session session : allSessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * Single client connection.
+     */
+    public final class Session {
+
+        private final SocketChannel socketChannel;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private InputStream inputStream;
+        private OutputStream outputStream;
+        private int sequence;
+        private long position = 4;
+        private volatile int numberOfPings;
+
+        private Session(SocketChannel socketChannel) {
+            this.socketChannel = socketChannel;
+        }
+
+        private void serve() {
+            try {
+                inputStream = socketChannel.socket().getInputStream();
+                outputStream = socketChannel.socket().getOutputStream();
+                sequence = 0;
+                writePacket(greeting());
+                readPacket(); // authentication
+                writePacket(new byte[]{0x00, 0, 0, 2, 0, 0, 0});
+                for (byte[] command; (command = readPacket()) != null; ) {
+                    sequence = 1;
+                    int commandType = command[0] & 0xFF;
+                    if (commandType == CommandType.QUERY.ordinal()) {
+                        respondToQuery(new String(command, 1, command.length - 1, "UTF-8").toLowerCase());
+                    } else
+                    if (commandType == CommandType.BINLOG_DUMP.ordinal() ||
+                        commandType == CommandType.BINLOG_DUMP_GTID.ordinal()) {
+                        sessions.add(this);
+                        break;
+                    } else {
+                        writePacket(new byte[]{0x00, 0, 0, 2, 0, 0, 0});
+                    }
+                }
+                // drain whatever client sends while streaming (e.g. COM_PING) until it hangs up
+                for (byte[] command; (command = readPacket()) != null; ) {
+                    if ((command[0] & 0xFF) == CommandType.PING.ordinal()) {
+                        numberOfPings++;
+                    }
+                }
+            } catch (IOException e) {
+                // connection closed
+            } finally {
+                close();
+            }
+        }
+
+        private void respondToQuery(String sql) throws IOException {
+            if (sql.startsWith("select @@server_id")) {
+                writeResultSet("1");
+            } else
+            if (sql.startsWith("show master status") || sql.startsWith("show binary log status")) {
+                writeResultSet("mysql-bin.000001", "4");
+            } else
+            if (sql.startsWith("show global variables")) {
+                writeResultSet(); // binlog_checksum = NONE, gtid_purged = ""
+            } else {
+                writePacket(new byte[]{0x00, 0, 0, 2, 0, 0, 0});
+            }
+        }
+
+        private void writeResultSet(String... row) throws IOException {
+            writePacket(new byte[]{1}); // number of columns
+            writePacket(new byte[]{3, 'd', 'e', 'f'}); // column definition (ignored by the client)
+            writePacket(new byte[]{(byte) 0xFE, 0, 0, 2, 0});
+            if (row.length > 0) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                for (String value : row) {
+                    buffer.writeInteger(value.length(), 1);
+                    buffer.writeString(value);
+                }
+                writePacket(buffer.toByteArray());
+            }
+            writePacket(new byte[]{(byte) 0xFE, 0, 0, 2, 0});
+        }
+
+        /**
+         * Stream events (next position in the header of each event is filled in automatically).
+         * @param events events built with {@link FakeMysqlServer#queryEvent(String)} &amp; co.
+         */
+        public synchronized void send(byte[]... events) throws IOException {
+            for (byte[] event : events) {
+                position += event.length;
+                byte[] packet = new byte[event.length + 1]; // 0x00 (OK) marker followed by the event
+                System.arraycopy(event, 0, packet, 1, event.length);
+                for (int i = 0; i < 4; i++) {
+                    packet[1 + 13 + i] = (byte) (position >>> (i << 3));
+                }
+                writePacket(packet);
+            }
+        }
+
+        /**
+         * Signal the end of the stream (sent by the server in non-blocking mode).
+         */
+        public synchronized void sendEOF() throws IOException {
+            writePacket(new byte[]{(byte) 0xFE, 0, 0, 2, 0});
+        }
+
+        /**
+         * Send ERR packet (which terminates the stream).
+         */
+        public synchronized void sendError(int errorCode, String sqlState, String message) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            buffer.writeInteger(0xFF, 1);
+            buffer.writeInteger(errorCode, 2);
+            buffer.writeString("#" + sqlState);
+            buffer.writeString(message);
+            writePacket(buffer.toByteArray());
+        }
+
+        /**
+         * @return number of COM_PINGs received after COM_BINLOG_DUMP
+         */
+        public int getNumberOfPings() {
+            return numberOfPings;
+        }
+
+        /**
+         * @param timeout timeout in milliseconds
+         * @return true if connection got closed (by either side) within given time
+         */
+        public boolean awaitClosed(long timeout) throws InterruptedException {
+            return closed.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        public void close() {
+            try {
+                socketChannel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            closed.countDown();
+        }
+
+        private byte[] readPacket() throws IOException {
+            byte[] header = new byte[4];
+            if (!readFully(header)) {
+                return null;
+            }
+            byte[] body = new byte[(header[0] & 0xFF) | (header[1] & 0xFF) << 8 | (header[2] & 0xFF) << 16];
+            if (!readFully(body)) {
+                throw new EOFException();
+            }
+            sequence = (header[3] & 0xFF) + 1;
+            return body;
+        }
+
+        private boolean readFully(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                int read = inputStream.read(bytes, offset, bytes.length - offset);
+                if (read == -1) {
+                    return false;
+                }
+                offset += read;
+            }
+            return true;
+        }
+
+        private void writePacket(byte[] body) throws IOException {
+            byte[] packet = new byte[body.length + 4];
+            packet[0] = (byte) body.length;
+            packet[1] = (byte) (body.length >>> 8);
+            packet[2] = (byte) (body.length >>> 16);
+            packet[3] = (byte) sequence++;
+            System.arraycopy(body, 0, packet, 4, body.length);
+            outputStream.write(packet);
+            outputStream.flush();
+        }
+
+        private byte[] greeting() throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            buffer.writeInteger(10, 1); // protocol version
+            buffer.writeZeroTerminatedString("8.0.36");
+            buffer.writeLong(numberOfConnections, 4); // thread id
+            buffer.writeZeroTerminatedString("abcdefgh"); // scramble (first 8 bytes)
+            buffer.writeInteger(0xF7FF, 2); // capabilities (no SSL)
+            buffer.writeInteger(33, 1); // utf8_general_ci
+            buffer.writeInteger(2, 2); // status
+            buffer.write(new byte[13]); // reserved
+            buffer.writeZeroTerminatedString("ijklmnopqrst"); // scramble (last 12 bytes)
+            buffer.writeZeroTerminatedString("mysql_native_password");
+            return buffer.toByteArray();
+        }
+    }
+
+    public static byte[] queryEvent(String sql) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.writeLong(1, 4); // thread id
+        buffer.writeLong(0, 4); // execution time
+        buffer.writeInteger(0, 1); // length of the name of the database
+        buffer.writeInteger(0, 2); // error code
+        buffer.writeInteger(0, 2); // length of status variables block
+        buffer.writeZeroTerminatedString("");
+        buffer.writeString(sql);
+        return event(QUERY, buffer.toByteArray());
+    }
+
+    public static byte[] xidEvent(long xid) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.writeLong(xid, 8);
+        return event(XID, buffer.toByteArray());
+    }
+
+    public static byte[] gtidEvent(UUID sourceId, long transactionId) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.writeInteger(1, 1); // flags
+        for (long bits : new long[]{sourceId.getMostSignificantBits(), sourceId.getLeastSignificantBits()}) {
+            for (int i = 7; i >= 0; i--) {
+                buffer.write((int) (bits >>> (i << 3)) & 0xFF);
+            }
+        }
+        buffer.writeLong(transactionId, 8);
+        return event(GTID, buffer.toByteArray());
+    }
+
+    /**
+     * @return TABLE_MAP of a table with a single INT column
+     */
+    public static byte[] tableMapEvent(long tableId, String database, String table) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.writeLong(tableId, 6);
+        buffer.writeInteger(0, 2); // flags
+        buffer.writeInteger(database.length(), 1);
+        buffer.writeZeroTerminatedString(database);
+        buffer.writeInteger(table.length(), 1);
+        buffer.writeZeroTerminatedString(table);
+        buffer.writeInteger(1, 1); // number of columns
+        buffer.writeInteger(3, 1); // LONG
+        buffer.writeInteger(0, 1); // length of metadata
+        buffer.writeInteger(0, 1); // nullability
+        return event(TABLE_MAP, buffer.toByteArray());
+    }
+
+    /**
+     * @return WRITE_ROWS (v1) for the table described by {@link #tableMapEvent(long, String, String)}, one row per
+     * value
+     */
+    public static byte[] writeRowsEvent(long tableId, int... values) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.writeLong(tableId, 6);
+        buffer.writeInteger(0, 2); // flags
+        buffer.writeInteger(1, 1); // number of columns
+        buffer.writeInteger(1, 1); // columns included
+        for (int value : values) {
+            buffer.writeInteger(0, 1); // null bitmap
+            buffer.writeInteger(value, 4);
+        }
+        return event(WRITE_ROWS, buffer.toByteArray());
+    }
+
+    private static byte[] event(int eventType, byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.writeLong(System.currentTimeMillis() / 1000, 4);
+        buffer.writeInteger(eventType, 1);
+        buffer.writeLong(1, 4); // server id
+        buffer.writeLong(19 + data.length, 4);
+        buffer.writeLong(0, 4); // next position (filled in by Session#send)
+        buffer.writeInteger(0, 2); // flags
+        buffer.write(data);
+        return buffer.toByteArray();
+    }
+}
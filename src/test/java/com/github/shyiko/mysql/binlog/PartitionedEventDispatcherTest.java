@@ -0,0 +1,516 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.DeleteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+import com.github.shyiko.mysql.binlog.event.XidEventData;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class PartitionedEventDispatcherTest {
+
+    private long position;
+
+    @BeforeMethod
+    public void setUp() {
+        position = 4;
+    }
+
+    @Test
+    public void testOrderIsKeptWithinTable() throws Exception {
+        final Map<String, List<Integer>> valuesByTable = new HashMap<String, List<Integer>>();
+        final Map<Long, String> tableById = Collections.synchronizedMap(new HashMap<Long, String>());
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                EventData eventData = event.getData();
+                if (eventData instanceof TableMapEventData) {
+                    TableMapEventData tableMapEventData = (TableMapEventData) eventData;
+                    tableById.put(tableMapEventData.getTableId(), tableMapEventData.getTable());
+                } else if (eventData instanceof WriteRowsEventData) {
+                    WriteRowsEventData writeRowsEventData = (WriteRowsEventData) eventData;
+                    String table = tableById.get(writeRowsEventData.getTableId());
+                    synchronized (valuesByTable) {
+                        List<Integer> values = valuesByTable.get(table);
+                        if (values == null) {
+                            valuesByTable.put(table, values = new ArrayList<Integer>());
+                        }
+                        for (Serializable[] row : writeRowsEventData.getRows()) {
+                            values.add((Integer) row[1]);
+                        }
+                    }
+                }
+            }
+        }, 4, PartitionedEventDispatcher.Partitioning.TABLE);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                int table = i % 7;
+                dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(table, "t" + table, null)));
+                dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(table, new Serializable[]{1, i})));
+            }
+            dispatcher.onEvent(event(EventType.QUERY, query("COMMIT")));
+            assertEquals(dispatcher.getWatermark(), position);
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(valuesByTable.size(), 7);
+        for (int table = 0; table < 7; table++) {
+            List<Integer> values = valuesByTable.get("t" + table);
+            assertEquals(values.size(), 1000 / 7 + (table < 1000 % 7 ? 1 : 0));
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(values.get(i).intValue(), table + i * 7);
+            }
+        }
+    }
+
+    @Test
+    public void testRowsArePartitionedByPrimaryKey() throws Exception {
+        final Map<Integer, String> threadById = new HashMap<Integer, String>();
+        final Map<Integer, List<Integer>> valuesById = new HashMap<Integer, List<Integer>>();
+        final ThreadLocal<Boolean> tableMapSeen = new ThreadLocal<Boolean>();
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                EventData eventData = event.getData();
+                if (eventData instanceof TableMapEventData) {
+                    tableMapSeen.set(true);
+                } else if (eventData instanceof WriteRowsEventData) {
+                    if (tableMapSeen.get() == null) {
+                        failures.add("rows before TABLE_MAP on " + Thread.currentThread().getName());
+                    }
+                    synchronized (valuesById) {
+                        for (Serializable[] row : ((WriteRowsEventData) eventData).getRows()) {
+                            Integer id = (Integer) row[0];
+                            String thread = threadById.put(id, Thread.currentThread().getName());
+                            if (thread != null && !thread.equals(Thread.currentThread().getName())) {
+                                failures.add(id + " delivered on both " + thread + " and " +
+                                    Thread.currentThread().getName());
+                            }
+                            List<Integer> values = valuesById.get(id);
+                            if (values == null) {
+                                valuesById.put(id, values = new ArrayList<Integer>());
+                            }
+                            values.add((Integer) row[1]);
+                        }
+                    }
+                }
+            }
+        }, 4, PartitionedEventDispatcher.Partitioning.PRIMARY_KEY);
+        try {
+            dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(1, "t", Collections.singletonList(0))));
+            for (int i = 0; i < 100; i++) {
+                Serializable[][] rows = new Serializable[10][];
+                for (int id = 0; id < rows.length; id++) {
+                    rows[id] = new Serializable[]{id, i};
+                }
+                dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(1, rows)));
+            }
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(failures, Collections.emptyList());
+        assertEquals(valuesById.size(), 10);
+        assertTrue(new HashSet<String>(threadById.values()).size() > 1);
+        for (List<Integer> values : valuesById.values()) {
+            assertEquals(values.size(), 100);
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(values.get(i).intValue(), i);
+            }
+        }
+        assertEquals(dispatcher.getWatermark(), position);
+    }
+
+    @Test
+    public void testBarrierAndWatermark() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<EventType> delivered = Collections.synchronizedList(new ArrayList<EventType>());
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                EventType eventType = event.getHeader().getEventType();
+                if (eventType == EventType.EXT_WRITE_ROWS) {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                delivered.add(eventType);
+            }
+        }, 2, PartitionedEventDispatcher.Partitioning.TABLE);
+        try {
+            dispatcher.onEvent(event(EventType.QUERY, query("BEGIN")));
+            dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(1, "t", null)));
+            long rowsPosition = position;
+            dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(1, new Serializable[]{1})));
+            assertEquals(dispatcher.getWatermark(), rowsPosition);
+            assertFalse(delivered.contains(EventType.EXT_WRITE_ROWS));
+            dispatcher.onEvent(event(EventType.XID, null)); // doesn't wait for the rows
+            assertEquals(dispatcher.getWatermark(), rowsPosition);
+            assertFalse(delivered.contains(EventType.XID));
+            latch.countDown();
+            dispatcher.onEvent(event(EventType.QUERY, query("CREATE TABLE t2 (id INT)")));
+            assertEquals(dispatcher.getWatermark(), position);
+            assertEquals(delivered, new ArrayList<EventType>(Arrays.asList(EventType.QUERY, EventType.TABLE_MAP,
+                EventType.EXT_WRITE_ROWS, EventType.XID, EventType.QUERY)));
+            dispatcher.onEvent(event(EventType.GTID, null));
+            assertEquals(dispatcher.getWatermark(), position);
+        } finally {
+            latch.countDown();
+            dispatcher.close();
+        }
+        assertEquals(delivered, new ArrayList<EventType>(Arrays.asList(EventType.QUERY, EventType.TABLE_MAP,
+            EventType.EXT_WRITE_ROWS, EventType.XID, EventType.QUERY, EventType.GTID)));
+    }
+
+    @Test
+    public void testCommitIsDeliveredAfterAllRowsOfTransaction() throws Exception {
+        final Map<Integer, Integer> rowsByTransaction = new HashMap<Integer, Integer>();
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        final List<Long> committed = Collections.synchronizedList(new ArrayList<Long>());
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                EventData eventData = event.getData();
+                if (eventData instanceof WriteRowsEventData) {
+                    for (Serializable[] row : ((WriteRowsEventData) eventData).getRows()) {
+                        synchronized (rowsByTransaction) {
+                            Integer transaction = (Integer) row[1];
+                            Integer count = rowsByTransaction.get(transaction);
+                            rowsByTransaction.put(transaction, count == null ? 1 : count + 1);
+                        }
+                    }
+                } else if (eventData instanceof XidEventData) {
+                    long transaction = ((XidEventData) eventData).getXid();
+                    synchronized (rowsByTransaction) {
+                        Integer count = rowsByTransaction.get((int) transaction);
+                        if (count == null || count != transaction % 7 + 1) {
+                            failures.add("XID " + transaction + " delivered after " + count + " row(s)");
+                        }
+                    }
+                    committed.add(transaction);
+                }
+            }
+        }, 4, PartitionedEventDispatcher.Partitioning.PRIMARY_KEY);
+        try {
+            dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(1, "t", Collections.singletonList(0))));
+            for (int i = 0; i < 500; i++) {
+                for (int j = 0; j < i % 7 + 1; j++) {
+                    dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(1, new Serializable[]{i * 7 + j, i})));
+                }
+                dispatcher.onEvent(event(EventType.XID, xid(i)));
+            }
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(failures, Collections.emptyList());
+        assertEquals(new HashSet<Long>(committed).size(), 500);
+        assertEquals(committed.size(), 500);
+    }
+
+    @Test
+    public void testSmallTransactionsAreNotSerialized() throws Exception {
+        final int numberOfTransactions = 200;
+        final long delay = 2;
+        final AtomicInteger concurrency = new AtomicInteger();
+        final AtomicInteger maxConcurrency = new AtomicInteger();
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                if (event.getData() instanceof WriteRowsEventData) {
+                    int current = concurrency.incrementAndGet();
+                    for (int max; (max = maxConcurrency.get()) < current; ) {
+                        maxConcurrency.compareAndSet(max, current);
+                    }
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        concurrency.decrementAndGet();
+                    }
+                }
+            }
+        }, 4, PartitionedEventDispatcher.Partitioning.PRIMARY_KEY);
+        long start = System.nanoTime();
+        try {
+            dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(1, "t", Collections.singletonList(0))));
+            for (int i = 0; i < numberOfTransactions; i++) {
+                dispatcher.onEvent(event(EventType.QUERY, query("BEGIN")));
+                dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(1, new Serializable[]{i, i})));
+                dispatcher.onEvent(event(EventType.XID, xid(i)));
+            }
+        } finally {
+            dispatcher.close();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(maxConcurrency.get() > 1, "1-row transactions were processed one at a time");
+        // serial delivery (XID waiting for the lanes to drain) takes at least numberOfTransactions * delay
+        assertTrue(elapsed < numberOfTransactions * delay * 3 / 4, elapsed + "ms");
+    }
+
+    @Test
+    public void testUpdateAndDeleteRowsArePartitionedByPrimaryKey() throws Exception {
+        final Map<Integer, String> threadById = new HashMap<Integer, String>();
+        final Map<Integer, List<String>> changesById = new HashMap<Integer, List<String>>();
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                EventData eventData = event.getData();
+                List<Serializable[]> rows = new ArrayList<Serializable[]>();
+                if (eventData instanceof WriteRowsEventData) {
+                    rows.addAll(((WriteRowsEventData) eventData).getRows());
+                } else if (eventData instanceof UpdateRowsEventData) {
+                    for (Map.Entry<Serializable[], Serializable[]> row : ((UpdateRowsEventData) eventData).getRows()) {
+                        rows.add(row.getValue());
+                    }
+                } else if (eventData instanceof DeleteRowsEventData) {
+                    rows.addAll(((DeleteRowsEventData) eventData).getRows());
+                }
+                synchronized (changesById) {
+                    for (Serializable[] row : rows) {
+                        Integer id = (Integer) row[0];
+                        String thread = threadById.put(id, Thread.currentThread().getName());
+                        if (thread != null && !thread.equals(Thread.currentThread().getName())) {
+                            failures.add(id + " delivered on both " + thread + " and " +
+                                Thread.currentThread().getName());
+                        }
+                        List<String> changes = changesById.get(id);
+                        if (changes == null) {
+                            changesById.put(id, changes = new ArrayList<String>());
+                        }
+                        changes.add(event.getHeader().getEventType() + "=" + row[1]);
+                    }
+                }
+            }
+        }, 4, PartitionedEventDispatcher.Partitioning.PRIMARY_KEY);
+        try {
+            dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(1, "t", Collections.singletonList(0))));
+            for (int i = 0; i < 100; i++) {
+                Serializable[][] rows = new Serializable[10][];
+                Serializable[][] updatedRows = new Serializable[rows.length * 2][];
+                for (int id = 0; id < rows.length; id++) {
+                    rows[id] = new Serializable[]{id, i};
+                    updatedRows[id * 2] = rows[id];
+                    updatedRows[id * 2 + 1] = new Serializable[]{id, -i};
+                }
+                dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(1, rows)));
+                dispatcher.onEvent(event(EventType.EXT_UPDATE_ROWS, updateRows(1, 0, updatedRows)));
+                for (int id = 0; id < rows.length; id++) {
+                    rows[id] = new Serializable[]{id, -i};
+                }
+                dispatcher.onEvent(event(EventType.EXT_DELETE_ROWS, deleteRows(1, 0, rows)));
+            }
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(failures, Collections.emptyList());
+        assertEquals(changesById.size(), 10);
+        assertTrue(new HashSet<String>(threadById.values()).size() > 1);
+        for (List<String> changes : changesById.values()) {
+            assertEquals(changes.size(), 300);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(changes.subList(i * 3, i * 3 + 3), Arrays.asList("EXT_WRITE_ROWS=" + i,
+                    "EXT_UPDATE_ROWS=" + -i, "EXT_DELETE_ROWS=" + -i));
+            }
+        }
+    }
+
+    @Test
+    public void testPrimaryKeyBarriers() throws Exception {
+        final String dispatcherThread = Thread.currentThread().getName();
+        final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                EventData eventData = event.getData();
+                if (eventData instanceof WriteRowsEventData) {
+                    try {
+                        Thread.sleep(1); // so that lanes lag behind
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    for (int i = 0; i < ((WriteRowsEventData) eventData).getRows().size(); i++) {
+                        delivered.add("row");
+                    }
+                } else if (eventData instanceof UpdateRowsEventData || eventData instanceof DeleteRowsEventData) {
+                    boolean barrier = Thread.currentThread().getName().equals(dispatcherThread);
+                    delivered.add(event.getHeader().getEventType() + (barrier ? "" : " (not a barrier)"));
+                }
+            }
+        }, 4, PartitionedEventDispatcher.Partitioning.PRIMARY_KEY);
+        List<String> expected = new ArrayList<String>();
+        try {
+            dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(1, "t", Collections.singletonList(0))));
+            for (int i = 0; i < 10; i++) {
+                Serializable[][] rows = new Serializable[10][];
+                for (int id = 0; id < rows.length; id++) {
+                    rows[id] = new Serializable[]{id, i};
+                }
+                dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(1, rows)));
+                expected.addAll(Collections.nCopies(rows.length, "row"));
+                switch (i % 3) {
+                    case 0: // primary key update (id 0 and 1 are in different lanes)
+                        dispatcher.onEvent(event(EventType.EXT_UPDATE_ROWS, updateRows(1, 0,
+                            new Serializable[]{0, i}, new Serializable[]{1, i})));
+                        expected.add("EXT_UPDATE_ROWS");
+                        break;
+                    case 1: // primary key is missing from the before image
+                        dispatcher.onEvent(event(EventType.EXT_UPDATE_ROWS, updateRows(1, 1,
+                            new Serializable[]{i}, new Serializable[]{-i})));
+                        expected.add("EXT_UPDATE_ROWS");
+                        break;
+                    default: // primary key is missing from the row image
+                        dispatcher.onEvent(event(EventType.EXT_DELETE_ROWS, deleteRows(1, 1, new Serializable[]{i})));
+                        expected.add("EXT_DELETE_ROWS");
+                }
+            }
+        } finally {
+            dispatcher.close();
+        }
+        assertEquals(delivered, expected);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testListenerFailureIsPropagated() throws Exception {
+        PartitionedEventDispatcher dispatcher = new PartitionedEventDispatcher(new BinaryLogClient.EventListener() {
+
+            @Override
+            public void onEvent(Event event) {
+                if (event.getHeader().getEventType() == EventType.EXT_WRITE_ROWS) {
+                    throw new UnsupportedOperationException();
+                }
+            }
+        }, 2, PartitionedEventDispatcher.Partitioning.TABLE);
+        try {
+            dispatcher.onEvent(event(EventType.TABLE_MAP, tableMap(1, "t", null)));
+            dispatcher.onEvent(event(EventType.EXT_WRITE_ROWS, writeRows(1, new Serializable[]{1})));
+            dispatcher.onEvent(event(EventType.QUERY, query("COMMIT")));
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    private Event event(EventType eventType, EventData eventData) {
+        EventHeaderV4 eventHeader = new EventHeaderV4();
+        eventHeader.setEventType(eventType);
+        eventHeader.setEventLength(100);
+        position += 100;
+        eventHeader.setNextPosition(position);
+        return new Event(eventHeader, eventData);
+    }
+
+    private static TableMapEventData tableMap(long tableId, String table, List<Integer> primaryKey) {
+        TableMapEventData eventData = new TableMapEventData();
+        eventData.setTableId(tableId);
+        eventData.setDatabase("db");
+        eventData.setTable(table);
+        if (primaryKey != null) {
+            TableMapEventMetadata eventMetadata = new TableMapEventMetadata();
+            eventMetadata.setSimplePrimaryKeys(primaryKey);
+            eventData.setEventMetadata(eventMetadata);
+        }
+        return eventData;
+    }
+
+    private static WriteRowsEventData writeRows(long tableId, Serializable[]... rows) {
+        WriteRowsEventData eventData = new WriteRowsEventData();
+        eventData.setTableId(tableId);
+        BitSet includedColumns = new BitSet();
+        includedColumns.set(0, rows[0].length);
+        eventData.setIncludedColumns(includedColumns);
+        eventData.setRows(new ArrayList<Serializable[]>(Arrays.asList(rows)));
+        return eventData;
+    }
+
+    /**
+     * @param rows before and after images (interleaved)
+     */
+    private static UpdateRowsEventData updateRows(long tableId, int firstColumn, Serializable[]... rows) {
+        UpdateRowsEventData eventData = new UpdateRowsEventData();
+        eventData.setTableId(tableId);
+        BitSet includedColumns = new BitSet();
+        includedColumns.set(firstColumn, firstColumn + rows[0].length);
+        eventData.setIncludedColumnsBeforeUpdate(includedColumns);
+        eventData.setIncludedColumns(includedColumns);
+        List<Map.Entry<Serializable[], Serializable[]>> entries =
+            new ArrayList<Map.Entry<Serializable[], Serializable[]>>();
+        for (int i = 0; i < rows.length; i += 2) {
+            entries.add(new AbstractMap.SimpleEntry<Serializable[], Serializable[]>(rows[i], rows[i + 1]));
+        }
+        eventData.setRows(entries);
+        return eventData;
+    }
+
+    private static DeleteRowsEventData deleteRows(long tableId, int firstColumn, Serializable[]... rows) {
+        DeleteRowsEventData eventData = new DeleteRowsEventData();
+        eventData.setTableId(tableId);
+        BitSet includedColumns = new BitSet();
+        includedColumns.set(firstColumn, firstColumn + rows[0].length);
+        eventData.setIncludedColumns(includedColumns);
+        eventData.setRows(new ArrayList<Serializable[]>(Arrays.asList(rows)));
+        return eventData;
+    }
+
+    private static XidEventData xid(long xid) {
+        XidEventData eventData = new XidEventData();
+        eventData.setXid(xid);
+        return eventData;
+    }
+
+    private static QueryEventData query(String sql) {
+        QueryEventData eventData = new QueryEventData();
+        eventData.setSql(sql);
+        return eventData;
+    }
+
+}
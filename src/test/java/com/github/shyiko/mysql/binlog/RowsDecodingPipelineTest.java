@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventDeserializer;
+import org.testng.annotations.Test;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RowsDecodingPipelineTest {
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "blc-sequencer-test");
+        }
+    };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "blc-rows-decoder-test");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    @Test
+    public void testEventsAreDeliveredInOrder() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        BinaryLogFileReader reader = new BinaryLogFileReader(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                expected.add(event.toString());
+            }
+        } finally {
+            reader.close();
+        }
+        final List<String> actual = new ArrayList<String>();
+        final int[] numberOfRowsEvents = {0};
+        RowsDecodingPipeline pipeline = new RowsDecodingPipeline(executor, 16, new RecordingSink() {
+
+            @Override
+            public void onEvent(Event event) {
+                if (EventType.isRowMutation(event.getHeader().getEventType())) {
+                    numberOfRowsEvents[0]++;
+                }
+                actual.add(event.toString());
+            }
+        }, THREAD_FACTORY);
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        eventDeserializer.setDeferredRows(true);
+        reader = new BinaryLogFileReader(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")), eventDeserializer);
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                pipeline.submit(event);
+            }
+        } finally {
+            reader.close();
+        }
+        pipeline.close();
+        assertTrue(numberOfRowsEvents[0] > 0);
+        assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(actual.get(i).replaceAll("\\[B@\\w+", "byte[]"),
+                expected.get(i).replaceAll("\\[B@\\w+", "byte[]"));
+        }
+    }
+
+    @Test
+    public void testSinkFailureIsPropagated() throws Exception {
+        RecordingSink sink = new RecordingSink() {
+
+            @Override
+            public void onEvent(Event event) {
+                throw new IllegalStateException("choked");
+            }
+        };
+        RowsDecodingPipeline pipeline = new RowsDecodingPipeline(executor, 16, sink, THREAD_FACTORY);
+        BinaryLogFileReader reader = new BinaryLogFileReader(new GZIPInputStream(
+            new FileInputStream("src/test/resources/mysql-bin.sakila.gz")));
+        int numberOfFailures = 0;
+        try {
+            for (Event event; (event = reader.readEvent()) != null; ) {
+                pipeline.submit(event);
+            }
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "choked");
+            numberOfFailures++;
+        } finally {
+            reader.close();
+        }
+        try {
+            pipeline.close();
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "choked");
+            numberOfFailures++;
+        }
+        assertTrue(numberOfFailures > 0);
+        assertEquals(sink.deliveryFailures.size(), 1);
+        assertEquals(sink.deliveryFailures.get(0).getMessage(), "choked");
+    }
+
+    private abstract static class RecordingSink implements RowsDecodingPipeline.Sink {
+
+        private final List<Throwable> deliveryFailures = new CopyOnWriteArrayList<Throwable>();
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void onEventDeserializationFailure(Exception exception) {
+            throw new AssertionError(exception);
+        }
+
+        @Override
+        public void onDeliveryFailure(Throwable failure) {
+            deliveryFailures.add(failure);
+        }
+    }
+
+}
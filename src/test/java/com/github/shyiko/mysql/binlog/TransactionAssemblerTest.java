@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog;
+
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventData;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.MariadbGtidEventData;
+import com.github.shyiko.mysql.binlog.event.MySqlGtid;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.event.RotateEventData;
+import com.github.shyiko.mysql.binlog.event.XAPrepareEventData;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TransactionAssemblerTest {
+
+    private static final String SERVER_UUID = "24bc7850-2c16-11e6-a073-0242ac110002";
+
+    private List<Transaction> transactions;
+    private List<Transaction> abortedTransactions;
+    private TransactionAssembler assembler;
+    private long position;
+
+    @BeforeMethod
+    public void setUp() {
+        transactions = new ArrayList<Transaction>();
+        abortedTransactions = new ArrayList<Transaction>();
+        assembler = new TransactionAssembler(new TransactionAssembler.TransactionListener() {
+
+            @Override
+            public void onTransaction(Transaction transaction) {
+                transactions.add(transaction);
+            }
+
+            @Override
+            public void onTransactionAborted(Transaction transaction) {
+                abortedTransactions.add(transaction);
+            }
+        });
+        position = 4;
+    }
+
+    @Test
+    public void testTransactions() throws Exception {
+        RotateEventData rotateEventData = new RotateEventData();
+        rotateEventData.setBinlogFilename("mysql-bin.000001");
+        emit(EventType.ROTATE, rotateEventData);
+        emit(EventType.FORMAT_DESCRIPTION, null);
+        long startPosition = position;
+        emit(EventType.GTID, gtid(1));
+        emit(EventType.QUERY, query("BEGIN"));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null);
+        emit(EventType.XID, null);
+        emit(EventType.GTID, gtid(2));
+        emit(EventType.QUERY, query("CREATE TABLE t (id INT)"));
+        emit(EventType.HEARTBEAT, null);
+        assertEquals(transactions.size(), 2);
+        Transaction transaction = transactions.get(0);
+        assertEquals(transaction.getGtid(), SERVER_UUID + ":1");
+        assertEquals(transaction.getBinlogFilename(), "mysql-bin.000001");
+        assertEquals(transaction.getStartPosition(), startPosition);
+        assertEquals(transaction.getEndPosition(), startPosition + 5 * 100);
+        assertEquals(transaction.getEvents().size(), 5);
+        assertEquals(transaction.getEvents().get(4).getHeader().getEventType(), EventType.XID);
+        assertTrue(transaction.isLastFragment());
+        assertEquals(transaction.getOutcome(), Transaction.Outcome.COMMIT);
+        assertEquals(transactions.get(1).getGtid(), SERVER_UUID + ":2");
+        assertEquals(transactions.get(1).getEvents().size(), 2);
+    }
+
+    @Test
+    public void testTransactionsWithoutGtid() throws Exception {
+        emit(EventType.TABLE_MAP, null); // transaction in progress
+        emit(EventType.EXT_WRITE_ROWS, null);
+        emit(EventType.XID, null);
+        emit(EventType.QUERY, query("BEGIN"));
+        emit(EventType.QUERY, query("INSERT INTO t VALUES (1)"));
+        emit(EventType.QUERY, query("COMMIT"));
+        emit(EventType.QUERY, query("XA START X'01',X'',1"));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null);
+        emit(EventType.QUERY, query("XA END X'01',X'',1"));
+        emit(EventType.XA_PREPARE, null);
+        emit(EventType.QUERY, query("XA COMMIT X'01',X'',1"));
+        assertEquals(transactions.size(), 3);
+        assertNull(transactions.get(0).getGtid());
+        assertEquals(transactions.get(0).getEvents().size(), 3);
+        assertEquals(transactions.get(1).getEvents().size(), 5);
+        assertEquals(transactions.get(2).getEvents().size(), 1);
+    }
+
+    @Test
+    public void testMariadbTransactions() throws Exception {
+        emit(EventType.MARIADB_GTID, mariadbGtid(1, 0));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null);
+        emit(EventType.XID, null);
+        emit(EventType.MARIADB_GTID, mariadbGtid(2, MariadbGtidEventData.FL_STANDALONE));
+        emit(EventType.QUERY, query("CREATE TABLE t (id INT)"));
+        assertEquals(transactions.size(), 2);
+        assertEquals(transactions.get(0).getGtid(), "0-1-1");
+        assertEquals(transactions.get(0).getEvents().size(), 4);
+        assertEquals(transactions.get(1).getGtid(), "0-1-2");
+        assertEquals(transactions.get(1).getEvents().size(), 2);
+    }
+
+    @Test
+    public void testFragments() throws Exception {
+        assembler.setMaxTransactionSize(250);
+        long startPosition = position;
+        emit(EventType.GTID, gtid(1));
+        emit(EventType.QUERY, query("BEGIN"));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null);
+        emit(EventType.XID, null);
+        assertEquals(transactions.size(), 3);
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            assertEquals(transaction.getGtid(), SERVER_UUID + ":1");
+            assertEquals(transaction.getStartPosition(), startPosition);
+            assertEquals(transaction.getFragmentIndex(), i);
+            assertEquals(transaction.isLastFragment(), i == 2);
+        }
+        assertEquals(transactions.get(0).getEvents().size(), 2);
+        assertEquals(transactions.get(0).getEndPosition(), startPosition + 200);
+        assertEquals(transactions.get(0).getCommitTimestamp(), 0);
+        assertEquals(transactions.get(2).getEvents().size(), 1);
+        assertFalse(transactions.get(2).getCommitTimestamp() == 0);
+        assertTrue(abortedTransactions.isEmpty());
+    }
+
+    @Test
+    public void testInterruptedFragments() throws Exception {
+        assembler.setMaxTransactionSize(250);
+        emit(EventType.GTID, gtid(1));
+        emit(EventType.QUERY, query("BEGIN"));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null);
+        long endPosition = position;
+        emit(EventType.GTID, gtid(2)); // transaction 1 never ends
+        emit(EventType.QUERY, query("BEGIN"));
+        emit(EventType.GTID, gtid(3)); // neither does transaction 2 (but nothing of it was delivered)
+        emit(EventType.QUERY, query("CREATE TABLE t (id INT)"));
+        assertEquals(transactions.size(), 2);
+        assertEquals(transactions.get(0).getGtid(), SERVER_UUID + ":1");
+        assertFalse(transactions.get(0).isLastFragment());
+        assertEquals(transactions.get(1).getGtid(), SERVER_UUID + ":3");
+        assertEquals(abortedTransactions.size(), 1);
+        Transaction abortedTransaction = abortedTransactions.get(0);
+        assertEquals(abortedTransaction.getGtid(), SERVER_UUID + ":1");
+        assertEquals(abortedTransaction.getFragmentIndex(), 1);
+        assertTrue(abortedTransaction.isLastFragment());
+        assertNull(abortedTransaction.getOutcome());
+        assertEquals(abortedTransaction.getCommitTimestamp(), 0);
+        assertEquals(abortedTransaction.getEndPosition(), endPosition);
+        assertEquals(abortedTransaction.getEvents().size(), 2);
+        assertEquals(abortedTransaction.getEvents().get(1).getHeader().getEventType(), EventType.EXT_WRITE_ROWS);
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        assembler.setMaxTransactionSize(250);
+        emit(EventType.GTID, gtid(1));
+        emit(EventType.QUERY, query("BEGIN"));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null); // non-transactional table
+        emit(EventType.QUERY, query("ROLLBACK"));
+        emit(EventType.GTID, gtid(2));
+        emit(EventType.QUERY, query("BEGIN"));
+        emit(EventType.QUERY, query("INSERT INTO t VALUES (1)"));
+        emit(EventType.QUERY, query("COMMIT"));
+        assertEquals(transactions.size(), 5); // (GTID, BEGIN), (TABLE_MAP, WRITE_ROWS), (ROLLBACK), ...
+        assertNull(transactions.get(0).getOutcome());
+        assertNull(transactions.get(1).getOutcome());
+        assertEquals(transactions.get(2).getGtid(), SERVER_UUID + ":1");
+        assertTrue(transactions.get(2).isLastFragment());
+        assertEquals(transactions.get(2).getOutcome(), Transaction.Outcome.ROLLBACK);
+        assertNull(transactions.get(3).getOutcome());
+        assertEquals(transactions.get(4).getGtid(), SERVER_UUID + ":2");
+        assertEquals(transactions.get(4).getOutcome(), Transaction.Outcome.COMMIT);
+        assertTrue(abortedTransactions.isEmpty());
+    }
+
+    @Test
+    public void testXaTransactions() throws Exception {
+        emit(EventType.GTID, gtid(1));
+        emit(EventType.QUERY, query("XA START X'01',X'',1"));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null);
+        emit(EventType.QUERY, query("XA END X'01',X'',1"));
+        emit(EventType.XA_PREPARE, xaPrepare(false));
+        emit(EventType.GTID, gtid(2));
+        emit(EventType.QUERY, query("XA COMMIT X'01',X'',1"));
+        emit(EventType.GTID, gtid(3));
+        emit(EventType.QUERY, query("XA START X'02',X'',1"));
+        emit(EventType.QUERY, query("XA END X'02',X'',1"));
+        emit(EventType.XA_PREPARE, null);
+        emit(EventType.GTID, gtid(4));
+        emit(EventType.QUERY, query("XA ROLLBACK X'02',X'',1"));
+        emit(EventType.GTID, gtid(5));
+        emit(EventType.QUERY, query("XA START X'03',X'',1"));
+        emit(EventType.TABLE_MAP, null);
+        emit(EventType.EXT_WRITE_ROWS, null);
+        emit(EventType.QUERY, query("XA END X'03',X'',1"));
+        emit(EventType.XA_PREPARE, xaPrepare(true)); // XA COMMIT ... ONE PHASE
+        assertEquals(transactions.size(), 5);
+        assertEquals(transactions.get(0).getEvents().size(), 6);
+        assertEquals(transactions.get(0).getOutcome(), Transaction.Outcome.XA_PREPARED);
+        assertEquals(transactions.get(1).getOutcome(), Transaction.Outcome.COMMIT);
+        assertEquals(transactions.get(2).getOutcome(), Transaction.Outcome.XA_PREPARED);
+        assertEquals(transactions.get(3).getOutcome(), Transaction.Outcome.ROLLBACK);
+        assertEquals(transactions.get(4).getOutcome(), Transaction.Outcome.COMMIT);
+    }
+
+    private void emit(EventType eventType, EventData eventData) {
+        EventHeaderV4 eventHeader = new EventHeaderV4();
+        eventHeader.setEventType(eventType);
+        eventHeader.setTimestamp(position * 1000);
+        eventHeader.setServerId(1);
+        eventHeader.setEventLength(100);
+        eventHeader.setNextPosition(position += 100);
+        assembler.onEvent(new Event(eventHeader, eventData));
+    }
+
+    private static GtidEventData gtid(long transactionId) {
+        return new GtidEventData(new MySqlGtid(UUID.fromString(SERVER_UUID), transactionId), (byte) 0, 0, 0, 0, 0, 0,
+            0, 0);
+    }
+
+    private static MariadbGtidEventData mariadbGtid(long sequence, int flags) {
+        MariadbGtidEventData eventData = new MariadbGtidEventData();
+        eventData.setSequence(sequence);
+        eventData.setFlags(flags);
+        return eventData;
+    }
+
+    private static XAPrepareEventData xaPrepare(boolean onePhase) {
+        XAPrepareEventData eventData = new XAPrepareEventData();
+        eventData.setOnePhase(onePhase);
+        return eventData;
+    }
+
+    private static QueryEventData query(String sql) {
+        QueryEventData eventData = new QueryEventData();
+        eventData.setSql(sql);
+        return eventData;
+    }
+
+}
@@ -15,13 +15,26 @@
  */
 package com.github.shyiko.mysql.binlog.event.deserialization;
 
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.TableMapEventMetadata;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
 import com.github.shyiko.mysql.binlog.event.deserialization.AbstractRowsEventDataDeserializer.UnixTime;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
 import org.testng.annotations.Test;
 
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TimeZone;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 
 /**
  * @author <a href="mailto:stanley.shyiko@gmail.com">Stanley Shyiko</a>
@@ -45,6 +58,157 @@ public class AbstractRowsEventDataDeserializerTest {
             timestamp(1, 1, 1, 0, 0, 0, 0));
     }
 
+    @Test
+    public void testAsBigDecimal() throws Exception {
+        // examples from mysql-5.7 strings/decimal.c (decimal2bin)
+        byte[] positive = {(byte) 0x81, 0x0D, (byte) 0xFB, 0x38, (byte) 0xD2, 0x04, (byte) 0xD2};
+        byte[] negative = {0x7E, (byte) 0xF2, 0x04, (byte) 0xC7, 0x2D, (byte) 0xFB, 0x2D};
+        assertEquals(AbstractRowsEventDataDeserializer.asBigDecimal(14, 4, positive),
+            new BigDecimal("1234567890.1234"));
+        assertEquals(AbstractRowsEventDataDeserializer.asBigDecimal(14, 4, negative),
+            new BigDecimal("-1234567890.1234"));
+        assertEquals(AbstractRowsEventDataDeserializer.asUnscaledLong(14, 4, negative, 0), -12345678901234L);
+        assertEquals(positive[0], (byte) 0x81); // left unmodified
+        String[] values = {"0.0000", "1.0000", "-1.0000", "999999999999999.9999", "-922337203685477.5808",
+            "123456789012345678901234567890.1234567890", "-0.0000000001", "99999999999999999999999999999.9999999999"};
+        for (String value : values) {
+            BigDecimal expected = new BigDecimal(value);
+            int scale = expected.scale(), precision = Math.max(expected.precision(), scale + 1);
+            for (int p : new int[]{precision, Math.min(precision + 5, 65)}) {
+                byte[] packed = pack(expected, p, scale);
+                assertEquals(AbstractRowsEventDataDeserializer.asBigDecimal(p, scale, packed), expected);
+                if (p <= 18) {
+                    assertEquals(AbstractRowsEventDataDeserializer.asUnscaledLong(p, scale, packed, 0),
+                        expected.unscaledValue().longValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reference (straightforward) implementation of mysql's decimal2bin.
+     */
+    private byte[] pack(BigDecimal value, int precision, int scale) {
+        int[] digitsToBytes = {0, 1, 1, 2, 2, 3, 3, 4, 4, 4};
+        String[] parts = value.abs().toPlainString().split("\\.");
+        StringBuilder ip = new StringBuilder(parts[0]), fp = new StringBuilder(parts.length > 1 ? parts[1] : "");
+        while (ip.length() < precision - scale) {
+            ip.insert(0, '0');
+        }
+        byte[] result = new byte[AbstractRowsEventDataDeserializer.decimalLength(precision, scale)];
+        int offset = 0;
+        // integer part: leading partial group, then groups of 9 digits
+        for (int i = 0, length = ip.length() % 9; i < ip.length(); i += length, length = 9) {
+            offset = putGroup(result, offset, Long.parseLong("0" + ip.substring(i, i + length)),
+                digitsToBytes[length]);
+        }
+        // fractional part: groups of 9 digits, then trailing partial group
+        for (int i = 0; i < fp.length(); i += 9) {
+            int length = Math.min(9, fp.length() - i);
+            offset = putGroup(result, offset, Long.parseLong(fp.substring(i, i + length)), digitsToBytes[length]);
+        }
+        if (value.signum() < 0) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] ^= 0xFF;
+            }
+        }
+        result[0] ^= 0x80;
+        return result;
+    }
+
+    private int putGroup(byte[] bytes, int offset, long value, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>= 8;
+        }
+        return offset + length;
+    }
+
+    @Test
+    public void testRowDecoderPlanIsRecompiledOnTableMapChange() throws Exception {
+        Map<Long, TableMapEventData> tableMapEventByTableId = new HashMap<Long, TableMapEventData>();
+        WriteRowsEventDataDeserializer deserializer = new WriteRowsEventDataDeserializer(tableMapEventByTableId);
+        // table_id=1, flags, 1 column (included), null bitmap, 4 bytes of data
+        byte[] event = {1, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, (byte) 0xFF, 1, 0, 0};
+        TableMapEventData tableMapEvent = tableMapEvent(1, ColumnType.LONG, 0);
+        tableMapEventByTableId.put(1L, tableMapEvent);
+        RowDecoderPlan plan = deserializer.getRowDecoderPlan(tableMapEvent);
+        assertSame(deserializer.getRowDecoderPlan(tableMapEvent), plan);
+        WriteRowsEventData eventData = deserializer.deserialize(new ByteArrayInputStream(event));
+        assertEquals(eventData.getRows().get(0), new Serializable[]{511});
+        // same table id, different definition (e.g. after ALTER TABLE)
+        tableMapEvent = tableMapEvent(1, ColumnType.SHORT, 0);
+        tableMapEventByTableId.put(1L, tableMapEvent);
+        assertNotSame(deserializer.getRowDecoderPlan(tableMapEvent), plan);
+        byte[] shortEvent = new byte[event.length - 2];
+        System.arraycopy(event, 0, shortEvent, 0, shortEvent.length);
+        eventData = deserializer.deserialize(new ByteArrayInputStream(shortEvent));
+        assertEquals(eventData.getRows().get(0), new Serializable[]{511});
+    }
+
+    @Test
+    public void testTemporalValues() throws Exception {
+        Map<Long, TableMapEventData> tableMapEventByTableId = new HashMap<Long, TableMapEventData>();
+        WriteRowsEventDataDeserializer deserializer = new WriteRowsEventDataDeserializer(tableMapEventByTableId);
+        // DATETIME(6) 2020-01-02 03:04:05.123456
+        tableMapEventByTableId.put(1L, tableMapEvent(1, ColumnType.DATETIME_V2, 6));
+        long datetime = (1L << 39) | ((2020L * 13 + 1) << 22) | (2 << 17) | (3 << 12) | (4 << 6) | 5;
+        byte[] event = {1, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, (byte) (datetime >> 32), (byte) (datetime >> 24),
+            (byte) (datetime >> 16), (byte) (datetime >> 8), (byte) datetime,
+            (byte) (123456 >> 16), (byte) (123456 >> 8), (byte) 123456};
+        java.sql.Timestamp timestamp = (java.sql.Timestamp) deserializeFirstCell(deserializer, event);
+        assertEquals(timestamp.getTime(), timestamp(2020, 1, 2, 3, 4, 5, 123));
+        assertEquals(timestamp.getNanos(), 123456000);
+        deserializer.setDeserializeDateAndTimeAsLong(true);
+        deserializer.setMicrosecondsPrecision(true);
+        assertEquals(deserializeFirstCell(deserializer, event), timestamp(2020, 1, 2, 3, 4, 5, 123) * 1000 + 456);
+        deserializer.setDeserializeDateAndTimeAsLong(false);
+        deserializer.setDeserializeDateAndTimeAsJavaTime(true);
+        assertEquals(deserializeFirstCell(deserializer, event), LocalDateTime.of(2020, 1, 2, 3, 4, 5, 123456000));
+        // TIME(2) -00:00:01.10 (see comments in readTimeV2)
+        tableMapEventByTableId.put(1L, tableMapEvent(1, ColumnType.TIME_V2, 2));
+        event = new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, 0x7F, (byte) 0xFF, (byte) 0xFE, (byte) 0xF6};
+        assertEquals(deserializeFirstCell(deserializer, event), Duration.ofMillis(-1100));
+    }
+
+    @Test
+    public void testCharsetFromTableMapMetadata() throws Exception {
+        Map<Long, TableMapEventData> tableMapEventByTableId = new HashMap<Long, TableMapEventData>();
+        WriteRowsEventDataDeserializer deserializer = new WriteRowsEventDataDeserializer(tableMapEventByTableId);
+        TableMapEventData tableMapEvent = tableMapEvent(1, ColumnType.VARCHAR, 10);
+        tableMapEventByTableId.put(1L, tableMapEvent);
+        byte[] event = {1, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, 2, (byte) 0xE9, 't'};
+        TableMapEventMetadata metadata = new TableMapEventMetadata();
+        metadata.setColumnCharsets(Arrays.asList(8)); // latin1_swedish_ci
+        tableMapEvent.setEventMetadata(metadata);
+        assertEquals(deserializeFirstCell(deserializer, event), "\u00e9t");
+        TableMapEventMetadata.DefaultCharset defaultCharset = new TableMapEventMetadata.DefaultCharset();
+        defaultCharset.setDefaultCharsetCollation(255); // utf8mb4_0900_ai_ci
+        defaultCharset.setCharsetCollations(new HashMap<Integer, Integer>());
+        metadata = new TableMapEventMetadata();
+        metadata.setDefaultCharset(defaultCharset);
+        tableMapEvent = tableMapEvent(1, ColumnType.VARCHAR, 10);
+        tableMapEvent.setEventMetadata(metadata);
+        tableMapEventByTableId.put(1L, tableMapEvent);
+        event[11] = 3;
+        event = Arrays.copyOf(event, event.length + 1);
+        System.arraycopy(new byte[]{'a', (byte) 0xC3, (byte) 0xA9}, 0, event, 12, 3);
+        assertEquals(deserializeFirstCell(deserializer, event), "a\u00e9");
+    }
+
+    private Serializable deserializeFirstCell(WriteRowsEventDataDeserializer deserializer, byte[] event)
+            throws Exception {
+        return deserializer.deserialize(new ByteArrayInputStream(event)).getRows().get(0)[0];
+    }
+
+    private TableMapEventData tableMapEvent(long tableId, ColumnType columnType, int meta) {
+        TableMapEventData tableMapEvent = new TableMapEventData();
+        tableMapEvent.setTableId(tableId);
+        tableMapEvent.setColumnTypes(new byte[]{(byte) columnType.getCode()});
+        tableMapEvent.setColumnMetadata(new int[]{meta});
+        return tableMapEvent;
+    }
+
     private void assetTimeEquals(long actual, long expected) {
         assertEquals(actual, expected, actual + " != " + expected +
             ", discrepancy: " + (actual - expected));
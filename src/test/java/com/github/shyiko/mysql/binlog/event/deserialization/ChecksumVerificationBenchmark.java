@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.BinaryLogFileReader;
+import com.github.shyiko.mysql.binlog.io.ByteBufferInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Measures overhead of {@link EventDeserializer#setChecksumVerification(boolean)} by deserializing
+ * src/test/resources/mysql-bin.checksum-crc32 (held in memory) with verification off and on (alternating, so that
+ * both are equally affected by JIT / GC / frequency scaling) and comparing median times.
+ * <p>
+ * Not a test (run it manually):
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes \
+ *     com.github.shyiko.mysql.binlog.event.deserialization.ChecksumVerificationBenchmark [rounds] [passes per round]
+ * </pre>
+ */
+public class ChecksumVerificationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        byte[] bytes = Files.readAllBytes(new File("src/test/resources/mysql-bin.checksum-crc32").toPath());
+        for (int i = 0; i < 10; i++) { // warm-up
+            run(bytes, passes, false);
+            run(bytes, passes, true);
+        }
+        long[] withoutVerification = new long[rounds], withVerification = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            withoutVerification[i] = run(bytes, passes, false);
+            withVerification[i] = run(bytes, passes, true);
+        }
+        long baseline = median(withoutVerification), verified = median(withVerification);
+        double overhead = (verified - baseline) * 100.0 / baseline;
+        System.out.printf("%d x %d bytes: %.2f ms without verification, %.2f ms with verification " +
+            "(median of %d rounds), overhead %.2f%%%n", passes, bytes.length, baseline / 1e6, verified / 1e6, rounds,
+            overhead);
+    }
+
+    private static long run(byte[] bytes, int passes, boolean checksumVerification) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < passes; i++) {
+            EventDeserializer eventDeserializer = new EventDeserializer();
+            eventDeserializer.setChecksumVerification(checksumVerification);
+            BinaryLogFileReader reader = new BinaryLogFileReader(new ByteBufferInputStream(ByteBuffer.wrap(bytes)),
+                eventDeserializer);
+            try {
+                while (reader.readEvent() != null) {
+                    // just deserialize
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+}
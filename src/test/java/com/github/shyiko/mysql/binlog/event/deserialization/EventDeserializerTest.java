@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class EventDeserializerTest {
+
+    @Test
+    public void testColumnarRowsRestoresCustomDeserializers() throws Exception {
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        EventDataDeserializer writeRowsEventDataDeserializer =
+            new WriteRowsEventDataDeserializer(new HashMap<Long, TableMapEventData>());
+        eventDeserializer.setEventDataDeserializer(EventType.WRITE_ROWS, writeRowsEventDataDeserializer);
+        EventDataDeserializer updateRowsEventDataDeserializer =
+            eventDeserializer.getEventDataDeserializer(EventType.UPDATE_ROWS);
+        eventDeserializer.setColumnarRows(true);
+        assertTrue(eventDeserializer.getEventDataDeserializer(EventType.WRITE_ROWS) instanceof
+            RowBatchEventDataDeserializer);
+        eventDeserializer.setColumnarRows(false);
+        assertSame(eventDeserializer.getEventDataDeserializer(EventType.WRITE_ROWS), writeRowsEventDataDeserializer);
+        assertSame(eventDeserializer.getEventDataDeserializer(EventType.UPDATE_ROWS), updateRowsEventDataDeserializer);
+    }
+
+    @Test
+    public void testRowSinkRestoresCustomDeserializers() throws Exception {
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        EventDataDeserializer deleteRowsEventDataDeserializer =
+            new DeleteRowsEventDataDeserializer(new HashMap<Long, TableMapEventData>());
+        eventDeserializer.setEventDataDeserializer(EventType.EXT_DELETE_ROWS, deleteRowsEventDataDeserializer);
+        eventDeserializer.setRowSink(new NoOpRowSink());
+        assertTrue(eventDeserializer.getEventDataDeserializer(EventType.EXT_DELETE_ROWS) instanceof
+            RowSinkEventDataDeserializer);
+        eventDeserializer.setRowSink(null);
+        assertSame(eventDeserializer.getEventDataDeserializer(EventType.EXT_DELETE_ROWS),
+            deleteRowsEventDataDeserializer);
+    }
+
+    @Test
+    public void testDeserializersSetInBetweenAreKept() throws Exception {
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        EventDataDeserializer writeRowsEventDataDeserializer =
+            eventDeserializer.getEventDataDeserializer(EventType.WRITE_ROWS);
+        eventDeserializer.setColumnarRows(true);
+        EventDataDeserializer updateRowsEventDataDeserializer = new NullEventDataDeserializer();
+        eventDeserializer.setEventDataDeserializer(EventType.UPDATE_ROWS, updateRowsEventDataDeserializer);
+        eventDeserializer.setColumnarRows(false);
+        assertSame(eventDeserializer.getEventDataDeserializer(EventType.WRITE_ROWS), writeRowsEventDataDeserializer);
+        assertSame(eventDeserializer.getEventDataDeserializer(EventType.UPDATE_ROWS), updateRowsEventDataDeserializer);
+    }
+
+    @Test
+    public void testTurningOffColumnarRowsKeepsRowSink() throws Exception {
+        EventDeserializer eventDeserializer = new EventDeserializer();
+        EventDataDeserializer writeRowsEventDataDeserializer =
+            eventDeserializer.getEventDataDeserializer(EventType.WRITE_ROWS);
+        eventDeserializer.setColumnarRows(true);
+        eventDeserializer.setRowSink(new NoOpRowSink());
+        eventDeserializer.setColumnarRows(false);
+        assertTrue(eventDeserializer.getEventDataDeserializer(EventType.WRITE_ROWS) instanceof
+            RowSinkEventDataDeserializer);
+        eventDeserializer.setRowSink(null);
+        assertSame(eventDeserializer.getEventDataDeserializer(EventType.WRITE_ROWS), writeRowsEventDataDeserializer);
+    }
+
+    private static class NoOpRowSink implements RowSink {
+
+        @Override
+        public void onRowStart(TableMapEventData tableMapEvent, boolean beforeImage) { }
+
+        @Override
+        public void onNull(int column) { }
+
+        @Override
+        public void onLong(int column, long value) { }
+
+        @Override
+        public void onDouble(int column, double value) { }
+
+        @Override
+        public void onBytes(int column, byte[] buffer, int offset, int length) { }
+
+        @Override
+        public void onDecimal(int column, int precision, int scale, byte[] buffer, int offset, int length) { }
+
+        @Override
+        public void onTemporal(int column, long micros) { }
+
+        @Override
+        public void onRowEnd() { }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import org.testng.annotations.Test;
+
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class PatternTableFilterTest {
+
+    @Test
+    public void testEmptyFilterAcceptsEverything() throws Exception {
+        assertTrue(new PatternTableFilter().accept("db", "table"));
+    }
+
+    @Test
+    public void testIncludes() throws Exception {
+        PatternTableFilter filter = new PatternTableFilter()
+            .include("shop", "orders")
+            .include("audit", null)
+            .include(Pattern.compile("tenant_\\d+"), Pattern.compile("invoice.*"));
+        assertTrue(filter.accept("shop", "orders"));
+        assertFalse(filter.accept("shop", "customers"));
+        assertTrue(filter.accept("audit", "log"));
+        assertTrue(filter.accept("tenant_42", "invoice_lines"));
+        assertFalse(filter.accept("tenant_42", "payments"));
+        assertFalse(filter.accept("tenant_x", "invoice_lines"));
+    }
+
+    @Test
+    public void testExcludesTakePrecedence() throws Exception {
+        PatternTableFilter filter = new PatternTableFilter()
+            .include("shop", null)
+            .exclude("shop", "orders_archive")
+            .exclude(Pattern.compile("shop"), Pattern.compile("tmp_.*"));
+        assertTrue(filter.accept("shop", "orders"));
+        assertFalse(filter.accept("shop", "orders_archive"));
+        assertFalse(filter.accept("shop", "tmp_import"));
+        assertFalse(filter.accept("other", "orders"));
+    }
+
+}
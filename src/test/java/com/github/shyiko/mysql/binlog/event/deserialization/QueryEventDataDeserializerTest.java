@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.event.deserialization;
+
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+
+public class QueryEventDataDeserializerTest {
+
+    private static final String SQL = "INSERT INTO t VALUES ('caf\u00e9 \u00bd')";
+    private static final int LATIN1_SWEDISH_CI = 8;
+    private static final int UTF8MB4_0900_AI_CI = 255;
+
+    @Test
+    public void testCharsetAmongFixedLengthVariables() throws Exception {
+        ByteArrayOutputStream statusVariables = new ByteArrayOutputStream();
+        statusVariables.writeInteger(0, 1); // Q_FLAGS2_CODE
+        statusVariables.writeLong(0, 4);
+        statusVariables.writeInteger(1, 1); // Q_SQL_MODE_CODE
+        statusVariables.writeLong(0x44000000L, 8);
+        statusVariables.writeInteger(6, 1); // Q_CATALOG_NZ_CODE
+        statusVariables.writeInteger(3, 1);
+        statusVariables.writeString("std");
+        statusVariables.writeInteger(3, 1); // Q_AUTO_INCREMENT
+        statusVariables.writeInteger(1, 2);
+        statusVariables.writeInteger(1, 2);
+        writeCharset(statusVariables, LATIN1_SWEDISH_CI);
+        statusVariables.writeInteger(5, 1); // Q_TIME_ZONE_CODE
+        statusVariables.writeInteger(6, 1);
+        statusVariables.writeString("SYSTEM");
+        QueryEventData eventData = deserialize(statusVariables.toByteArray(), "shop",
+            SQL.getBytes("windows-1252"));
+        assertEquals(eventData.getDatabase(), "shop");
+        assertEquals(eventData.getSql(), SQL);
+    }
+
+    @Test
+    public void testCharsetAfterVariableLengthVariables() throws Exception {
+        ByteArrayOutputStream statusVariables = new ByteArrayOutputStream();
+        statusVariables.writeInteger(11, 1); // Q_INVOKER
+        statusVariables.writeInteger(4, 1);
+        statusVariables.writeString("root");
+        statusVariables.writeInteger(9, 1);
+        statusVariables.writeString("localhost");
+        statusVariables.writeInteger(12, 1); // Q_UPDATED_DB_NAMES
+        statusVariables.writeInteger(2, 1);
+        statusVariables.writeZeroTerminatedString("shop");
+        statusVariables.writeZeroTerminatedString("audit");
+        statusVariables.writeInteger(13, 1); // Q_MICROSECONDS
+        statusVariables.writeInteger(123456, 3);
+        statusVariables.writeInteger(2, 1); // Q_CATALOG_CODE (length, name and \0)
+        statusVariables.writeInteger(3, 1);
+        statusVariables.writeZeroTerminatedString("std");
+        writeCharset(statusVariables, UTF8MB4_0900_AI_CI);
+        QueryEventData eventData = deserialize(statusVariables.toByteArray(), "shop",
+            SQL.getBytes(StandardCharsets.UTF_8));
+        assertEquals(eventData.getSql(), SQL);
+    }
+
+    @Test
+    public void testCharsetBehindUnknownVariable() throws Exception {
+        ByteArrayOutputStream statusVariables = new ByteArrayOutputStream();
+        statusVariables.writeInteger(200, 1); // unknown (length of the value cannot be determined)
+        statusVariables.writeInteger(0, 1);
+        writeCharset(statusVariables, LATIN1_SWEDISH_CI);
+        byte[] sql = SQL.getBytes("windows-1252");
+        QueryEventData eventData = deserialize(statusVariables.toByteArray(), "", sql);
+        assertEquals(eventData.getSql(), new String(sql, Charset.defaultCharset()));
+    }
+
+    @Test
+    public void testNoCharset() throws Exception {
+        byte[] sql = SQL.getBytes(StandardCharsets.UTF_8);
+        QueryEventData eventData = deserialize(new byte[0], "", sql);
+        assertEquals(eventData.getDatabase(), "");
+        assertEquals(eventData.getSql(), new String(sql, Charset.defaultCharset()));
+    }
+
+    /**
+     * Q_CHARSET_CODE (character_set_client, collation_connection, collation_server).
+     */
+    private static void writeCharset(ByteArrayOutputStream statusVariables, int collation) throws IOException {
+        statusVariables.writeInteger(4, 1);
+        statusVariables.writeInteger(collation, 2);
+        statusVariables.writeInteger(collation, 2);
+        statusVariables.writeInteger(collation, 2);
+    }
+
+    private static QueryEventData deserialize(byte[] statusVariables, String database, byte[] sql)
+            throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.writeLong(1, 4); // thread id
+        buffer.writeLong(0, 4); // execution time
+        buffer.writeInteger(database.length(), 1);
+        buffer.writeInteger(0, 2); // error code
+        buffer.writeInteger(statusVariables.length, 2);
+        buffer.write(statusVariables);
+        buffer.writeZeroTerminatedString(database);
+        buffer.write(sql);
+        return new QueryEventDataDeserializer().deserialize(new ByteArrayInputStream(buffer.toByteArray()));
+    }
+}
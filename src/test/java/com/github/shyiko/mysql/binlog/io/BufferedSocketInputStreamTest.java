@@ -45,4 +45,19 @@ public class BufferedSocketInputStreamTest {
         assertEquals(in.read(), 16);
         assertEquals(in.read(), (byte) -1);
     }
+
+    @Test
+    public void testSkipAndBufferedDecoding() throws Exception {
+        BufferedSocketInputStream in = new BufferedSocketInputStream(new ByteArrayInputStream(new byte[]{
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9}), 4);
+        assertEquals(in.read(), 0);
+        assertEquals(in.skip(5), 3); // data remaining in BSIS buffer
+        assertEquals(in.read(), 4);
+        assertEquals(in.getBuffer().remaining(), 3);
+        com.github.shyiko.mysql.binlog.io.ByteArrayInputStream stream =
+            new com.github.shyiko.mysql.binlog.io.ByteArrayInputStream(in);
+        assertEquals(stream.readInteger(2), 5 | 6 << 8);
+        assertEquals(stream.readInteger(3), 7 | 8 << 8 | 9 << 16); // spans buffer refill
+        assertEquals(stream.peek(), -1);
+    }
 }
@@ -2,6 +2,12 @@ package com.github.shyiko.mysql.binlog.io;
 
 import org.testng.annotations.Test;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
 import static org.testng.Assert.assertEquals;
 
 public class ByteArrayInputStreamTest {
@@ -99,4 +105,121 @@ public class ByteArrayInputStreamTest {
         assertEquals(b[0], 5);
         assertEquals(b[2], 7);
     }
+
+    @Test
+    public void testReadIntegersFromBufferMatchByteByByteDecoding() throws Exception {
+        byte[] buff = new byte[]{(byte) 0xf1, 0x02, (byte) 0x83, 0x04, (byte) 0x95, 0x06, 0x07, (byte) 0xa8,
+            0x09, (byte) 0xfa, 0x0b, 0x0c, 0x0d, (byte) 0xee, 0x0f, (byte) 0xff, 0x11};
+        for (int length = 1; length <= 8; length++) {
+            ByteArrayInputStream buffered = new ByteArrayInputStream(buff);
+            ByteArrayInputStream unbuffered = unbuffered(buff);
+            for (int i = 0; i + length <= buff.length; i += length) {
+                if (length <= 4) {
+                    assertEquals(buffered.readInteger(length), unbuffered.readInteger(length));
+                } else {
+                    assertEquals(buffered.readLong(length), unbuffered.readLong(length));
+                }
+            }
+            assertEquals(buffered.getPosition(), unbuffered.getPosition());
+        }
+    }
+
+    @Test
+    public void testReadPackedNumbers() throws Exception {
+        byte[] buff = new byte[]{(byte) 250, (byte) 252, 0x01, 0x02, (byte) 253, 0x01, 0x02, 0x03,
+            (byte) 254, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, (byte) 251};
+        ByteArrayInputStream in = new ByteArrayInputStream(buff);
+        assertEquals(in.readPackedInteger(), 250);
+        assertEquals(in.readPackedInteger(), 0x0201);
+        assertEquals(in.readPackedLong(), 0x030201);
+        assertEquals(in.readPackedLong(), 0x0807060504030201L);
+        assertEquals(in.readPackedNumber(), null);
+        assertEquals(in.available(), 0);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadPackedIntegerRejectsNull() throws Exception {
+        new ByteArrayInputStream(new byte[]{(byte) 251}).readPackedInteger();
+    }
+
+    @Test
+    public void testReadBitSetFromBufferMatchesByteByByteDecoding() throws Exception {
+        byte[] buff = new byte[]{(byte) 0xff, 0x5a, (byte) 0xa5, 0x01, (byte) 0x80, 0x7f, 0x33, (byte) 0xcc,
+            (byte) 0xff, 0x0f};
+        for (int length = 0; length <= buff.length * 8; length++) {
+            for (boolean bigEndian : new boolean[] {true, false}) {
+                BitSet expected = unbuffered(buff).readBitSet(length, bigEndian);
+                ByteArrayInputStream in = new ByteArrayInputStream(buff);
+                assertEquals(in.readBitSet(length, bigEndian), expected, "length " + length);
+                assertEquals(in.getPosition(), (length + 7) >> 3);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testReadIntegerAcrossBlockBoundary() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6});
+        in.enterBlock(3);
+        assertEquals(in.readInteger(2), 0x0201);
+        assertEquals(in.available(), 1);
+        in.readInteger(2);
+    }
+
+    @Test
+    public void testReadStringWithCharset() throws Exception {
+        byte[] utf8 = "caf\u00e9".getBytes(StandardCharsets.UTF_8);
+        byte[] buff = new byte[utf8.length + 8];
+        System.arraycopy("abc".getBytes(StandardCharsets.US_ASCII), 0, buff, 0, 3);
+        System.arraycopy(utf8, 0, buff, 3, utf8.length);
+        buff[3 + utf8.length] = (byte) 0xE9; // latin1 (cp1252)
+        buff[4 + utf8.length] = 'x';
+        buff[5 + utf8.length] = 0;
+        ByteArrayInputStream in = new ByteArrayInputStream(buff);
+        assertEquals(in.readString(3, StandardCharsets.UTF_8), "abc");
+        assertEquals(in.readString(utf8.length, StandardCharsets.UTF_8), "caf\u00e9");
+        assertEquals(in.readZeroTerminatedString(Charset.forName("windows-1252")), "\u00e9x");
+        assertEquals(in.getPosition(), 6 + utf8.length);
+        // not backed by a buffer
+        in = new ByteArrayInputStream(new java.io.ByteArrayInputStream(buff, 3, buff.length - 3));
+        assertEquals(in.readString(utf8.length, StandardCharsets.UTF_8), "caf\u00e9");
+        assertEquals(in.readZeroTerminatedString(Charset.forName("windows-1252")), "\u00e9x");
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        byte[] buff = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        // not backed by a buffer (skip is delegated to the underlying stream)
+        ByteArrayInputStream in = new ByteArrayInputStream(new java.io.ByteArrayInputStream(buff));
+        assertEquals(in.skip(2), 2);
+        assertEquals(in.getPosition(), 2);
+        in.enterBlock(4);
+        assertEquals(in.skip(6), 4);
+        assertEquals(in.available(), 0);
+        in.enterBlock(-1);
+        assertEquals(in.read(), 6);
+        assertEquals(in.peek(), 7);
+        assertEquals(in.skip(1), 1);
+        assertEquals(in.skip(10), 2);
+        assertEquals(in.getPosition(), 10);
+    }
+
+    @Test
+    public void testReadArrayAfterPeek() throws Exception {
+        ByteArrayInputStream in = unbuffered(new byte[]{0, 1, 2, 3, 4, 5});
+        assertEquals(in.peek(), 0);
+        byte[] b = new byte[3];
+        assertEquals(in.read(b, 0, b.length), 3);
+        assertEquals(b, new byte[]{0, 1, 2});
+        assertEquals(in.getPosition(), 3);
+        assertEquals(in.peek(), 3);
+        assertEquals(in.read(b, 0, 1), 1); // peeked byte only
+        assertEquals(b[0], 3);
+        assertEquals(in.getPosition(), 4);
+        assertEquals(in.readInteger(2), 0x0504);
+        assertEquals(in.getPosition(), 6);
+    }
+
+    private static ByteArrayInputStream unbuffered(byte[] bytes) {
+        return new ByteArrayInputStream(new java.io.ByteArrayInputStream(bytes));
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.testng.Assert.assertEquals;
+
+public class MappedFileInputStreamTest {
+
+    @Test
+    public void testReadingAcrossWindows() throws Exception {
+        File file = File.createTempFile("mapped", ".bin");
+        file.deleteOnExit();
+        int numberOfLongs = 50000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.write(1); // so that longs don't align with window boundaries
+            for (long i = 0; i < numberOfLongs; i++) {
+                out.writeLong(i * 31, 8);
+            }
+        } finally {
+            out.close();
+        }
+        MappedFileInputStream mapped = new MappedFileInputStream(file, 100 * 1000);
+        try {
+            assertEquals(mapped.size(), 1 + numberOfLongs * 8);
+            ByteArrayInputStream in = new ByteArrayInputStream(mapped);
+            assertEquals(in.read(), 1);
+            for (long i = 0; i < numberOfLongs; i++) {
+                assertEquals(in.readLong(8), i * 31);
+            }
+            assertEquals(in.peek(), -1);
+            mapped.seek(1 + 8 * 3);
+            assertEquals(mapped.position(), 1 + 8 * 3);
+            assertEquals(new ByteArrayInputStream(mapped).readLong(8), 3 * 31);
+            mapped.seek(1 + 8 * 40000);
+            assertEquals(mapped.skip(8), 8);
+            assertEquals(new ByteArrayInputStream(mapped).readLong(8), 40001 * 31);
+        } finally {
+            mapped.close();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+public class SocketChannelInputStreamTest {
+
+    @Test
+    public void testCorrectness() throws Exception {
+        SocketChannelInputStream in = newStream(new byte[]{
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}, 5, false);
+        assertEquals(in.read(), 0);
+        assertEquals(in.read(), 1);
+        byte[] buf = new byte[6];
+        assertEquals(in.read(buf, 0, buf.length), 3); // data remaining in the buffer
+        assertEquals(Arrays.copyOf(buf, 3), new byte[] {2, 3, 4});
+        assertEquals(in.read(buf, 0, buf.length), 6);
+        assertEquals(buf, new byte[] {5, 6, 7, 8, 9, 10});
+        assertEquals(in.read(buf, 0, 3), 3);
+        assertEquals(Arrays.copyOf(buf, 3), new byte[] {11, 12, 13});
+        assertEquals(in.skip(2), 2);
+        assertEquals(in.read(), 16);
+        assertEquals(in.read(), -1);
+    }
+
+    @Test
+    public void testReadIntegersStraightFromBuffer() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(newStream(new byte[]{
+            0x05, 0x00, 0x00, 0x01, (byte) 0xff, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08}, 4, true));
+        assertEquals(in.readInteger(3), 5); // packet length
+        assertEquals(in.readInteger(1), 1); // sequence
+        assertEquals(in.read(), 0xff);
+        assertEquals(in.readLong(8), 0x0807060504030201L); // spans two buffer fills
+        assertEquals(in.getPosition(), 13);
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testReadIntegerWithinBlockBoundaries() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(newStream(new byte[]{1, 2, 3, 4, 5, 6}, 16, false));
+        in.enterBlock(2);
+        assertEquals(in.readInteger(2), 0x0201);
+        in.readInteger(1);
+    }
+
+    private static SocketChannelInputStream newStream(byte[] bytes, int bufferSize, boolean direct) {
+        return new SocketChannelInputStream(Channels.newChannel(new java.io.ByteArrayInputStream(bytes)),
+            bufferSize, direct);
+    }
+}
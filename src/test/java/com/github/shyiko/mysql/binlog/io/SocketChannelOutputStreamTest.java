@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.Test;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SocketChannelOutputStreamTest {
+
+    @Test(timeOut = 15000)
+    public void testWriteToNonBlockingChannel() throws Exception {
+        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            serverSocketChannel.bind(new InetSocketAddress("localhost", 0));
+            SocketChannel channel = SocketChannel.open(serverSocketChannel.getLocalAddress());
+            final SocketChannel peer = serverSocketChannel.accept();
+            try {
+                channel.configureBlocking(false);
+                final byte[] payload = new byte[32 * 1024 * 1024]; // more than socket buffers can hold
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] = (byte) i;
+                }
+                final SocketChannelOutputStream outputStream = new SocketChannelOutputStream(channel);
+                Future<?> writing = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        outputStream.write(payload);
+                        return null;
+                    }
+                });
+                Thread.sleep(200);
+                assertFalse(writing.isDone()); // waiting for peer to catch up
+                byte[] received = new byte[payload.length];
+                new DataInputStream(peer.socket().getInputStream()).readFully(received);
+                writing.get(5, TimeUnit.SECONDS);
+                assertTrue(Arrays.equals(received, payload));
+                channel.configureBlocking(true); // channel is no longer registered with any selector
+            } finally {
+                channel.close();
+                peer.close();
+            }
+        } finally {
+            executor.shutdownNow();
+            serverSocketChannel.close();
+        }
+    }
+
+}
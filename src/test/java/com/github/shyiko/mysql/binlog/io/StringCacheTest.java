@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.io;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class StringCacheTest {
+
+    @Test
+    public void testGet() throws Exception {
+        StringCache cache = new StringCache(StandardCharsets.UTF_8, 4, 8);
+        byte[] bytes = "_sakila_actor_".getBytes(StandardCharsets.UTF_8);
+        String sakila = cache.get(bytes, 1, 6);
+        assertEquals(sakila, "sakila");
+        assertSame(cache.get("sakila".getBytes(StandardCharsets.UTF_8), 0, 6), sakila);
+        assertEquals(cache.get(bytes, 8, 5), "actor");
+        assertEquals(cache.get(bytes, 1, 6), "sakila");
+        assertEquals(cache.get(bytes, 0, 0), "");
+        // longer than maxLength
+        assertNotSame(cache.get(bytes, 0, 14), cache.get(bytes, 0, 14));
+    }
+
+    @Test
+    public void testReadZeroTerminatedString() throws Exception {
+        StringCache cache = new StringCache(StandardCharsets.UTF_8, 16, 64);
+        byte[] bytes = {'d', 'b', 0, 't', 0, 'd', 'b', 0};
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        String db = in.readZeroTerminatedString(cache);
+        assertEquals(db, "db");
+        assertEquals(in.readZeroTerminatedString(cache), "t");
+        assertSame(in.readZeroTerminatedString(cache), db);
+        assertEquals(in.available(), 0);
+        // not backed by a buffer
+        in = new ByteArrayInputStream(new java.io.ByteArrayInputStream(bytes));
+        assertSame(in.readZeroTerminatedString(cache), db);
+        assertEquals(in.readZeroTerminatedString(cache), "t");
+    }
+
+}
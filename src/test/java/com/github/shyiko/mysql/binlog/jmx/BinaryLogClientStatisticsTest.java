@@ -15,11 +15,15 @@
  */
 package com.github.shyiko.mysql.binlog.jmx;
 
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.BinaryLogFileReader;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
 import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.deserialization.EventChecksumMismatchException;
 import org.testng.annotations.Test;
 
+import java.io.FileInputStream;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Queue;
@@ -79,6 +83,39 @@ public class BinaryLogClientStatisticsTest {
         assertEquals(statistics.getNumberOfSkippedEvents(), 1L);
     }
 
+    @Test
+    public void testOnEventChecksumMismatch() throws Exception {
+        BinaryLogClientStatistics statistics = new BinaryLogClientStatistics();
+        statistics.onEventDeserializationFailure(null, null);
+        assertEquals(statistics.getNumberOfChecksumMismatches(), 0L);
+        statistics.onEventDeserializationFailure(null, new EventChecksumMismatchException(
+            generateEvent(1L, EventType.QUERY, 1, 104).getHeader(), 1, 2));
+        assertEquals(statistics.getNumberOfSkippedEvents(), 2L);
+        assertEquals(statistics.getNumberOfChecksumMismatches(), 1L);
+        statistics.reset();
+        assertEquals(statistics.getNumberOfChecksumMismatches(), 0L);
+    }
+
+    @Test
+    public void testUnverifiedEvents() throws Exception {
+        BinaryLogClient client = new BinaryLogClient("localhost", 3306, "root", "");
+        BinaryLogClientStatistics statistics = new BinaryLogClientStatistics(client);
+        client.getEventDeserializer().setChecksumVerification(true);
+        BinaryLogFileReader reader = new BinaryLogFileReader(
+            new FileInputStream("src/test/resources/mysql-bin.checksum-crc32"), client.getEventDeserializer());
+        try {
+            for (int i = 0; i < 10; i++) {
+                reader.readEvent();
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(statistics.getNumberOfUnverifiedEvents(), 10L);
+        statistics.reset();
+        assertEquals(statistics.getNumberOfUnverifiedEvents(), 0L);
+        assertEquals(new BinaryLogClientStatistics().getNumberOfUnverifiedEvents(), 0L);
+    }
+
     @Test
     public void testOnDisconnect() throws Exception {
         BinaryLogClientStatistics statistics = new BinaryLogClientStatistics();
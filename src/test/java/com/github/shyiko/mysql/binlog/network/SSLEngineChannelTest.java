@@ -0,0 +1,267 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network;
+
+import com.github.shyiko.mysql.binlog.io.NonBlockingReadable;
+import com.github.shyiko.mysql.binlog.network.protocol.PacketChannel;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class SSLEngineChannelTest {
+
+    private SSLServerSocket serverSocket;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        InputStream inputStream = new FileInputStream("src/test/resources/localhost.p12");
+        try {
+            keyStore.load(inputStream, "changeit".toCharArray());
+        } finally {
+            inputStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "changeit".toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory()
+            .createServerSocket(0, 1, InetAddress.getByName("localhost"));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        serverSocket.close();
+    }
+
+    @Test(timeOut = 15000)
+    public void testHandshakeReadWrite() throws Exception {
+        final byte[] response = payload(100 * 1024); // spans multiple TLS records
+        Future<byte[]> request = serve(new Handler() {
+
+            @Override
+            public byte[] handle(SSLSocket socket) throws Exception {
+                byte[] request = new byte[4];
+                new DataInputStream(socket.getInputStream()).readFully(request);
+                OutputStream outputStream = socket.getOutputStream();
+                outputStream.write(response);
+                outputStream.flush();
+                assertEquals(socket.getInputStream().read(), -1); // close_notify
+                return request;
+            }
+        });
+        SocketChannel socketChannel = connect();
+        try {
+            SSLEngineChannel channel = new SSLEngineChannel(socketChannel,
+                new TrustAllSSLSocketFactory().createSSLEngine("localhost", serverSocket.getLocalPort()), 1024, false);
+            channel.handshake();
+            channel.getOutputStream().write(new byte[]{1, 2, 3, 4});
+            byte[] received = new byte[response.length];
+            new DataInputStream(channel.getInputStream()).readFully(received);
+            assertTrue(Arrays.equals(received, response));
+            assertTrue(((NonBlockingReadable) channel.getInputStream()).getBuffer().capacity() >= 1024);
+            channel.closeOutbound();
+            assertTrue(Arrays.equals(request.get(5, TimeUnit.SECONDS), new byte[]{1, 2, 3, 4}));
+        } finally {
+            socketChannel.close();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testNonBlockingRead() throws Exception {
+        final byte[] response = payload(100 * 1024);
+        serve(new Handler() {
+
+            @Override
+            public byte[] handle(SSLSocket socket) throws Exception {
+                OutputStream outputStream = socket.getOutputStream();
+                outputStream.write(response);
+                outputStream.flush();
+                socket.getInputStream().read();
+                return null;
+            }
+        });
+        SocketChannel socketChannel = connect();
+        Selector selector = Selector.open();
+        try {
+            SSLEngineChannel channel = new SSLEngineChannel(socketChannel,
+                new TrustAllSSLSocketFactory().createSSLEngine("localhost", serverSocket.getLocalPort()), 1024, true);
+            channel.handshake();
+            socketChannel.configureBlocking(false);
+            socketChannel.register(selector, SelectionKey.OP_READ);
+            NonBlockingReadable readable = (NonBlockingReadable) channel.getInputStream();
+            ByteBuffer buffer = readable.getBuffer();
+            byte[] received = new byte[response.length];
+            int offset = 0;
+            while (offset < received.length) {
+                int length = Math.min(buffer.remaining(), received.length - offset);
+                buffer.get(received, offset, length);
+                offset += length;
+                if (offset < received.length && readable.readAvailable() == 0 && !buffer.hasRemaining()) {
+                    selector.select(1000);
+                    selector.selectedKeys().clear();
+                }
+            }
+            assertTrue(Arrays.equals(received, response));
+        } finally {
+            selector.close();
+            socketChannel.close();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testDefaultSSLSocketFactoryUsesSSLEngine() throws Exception {
+        serve(new Handler() {
+
+            @Override
+            public byte[] handle(SSLSocket socket) throws Exception {
+                socket.getInputStream().read();
+                return null;
+            }
+        });
+        PacketChannel packetChannel = new PacketChannel(connect(), 1024, false);
+        try {
+            packetChannel.upgradeToSSL(new TrustAllSSLSocketFactory(), null);
+            assertNotNull(packetChannel.getNonBlockingReadable());
+        } finally {
+            packetChannel.close();
+        }
+    }
+
+    @Test(timeOut = 15000)
+    public void testCustomizedCreateSocketIsNotBypassed() throws Exception {
+        serve(new Handler() {
+
+            @Override
+            public byte[] handle(SSLSocket socket) throws Exception {
+                socket.getInputStream().read();
+                return null;
+            }
+        });
+        final SSLSocket[] createdSocket = new SSLSocket[1];
+        TrustAllSSLSocketFactory sslSocketFactory = new TrustAllSSLSocketFactory() {
+
+            @Override
+            public SSLSocket createSocket(Socket socket) throws SocketException {
+                createdSocket[0] = super.createSocket(socket);
+                createdSocket[0].setEnabledProtocols(new String[]{"TLSv1.2"});
+                return createdSocket[0];
+            }
+        };
+        assertTrue(!sslSocketFactory.isSSLEngineCapable());
+        PacketChannel packetChannel = new PacketChannel(connect(), 1024, false);
+        try {
+            packetChannel.upgradeToSSL(sslSocketFactory, null);
+            assertNotNull(createdSocket[0]);
+            assertNull(packetChannel.getNonBlockingReadable());
+            assertTrue(packetChannel.isSSL());
+        } finally {
+            packetChannel.close();
+        }
+    }
+
+    private SocketChannel connect() throws Exception {
+        return SocketChannel.open(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+    }
+
+    private Future<byte[]> serve(final Handler handler) {
+        return executor.submit(new Callable<byte[]>() {
+
+            @Override
+            public byte[] call() throws Exception {
+                SSLSocket socket = (SSLSocket) serverSocket.accept();
+                try {
+                    socket.startHandshake();
+                    return handler.handle(socket);
+                } finally {
+                    socket.close();
+                }
+            }
+        });
+    }
+
+    private static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (i * 31);
+        }
+        return payload;
+    }
+
+    private interface Handler {
+
+        byte[] handle(SSLSocket socket) throws Exception;
+    }
+
+    private static class TrustAllSSLSocketFactory extends DefaultSSLSocketFactory {
+
+        @Override
+        protected void initSSLContext(SSLContext sc) throws GeneralSecurityException {
+            sc.init(null, new TrustManager[]{
+                new X509TrustManager() {
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] x509Certificates, String s) { }
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] x509Certificates, String s) { }
+
+                    @Override
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+                }
+            }, null);
+        }
+    }
+
+}
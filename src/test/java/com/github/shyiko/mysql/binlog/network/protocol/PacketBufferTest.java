@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import com.github.shyiko.mysql.binlog.io.ByteArrayOutputStream;
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+public class PacketBufferTest {
+
+    @Test
+    public void testPacketSplitInChunks() throws Exception {
+        byte[] payload = new byte[Packet.MAX_LENGTH * 2 + 3];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeChunk(out, payload, 0, Packet.MAX_LENGTH, 0);
+        writeChunk(out, payload, Packet.MAX_LENGTH, Packet.MAX_LENGTH, 1);
+        writeChunk(out, payload, Packet.MAX_LENGTH * 2, 3, 2);
+        byte[] small = {(byte) 0xFE, 1, 2};
+        writeChunk(out, small, 0, small.length, 3);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        PacketBuffer packetBuffer = new PacketBuffer(16, 1024);
+        packetBuffer.read(in, readHeader(in));
+        assertEquals(packetBuffer.getLength(), payload.length);
+        assertEquals(Arrays.copyOf(packetBuffer.getBytes(), packetBuffer.getLength()), payload);
+        packetBuffer.read(in, readHeader(in));
+        assertEquals(packetBuffer.getLength(), small.length);
+        assertEquals(packetBuffer.getBytes().length, 16); // oversized buffer released
+        ByteArrayInputStream packet = packetBuffer.getInputStream(1);
+        assertEquals(packet.read(), 1);
+        assertEquals(packet.read(), 2);
+        assertEquals(packet.peek(), -1);
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testTruncatedPacket() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[]{3, 0, 0, 0, 1, 2});
+        new PacketBuffer().read(in, readHeader(in));
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, byte[] payload, int offset, int length, int sequence)
+            throws Exception {
+        out.writeInteger(length, 3);
+        out.writeInteger(sequence, 1);
+        out.write(payload, offset, length);
+    }
+
+    private static int readHeader(ByteArrayInputStream in) throws Exception {
+        int packetLength = in.readInteger(3);
+        in.skip(1);
+        return packetLength;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Stanley Shyiko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.shyiko.mysql.binlog.network.protocol;
+
+import com.github.shyiko.mysql.binlog.io.ByteArrayInputStream;
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class PacketRingTest {
+
+    @Test(timeOut = 10000)
+    public void testOrderIsPreservedUnderBackpressure() throws Exception {
+        final int packets = 10000;
+        final PacketRing ring = new PacketRing(4, 8, 8);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < packets; i++) {
+                        PacketBuffer slot = ring.claim();
+                        slot.read(new ByteArrayInputStream(new byte[]{(byte) i, (byte) (i >>> 8)}), 2);
+                        ring.publish();
+                    }
+                    ring.close(null);
+                } catch (IOException e) {
+                    ring.close(e);
+                }
+            }
+        });
+        producer.start();
+        int received = 0;
+        PacketBuffer slot;
+        while ((slot = ring.take()) != null) {
+            assertEquals(slot.getInputStream(0).readInteger(2), received & 0xFFFF);
+            ring.release();
+            received++;
+        }
+        assertEquals(received, packets);
+        producer.join();
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testFailureIsPropagatedAfterPublishedSlots() throws Exception {
+        PacketRing ring = new PacketRing(2, 8, 8);
+        ring.claim().read(new ByteArrayInputStream(new byte[]{1}), 1);
+        ring.publish();
+        ring.close(new EOFException());
+        assertEquals(ring.take().getLength(), 1);
+        ring.release();
+        ring.take();
+    }
+
+    @Test
+    public void testCloseUnblocksProducer() throws Exception {
+        PacketRing ring = new PacketRing(1, 8, 8);
+        ring.claim();
+        ring.publish();
+        ring.close(null);
+        assertNull(ring.claim());
+    }
+
+    @Test
+    public void testTryClaimAndPoll() throws Exception {
+        PacketRing ring = new PacketRing(1, 8, 8);
+        assertNull(ring.poll());
+        ring.tryClaim().read(new ByteArrayInputStream(new byte[]{1}), 1);
+        ring.publish();
+        assertNull(ring.tryClaim());
+        assertEquals(ring.poll().getLength(), 1);
+        ring.release();
+        assertNull(ring.poll());
+        ring.close(new EOFException());
+        assertNull(ring.tryClaim());
+        assertTrue(ring.getFailure() instanceof EOFException);
+    }
+
+}